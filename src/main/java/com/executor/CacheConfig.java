@@ -0,0 +1,85 @@
+package com.executor;
+
+import com.executor.server.service.CachedResult;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class CacheConfig {
+    public static final String QUERY_RESULTS_CACHE = "queryResults";
+
+    // Rough cost of the entry itself (node, key object, references) on top of key and value contents
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    // Caffeine bounds the cache by total weight and evicts with W-TinyLFU, so a burst of
+    // one-off queries can't push out results that are requested often.
+    @Bean
+    public CacheManager cacheManager(@Value("${query.cache.max-bytes:67108864}") long maxBytes,
+                                     @Value("${query.cache.ttl:PT10M}") Duration ttl,
+                                     @Value("${query.cache.dataset-ttl:PT6H}") Duration datasetTtl) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(QUERY_RESULTS_CACHE);
+        cacheManager.setAllowNullValues(false);
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Object key, Object value) -> estimateBytes(key, value))
+                .expireAfter(new ResultExpiry(ttl, datasetTtl))
+                .recordStats());
+        return cacheManager;
+    }
+
+    /**
+     * Results tagged with dataset versions turn into misses as soon as a dataset changes, so they can live long.
+     * Anything else may change unnoticed and gets the short TTL. Reading an entry doesn't extend its life.
+     */
+    static class ResultExpiry implements Expiry<Object, Object> {
+        private final long ttlNanos;
+        private final long datasetTtlNanos;
+
+        ResultExpiry(Duration ttl, Duration datasetTtl) {
+            this.ttlNanos = ttl.toNanos();
+            this.datasetTtlNanos = datasetTtl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(Object key, Object value, long currentTime) {
+            return value instanceof CachedResult result && result.isTagged() ? datasetTtlNanos : ttlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    /**
+     * Approximates heap taken by the entry. Cached results are ASCII JSON, so length of the string
+     * is close to both its serialized size and its compact in-memory size.
+     */
+    public static int estimateBytes(Object key, Object value) {
+        long bytes = ENTRY_OVERHEAD_BYTES + sizeOf(key) + sizeOf(value);
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static long sizeOf(Object object) {
+        if (object instanceof CharSequence text) {
+            return text.length();
+        }
+        // Dataset versions are a few map entries next to the result
+        if (object instanceof CachedResult result) {
+            return result.json().length() + ENTRY_OVERHEAD_BYTES * (1L + (result.isTagged() ? result.datasetVersions().size() : 0));
+        }
+        return ENTRY_OVERHEAD_BYTES;
+    }
+}
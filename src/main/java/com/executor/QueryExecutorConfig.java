@@ -0,0 +1,73 @@
+package com.executor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class QueryExecutorConfig {
+    public static final String QUERY_EXECUTOR = "queryExecutor";
+    public static final String WEB_ASYNC_EXECUTOR = "webAsyncExecutor";
+    public static final String VALIDATION_POOL = "validationPool";
+    public static final String DATASET_LOAD_POOL = "datasetLoadPool";
+    public static final String COLUMNAR_POOL = "columnarPool";
+
+    // Every running query holds a JDBC connection, so concurrency should stay below the pool size,
+    // leaving connections for the request threads. Work over the queue capacity is rejected
+    // instead of piling up in memory.
+    @Bean(name = QUERY_EXECUTOR)
+    public ThreadPoolTaskExecutor queryExecutor(@Value("${query.executor.concurrency:8}") int concurrency,
+                                                @Value("${query.executor.queue-capacity:100}") int queueCapacity,
+                                                @Value("${query.executor.virtual-threads:false}") boolean virtualThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("query-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+
+        if (virtualThreads) {
+            // Pool still caps how many queries run at once, virtual threads only make blocking on JDBC cheap
+            executor.setThreadFactory(Thread.ofVirtual().name("query-", 0).factory());
+        }
+        return executor;
+    }
+
+    // The executors defined here make Boot skip its applicationTaskExecutor, MVC would then write streamed
+    // responses on an unbounded SimpleAsyncTaskExecutor. Streams are slow clients rather than CPU work, so the
+    // pool caps concurrent streams and further ones wait in the queue (see WebAsyncConfig)
+    @Bean(name = WEB_ASYNC_EXECUTOR)
+    public ThreadPoolTaskExecutor webAsyncExecutor(@Value("${web.async.pool-size:16}") int poolSize,
+                                                   @Value("${web.async.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("web-async-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    // Parsing is pure CPU work, so bulk imports split it over a pool sized to the cores (0 means all of them)
+    @Bean(name = VALIDATION_POOL, destroyMethod = "shutdown")
+    public ForkJoinPool validationPool(@Value("${query.validation.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    // Dataset loads parse chunks of the file and insert them in parallel, every inserting thread holds
+    // a JDBC connection while its batch is written (0 means all cores)
+    @Bean(name = DATASET_LOAD_POOL, destroyMethod = "shutdown")
+    public ForkJoinPool datasetLoadPool(@Value("${datasets.load.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    // Columnar queries scan morsels of a dataset in parallel, pure CPU work without JDBC connections
+    @Bean(name = COLUMNAR_POOL, destroyMethod = "shutdown")
+    public ForkJoinPool columnarPool(@Value("${query.columnar.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+}
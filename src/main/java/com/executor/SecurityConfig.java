@@ -1,7 +1,12 @@
 package com.executor;
 
+import com.executor.server.service.AccessTokenService;
+import com.executor.server.service.AuthenticationCache;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -12,6 +17,7 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.JdbcUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 
 import javax.sql.DataSource;
 
@@ -20,7 +26,7 @@ import javax.sql.DataSource;
 public class SecurityConfig {
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, AccessTokenService accessTokenService) throws Exception {
         http
                 //  Disable CSRF (Essential for REST APIs)
                 .csrf(AbstractHttpConfigurer::disable)
@@ -37,14 +43,22 @@ public class SecurityConfig {
                         // Optional: Allow anyone to check if the app is running
                         .requestMatchers("/actuator/health").permitAll()
 
+                        // Long-poll and SSE responses are written in an async dispatch,
+                        // the request itself was already authorized when it came in
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                         // Protect your query endpoints
                         // Note: hasRole("ANALYST") checks for "ROLE_ANALYST" in database
                         .requestMatchers("/api/queries/**").hasRole("ANALYST")
+                        .requestMatchers("/api/datasets/**").hasRole("ANALYST")
 
                         // Lock down everything else
                         .anyRequest().authenticated()
                 )
 
+                // Signed tokens from /api/auth/token are checked first, without database access or BCrypt
+                .addFilterBefore(new AccessTokenFilter(accessTokenService), BasicAuthenticationFilter.class)
+
                 // Enable HTTP Basic Authentication
                 .httpBasic(Customizer.withDefaults());
 
@@ -57,6 +71,17 @@ public class SecurityConfig {
         return new JdbcUserDetailsManager(dataSource);
     }
 
+    // Clients poll with the same Basic credentials over and over. Verified credentials and loaded users
+    // are cached for a short time, so most requests skip both the JDBC lookup and the BCrypt check.
+    @Bean
+    public AuthenticationProvider authenticationProvider(UserDetailsService userDetailsService, PasswordEncoder passwordEncoder,
+                                                         AuthenticationCache authenticationCache) {
+        DaoAuthenticationProvider daoProvider = new DaoAuthenticationProvider(userDetailsService);
+        daoProvider.setPasswordEncoder(passwordEncoder);
+        daoProvider.setUserCache(authenticationCache);
+        return new CachingAuthenticationProvider(daoProvider, authenticationCache);
+    }
+
     // This matches the encoder used in your UserManagingService.
     @Bean
     public PasswordEncoder passwordEncoder() {
@@ -0,0 +1,22 @@
+package com.executor;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+// StreamingResponseBody and other async MVC work runs on the bounded web async executor
+@Configuration
+public class WebAsyncConfig implements WebMvcConfigurer {
+    private final ThreadPoolTaskExecutor webAsyncExecutor;
+
+    public WebAsyncConfig(@Qualifier(QueryExecutorConfig.WEB_ASYNC_EXECUTOR) ThreadPoolTaskExecutor webAsyncExecutor) {
+        this.webAsyncExecutor = webAsyncExecutor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(webAsyncExecutor);
+    }
+}
@@ -0,0 +1,88 @@
+package com.executor.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Upload of a new dataset version. Rows loaded so far are updated with every committed transaction,
+ * so progress of a running upload can be followed from other requests.
+ */
+@Entity
+@Table(indexes = @Index(name = "ix_ingestion_dataset_created", columnList = "datasetName, createdAt DESC, id DESC"))
+public class DatasetIngestionJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String datasetName;
+
+    @Enumerated(EnumType.STRING)
+    private QueryExecutionJob.JobStatus status;
+
+    private long rowsLoaded;
+
+    @Column(columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime finishedAt;
+
+    protected DatasetIngestionJob() {
+    }
+
+    public DatasetIngestionJob(String datasetName) {
+        this.datasetName = datasetName;
+        this.status = QueryExecutionJob.JobStatus.RUNNING;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getDatasetName() {
+        return datasetName;
+    }
+
+    public QueryExecutionJob.JobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(QueryExecutionJob.JobStatus status) {
+        this.status = status;
+    }
+
+    public long getRowsLoaded() {
+        return rowsLoaded;
+    }
+
+    public void setRowsLoaded(long rowsLoaded) {
+        this.rowsLoaded = rowsLoaded;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
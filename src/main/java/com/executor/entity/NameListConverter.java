@@ -0,0 +1,24 @@
+package com.executor.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Stores lists of SQL names (parameters, tables, columns) in one column. Names are identifiers,
+// quoted ones with a comma inside are not expected in stored queries
+@Converter
+public class NameListConverter implements AttributeConverter<List<String>, String> {
+    private static final String SEPARATOR = ",";
+
+    @Override
+    public String convertToDatabaseColumn(List<String> names) {
+        return names == null || names.isEmpty() ? null : String.join(SEPARATOR, names);
+    }
+
+    @Override
+    public List<String> convertToEntityAttribute(String column) {
+        return column == null || column.isEmpty() ? List.of() : Arrays.asList(column.split(SEPARATOR));
+    }
+}
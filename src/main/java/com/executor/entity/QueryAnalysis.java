@@ -0,0 +1,58 @@
+package com.executor.entity;
+
+import jakarta.persistence.*;
+
+import java.util.List;
+
+/**
+ * Facts about the query taken from its AST when it is stored, so nothing has to parse it again later.
+ */
+@Embeddable
+public class QueryAnalysis {
+    public enum StatementType {
+        SELECT,
+        DESCRIBE,
+        SHOW
+    }
+
+    @Enumerated(EnumType.STRING)
+    private StatementType statementType;
+
+    @Convert(converter = NameListConverter.class)
+    @Column(columnDefinition = "TEXT")
+    private List<String> referencedTables = List.of();
+
+    // Only explicitly named columns, * is not expanded
+    @Convert(converter = NameListConverter.class)
+    @Column(columnDefinition = "TEXT")
+    private List<String> referencedColumns = List.of();
+
+    // LIMIT, FETCH or TOP on the outermost statement
+    private Boolean limited;
+
+    protected QueryAnalysis() {
+    }
+
+    public QueryAnalysis(StatementType statementType, List<String> referencedTables, List<String> referencedColumns, boolean limited) {
+        this.statementType = statementType;
+        this.referencedTables = referencedTables;
+        this.referencedColumns = referencedColumns;
+        this.limited = limited;
+    }
+
+    public StatementType getStatementType() {
+        return statementType;
+    }
+
+    public List<String> getReferencedTables() {
+        return referencedTables;
+    }
+
+    public List<String> getReferencedColumns() {
+        return referencedColumns;
+    }
+
+    public boolean isLimited() {
+        return Boolean.TRUE.equals(limited);
+    }
+}
@@ -5,12 +5,24 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+        // Keyset pagination of listings, newest first
+        @Index(name = "ix_job_created", columnList = "createdAt DESC, id DESC"),
+        @Index(name = "ix_job_owner_created", columnList = "user_id, createdAt DESC, id DESC"),
+        @Index(name = "ix_job_status_created", columnList = "status, createdAt DESC, id DESC")
+})
 public class QueryExecutionJob {
     public enum JobStatus {
         PENDING,
         RUNNING,
         COMPLETED,
-        FAILED
+        FAILED,
+        CANCELLED,
+        TIMED_OUT;
+
+        public boolean isFinished() {
+            return this != PENDING && this != RUNNING;
+        }
     }
 
     @Id
@@ -22,11 +34,15 @@ public class QueryExecutionJob {
     @Enumerated(EnumType.STRING)
     private JobStatus status;
 
-    @Lob
-    private String result;
+    // Rows are kept in QueryResultChunk, the job only remembers how many were stored
+    private Long resultRowCount;
 
     private String errorMessage;
 
+    // Values of the query's bind parameters as a JSON object, null for queries without parameters
+    @Column(columnDefinition = "TEXT")
+    private String parameters;
+
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -35,6 +51,14 @@ public class QueryExecutionJob {
     @JoinColumn(name = "user_id") // Matches the new SQL column we added
     private User owner;
 
+    public String getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(String parameters) {
+        this.parameters = parameters;
+    }
+
     public String getErrorMessage() {
         return errorMessage;
     }
@@ -43,12 +67,12 @@ public class QueryExecutionJob {
         this.errorMessage = errorMessage;
     }
 
-    public String getResult() {
-        return result;
+    public Long getResultRowCount() {
+        return resultRowCount;
     }
 
-    public void setResult(String result) {
-        this.result = result;
+    public void setResultRowCount(Long resultRowCount) {
+        this.resultRowCount = resultRowCount;
     }
 
     public JobStatus getStatus() {
@@ -79,6 +103,10 @@ public class QueryExecutionJob {
         return createdAt;
     }
 
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
     public User getOwner() {
         return owner;
     }
@@ -0,0 +1,94 @@
+package com.executor.entity;
+
+import jakarta.persistence.*;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-size slice of a job result: JSON array holding up to chunk size rows,
+ * addressed by job id and position of the slice inside the whole result.
+ */
+@Entity
+@Table(indexes = @Index(name = "ix_chunk_job_index", columnList = "jobId, chunkIndex", unique = true))
+public class QueryResultChunk {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long jobId;
+
+    @Column(nullable = false)
+    private int chunkIndex;
+
+    @Column(nullable = false)
+    private int rowCount;
+
+    @Lob
+    @Column(nullable = false)
+    private String rows;
+
+    // Size of rows in UTF-8 bytes, kept apart so total size of stored results can be summed without reading the LOBs
+    @Column(nullable = false)
+    private int byteCount;
+
+    public QueryResultChunk() {
+    }
+
+    public QueryResultChunk(Long jobId, int chunkIndex, int rowCount, String rows) {
+        this.jobId = jobId;
+        this.chunkIndex = chunkIndex;
+        this.rowCount = rowCount;
+        this.rows = rows;
+        // Text values may hold any characters, the size is taken as UTF-8 rather than assumed from the length
+        this.byteCount = rows.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(Long jobId) {
+        this.jobId = jobId;
+    }
+
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public void setChunkIndex(int chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public void setRowCount(int rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    public String getRows() {
+        return rows;
+    }
+
+    public void setRows(String rows) {
+        this.rows = rows;
+    }
+
+    public int getByteCount() {
+        return byteCount;
+    }
+
+    public void setByteCount(int byteCount) {
+        this.byteCount = byteCount;
+    }
+}
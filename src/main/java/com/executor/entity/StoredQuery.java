@@ -3,9 +3,22 @@ package com.executor.entity;
 import jakarta.persistence.*;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Entity
+@Table(indexes = {
+        // Keyset pagination of listings, newest first
+        @Index(name = "ix_stored_query_created", columnList = "createdAt DESC, id DESC"),
+        @Index(name = "ix_stored_query_owner_created", columnList = "user_id, createdAt DESC, id DESC")
+})
 public class StoredQuery {
+    public enum MaterializationMode {
+        // Materialized once executed query.materialization.auto-threshold times
+        AUTO,
+        ALWAYS,
+        NEVER
+    }
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -13,9 +26,27 @@ public class StoredQuery {
     @Column(columnDefinition = "TEXT", nullable = false)
     private String query;
 
+    // Canonical form of the query, shared by queries that differ only in formatting
+    @Column(length = 64, nullable = false)
+    private String fingerprint;
+
+    // Named bind parameters (:name) of the query, values are supplied on every execution
+    @Convert(converter = NameListConverter.class)
+    private List<String> parameterNames = List.of();
+
+    @Embedded
+    private QueryAnalysis analysis;
+
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
+    // Executions counted so far, added in batches, so it may lag behind by a few seconds
+    private Long executionCount;
+
+    // Null for rows inserted by bulk imports, which means AUTO
+    @Enumerated(EnumType.STRING)
+    private MaterializationMode materialization;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id") // Matches the new SQL column we added
     private User owner;
@@ -45,6 +76,30 @@ public class StoredQuery {
         return id;
     }
 
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public List<String> getParameterNames() {
+        return parameterNames;
+    }
+
+    public void setParameterNames(List<String> parameterNames) {
+        this.parameterNames = parameterNames;
+    }
+
+    public QueryAnalysis getAnalysis() {
+        return analysis;
+    }
+
+    public void setAnalysis(QueryAnalysis analysis) {
+        this.analysis = analysis;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -53,6 +108,22 @@ public class StoredQuery {
         this.createdAt = createdAt;
     }
 
+    public long getExecutionCount() {
+        return executionCount == null ? 0 : executionCount;
+    }
+
+    public void setExecutionCount(long executionCount) {
+        this.executionCount = executionCount;
+    }
+
+    public MaterializationMode getMaterialization() {
+        return materialization == null ? MaterializationMode.AUTO : materialization;
+    }
+
+    public void setMaterialization(MaterializationMode materialization) {
+        this.materialization = materialization;
+    }
+
     public User getOwner() {
         return owner;
     }
@@ -23,6 +23,10 @@ public class User {
     @Column(nullable = false)
     private boolean enabled;
 
+    // Epoch millis, access tokens issued until then are rejected. Null if they were never revoked
+    @Column(name = "tokens_valid_after")
+    private Long tokensValidAfter;
+
     @OneToMany(mappedBy = "owner", cascade = CascadeType.ALL)
     private List<StoredQuery> queries = new ArrayList<>();
 
@@ -64,6 +68,14 @@ public class User {
         this.enabled = enabled;
     }
 
+    public Long getTokensValidAfter() {
+        return tokensValidAfter;
+    }
+
+    public void setTokensValidAfter(Long tokensValidAfter) {
+        this.tokensValidAfter = tokensValidAfter;
+    }
+
     public List<StoredQuery> getQueries() {
         return queries;
     }
@@ -0,0 +1,41 @@
+package com.executor.server.controller;
+
+import com.executor.server.service.AccessTokenService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/auth")
+public class AuthController {
+
+    private final AccessTokenService accessTokenService;
+
+    public AuthController(AccessTokenService accessTokenService) {
+        this.accessTokenService = accessTokenService;
+    }
+
+    // Tokens are only exchanged for the password, so a token can't be renewed by itself after a revocation
+    @PostMapping("/token")
+    public ResponseEntity<Map<String, Object>> issueToken(Authentication authentication) {
+        if (!(authentication instanceof UsernamePasswordAuthenticationToken)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        AccessTokenService.IssuedToken token = accessTokenService.issue(authentication);
+        return ResponseEntity.ok(Map.of(
+                "token", token.token(),
+                "tokenType", "Bearer",
+                "expiresAt", token.expiresAt().toString(),
+                "expiresIn", Duration.between(Instant.now(), token.expiresAt()).toSeconds()
+        ));
+    }
+}
@@ -0,0 +1,77 @@
+package com.executor.server.controller;
+
+import com.executor.entity.DatasetIngestionJob;
+import com.executor.entity.QueryExecutionJob;
+import com.executor.server.service.DatasetException;
+import com.executor.server.service.DatasetFormat;
+import com.executor.server.service.DatasetIngestionService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/datasets")
+public class DatasetController {
+    private static final String CSV_VALUE = "text/csv";
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
+    private final DatasetIngestionService ingestionService;
+
+    public DatasetController(DatasetIngestionService ingestionService) {
+        this.ingestionService = ingestionService;
+    }
+
+    // The body is read as a stream while it arrives, so uploads of any size take constant memory.
+    // Progress of a running upload is visible under /ingestions
+    @PostMapping(value = "/{name}", consumes = {CSV_VALUE, NDJSON_VALUE})
+    public ResponseEntity<Map<String, Object>> uploadDataset(@PathVariable String name,
+                                                             @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                             InputStream body) {
+        DatasetFormat format = contentType.isCompatibleWith(MediaType.parseMediaType(NDJSON_VALUE)) ? DatasetFormat.NDJSON : DatasetFormat.CSV;
+        DatasetIngestionJob job;
+        try {
+            job = ingestionService.ingest(name, format, body);
+        } catch (DatasetException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+
+        if (job.getStatus() != QueryExecutionJob.JobStatus.COMPLETED) {
+            return ResponseEntity.badRequest().body(jobBody(job));
+        }
+        return ResponseEntity.created(URI.create("/api/datasets/ingestions/" + job.getId())).body(jobBody(job));
+    }
+
+    @GetMapping("/ingestions/{jobId}")
+    public ResponseEntity<Map<String, Object>> getIngestion(@PathVariable Long jobId) {
+        return ResponseEntity.of(ingestionService.getJob(jobId).map(DatasetController::jobBody));
+    }
+
+    // Newest first, includes uploads still running
+    @GetMapping("/ingestions")
+    public ResponseEntity<List<Map<String, Object>>> getIngestions(@RequestParam String dataset) {
+        return ResponseEntity.ok(ingestionService.getJobs(dataset).stream().map(DatasetController::jobBody).toList());
+    }
+
+    private static Map<String, Object> jobBody(DatasetIngestionJob job) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("jobId", job.getId());
+        body.put("dataset", job.getDatasetName());
+        body.put("status", job.getStatus());
+        body.put("rowsLoaded", job.getRowsLoaded());
+        body.put("createdAt", job.getCreatedAt());
+        if (job.getFinishedAt() != null) {
+            body.put("finishedAt", job.getFinishedAt());
+        }
+        if (job.getErrorMessage() != null) {
+            body.put("error", job.getErrorMessage());
+        }
+        return body;
+    }
+}
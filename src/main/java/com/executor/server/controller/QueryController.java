@@ -1,28 +1,74 @@
 package com.executor.server.controller;
 
+import com.executor.QueryExecutorConfig;
 import com.executor.entity.QueryExecutionJob;
 import com.executor.entity.StoredQuery;
+import com.executor.server.repository.JobStatusView;
 import com.executor.server.service.*;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api")
 public class QueryController {
+    private static final int MAX_PAGE_SIZE = 10000;
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 100;
+    private static final int MAX_LIST_SIZE = 1000;
+    private static final int MAX_IMPORT_SIZE = 20000;
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final int RETRY_AFTER_SECONDS = 5;
+    private static final long MAX_WAIT_MS = 30000;
+    private static final long EVENTS_TIMEOUT_MS = 300000;
 
     private final StoredQueryService queryService;
     private final AsyncQueryManagingService executionService;
     private final QueryExecutionJobService jobService;
+    private final QueryExecutionService queryExecutionService;
+    private final QueryResultStorageService resultStorageService;
+    private final JobCompletionNotifier completionNotifier;
+    private final MaterializedQueryService materializedQueryService;
+    private final ObjectMapper objectMapper;
+    private final TaskExecutor webAsyncExecutor;
 
-    public QueryController(StoredQueryService queryService, AsyncQueryManagingService executionService, QueryExecutionJobService jobService) {
+    public QueryController(StoredQueryService queryService, AsyncQueryManagingService executionService, QueryExecutionJobService jobService,
+                           QueryExecutionService queryExecutionService, QueryResultStorageService resultStorageService,
+                           JobCompletionNotifier completionNotifier, MaterializedQueryService materializedQueryService,
+                           ObjectMapper objectMapper, @Qualifier(QueryExecutorConfig.WEB_ASYNC_EXECUTOR) TaskExecutor webAsyncExecutor) {
         this.queryService = queryService;
         this.executionService = executionService;
         this.jobService = jobService;
+        this.queryExecutionService = queryExecutionService;
+        this.resultStorageService = resultStorageService;
+        this.completionNotifier = completionNotifier;
+        this.materializedQueryService = materializedQueryService;
+        this.objectMapper = objectMapper;
+        this.webAsyncExecutor = webAsyncExecutor;
     }
 
     @PostMapping(value = "/queries", consumes = MediaType.TEXT_PLAIN_VALUE)
@@ -33,55 +79,355 @@ public class QueryController {
                 .body(Map.of("id", storedQuery.getId()));
     }
 
+    // Items are query strings, or objects with the query in a "query" field
+    @PostMapping(value = "/queries/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> importQueries(@RequestBody List<JsonNode> items) {
+        return importResponse(items.stream().map(QueryController::queryText).toList());
+    }
+
+    // One item per line, blank lines are skipped
+    @PostMapping(value = "/queries/bulk", consumes = NDJSON_VALUE)
+    public ResponseEntity<Map<String, Object>> importQueriesNdjson(@RequestBody String body) {
+        List<String> queries = new ArrayList<>();
+        String[] lines = body.split("\\R");
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].isBlank()) {
+                continue;
+            }
+            try {
+                queries.add(queryText(objectMapper.readTree(lines[i])));
+            } catch (JsonProcessingException e) {
+                throw new StoredQueryException("Line " + (i + 1) + " is not valid JSON");
+            }
+        }
+        return importResponse(queries);
+    }
+
+    // Newest first, pass nextCursor of the previous page to get the next one
     @GetMapping("/queries")
-    public ResponseEntity<List<StoredQuery>> getAllQueries() {
-        List<StoredQuery> queries = queryService.getAllQueries();
-        return ResponseEntity.ok(queries);
+    public ResponseEntity<KeysetPage<StoredQuery>> getAllQueries(@RequestParam(required = false) Long ownerId,
+                                                                @RequestParam(required = false) String cursor,
+                                                                @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(queryService.listQueries(ownerId, cursor, listLimit(limit)));
     }
 
+    // Values of the query's bind parameters are passed as a Json object in the body
     @PostMapping("/queries/{queryId}/execute")
-    public ResponseEntity<?> executeQuery(@PathVariable Long queryId) {
-        queryService.getQueryById(queryId).orElseThrow(() -> new StoredQueryException("Query not found"));
+    public ResponseEntity<?> executeQuery(@PathVariable Long queryId, @RequestBody(required = false) Map<String, Object> parameters) {
+        Map<String, Object> values = parameters == null ? Map.of() : parameters;
+        StoredQuery storedQuery = queryService.getQueryById(queryId).orElseThrow(() -> new StoredQueryException("Query not found"));
+        queryService.validateParameters(storedQuery, values);
+        QueryExecutionJob savedJob = createJob(queryId, values);
+
+        if (!submitJob(savedJob.getId(), values)) {
+            return tooManyRequests();
+        }
+        return accepted(savedJob.getId());
+    }
+
+    // Answers with the first page of the result if the job completes within the wait budget,
+    // otherwise falls back to 202 Accepted like the plain execute endpoint
+    @PostMapping(value = "/queries/{queryId}/execute", params = "wait")
+    public CompletableFuture<ResponseEntity<?>> executeQueryAndWait(@PathVariable Long queryId, @RequestParam String wait,
+                                                                     @RequestBody(required = false) Map<String, Object> parameters) {
+        long waitMs = Math.min(parseWait(wait).toMillis(), MAX_WAIT_MS);
+        Map<String, Object> values = parameters == null ? Map.of() : parameters;
+        StoredQuery storedQuery = queryService.getQueryById(queryId).orElseThrow(() -> new StoredQueryException("Query not found"));
+        queryService.validateParameters(storedQuery, values);
+        QueryExecutionJob savedJob = createJob(queryId, values);
+        Long jobId = savedJob.getId();
 
-        if (jobService.getJobById(queryId).isPresent()){
-            throw new QueryExecutionJobException("Job already exists");
+        // The result found here is the one the job completes with, it can't go stale before it is used
+        Optional<String> ready = queryExecutionService.findCachedResult(QueryExecutionService.executionKey(storedQuery.getFingerprint(), values))
+                .or(() -> materializedQueryService.findResult(storedQuery, values));
+        if (ready.isPresent()) {
+            // Cache hit or materialized result completes right away, no need to queue it
+            materializedQueryService.recordExecution(queryId);
+            executionService.completeJob(jobId, ready.get());
+        } else if (!submitJob(jobId, values)) {
+            return CompletableFuture.completedFuture(tooManyRequests());
         }
 
-        QueryExecutionJob savedJob = jobService.addJob(queryId);
+        CompletableFuture<JobFinishedEvent> finished = completionNotifier.awaitFinish(jobId);
+        JobStatusView job = currentStatus(jobId, finished);
+        if (job.status().isFinished() || waitMs <= 0) {
+            finished.cancel(false);
+            return CompletableFuture.completedFuture(executionResponse(job));
+        }
+
+        // Notification arrives on the worker thread, result is read on the web async executor so the worker is freed at once
+        return finished
+                .completeOnTimeout(new JobFinishedEvent(jobId, job.status()), waitMs, TimeUnit.MILLISECONDS)
+                .thenApplyAsync(event -> event.status().isFinished()
+                        ? executionResponse(currentStatus(jobId, finished))
+                        : accepted(jobId), webAsyncExecutor);
+    }
+
+    @GetMapping("/queries/{queryId}/materialization")
+    public ResponseEntity<MaterializationStatus> getMaterialization(@PathVariable Long queryId) {
+        return ResponseEntity.ok(materializedQueryService.getStatus(queryId));
+    }
+
+    // ALWAYS keeps the result precomputed, NEVER stops it, AUTO leaves it to the execution count
+    @PutMapping("/queries/{queryId}/materialization")
+    public ResponseEntity<MaterializationStatus> setMaterialization(@PathVariable Long queryId,
+                                                                    @RequestParam StoredQuery.MaterializationMode mode) {
+        return ResponseEntity.ok(materializedQueryService.setMode(queryId, mode));
+    }
+
+    @GetMapping("/executor")
+    public ResponseEntity<Map<String, Integer>> getExecutorStats() {
+        return ResponseEntity.ok(executionService.getExecutorStats());
+    }
+
+    @GetMapping("/executions")
+    public ResponseEntity<KeysetPage<JobStatusView>> getAllJobs(@RequestParam(required = false) Long ownerId,
+                                                               @RequestParam(required = false) QueryExecutionJob.JobStatus status,
+                                                               @RequestParam(required = false) String cursor,
+                                                               @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(jobService.listJobStatuses(ownerId, status, cursor, listLimit(limit)));
+    }
+
+    @GetMapping(value = "/executions", params = "ids")
+    public ResponseEntity<List<JobStatusView>> getJobs(@RequestParam List<Long> ids) {
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new QueryExecutionJobException("At most " + MAX_BATCH_SIZE + " jobs can be requested at once");
+        }
+        return ResponseEntity.ok(jobService.getJobStatuses(ids));
+    }
 
-        executionService.executeQuery(savedJob.getId());
+    // Starts a job for every query id, jobs rejected by a full executor queue are reported without job id
+    @PostMapping("/executions/batch")
+    public ResponseEntity<?> executeQueries(@RequestBody List<Long> queryIds) {
+        if (queryIds.isEmpty() || queryIds.size() > MAX_BATCH_SIZE) {
+            throw new QueryExecutionJobException("Batch should contain from 1 to " + MAX_BATCH_SIZE + " query ids");
+        }
+        // Parameter values can't be given per query here, so only queries without parameters can be batched
+        queryService.getQueriesByIds(queryIds).forEach(query -> queryService.validateParameters(query, Map.of()));
+
+        List<JobStatusView> jobs = jobService.addJobs(queryIds);
+        Set<Long> rejected = new HashSet<>(executionService.executeQueries(jobs.stream().map(JobStatusView::id).toList()));
+        if (!rejected.isEmpty()) {
+            jobService.removeJobs(List.copyOf(rejected));
+        }
+        if (rejected.size() == jobs.size()) {
+            return tooManyRequests();
+        }
+
+        List<Map<String, Object>> response = jobs.stream()
+                .map(job -> rejected.contains(job.id())
+                        ? Map.<String, Object>of("queryId", job.sourceQueryId(), "status", "REJECTED")
+                        : Map.<String, Object>of("queryId", job.sourceQueryId(), "jobId", job.id(), "status", job.status()))
+                .toList();
+        return ResponseEntity.accepted().body(Map.of("jobs", response));
+    }
+
+    @GetMapping("/executions/{jobId}/status")
+    public ResponseEntity<?> getStatus(@PathVariable Long jobId) {
+        JobStatusView job = jobService.getJobStatus(jobId).orElseThrow(() -> new RuntimeException("Job not found"));
+        return statusResponse(job.id(), job.status());
+    }
+
+    // Long-poll: answers as soon as the job finishes or waitMs passes, no servlet thread is held meanwhile
+    @GetMapping(value = "/executions/{jobId}/status", params = "waitMs")
+    public CompletableFuture<ResponseEntity<?>> awaitStatus(@PathVariable Long jobId, @RequestParam long waitMs) {
+        CompletableFuture<JobFinishedEvent> finished = completionNotifier.awaitFinish(jobId);
+        JobStatusView job = currentStatus(jobId, finished);
+
+        if (job.status().isFinished() || waitMs <= 0) {
+            finished.cancel(false);
+            return CompletableFuture.completedFuture(statusResponse(job.id(), job.status()));
+        }
+
+        return finished
+                .completeOnTimeout(new JobFinishedEvent(job.id(), job.status()), Math.min(waitMs, MAX_WAIT_MS), TimeUnit.MILLISECONDS)
+                .thenApply(event -> statusResponse(event.jobId(), event.status()));
+    }
+
+    // Sends current status right away and the final one once the job finishes, then closes the stream
+    @GetMapping(value = "/executions/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(@PathVariable Long jobId) {
+        CompletableFuture<JobFinishedEvent> finished = completionNotifier.awaitFinish(jobId);
+        JobStatusView job = currentStatus(jobId, finished);
+
+        SseEmitter emitter = new SseEmitter(EVENTS_TIMEOUT_MS);
+        emitter.onCompletion(() -> finished.cancel(false));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> finished.cancel(false));
+
+        sendStatus(emitter, job.id(), job.status());
+        if (job.status().isFinished()) {
+            emitter.complete();
+            return emitter;
+        }
+
+        finished.thenAccept(event -> {
+            sendStatus(emitter, event.jobId(), event.status());
+            emitter.complete();
+        });
+        return emitter;
+    }
+
+    @DeleteMapping("/executions/{jobId}")
+    public ResponseEntity<?> cancelJob(@PathVariable Long jobId) {
+        jobService.getJobStatus(jobId).orElseThrow(() -> new RuntimeException("Job not found"));
+
+        if (!executionService.cancelJob(jobId)) {
+            JobStatusView job = jobService.getJobStatus(jobId).orElseThrow(() -> new RuntimeException("Job not found"));
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("jobId", jobId, "status", job.status(), "message", "Job is already finished."));
+        }
 
+        return ResponseEntity.ok(Map.of("jobId", jobId, "status", QueryExecutionJob.JobStatus.CANCELLED));
+    }
+
+    @GetMapping("/executions/{jobId}/result")
+    public ResponseEntity<?> getResult(@PathVariable Long jobId,
+                                       @RequestParam(defaultValue = "0") long offset,
+                                       @RequestParam(defaultValue = "1000") int limit,
+                                       @RequestParam(required = false) String cursor) {
+        JobStatusView job = jobService.getJobStatus(jobId).orElseThrow(() -> new RuntimeException("Job not found"));
+
+        if (job.status() != QueryExecutionJob.JobStatus.COMPLETED) {
+            return ResponseEntity.ok(Map.of("status", job.status(), "message", "Result not yet available."));
+        }
+
+        if (cursor != null) {
+            offset = resultStorageService.decodeCursor(jobId, cursor);
+        }
+        return ResponseEntity.ok(resultPage(job, offset, limit));
+    }
+
+    // Streams the stored result chunk by chunk, so large results are sent without building them in memory
+    @GetMapping(value = "/executions/{jobId}/result", params = "stream=true")
+    public ResponseEntity<?> streamResult(@PathVariable Long jobId) {
+        JobStatusView job = jobService.getJobStatus(jobId).orElseThrow(() -> new RuntimeException("Job not found"));
+
+        if (job.status() != QueryExecutionJob.JobStatus.COMPLETED) {
+            return ResponseEntity.ok(Map.of("status", job.status(), "message", "Result not yet available."));
+        }
+
+        long totalRows = job.resultRowCount() == null ? 0 : job.resultRowCount();
+        StreamingResponseBody body = outputStream -> resultStorageService.streamResult(jobId, totalRows, outputStream);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    private static int listLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIST_SIZE));
+    }
+
+    private ResponseEntity<Map<String, Object>> importResponse(List<String> queries) {
+        if (queries.isEmpty() || queries.size() > MAX_IMPORT_SIZE) {
+            throw new StoredQueryException("Import should contain from 1 to " + MAX_IMPORT_SIZE + " queries");
+        }
+        List<QueryImportResult> results = queryService.importQueries(queries);
+        long imported = results.stream().filter(result -> result.id() != null).count();
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("imported", imported);
+        response.put("failed", results.size() - imported);
+        response.put("results", results);
+        return ResponseEntity.ok(response);
+    }
+
+    private static String queryText(JsonNode item) {
+        JsonNode text = item.isObject() ? item.get("query") : item;
+        return text != null && text.isTextual() ? text.asText() : null;
+    }
+
+    private JobStatusView currentStatus(Long jobId, CompletableFuture<JobFinishedEvent> finished) {
+        Optional<JobStatusView> job = jobService.getJobStatus(jobId);
+        if (job.isEmpty()) {
+            finished.cancel(false);
+            throw new RuntimeException("Job not found");
+        }
+        return job.get();
+    }
+
+    private static ResponseEntity<?> statusResponse(Long jobId, QueryExecutionJob.JobStatus status) {
+        return ResponseEntity.ok(Map.of("jobId", jobId, "status", status));
+    }
+
+    private static void sendStatus(SseEmitter emitter, Long jobId, QueryExecutionJob.JobStatus status) {
+        try {
+            emitter.send(SseEmitter.event().name("status").data(Map.of("jobId", jobId, "status", status)));
+        } catch (IOException e) {
+            // Client went away
+            emitter.completeWithError(e);
+        }
+    }
+
+    private QueryExecutionJob createJob(Long queryId, Map<String, Object> parameters) {
+        return jobService.addJob(queryId, parameters);
+    }
+
+    // Returns false if the executor queue is full, the job was never queued so client shouldn't see it
+    private boolean submitJob(Long jobId, Map<String, Object> parameters) {
+        try {
+            executionService.executeQuery(jobId, parameters);
+            return true;
+        } catch (TaskRejectedException e) {
+            jobService.removeJob(jobId);
+            return false;
+        }
+    }
+
+    private static Duration parseWait(String wait) {
+        try {
+            return DurationStyle.detectAndParse(wait);
+        } catch (IllegalArgumentException e) {
+            throw new QueryExecutionJobException("Invalid wait duration: " + wait, e);
+        }
+    }
+
+    private static ResponseEntity<?> tooManyRequests() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_SECONDS))
+                .body(Map.of("message", "Too many queries are being executed. Retry later."));
+    }
+
+    private static ResponseEntity<?> accepted(Long jobId) {
         // Create the response body
         Map<String, Object> response = Map.of(
-                "jobId", savedJob.getId().toString(),
+                "jobId", jobId.toString(),
                 "status", "PENDING",
                 "message", "Query execution started. Check status endpoint for progress."
         );
 
         // Return 202 Accepted with a link to the status endpoint
         return ResponseEntity.accepted()
-                .location(URI.create("/execution/" + savedJob.getId() + "/status"))
+                .location(URI.create("/execution/" + jobId + "/status"))
                 .body(response);
     }
 
-    @GetMapping("/executions/{jobId}/status")
-    public ResponseEntity<?> getStatus(@PathVariable Long jobId) {
-        QueryExecutionJob job = jobService.getJobById(jobId).orElseThrow(() -> new RuntimeException("Job not found"));
-        return ResponseEntity.ok(Map.of("jobId", job.getId(), "status", job.getStatus()));
+    private ResponseEntity<?> executionResponse(JobStatusView job) {
+        if (job.status() != QueryExecutionJob.JobStatus.COMPLETED) {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("jobId", job.id());
+            response.put("status", job.status());
+            if (job.errorMessage() != null) {
+                response.put("errorMessage", job.errorMessage());
+            }
+            return ResponseEntity.ok(response);
+        }
+        return ResponseEntity.ok(resultPage(job, 0, DEFAULT_PAGE_SIZE));
     }
 
-    @GetMapping("/executions/{jobId}/result")
-    public ResponseEntity<?> getResult(@PathVariable Long jobId) {
-        QueryExecutionJob job = jobService.getJobById(jobId).orElseThrow(() -> new RuntimeException("Job not found"));
+    private Map<String, Object> resultPage(JobStatusView job, long offset, int limit) {
+        ResultPage page = resultStorageService.readResultPage(job.id(), job.resultRowCount(), offset, Math.min(limit, MAX_PAGE_SIZE));
 
-        if (job.getStatus() != QueryExecutionJob.JobStatus.COMPLETED) {
-            return ResponseEntity.ok(Map.of("status", job.getStatus(), "message", "Result not yet available."));
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("jobId", job.id());
+        response.put("status", job.status());
+        response.put("result", page.rows());
+        response.put("offset", page.offset());
+        response.put("totalRows", page.totalRows());
+        if (page.nextCursor() != null) {
+            response.put("nextCursor", page.nextCursor());
         }
-
-        return ResponseEntity.ok(Map.of(
-                "jobId", job.getId(),
-                "status", job.getStatus(),
-                "result", job.getResult()
-        ));
+        return response;
     }
 }
@@ -0,0 +1,114 @@
+package com.executor.server.repository;
+
+import java.sql.Types;
+
+/**
+ * Column types of loaded datasets, ordered from the narrowest to the widest: every value of a type
+ * is also a valid value of the types after it.
+ */
+public enum ColumnType {
+    INTEGER("INTEGER", Types.INTEGER),
+    BIGINT("BIGINT", Types.BIGINT),
+    DOUBLE("DOUBLE PRECISION", Types.DOUBLE),
+    VARCHAR("VARCHAR", Types.VARCHAR);
+
+    // Longer digit strings are identifiers rather than numbers, a double would lose their digits
+    private static final int MAX_INTEGER_DIGITS = 18;
+
+    private final String ddl;
+    private final int sqlType;
+
+    ColumnType(String ddl, int sqlType) {
+        this.ddl = ddl;
+        this.sqlType = sqlType;
+    }
+
+    public String ddl() {
+        return ddl;
+    }
+
+    public int sqlType() {
+        return sqlType;
+    }
+
+    /**
+     * @return narrowest type holding the value, null for a missing value, which fits any type
+     */
+    public static ColumnType of(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        int start = value.charAt(0) == '-' || value.charAt(0) == '+' ? 1 : 0;
+        // Leading zeros are part of codes like ZIP codes or ticket numbers, a number would drop them
+        if (start == value.length() || value.charAt(start) == '0' && start + 1 < value.length() && isDigit(value.charAt(start + 1))) {
+            return VARCHAR;
+        }
+
+        boolean digitsOnly = true;
+        for (int i = start; i < value.length() && digitsOnly; i++) {
+            digitsOnly = isDigit(value.charAt(i));
+        }
+        if (digitsOnly) {
+            int digits = value.length() - start;
+            if (digits > MAX_INTEGER_DIGITS) {
+                return VARCHAR;
+            }
+            long number = Long.parseLong(value);
+            return number == (int) number ? INTEGER : BIGINT;
+        }
+
+        // Double.parseDouble also accepts surrounding whitespace, NaN and suffixes like 1d, which should stay text
+        char first = value.charAt(start);
+        char last = value.charAt(value.length() - 1);
+        if (!(isDigit(first) || first == '.') || !(isDigit(last) || last == '.')) {
+            return VARCHAR;
+        }
+        try {
+            Double.parseDouble(value);
+            return DOUBLE;
+        } catch (NumberFormatException e) {
+            return VARCHAR;
+        }
+    }
+
+    /**
+     * @return type of a dataset column with the JDBC type, null for types datasets don't use
+     */
+    public static ColumnType ofSqlType(int sqlType) {
+        for (ColumnType type : values()) {
+            if (type.sqlType == sqlType) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return narrowest type holding values of both types, null types are ignored
+     */
+    public static ColumnType widest(ColumnType first, ColumnType second) {
+        if (first == null) {
+            return second;
+        }
+        return second == null || first.compareTo(second) >= 0 ? first : second;
+    }
+
+    /**
+     * Converts value of this type or of a narrower one, missing values become null.
+     */
+    public Object parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        return switch (this) {
+            case INTEGER -> Integer.valueOf(value);
+            case BIGINT -> Long.valueOf(value);
+            case DOUBLE -> Double.valueOf(value);
+            case VARCHAR -> value;
+        };
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
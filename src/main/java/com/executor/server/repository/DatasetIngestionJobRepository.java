@@ -0,0 +1,19 @@
+package com.executor.server.repository;
+
+import com.executor.entity.DatasetIngestionJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface DatasetIngestionJobRepository extends JpaRepository<DatasetIngestionJob, Long> {
+    List<DatasetIngestionJob> findTop100ByDatasetNameOrderByCreatedAtDescIdDesc(String datasetName);
+
+    @Modifying
+    @Query("UPDATE DatasetIngestionJob j SET j.rowsLoaded = :rowsLoaded WHERE j.id = :id")
+    void updateRowsLoaded(@Param("id") Long id, @Param("rowsLoaded") long rowsLoaded);
+}
@@ -0,0 +1,266 @@
+package com.executor.server.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Tables holding loaded datasets. Datasets are written to a staging table first and swapped in
+ * for the previous version once complete, so a failed load leaves the old data in place.
+ * The swap only renames tables, and a swap interrupted by a crash is finished at the next startup.
+ * <p>
+ * Dataset tables are marked with a table comment, other tables can never be replaced by a load.
+ * Every published version is counted in dataset_catalog, which outlives restarts in a file database.
+ */
+@Repository
+public class DatasetRepository {
+    private static final Logger log = LoggerFactory.getLogger(DatasetRepository.class);
+    private static final String DATASET_MARKER = "dataset";
+    // Dataset names start with a letter, so these tables can't clash with them
+    private static final String STAGING_PREFIX = "_LOAD_";
+    // A complete version being swapped in, and the version it replaces, one of each per dataset
+    private static final String READY_PREFIX = "_READY_";
+    private static final String OLD_PREFIX = "_OLD_";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AtomicLong stagingCounter = new AtomicLong();
+    // Swaps of one dataset would clash on the names above, swaps are short so all of them take turns
+    private final Object swapLock = new Object();
+
+    public DatasetRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return true if no table has the dataset's name, or the table holds an earlier version of the dataset
+     */
+    public boolean isReplaceable(String name) {
+        List<String> remarks = jdbcTemplate.queryForList(
+                "SELECT REMARKS FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_NAME = ?",
+                String.class, tableName(name));
+        return remarks.isEmpty() || DATASET_MARKER.equals(remarks.getFirst());
+    }
+
+    /**
+     * Creates an empty staging table for the next version of the dataset.
+     *
+     * @return name of the staging table
+     */
+    public String createStagingTable(String name, List<String> columns, List<ColumnType> types) {
+        String staging = STAGING_PREFIX + stagingCounter.incrementAndGet() + "_" + tableName(name);
+        List<String> definitions = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            definitions.add(quote(columns.get(i)) + " " + types.get(i).ddl());
+        }
+        jdbcTemplate.execute("CREATE TABLE " + quote(staging) + " (" + String.join(", ", definitions) + ")");
+        jdbcTemplate.execute("COMMENT ON TABLE " + quote(staging) + " IS '" + DATASET_MARKER + "'");
+        return staging;
+    }
+
+    /**
+     * Inserts rows in one JDBC batch, values in each row follow the order of the columns.
+     */
+    public void insertRows(String table, List<ColumnType> types, List<Object[]> rows) {
+        String placeholders = types.stream().map(type -> "?").collect(Collectors.joining(", "));
+        int[] sqlTypes = types.stream().mapToInt(ColumnType::sqlType).toArray();
+        jdbcTemplate.batchUpdate("INSERT INTO " + quote(table) + " VALUES (" + placeholders + ")", rows, sqlTypes);
+    }
+
+    /**
+     * Changes type of the column to a wider one, converting the values already inserted.
+     */
+    public void widenColumn(String table, String column, ColumnType type) {
+        jdbcTemplate.execute("ALTER TABLE " + quote(table) + " ALTER COLUMN " + quote(column) + " SET DATA TYPE " + type.ddl());
+    }
+
+    /**
+     * Makes the complete staging table the current version of the dataset, dropping the previous one.
+     * Only renames run while the dataset is swapped, queries see either version and the table is missing
+     * for just the moment between two renames. If a rename fails (e.g. a lock timeout while a long query
+     * reads the table), the previous version is put back and the new one dropped before the error is rethrown.
+     * <p>
+     * The version is counted in the same critical section as the swap, so concurrent publishes of one dataset
+     * get distinct versions in the order their tables were swapped in.
+     *
+     * @return the new version
+     */
+    public long replaceTable(String staging, String name, long rowCount) {
+        String table = tableName(name);
+        synchronized (swapLock) {
+            // Marks the new version as complete, from here on startup recovery finishes the swap
+            rename(staging, READY_PREFIX + table);
+            try {
+                swap(table);
+            } catch (RuntimeException e) {
+                undoSwap(table);
+                throw e;
+            }
+            dropOldVersion(table);
+            return recordVersion(table, rowCount);
+        }
+    }
+
+    private void swap(String table) {
+        if (tableExists(table)) {
+            // Left behind only if dropping it failed after an earlier swap, the current version is the table itself
+            dropTable(OLD_PREFIX + table);
+            rename(table, OLD_PREFIX + table);
+        }
+        rename(READY_PREFIX + table, table);
+    }
+
+    // A load reported as failed must not be published later by startup recovery, so the new version goes too
+    private void undoSwap(String table) {
+        try {
+            if (!tableExists(table) && tableExists(OLD_PREFIX + table)) {
+                rename(OLD_PREFIX + table, table);
+            }
+            dropTable(READY_PREFIX + table);
+        } catch (RuntimeException e) {
+            log.error("Failed to undo the swap of dataset {}, tables left behind are sorted out at the next startup", table, e);
+        }
+    }
+
+    // The new version is in place already, an old one left behind is dropped by the next swap or at startup
+    private void dropOldVersion(String table) {
+        try {
+            dropTable(OLD_PREFIX + table);
+        } catch (RuntimeException e) {
+            log.warn("Failed to drop the previous version of dataset {}", table, e);
+        }
+    }
+
+    private void rename(String from, String to) {
+        jdbcTemplate.execute("ALTER TABLE " + quote(from) + " RENAME TO " + quote(to));
+    }
+
+    public void dropTable(String table) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + quote(table));
+    }
+
+    /**
+     * Reads all rows of the dataset with the extractor, which also gets the column types of an empty table.
+     */
+    public <T> T readTable(String name, ResultSetExtractor<T> extractor) {
+        return jdbcTemplate.query("SELECT * FROM " + quote(tableName(name)), extractor);
+    }
+
+    /**
+     * Cleans up after loads interrupted by a shutdown or crash. Complete versions whose swap was interrupted
+     * are swapped in and counted as published, a dataset left without its table gets its previous version
+     * back, and staging tables of loads that never completed are dropped.
+     *
+     * @return names of the datasets whose new version was swapped in
+     */
+    public List<String> recoverStagingTables() {
+        List<String> recovered = new ArrayList<>();
+        synchronized (swapLock) {
+            for (String ready : tablesStartingWith(READY_PREFIX)) {
+                String table = ready.substring(READY_PREFIX.length());
+                if (!tableExists(table) && tableExists(OLD_PREFIX + table)) {
+                    rename(OLD_PREFIX + table, table);
+                }
+                swap(table);
+                Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + quote(table), Long.class);
+                recordVersion(table, rows == null ? 0 : rows);
+                recovered.add(table);
+            }
+            for (String old : tablesStartingWith(OLD_PREFIX)) {
+                String table = old.substring(OLD_PREFIX.length());
+                if (tableExists(table)) {
+                    dropTable(old);
+                } else {
+                    rename(old, table);
+                }
+            }
+            tablesStartingWith(STAGING_PREFIX).forEach(this::dropTable);
+        }
+        return recovered;
+    }
+
+    private List<String> tablesStartingWith(String prefix) {
+        return jdbcTemplate.queryForList("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_NAME LIKE ?",
+                String.class, prefix.replace("_", "\\_") + "%");
+    }
+
+    public boolean tableExists(String name) {
+        Integer tables = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_NAME = ?",
+                Integer.class, tableName(name));
+        return tables != null && tables > 0;
+    }
+
+    public Optional<DatasetVersion> findVersion(String name) {
+        return jdbcTemplate.query("SELECT * FROM dataset_catalog WHERE name = ?", (rs, rowNum) -> new DatasetVersion(
+                rs.getString("name"), rs.getLong("version"), rs.getLong("row_count"),
+                rs.getTimestamp("published_at").toLocalDateTime(), rs.getString("source_location"),
+                rs.getObject("source_size", Long.class), rs.getObject("source_modified", Long.class),
+                rs.getString("source_checksum")), tableName(name)).stream().findFirst();
+    }
+
+    /**
+     * Counts a new published version of the dataset, called under the swap lock. The source of the previous
+     * version no longer describes the data, a preload records the new one with {@link #recordSource} afterwards.
+     *
+     * @return the new version
+     */
+    private long recordVersion(String table, long rowCount) {
+        // One statement inserts the first version or counts the next one, two first publishes can't both insert
+        jdbcTemplate.update("MERGE INTO dataset_catalog c USING (SELECT CAST(? AS VARCHAR) AS name, CAST(? AS BIGINT) AS row_count) v " +
+                "ON c.name = v.name " +
+                "WHEN MATCHED THEN UPDATE SET version = c.version + 1, row_count = v.row_count, published_at = CURRENT_TIMESTAMP, " +
+                "source_location = NULL, source_size = NULL, source_modified = NULL, source_checksum = NULL " +
+                "WHEN NOT MATCHED THEN INSERT (name, version, row_count, published_at) VALUES (v.name, 1, v.row_count, CURRENT_TIMESTAMP)",
+                table, rowCount);
+        return jdbcTemplate.queryForObject("SELECT version FROM dataset_catalog WHERE name = ?", Long.class, table);
+    }
+
+    /**
+     * Remembers the file the current version was preloaded from, so an unchanged file is not loaded again.
+     */
+    public void recordSource(String name, String location, long size, long modified, String checksum) {
+        jdbcTemplate.update("UPDATE dataset_catalog SET source_location = ?, source_size = ?, source_modified = ?, " +
+                "source_checksum = ? WHERE name = ?", location, size, modified, checksum, tableName(name));
+    }
+
+    /**
+     * Turns CSV header names into column names queries can use without quoting: upper case letters,
+     * digits and underscores, unique within the table.
+     */
+    public static List<String> columnNames(List<String> header) {
+        List<String> names = new ArrayList<>(header.size());
+        Set<String> used = new HashSet<>();
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i) == null ? "" : header.get(i).trim().toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9_]", "_");
+            if (name.isEmpty() || !Character.isLetter(name.charAt(0))) {
+                name = "COLUMN_" + (i + 1) + (name.isEmpty() ? "" : "_" + name);
+            }
+            String unique = name;
+            for (int suffix = 2; !used.add(unique); suffix++) {
+                unique = name + "_" + suffix;
+            }
+            names.add(unique);
+        }
+        return names;
+    }
+
+    // Unquoted names in queries are resolved in upper case
+    private static String tableName(String name) {
+        return name.toUpperCase(Locale.ROOT);
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,19 @@
+package com.executor.server.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Catalog entry of a dataset: how many times it was published, and the source file the current version
+ * was preloaded from. Source fields are null if the current version was uploaded.
+ */
+public record DatasetVersion(String name, long version, long rowCount, LocalDateTime publishedAt,
+                             String sourceLocation, Long sourceSize, Long sourceModified, String sourceChecksum) {
+
+    /**
+     * @return true if the dataset was preloaded from the location, and the source looked the same then
+     */
+    public boolean isPreloadedFrom(String location, long size, long modified) {
+        return location.equals(sourceLocation) && sourceSize != null && sourceSize == size
+                && sourceModified != null && sourceModified == modified;
+    }
+}
@@ -0,0 +1,9 @@
+package com.executor.server.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Finished job considered by cleanup.
+ */
+public record JobCleanupCandidate(Long id, LocalDateTime createdAt, Long resultBytes) {
+}
@@ -0,0 +1,98 @@
+package com.executor.server.repository;
+
+import com.executor.entity.QueryExecutionJob;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inserts jobs and writes their lifecycle columns in JDBC batches, without going through the entities.
+ */
+@Repository
+public class JobStateRepository {
+    private static final String INSERT_JOB_SQL =
+            "INSERT INTO query_execution_job (source_query_id, status, created_at, user_id) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_STATE_SQL =
+            "UPDATE query_execution_job SET status = ?, error_message = ?, result_row_count = ? WHERE id = ?";
+    private static final String FAIL_ACTIVE_JOBS_SQL =
+            "UPDATE query_execution_job SET status = ?, error_message = ? WHERE status IN (?, ?)";
+    // Default length of the error_message column
+    private static final int ERROR_MESSAGE_LENGTH = 255;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JobStateRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Inserts PENDING jobs for the queries in one batch, owned by {@code ownerId} (no owner if null).
+     *
+     * @return inserted jobs, in the order of {@code sourceQueryIds}
+     */
+    public List<JobStatusView> insertPendingJobs(List<Long> sourceQueryIds, Long ownerId) {
+        LocalDateTime createdAt = LocalDateTime.now();
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_JOB_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        statement.setLong(1, sourceQueryIds.get(i));
+                        statement.setString(2, QueryExecutionJob.JobStatus.PENDING.name());
+                        statement.setTimestamp(3, Timestamp.valueOf(createdAt));
+                        statement.setObject(4, ownerId, Types.BIGINT);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return sourceQueryIds.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<JobStatusView> jobs = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            Long id = ((Number) keys.get(i).values().iterator().next()).longValue();
+            jobs.add(new JobStatusView(id, sourceQueryIds.get(i), QueryExecutionJob.JobStatus.PENDING, null, createdAt, null));
+        }
+        return jobs;
+    }
+
+    public void updateStates(List<JobStatusView> jobs) {
+        jdbcTemplate.batchUpdate(UPDATE_STATE_SQL, jobs, jobs.size(), (statement, job) -> {
+            statement.setString(1, job.status().name());
+            statement.setString(2, truncate(job.errorMessage()));
+            statement.setObject(3, job.resultRowCount(), Types.BIGINT);
+            statement.setLong(4, job.id());
+        });
+    }
+
+    /**
+     * Marks every PENDING or RUNNING job FAILED with the message.
+     *
+     * @return number of jobs marked
+     */
+    public int failActiveJobs(String errorMessage) {
+        return jdbcTemplate.update(FAIL_ACTIVE_JOBS_SQL, QueryExecutionJob.JobStatus.FAILED.name(), truncate(errorMessage),
+                QueryExecutionJob.JobStatus.PENDING.name(), QueryExecutionJob.JobStatus.RUNNING.name());
+    }
+
+    private static String truncate(String errorMessage) {
+        if (errorMessage == null || errorMessage.length() <= ERROR_MESSAGE_LENGTH) {
+            return errorMessage;
+        }
+        return errorMessage.substring(0, ERROR_MESSAGE_LENGTH);
+    }
+}
@@ -0,0 +1,17 @@
+package com.executor.server.repository;
+
+import com.executor.entity.QueryExecutionJob;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lifecycle columns of {@link QueryExecutionJob}, selected without touching the owner or result chunks.
+ */
+public record JobStatusView(Long id, Long sourceQueryId, QueryExecutionJob.JobStatus status, String errorMessage,
+                            LocalDateTime createdAt, Long resultRowCount) {
+
+    public static JobStatusView of(QueryExecutionJob job) {
+        return new JobStatusView(job.getId(), job.getSourceQueryId(), job.getStatus(), job.getErrorMessage(),
+                job.getCreatedAt(), job.getResultRowCount());
+    }
+}
@@ -0,0 +1,47 @@
+package com.executor.server.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Position in a listing ordered by {@code (createdAt, id)} descending, the key of the last row returned.
+ * Next page starts right after it, so its cost doesn't depend on how many rows were skipped.
+ */
+public record KeysetCursor(LocalDateTime createdAt, long id) {
+    // Backed by (created_at DESC, id DESC) indexes of the listed tables
+    public static final Sort ORDER = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor was not produced by {@link #encode()}
+     */
+    public static KeysetCursor decode(String cursor) {
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] parts = raw.split("\\|");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        try {
+            return new KeysetCursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    /**
+     * Rows that come after this position in {@link #ORDER}.
+     */
+    public <T> Specification<T> rowsAfter() {
+        return (root, query, builder) -> builder.or(
+                builder.lessThan(root.get("createdAt"), createdAt),
+                builder.and(builder.equal(root.get("createdAt"), createdAt), builder.lessThan(root.get("id"), id)));
+    }
+}
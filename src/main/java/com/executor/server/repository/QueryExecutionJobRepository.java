@@ -1,22 +1,40 @@
 package com.executor.server.repository;
 
 import com.executor.entity.QueryExecutionJob;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface QueryExecutionJobRepository extends JpaRepository<QueryExecutionJob, Long> {
+public interface QueryExecutionJobRepository extends JpaRepository<QueryExecutionJob, Long>, JpaSpecificationExecutor<QueryExecutionJob> {
     List<QueryExecutionJob> findAllByOrderByIdDesc();
 
-    @Modifying
-    @Transactional
-    @Query("DELETE FROM QueryExecutionJob j WHERE j.createdAt < :cutoffTime")
-    int deleteOlderThan(@Param("cutoffTime") LocalDateTime cutoffTime);
+    @Query("SELECT new com.executor.server.repository.JobStatusView(j.id, j.sourceQueryId, j.status, j.errorMessage, j.createdAt, j.resultRowCount) " +
+            "FROM QueryExecutionJob j WHERE j.id = :id")
+    Optional<JobStatusView> findStatusById(@Param("id") Long id);
+
+    @Query("SELECT new com.executor.server.repository.JobStatusView(j.id, j.sourceQueryId, j.status, j.errorMessage, j.createdAt, j.resultRowCount) " +
+            "FROM QueryExecutionJob j WHERE j.id IN :ids ORDER BY j.id DESC")
+    List<JobStatusView> findStatusesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT j.parameters FROM QueryExecutionJob j WHERE j.id = :id")
+    Optional<String> findParametersById(@Param("id") Long id);
+
+    /**
+     * Finished jobs, oldest first, with the size of their stored results.
+     * Walks ix_job_created, result size is summed per job through ix_chunk_job_index.
+     */
+    @Query("SELECT new com.executor.server.repository.JobCleanupCandidate(j.id, j.createdAt, " +
+            "(SELECT COALESCE(SUM(c.byteCount), 0) FROM QueryResultChunk c WHERE c.jobId = j.id)) " +
+            "FROM QueryExecutionJob j " +
+            "WHERE j.status NOT IN :activeStatuses ORDER BY j.createdAt, j.id")
+    List<JobCleanupCandidate> findOldestFinished(@Param("activeStatuses") Collection<QueryExecutionJob.JobStatus> activeStatuses,
+                                                 Pageable pageable);
 }
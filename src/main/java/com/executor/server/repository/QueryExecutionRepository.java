@@ -1,23 +1,65 @@
 package com.executor.server.repository;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
 import java.util.Map;
+import java.util.function.Consumer;
 
 @Repository
 public class QueryExecutionRepository {
+    // Rows fetched per round trip when streaming, so the driver never buffers the whole result
+    private static final int STREAM_FETCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
+    private final NamedStatementFactory statementFactory;
+    private final int queryTimeoutSeconds;
 
-    public QueryExecutionRepository(JdbcTemplate jdbcTemplate) {
+    public QueryExecutionRepository(JdbcTemplate jdbcTemplate, @Value("${query.execution.timeout:60s}") Duration queryTimeout) {
         this.jdbcTemplate = jdbcTemplate;
+        this.statementFactory = new NamedStatementFactory(jdbcTemplate);
+        this.queryTimeoutSeconds = (int) Math.max(1, queryTimeout.toSeconds());
     }
 
-    public List<Map<String, Object>> executeNativeQuery(String query) {
+    /**
+     * Executes query with the configured timeout, binding {@code parameters} to its {@code :name} placeholders,
+     * and hands every row to {@code rowHandler} as soon as it is fetched, without collecting the result in memory.
+     *
+     * @param statementListener receives the statement before it is executed, so it can be cancelled from another thread
+     */
+    public void streamNativeQuery(String query, Map<String, ?> parameters, Consumer<Statement> statementListener,
+                                  RowCallbackHandler rowHandler) {
         if (query == null || query.trim().isEmpty()) {
             throw new IllegalArgumentException("Query cannot be empty");
         }
-        return jdbcTemplate.queryForList(query);
+        PreparedStatementCreator creator = statementFactory.creator(query, parameters);
+        jdbcTemplate.query(connection -> {
+            // Statements are created forward-only and read-only
+            PreparedStatement statement = creator.createPreparedStatement(connection);
+            statement.setFetchSize(STREAM_FETCH_SIZE);
+            statement.setQueryTimeout(queryTimeoutSeconds);
+            statementListener.accept(statement);
+            return statement;
+        }, rowHandler);
+    }
+
+    // Parsed form of every query is cached by the template, and the SQL sent to H2 is the same for all
+    // parameter values, so H2 can reuse the compiled statement
+    private static class NamedStatementFactory extends NamedParameterJdbcTemplate {
+        NamedStatementFactory(JdbcTemplate jdbcTemplate) {
+            super(jdbcTemplate);
+        }
+
+        PreparedStatementCreator creator(String query, Map<String, ?> parameters) {
+            return getPreparedStatementCreator(query, new MapSqlParameterSource(parameters));
+        }
     }
 }
@@ -0,0 +1,34 @@
+package com.executor.server.repository;
+
+import com.executor.entity.QueryResultChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface QueryResultChunkRepository extends JpaRepository<QueryResultChunk, Long> {
+    List<QueryResultChunk> findAllByJobIdAndChunkIndexBetweenOrderByChunkIndexAsc(Long jobId, int firstChunk, int lastChunk);
+
+    Optional<QueryResultChunk> findByJobIdAndChunkIndex(Long jobId, int chunkIndex);
+
+    // Also called outside of a service transaction, when a result stored while it was fetched is discarded
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM QueryResultChunk c WHERE c.jobId = :jobId")
+    int deleteByJobId(@Param("jobId") Long jobId);
+
+    // Goes through ix_chunk_job_index, so only chunks of the given jobs are touched
+    @Modifying
+    @Query("DELETE FROM QueryResultChunk c WHERE c.jobId IN :jobIds")
+    int deleteByJobIdIn(@Param("jobIds") Collection<Long> jobIds);
+
+    @Query("SELECT COALESCE(SUM(c.byteCount), 0) FROM QueryResultChunk c")
+    long sumByteCount();
+}
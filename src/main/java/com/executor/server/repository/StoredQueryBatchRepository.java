@@ -0,0 +1,12 @@
+package com.executor.server.repository;
+
+import com.executor.entity.StoredQuery;
+
+import java.util.List;
+
+public interface StoredQueryBatchRepository {
+    /**
+     * Inserts new queries in JDBC batches and sets their generated ids.
+     */
+    void insertAll(List<StoredQuery> queries);
+}
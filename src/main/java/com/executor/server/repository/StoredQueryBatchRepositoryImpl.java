@@ -0,0 +1,72 @@
+package com.executor.server.repository;
+
+import com.executor.entity.NameListConverter;
+import com.executor.entity.QueryAnalysis;
+import com.executor.entity.StoredQuery;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+// Ids come from an identity column, which stops Hibernate from batching inserts of the entities,
+// so bulk imports write the rows with plain JDBC batches instead
+public class StoredQueryBatchRepositoryImpl implements StoredQueryBatchRepository {
+    private static final String INSERT_QUERY_SQL = "INSERT INTO stored_query " +
+            "(query, fingerprint, parameter_names, statement_type, referenced_tables, referenced_columns, limited, created_at, user_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // Rows sent to the database in one batch, bounds memory taken by the driver
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NameListConverter nameListConverter = new NameListConverter();
+
+    public StoredQueryBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void insertAll(List<StoredQuery> queries) {
+        for (int from = 0; from < queries.size(); from += BATCH_SIZE) {
+            insertBatch(queries.subList(from, Math.min(from + BATCH_SIZE, queries.size())));
+        }
+    }
+
+    private void insertBatch(List<StoredQuery> queries) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(INSERT_QUERY_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement statement, int i) throws SQLException {
+                        StoredQuery query = queries.get(i);
+                        QueryAnalysis analysis = query.getAnalysis();
+                        statement.setString(1, query.getQuery());
+                        statement.setString(2, query.getFingerprint());
+                        statement.setString(3, nameListConverter.convertToDatabaseColumn(query.getParameterNames()));
+                        statement.setString(4, analysis == null ? null : analysis.getStatementType().name());
+                        statement.setString(5, analysis == null ? null : nameListConverter.convertToDatabaseColumn(analysis.getReferencedTables()));
+                        statement.setString(6, analysis == null ? null : nameListConverter.convertToDatabaseColumn(analysis.getReferencedColumns()));
+                        statement.setObject(7, analysis == null ? null : analysis.isLimited(), Types.BOOLEAN);
+                        statement.setTimestamp(8, Timestamp.valueOf(query.getCreatedAt()));
+                        statement.setObject(9, query.getOwner() == null ? null : query.getOwner().getId(), Types.BIGINT);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return queries.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < keys.size(); i++) {
+            queries.get(i).setId(((Number) keys.get(i).values().iterator().next()).longValue());
+        }
+    }
+}
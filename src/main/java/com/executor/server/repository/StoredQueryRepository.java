@@ -2,11 +2,31 @@ package com.executor.server.repository;
 
 import com.executor.entity.StoredQuery;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
-public interface StoredQueryRepository extends JpaRepository<StoredQuery, Long> {
+public interface StoredQueryRepository extends JpaRepository<StoredQuery, Long>, JpaSpecificationExecutor<StoredQuery>,
+        StoredQueryBatchRepository {
     List<StoredQuery> findAllByOrderByCreatedAtDesc();
+
+    @Modifying
+    @Query("UPDATE StoredQuery q SET q.executionCount = COALESCE(q.executionCount, 0) + :count WHERE q.id = :id")
+    int addExecutions(@Param("id") Long id, @Param("count") long count);
+
+    /**
+     * Queries set to ALWAYS, and AUTO ones (or without a mode) executed at least {@code threshold} times,
+     * most executed first.
+     */
+    @Query("SELECT q FROM StoredQuery q WHERE q.materialization = :always " +
+            "OR ((q.materialization IS NULL OR q.materialization = :auto) AND q.executionCount >= :threshold) " +
+            "ORDER BY q.executionCount DESC NULLS LAST, q.id")
+    List<StoredQuery> findMaterializationCandidates(@Param("threshold") long threshold,
+                                                    @Param("always") StoredQuery.MaterializationMode always,
+                                                    @Param("auto") StoredQuery.MaterializationMode auto);
 }
@@ -3,11 +3,22 @@ package com.executor.server.repository;
 import com.executor.entity.StoredQuery;
 import com.executor.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 //    List<StoredQuery> getAllBy
+    Optional<User> findByUsername(String username);
+
+    @Query("SELECT u.id FROM User u WHERE u.username = :username")
+    Optional<Long> findIdByUsername(@Param("username") String username);
+
+    // 0 for a user whose tokens were never revoked, empty if there is no such user
+    @Query("SELECT COALESCE(u.tokensValidAfter, 0) FROM User u WHERE u.username = :username")
+    Optional<Long> findTokensValidAfter(@Param("username") String username);
 }
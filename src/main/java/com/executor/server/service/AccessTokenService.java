@@ -0,0 +1,132 @@
+package com.executor.server.service;
+
+import com.executor.server.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Issues and verifies short-lived access tokens: {@code base64url(claims).base64url(HMAC-SHA256 of claims)}.
+ * Verifying one is a single HMAC plus a check that the user's tokens weren't revoked since it was issued,
+ * with no password hashing. Revocation is stored with the user and read through {@link AuthenticationCache},
+ * so it reaches every instance within {@code security.auth-cache.ttl}.
+ */
+@Service
+public class AccessTokenService {
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    record Claims(String sub, List<String> roles, long iat, long exp) {
+    }
+
+    public record IssuedToken(String token, Instant expiresAt) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final UserRepository userRepository;
+    private final AuthenticationCache authenticationCache;
+    private final SecretKeySpec signingKey;
+    private final Duration ttl;
+
+    /**
+     * @param secret base64 signing key shared by all instances, a random one is generated if empty
+     *               (tokens then stop working after a restart)
+     */
+    public AccessTokenService(ObjectMapper objectMapper, UserRepository userRepository, AuthenticationCache authenticationCache,
+                              @Value("${security.token.secret:}") String secret,
+                              @Value("${security.token.ttl:15m}") Duration ttl) {
+        this.objectMapper = objectMapper;
+        this.userRepository = userRepository;
+        this.authenticationCache = authenticationCache;
+        this.signingKey = new SecretKeySpec(secret.isEmpty() ? randomKey() : Base64.getDecoder().decode(secret), HMAC_ALGORITHM);
+        this.ttl = ttl;
+    }
+
+    public IssuedToken issue(Authentication authentication) {
+        Instant now = Instant.now();
+        Instant expiresAt = now.plus(ttl);
+        List<String> roles = authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+        Claims claims = new Claims(authentication.getName(), roles, now.toEpochMilli(), expiresAt.toEpochMilli());
+
+        try {
+            byte[] payload = objectMapper.writeValueAsBytes(claims);
+            return new IssuedToken(ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload)), expiresAt);
+        } catch (IOException e) {
+            throw new IllegalStateException("Token claims can't be serialized", e);
+        }
+    }
+
+    /**
+     * @return authentication of the token's user, empty if the token is malformed, tampered with, expired or revoked,
+     * or the user no longer exists
+     */
+    public Optional<Authentication> verify(String token) {
+        return verify(token, Instant.now());
+    }
+
+    Optional<Authentication> verify(String token, Instant now) {
+        int separator = token.indexOf('.');
+        if (separator < 0) {
+            return Optional.empty();
+        }
+
+        Claims claims;
+        try {
+            byte[] payload = DECODER.decode(token.substring(0, separator));
+            byte[] signature = DECODER.decode(token.substring(separator + 1));
+            // Constant-time comparison, so the signature can't be guessed byte by byte
+            if (!MessageDigest.isEqual(sign(payload), signature)) {
+                return Optional.empty();
+            }
+            claims = objectMapper.readValue(payload, Claims.class);
+        } catch (IllegalArgumentException | IOException e) {
+            return Optional.empty();
+        }
+
+        if (claims.exp() <= now.toEpochMilli()) {
+            return Optional.empty();
+        }
+        Long validAfter = authenticationCache.getTokensValidAfter(claims.sub(),
+                username -> userRepository.findTokensValidAfter(username).orElse(null));
+        if (validAfter == null || claims.iat() <= validAfter) {
+            return Optional.empty();
+        }
+
+        List<SimpleGrantedAuthority> authorities = claims.roles().stream().map(SimpleGrantedAuthority::new).toList();
+        return Optional.of(new PreAuthenticatedAuthenticationToken(claims.sub(), null, authorities));
+    }
+
+    private byte[] sign(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(signingKey);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " is not supported", e);
+        }
+    }
+
+    private static byte[] randomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+}
@@ -1,8 +1,16 @@
 package com.executor.server.service;
 
-import org.springframework.scheduling.annotation.Async;
+import com.executor.QueryExecutorConfig;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
 /**
  * Serves as wrapper for {@link QueryManagingService} for async execution of queries
  */
@@ -10,14 +18,93 @@ import org.springframework.stereotype.Service;
 public class AsyncQueryManagingService {
 
     private final QueryManagingService executionService;
+    private final ThreadPoolTaskExecutor queryExecutor;
+    private final QueryExecutionJobService jobService;
+    private final QueryCancellationRegistry cancellationRegistry;
 
-    public AsyncQueryManagingService(QueryManagingService queryManagingService) {
+    public AsyncQueryManagingService(QueryManagingService queryManagingService,
+                                     @Qualifier(QueryExecutorConfig.QUERY_EXECUTOR) ThreadPoolTaskExecutor queryExecutor,
+                                     QueryExecutionJobService jobService, QueryCancellationRegistry cancellationRegistry) {
         this.executionService = queryManagingService;
+        this.queryExecutor = queryExecutor;
+        this.jobService = jobService;
+        this.cancellationRegistry = cancellationRegistry;
     }
 
-    @Async
+    /**
+     * Queues job on the query executor. Task of the job is kept until it finishes, so the job can be cancelled.
+     *
+     * @throws TaskRejectedException when the executor queue is full
+     */
     public void executeQuery(Long jobId) {
-        executionService.executeQuery(jobId);
+        executeQuery(jobId, Map.of());
+    }
+
+    /**
+     * @param parameters values of the query's bind parameters, already validated against the stored query
+     * @throws TaskRejectedException when the executor queue is full
+     */
+    public void executeQuery(Long jobId, Map<String, ?> parameters) {
+        Future<?> task = queryExecutor.submit(() -> {
+            try {
+                executionService.executeQuery(jobId, parameters);
+            } finally {
+                cancellationRegistry.forgetTask(jobId);
+            }
+        });
+        cancellationRegistry.trackTask(jobId, task);
+    }
+
+    /**
+     * Queues all jobs, jobs that don't fit into the executor queue are skipped.
+     *
+     * @return ids of rejected jobs
+     */
+    public List<Long> executeQueries(List<Long> jobIds) {
+        List<Long> rejected = new ArrayList<>();
+        for (Long jobId : jobIds) {
+            try {
+                executeQuery(jobId);
+            } catch (TaskRejectedException e) {
+                rejected.add(jobId);
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Completes the job with a result already at hand (cached or materialized),
+     * such jobs shouldn't wait in the executor queue behind real queries.
+     */
+    public void completeJob(Long jobId, String result) {
+        jobService.markJobCompleted(jobId, result);
+    }
+
+    /**
+     * Cancels pending or running job. Queued task is dropped from the executor queue,
+     * running statement is cancelled once no other job waits for its result.
+     *
+     * @return false if the job is already finished
+     */
+    public boolean cancelJob(Long jobId) {
+        if (!jobService.markJobCancelled(jobId)) {
+            return false;
+        }
+
+        if (cancellationRegistry.cancel(jobId)) {
+            queryExecutor.getThreadPoolExecutor().purge();
+        }
+        return true;
+    }
+
+    public Map<String, Integer> getExecutorStats() {
+        return Map.of(
+                "active", queryExecutor.getActiveCount(),
+                "poolSize", queryExecutor.getPoolSize(),
+                "maxPoolSize", queryExecutor.getMaxPoolSize(),
+                "queued", queryExecutor.getQueueSize(),
+                "queueCapacity", queryExecutor.getQueueCapacity()
+        );
     }
 
-}
\ No newline at end of file
+}
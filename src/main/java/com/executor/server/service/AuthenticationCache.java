@@ -0,0 +1,115 @@
+package com.executor.server.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Short-lived caches in front of authentication: loaded users, credentials that were already verified
+ * with BCrypt, and the time before which access tokens of a user are revoked. All are bounded and expire
+ * after a short TTL; entries of a user are dropped at once when {@link UserManagingService} changes the user
+ * on this instance, other instances pick the change up within the TTL.
+ */
+@Component
+public class AuthenticationCache implements UserCache {
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    // Keyed by HMAC of the credentials with a key generated at startup, so neither passwords
+    // nor hashes that are cheap to brute force ever sit in memory
+    private final Cache<String, UserDetails> verifiedCredentials;
+    private final Cache<String, UserDetails> users;
+    private final Cache<String, Long> tokensValidAfter;
+    private final SecretKeySpec credentialsKey;
+
+    public AuthenticationCache(@Value("${security.auth-cache.ttl:60s}") Duration ttl,
+                               @Value("${security.auth-cache.max-entries:10000}") long maxEntries) {
+        this.verifiedCredentials = Caffeine.newBuilder().maximumSize(maxEntries).expireAfterWrite(ttl).build();
+        this.users = Caffeine.newBuilder().maximumSize(maxEntries).expireAfterWrite(ttl).build();
+        this.tokensValidAfter = Caffeine.newBuilder().maximumSize(maxEntries).expireAfterWrite(ttl).build();
+
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.credentialsKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+    }
+
+    /**
+     * @return user whose credentials were verified within the TTL, without its password
+     */
+    public Optional<UserDetails> getVerified(String username, String password) {
+        return Optional.ofNullable(verifiedCredentials.getIfPresent(credentialsKey(username, password))).map(AuthenticationCache::copyOf);
+    }
+
+    public void putVerified(String username, String password, UserDetails user) {
+        verifiedCredentials.put(credentialsKey(username, password), withoutPassword(user));
+    }
+
+    /**
+     * @param loader reads the time from the database on a miss, returns null if there is no such user
+     * @return epoch millis until which access tokens of the user are revoked, null if there is no such user
+     */
+    public Long getTokensValidAfter(String username, Function<String, Long> loader) {
+        return tokensValidAfter.get(username, loader);
+    }
+
+    /**
+     * Drops everything cached for the user, the next request is checked against the database again.
+     */
+    public void invalidate(String username) {
+        users.invalidate(username);
+        tokensValidAfter.invalidate(username);
+        verifiedCredentials.asMap().values().removeIf(user -> user.getUsername().equals(username));
+    }
+
+    // Authentication erases credentials of the returned principal, so callers only ever get copies
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        UserDetails user = users.getIfPresent(username);
+        return user == null ? null : copyOf(user);
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        users.put(user.getUsername(), copyOf(user));
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        users.invalidate(username);
+    }
+
+    private String credentialsKey(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(credentialsKey);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            // Separator can't be part of a Basic username, so user "a" + password "b:c" differs from "a:b" + "c"
+            mac.update((byte) ':');
+            return HexFormat.of().formatHex(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " is not supported", e);
+        }
+    }
+
+    private static UserDetails copyOf(UserDetails user) {
+        return User.withUserDetails(user).build();
+    }
+
+    private static UserDetails withoutPassword(UserDetails user) {
+        return User.withUserDetails(user).password("").build();
+    }
+}
@@ -0,0 +1,19 @@
+package com.executor.server.service;
+
+import java.util.Map;
+
+/**
+ * Entry of the result cache: the JSON result and the versions of the datasets it was computed from, see
+ * {@link TableVersions}. Versions are null if the query read anything besides datasets; such an entry can't
+ * tell when it becomes stale and only lives for the short {@code query.cache.ttl}.
+ */
+public record CachedResult(String json, Map<String, Long> datasetVersions) {
+
+    public static CachedResult untagged(String json) {
+        return new CachedResult(json, null);
+    }
+
+    public boolean isTagged() {
+        return datasetVersions != null;
+    }
+}
@@ -0,0 +1,878 @@
+package com.executor.server.service;
+
+import com.executor.server.service.ColumnarTable.ColumnVector;
+import com.executor.server.service.ColumnarTable.DoubleVector;
+import com.executor.server.service.ColumnarTable.IntVector;
+import com.executor.server.service.ColumnarTable.LongVector;
+import com.executor.server.service.ColumnarTable.StringVector;
+import net.sf.jsqlparser.expression.DoubleValue;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Function;
+import net.sf.jsqlparser.expression.JdbcNamedParameter;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.NotExpression;
+import net.sf.jsqlparser.expression.NullValue;
+import net.sf.jsqlparser.expression.SignedExpression;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.ComparisonOperator;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.IsNullExpression;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.GroupByElement;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.SelectItem;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * SELECT over a {@link ColumnarTable}, compiled from the part of SQL it answers exactly like H2: one dataset table;
+ * columns, COUNT, MIN, MAX, and SUM or AVG of integer columns in the select list; comparisons with literals or
+ * parameters, IN lists and IS NULL joined by AND, OR and NOT in WHERE; GROUP BY columns; ORDER BY; LIMIT and OFFSET.
+ * Anything else throws {@link UnsupportedQueryException}, so the query is left to H2. SUM and AVG of BIGINT and
+ * DOUBLE columns are left to H2 because it computes them as exact decimals.
+ * <p>
+ * Rows are processed in morsels spread over a pool. Every morsel is filtered into a selection vector of row
+ * indexes, then each aggregate runs one loop over the selection into primitive arrays indexed by group.
+ */
+final class ColumnarQuery {
+    private static final int MORSEL_ROWS = 16 * 1024;
+    // Results of SQL conditions: anything compared with NULL is unknown, and only true rows pass WHERE
+    private static final int FALSE = 0;
+    private static final int TRUE = 1;
+    private static final int UNKNOWN = 2;
+    private static final Object NULL_LITERAL = new Object();
+
+    private enum AggregateKind {COUNT_ALL, COUNT, SUM, AVG, MIN, MAX}
+
+    private enum Comparison {
+        EQ, NE, LT, LE, GT, GE;
+
+        boolean holds(int comparison) {
+            return switch (this) {
+                case EQ -> comparison == 0;
+                case NE -> comparison != 0;
+                case LT -> comparison < 0;
+                case LE -> comparison <= 0;
+                case GT -> comparison > 0;
+                case GE -> comparison >= 0;
+            };
+        }
+
+        // Same condition with the operands swapped, for literals written before the column
+        Comparison reversed() {
+            return switch (this) {
+                case LT -> GT;
+                case LE -> GE;
+                case GT -> LT;
+                case GE -> LE;
+                default -> this;
+            };
+        }
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        int test(int row);
+    }
+
+    private record Aggregate(AggregateKind kind, ColumnVector column) {
+    }
+
+    // Select list entry: a table column, or an aggregate when aggregate is not negative
+    private record Output(int column, int aggregate) {
+    }
+
+    // Plain queries sort rows by a column, aggregated ones sort result rows by an output
+    private record SortKey(ColumnVector column, int output, boolean descending, boolean nullsFirst) {
+    }
+
+    /**
+     * Query uses something outside of the supported subset, or its result can't be computed exactly.
+     */
+    static final class UnsupportedQueryException extends RuntimeException {
+        UnsupportedQueryException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private final ColumnarTable table;
+    private final String alias;
+    private final Map<String, ?> parameters;
+    private final List<Output> outputs = new ArrayList<>();
+    private final List<String> outputNames = new ArrayList<>();
+    private final List<Aggregate> aggregates = new ArrayList<>();
+    private final List<SortKey> sortKeys = new ArrayList<>();
+    private ColumnVector[] groupColumns = new ColumnVector[0];
+    private int[] groupColumnIndexes = new int[0];
+    private Condition where;
+    private boolean aggregated;
+    private long offset;
+    private long limit = -1;
+
+    private ColumnarQuery(ColumnarTable table, String alias, Map<String, ?> parameters) {
+        this.table = table;
+        this.alias = alias;
+        this.parameters = parameters;
+    }
+
+    /**
+     * @return name of the only table the statement reads, as H2 stores it
+     * @throws UnsupportedQueryException if the statement is not a plain SELECT from one table
+     */
+    static String tableName(Statement statement) {
+        if (!(statement instanceof PlainSelect select)) {
+            throw unsupported("not a plain SELECT");
+        }
+        if (!(select.getFromItem() instanceof Table table) || table.getSchemaName() != null
+                || table.getPivot() != null || table.getUnPivot() != null) {
+            throw unsupported("not reading a single table");
+        }
+        if (select.getJoins() != null && !select.getJoins().isEmpty()) {
+            throw unsupported("joins");
+        }
+        if (select.getWithItemsList() != null && !select.getWithItemsList().isEmpty()) {
+            throw unsupported("WITH");
+        }
+        if (select.getDistinct() != null || select.getTop() != null || select.getFetch() != null
+                || select.getHaving() != null || select.getIntoTables() != null || select.getFirst() != null
+                || select.getSkip() != null || select.getQualify() != null || select.getOracleHierarchical() != null) {
+            throw unsupported("unsupported clause");
+        }
+        return identifier(table.getName());
+    }
+
+    /**
+     * @param table contents of the table named by {@link #tableName(Statement)}
+     * @param parameters values of the named parameters of the statement
+     */
+    static ColumnarQuery compile(PlainSelect select, ColumnarTable table, Map<String, ?> parameters) {
+        Table from = (Table) select.getFromItem();
+        if (from.getAlias() != null && from.getAlias().getAliasColumns() != null) {
+            throw unsupported("column aliases of the table");
+        }
+        ColumnarQuery query = new ColumnarQuery(table, from.getAlias() == null ? null : identifier(from.getAlias().getName()), parameters);
+
+        query.compileGroupBy(select.getGroupBy());
+        for (SelectItem<?> item : select.getSelectItems()) {
+            query.compileSelectItem(item);
+        }
+        query.aggregated = !query.aggregates.isEmpty() || query.groupColumns.length > 0;
+        if (query.aggregated) {
+            for (Output output : query.outputs) {
+                if (output.aggregate() < 0 && Arrays.stream(query.groupColumnIndexes).noneMatch(column -> column == output.column())) {
+                    throw unsupported("column neither grouped nor aggregated");
+                }
+            }
+        }
+        if (select.getWhere() != null) {
+            query.where = query.condition(select.getWhere());
+        }
+        if (select.getOrderByElements() != null) {
+            for (OrderByElement element : select.getOrderByElements()) {
+                query.compileOrderBy(element);
+            }
+        }
+        query.compileLimit(select);
+        return query;
+    }
+
+    /**
+     * @return rows of the result with values as H2 would return them
+     * @throws UnsupportedQueryException if a sum doesn't fit a long
+     */
+    List<List<Object>> execute(ForkJoinPool pool) {
+        int morsels = (table.rowCount() + MORSEL_ROWS - 1) / MORSEL_ROWS;
+        try {
+            return aggregated ? aggregate(pool, morsels) : select(pool, morsels);
+        } catch (ArithmeticException e) {
+            throw unsupported("sum overflows");
+        }
+    }
+
+    private List<List<Object>> select(ForkJoinPool pool, int morsels) {
+        List<int[]> selections = pool.submit(() -> IntStream.range(0, morsels).parallel()
+                .mapToObj(morsel -> {
+                    int[] selection = new int[MORSEL_ROWS];
+                    return Arrays.copyOf(selection, filter(morsel, selection));
+                })
+                .toList()).join();
+
+        int[] rows = new int[selections.stream().mapToInt(selection -> selection.length).sum()];
+        int position = 0;
+        for (int[] selection : selections) {
+            System.arraycopy(selection, 0, rows, position, selection.length);
+            position += selection.length;
+        }
+
+        if (!sortKeys.isEmpty()) {
+            rows = IntStream.of(rows).boxed().sorted(rowOrder()).mapToInt(Integer::intValue).toArray();
+        }
+
+        int from = (int) Math.min(offset, rows.length);
+        int to = limit < 0 ? rows.length : (int) Math.min(rows.length, from + limit);
+        List<List<Object>> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            Object[] values = new Object[outputs.size()];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = table.column(outputs.get(j).column()).value(rows[i]);
+            }
+            result.add(Arrays.asList(values));
+        }
+        return result;
+    }
+
+    private List<List<Object>> aggregate(ForkJoinPool pool, int morsels) {
+        Groups groups = pool.submit(() -> IntStream.range(0, morsels).parallel()
+                .collect(Groups::new, Groups::add, Groups::merge)).join();
+        // Aggregates without GROUP BY return one row, even if no row matched
+        if (groupColumns.length == 0 && groups.size == 0) {
+            groups.groupOf(-1);
+        }
+
+        List<List<Object>> result = new ArrayList<>(groups.size);
+        for (int group = 0; group < groups.size; group++) {
+            Object[] values = new Object[outputs.size()];
+            for (int i = 0; i < values.length; i++) {
+                Output output = outputs.get(i);
+                values[i] = output.aggregate() < 0
+                        ? table.column(output.column()).value(groups.firstRows[group])
+                        : groups.value(output.aggregate(), group);
+            }
+            result.add(Arrays.asList(values));
+        }
+
+        if (!sortKeys.isEmpty()) {
+            result.sort(resultOrder());
+        }
+        int from = (int) Math.min(offset, result.size());
+        int to = limit < 0 ? result.size() : (int) Math.min(result.size(), from + limit);
+        return result.subList(from, to);
+    }
+
+    // Fills the selection with rows of the morsel passing WHERE, returns their count
+    private int filter(int morsel, int[] selection) {
+        int from = morsel * MORSEL_ROWS;
+        int to = Math.min(from + MORSEL_ROWS, table.rowCount());
+        int selected = 0;
+        if (where == null) {
+            for (int row = from; row < to; row++) {
+                selection[selected++] = row;
+            }
+        } else {
+            for (int row = from; row < to; row++) {
+                if (where.test(row) == TRUE) {
+                    selection[selected++] = row;
+                }
+            }
+        }
+        return selected;
+    }
+
+    // H2 sorts NULL before other values, unless NULLS LAST is given
+    private Comparator<Integer> rowOrder() {
+        Comparator<Integer> order = null;
+        for (SortKey key : sortKeys) {
+            ColumnVector column = key.column();
+            Comparator<Integer> keyOrder = (first, second) -> {
+                boolean firstNull = column.isNull(first);
+                boolean secondNull = column.isNull(second);
+                if (firstNull || secondNull) {
+                    return firstNull == secondNull ? 0 : (firstNull == key.nullsFirst() ? -1 : 1);
+                }
+                int comparison = column.compare(first, second);
+                return key.descending() ? -comparison : comparison;
+            };
+            order = order == null ? keyOrder : order.thenComparing(keyOrder);
+        }
+        return order;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Comparator<List<Object>> resultOrder() {
+        Comparator<List<Object>> order = null;
+        for (SortKey key : sortKeys) {
+            Comparator<List<Object>> keyOrder = (first, second) -> {
+                Object firstValue = first.get(key.output());
+                Object secondValue = second.get(key.output());
+                if (firstValue == null || secondValue == null) {
+                    return firstValue == secondValue ? 0 : ((firstValue == null) == key.nullsFirst() ? -1 : 1);
+                }
+                int comparison = ((Comparable) firstValue).compareTo(secondValue);
+                return key.descending() ? -comparison : comparison;
+            };
+            order = order == null ? keyOrder : order.thenComparing(keyOrder);
+        }
+        return order;
+    }
+
+    private void compileGroupBy(GroupByElement groupBy) {
+        if (groupBy == null) {
+            return;
+        }
+        if (groupBy.getGroupingSets() != null && !groupBy.getGroupingSets().isEmpty()) {
+            throw unsupported("grouping sets");
+        }
+        ExpressionList<?> expressions = groupBy.getGroupByExpressionList();
+        // The null mask of a group key has a bit per column
+        if (expressions.size() > 63) {
+            throw unsupported("too many GROUP BY columns");
+        }
+        groupColumnIndexes = new int[expressions.size()];
+        groupColumns = new ColumnVector[expressions.size()];
+        for (int i = 0; i < expressions.size(); i++) {
+            groupColumnIndexes[i] = columnIndex(expressions.get(i));
+            groupColumns[i] = table.column(groupColumnIndexes[i]);
+        }
+    }
+
+    private void compileSelectItem(SelectItem<?> item) {
+        Expression expression = item.getExpression();
+        if (expression.getClass() == AllColumns.class && "*".equals(expression.toString())) {
+            for (int i = 0; i < table.columnNames().size(); i++) {
+                outputs.add(new Output(i, -1));
+                outputNames.add(table.columnNames().get(i));
+            }
+            return;
+        }
+
+        String name = item.getAlias() == null ? null : identifier(item.getAlias().getName());
+        if (expression instanceof Column) {
+            int column = columnIndex(expression);
+            outputs.add(new Output(column, -1));
+            outputNames.add(name == null ? table.columnNames().get(column) : name);
+        } else {
+            aggregates.add(aggregate(expression));
+            outputs.add(new Output(-1, aggregates.size() - 1));
+            outputNames.add(name);
+        }
+    }
+
+    private Aggregate aggregate(Expression expression) {
+        if (expression.getClass() != Function.class) {
+            throw unsupported("expression in the select list");
+        }
+        Function function = (Function) expression;
+        if (function.isDistinct() || function.isUnique()) {
+            throw unsupported("DISTINCT aggregate");
+        }
+        ExpressionList<?> arguments = function.getParameters();
+        boolean allColumns = function.isAllColumns()
+                || arguments != null && arguments.size() == 1 && arguments.getFirst().getClass() == AllColumns.class;
+        String name = function.getName().toUpperCase(Locale.ROOT);
+        if (allColumns) {
+            if (!name.equals("COUNT")) {
+                throw unsupported(name + "(*)");
+            }
+            return new Aggregate(AggregateKind.COUNT_ALL, null);
+        }
+        if (arguments == null || arguments.size() != 1) {
+            throw unsupported("function arguments");
+        }
+
+        ColumnVector column = table.column(columnIndex(arguments.getFirst()));
+        AggregateKind kind = switch (name) {
+            case "COUNT" -> AggregateKind.COUNT;
+            case "SUM" -> AggregateKind.SUM;
+            case "AVG" -> AggregateKind.AVG;
+            case "MIN" -> AggregateKind.MIN;
+            case "MAX" -> AggregateKind.MAX;
+            default -> throw unsupported("function " + name);
+        };
+        if (kind == AggregateKind.SUM && !(column instanceof IntVector || column instanceof LongVector)
+                || kind == AggregateKind.AVG && !(column instanceof IntVector)) {
+            throw unsupported(name + " of " + column.type());
+        }
+        return new Aggregate(kind, column);
+    }
+
+    private void compileOrderBy(OrderByElement element) {
+        boolean descending = !element.isAsc();
+        boolean nullsFirst = element.getNullOrdering() == null
+                ? !descending
+                : element.getNullOrdering() == OrderByElement.NullOrdering.NULLS_FIRST;
+        int output = outputReference(element.getExpression());
+
+        if (!aggregated) {
+            ColumnVector column = output >= 0
+                    ? table.column(outputs.get(output).column())
+                    : table.column(columnIndex(element.getExpression()));
+            sortKeys.add(new SortKey(column, -1, descending, nullsFirst));
+        } else if (output >= 0) {
+            sortKeys.add(new SortKey(null, output, descending, nullsFirst));
+        } else {
+            throw unsupported("ORDER BY expression not in the select list");
+        }
+    }
+
+    // Select list entry the ORDER BY expression refers to by position, alias, or by being the same expression
+    private int outputReference(Expression expression) {
+        if (expression instanceof LongValue position) {
+            long index = position.getValue() - 1;
+            if (index < 0 || index >= outputs.size()) {
+                throw unsupported("ORDER BY position");
+            }
+            return (int) index;
+        }
+        if (expression instanceof Column column && (column.getTable() == null || column.getTable().getName() == null)) {
+            int output = outputNames.indexOf(identifier(column.getColumnName()));
+            if (output >= 0) {
+                return output;
+            }
+        }
+        if (expression instanceof Column) {
+            int column = columnIndex(expression);
+            for (int i = 0; i < outputs.size(); i++) {
+                if (outputs.get(i).aggregate() < 0 && outputs.get(i).column() == column) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        Aggregate aggregate = aggregate(expression);
+        for (int i = 0; i < outputs.size(); i++) {
+            if (outputs.get(i).aggregate() >= 0 && aggregates.get(outputs.get(i).aggregate()).equals(aggregate)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void compileLimit(PlainSelect select) {
+        if (select.getLimit() != null) {
+            if (select.getLimit().getRowCount() != null) {
+                limit = nonNegative(select.getLimit().getRowCount());
+            }
+            if (select.getLimit().getOffset() != null) {
+                offset = nonNegative(select.getLimit().getOffset());
+            }
+        }
+        if (select.getOffset() != null) {
+            offset = nonNegative(select.getOffset().getOffset());
+        }
+    }
+
+    private long nonNegative(Expression expression) {
+        if (!(literal(expression) instanceof Long value) || value < 0) {
+            throw unsupported("LIMIT or OFFSET value");
+        }
+        return value;
+    }
+
+    private Condition condition(Expression expression) {
+        if (expression instanceof AndExpression and) {
+            Condition left = condition(and.getLeftExpression());
+            Condition right = condition(and.getRightExpression());
+            return row -> {
+                int first = left.test(row);
+                if (first == FALSE) {
+                    return FALSE;
+                }
+                int second = right.test(row);
+                return second == FALSE ? FALSE : (first == TRUE && second == TRUE ? TRUE : UNKNOWN);
+            };
+        }
+        if (expression instanceof OrExpression or) {
+            Condition left = condition(or.getLeftExpression());
+            Condition right = condition(or.getRightExpression());
+            return row -> {
+                int first = left.test(row);
+                if (first == TRUE) {
+                    return TRUE;
+                }
+                int second = right.test(row);
+                return second == TRUE ? TRUE : (first == FALSE && second == FALSE ? FALSE : UNKNOWN);
+            };
+        }
+        if (expression instanceof NotExpression not) {
+            return negated(condition(not.getExpression()));
+        }
+        if (expression instanceof ExpressionList<?> parenthesized && parenthesized.size() == 1) {
+            return condition(parenthesized.getFirst());
+        }
+        if (expression instanceof IsNullExpression isNull) {
+            ColumnVector column = table.column(columnIndex(isNull.getLeftExpression()));
+            boolean not = isNull.isNot();
+            return row -> column.isNull(row) != not ? TRUE : FALSE;
+        }
+        if (expression instanceof InExpression in) {
+            return in.isNot() ? negated(in(in)) : in(in);
+        }
+        if (expression instanceof ComparisonOperator comparison) {
+            return comparison(comparison);
+        }
+        throw unsupported("condition " + expression.getClass().getSimpleName());
+    }
+
+    private static Condition negated(Condition condition) {
+        return row -> {
+            int result = condition.test(row);
+            return result == UNKNOWN ? UNKNOWN : TRUE - result;
+        };
+    }
+
+    private Condition comparison(ComparisonOperator operator) {
+        Comparison comparison = switch (operator) {
+            case EqualsTo ignored -> Comparison.EQ;
+            case NotEqualsTo ignored -> Comparison.NE;
+            case MinorThan ignored -> Comparison.LT;
+            case MinorThanEquals ignored -> Comparison.LE;
+            case GreaterThan ignored -> Comparison.GT;
+            case GreaterThanEquals ignored -> Comparison.GE;
+            default -> throw unsupported("operator " + operator.getStringExpression());
+        };
+        if (operator.getLeftExpression() instanceof Column) {
+            return comparison(table.column(columnIndex(operator.getLeftExpression())), comparison, literal(operator.getRightExpression()));
+        }
+        return comparison(table.column(columnIndex(operator.getRightExpression())), comparison.reversed(), literal(operator.getLeftExpression()));
+    }
+
+    private Condition comparison(ColumnVector column, Comparison comparison, Object literal) {
+        if (literal == NULL_LITERAL) {
+            return row -> UNKNOWN;
+        }
+        switch (column) {
+            case IntVector ints when literal instanceof Long value -> {
+                return row -> ints.isNull(row) ? UNKNOWN : result(comparison.holds(Long.compare(ints.get(row), value)));
+            }
+            case IntVector ints when literal instanceof Double value -> {
+                double operand = value + 0.0;
+                return row -> ints.isNull(row) ? UNKNOWN : result(comparison.holds(Double.compare(ints.get(row), operand)));
+            }
+            case LongVector longs when literal instanceof Long value -> {
+                return row -> longs.isNull(row) ? UNKNOWN : result(comparison.holds(Long.compare(longs.get(row), value)));
+            }
+            case DoubleVector doubles when literal instanceof Number value -> {
+                double operand = value.doubleValue() + 0.0;
+                return row -> doubles.isNull(row) ? UNKNOWN : result(comparison.holds(Double.compare(doubles.get(row), operand)));
+            }
+            case StringVector strings when literal instanceof String value -> {
+                // Condition is decided once per distinct value, rows only look up their code
+                String[] dictionary = strings.dictionary();
+                boolean[] matches = new boolean[dictionary.length];
+                for (int i = 0; i < dictionary.length; i++) {
+                    matches[i] = comparison.holds(dictionary[i].compareTo(value));
+                }
+                return row -> strings.isNull(row) ? UNKNOWN : result(matches[strings.code(row)]);
+            }
+            default -> throw unsupported("comparing " + column.type() + " with " + literal.getClass().getSimpleName());
+        }
+    }
+
+    private Condition in(InExpression in) {
+        if (!(in.getRightExpression() instanceof ExpressionList<?> values) || values.isEmpty()) {
+            throw unsupported("IN without a value list");
+        }
+        ColumnVector column = table.column(columnIndex(in.getLeftExpression()));
+        List<Condition> equalities = new ArrayList<>(values.size());
+        for (Expression value : values) {
+            Object literal = literal(value);
+            if (literal == NULL_LITERAL) {
+                throw unsupported("NULL in an IN list");
+            }
+            equalities.add(comparison(column, Comparison.EQ, literal));
+        }
+        Condition[] conditions = equalities.toArray(Condition[]::new);
+        return row -> {
+            if (column.isNull(row)) {
+                return UNKNOWN;
+            }
+            for (Condition condition : conditions) {
+                if (condition.test(row) == TRUE) {
+                    return TRUE;
+                }
+            }
+            return FALSE;
+        };
+    }
+
+    private static int result(boolean holds) {
+        return holds ? TRUE : FALSE;
+    }
+
+    // Literal or bound parameter as Long, Double, String or NULL_LITERAL
+    private Object literal(Expression expression) {
+        if (expression instanceof SignedExpression signed && signed.getSign() == '-') {
+            Object value = literal(signed.getExpression());
+            return switch (value) {
+                case Long number when number != Long.MIN_VALUE -> -number;
+                case Double number -> -number;
+                default -> throw unsupported("negated literal");
+            };
+        }
+        if (expression instanceof SignedExpression signed && signed.getSign() == '+') {
+            return literal(signed.getExpression());
+        }
+        if (expression instanceof LongValue number) {
+            BigInteger value = new BigInteger(number.getStringValue());
+            if (value.bitLength() >= Long.SIZE) {
+                throw unsupported("literal out of BIGINT range");
+            }
+            return value.longValue();
+        }
+        if (expression instanceof DoubleValue number) {
+            return number.getValue();
+        }
+        if (expression instanceof StringValue text && text.getPrefix() == null) {
+            return text.getValue().replace("''", "'");
+        }
+        if (expression instanceof NullValue) {
+            return NULL_LITERAL;
+        }
+        if (expression instanceof JdbcNamedParameter parameter && parameters.containsKey(parameter.getName())) {
+            return switch (parameters.get(parameter.getName())) {
+                case null -> NULL_LITERAL;
+                case Integer number -> number.longValue();
+                case Long number -> number;
+                case Short number -> number.longValue();
+                case Double number -> number;
+                case Float number -> number.doubleValue();
+                case String text -> text;
+                default -> throw unsupported("parameter type");
+            };
+        }
+        throw unsupported("operand " + expression.getClass().getSimpleName());
+    }
+
+    private int columnIndex(Expression expression) {
+        if (!(expression instanceof Column column)) {
+            throw unsupported("expression " + expression.getClass().getSimpleName());
+        }
+        Table qualifier = column.getTable();
+        if (qualifier != null && qualifier.getName() != null) {
+            String name = identifier(qualifier.getName());
+            if (qualifier.getSchemaName() != null || !(name.equals(table.name()) || name.equals(alias))) {
+                throw unsupported("column of another table");
+            }
+        }
+        int index = table.columnIndex(identifier(column.getColumnName()));
+        if (index < 0) {
+            throw unsupported("unknown column " + column.getColumnName());
+        }
+        return index;
+    }
+
+    // Unquoted identifiers are stored upper-case by H2, quoted ones as written
+    private static String identifier(String name) {
+        if (name.length() >= 2 && name.startsWith("\"") && name.endsWith("\"")) {
+            return name.substring(1, name.length() - 1).replace("\"\"", "\"");
+        }
+        if (name.startsWith("`") || name.startsWith("[")) {
+            throw unsupported("quoted identifier " + name);
+        }
+        return name.toUpperCase(Locale.ROOT);
+    }
+
+    private static UnsupportedQueryException unsupported(String reason) {
+        return new UnsupportedQueryException(reason);
+    }
+
+    // Aggregation state of the morsels one task has seen. Groups are found through an open addressing table
+    // over flat key arrays, and every aggregate keeps primitive arrays indexed by group
+    private final class Groups {
+        private final int width = groupColumns.length;
+        // Null mask of the row's group columns, then key of every group column
+        private final int stride = width + 1;
+        private final long[] rowKey = new long[stride];
+        private final int[] selection = new int[MORSEL_ROWS];
+        private final int[] selectionGroups = new int[MORSEL_ROWS];
+        private long[] keys = new long[16 * stride];
+        private int[] hashes = new int[16];
+        private int[] firstRows = new int[16];
+        // Per aggregate: rows counted, or for MIN and MAX the chosen row + 1
+        private long[][] counts = new long[aggregates.size()][16];
+        private long[][] sums = new long[aggregates.size()][16];
+        // Group index + 1 of every slot, 0 for an empty slot
+        private int[] slots = new int[32];
+        private int size;
+
+        void add(int morsel) {
+            int selected = filter(morsel, selection);
+            for (int i = 0; i < selected; i++) {
+                selectionGroups[i] = groupOf(selection[i]);
+            }
+            for (int aggregate = 0; aggregate < aggregates.size(); aggregate++) {
+                accumulate(aggregate, selected);
+            }
+        }
+
+        void merge(Groups other) {
+            for (int group = 0; group < other.size; group++) {
+                System.arraycopy(other.keys, group * stride, rowKey, 0, stride);
+                int target = find(other.hashes[group], other.firstRows[group]);
+                for (int aggregate = 0; aggregate < aggregates.size(); aggregate++) {
+                    long[] count = counts[aggregate];
+                    long otherCount = other.counts[aggregate][group];
+                    switch (aggregates.get(aggregate).kind()) {
+                        case MIN, MAX -> {
+                            if (otherCount > 0 && (count[target] == 0
+                                    || better(aggregate, (int) otherCount - 1, (int) count[target] - 1))) {
+                                count[target] = otherCount;
+                            }
+                        }
+                        default -> {
+                            count[target] += otherCount;
+                            sums[aggregate][target] = Math.addExact(sums[aggregate][target], other.sums[aggregate][group]);
+                        }
+                    }
+                }
+            }
+        }
+
+        Object value(int aggregate, int group) {
+            long count = counts[aggregate][group];
+            Aggregate definition = aggregates.get(aggregate);
+            return switch (definition.kind()) {
+                case COUNT_ALL, COUNT -> count;
+                case SUM -> count == 0 ? null : sums[aggregate][group];
+                // H2 averages integers as DOUBLE, summing them as doubles is exact within 2^53
+                case AVG -> count == 0 ? null : (double) sums[aggregate][group] / count;
+                case MIN, MAX -> count == 0 ? null : definition.column().value((int) count - 1);
+            };
+        }
+
+        // Group of the row, created if it is new. Row -1 stands for the single group of an empty table
+        int groupOf(int row) {
+            long nullMask = 0;
+            long hash = 0;
+            for (int i = 0; i < width; i++) {
+                ColumnVector column = groupColumns[i];
+                long key = 0;
+                if (column.isNull(row)) {
+                    nullMask |= 1L << i;
+                } else {
+                    key = column.key(row);
+                }
+                rowKey[i + 1] = key;
+                hash = (hash + key) * 0x9E3779B97F4A7C15L;
+            }
+            rowKey[0] = nullMask;
+            hash = (hash ^ nullMask) * 0x9E3779B97F4A7C15L;
+            return find((int) (hash ^ (hash >>> 32)), row);
+        }
+
+        // Finds the group with the key in rowKey, or adds it with the row as its first row
+        private int find(int hash, int firstRow) {
+            int mask = slots.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int group = slots[slot] - 1;
+                if (group < 0) {
+                    return insert(slot, hash, firstRow);
+                }
+                if (hashes[group] == hash && Arrays.equals(keys, group * stride, (group + 1) * stride, rowKey, 0, stride)) {
+                    return group;
+                }
+            }
+        }
+
+        private int insert(int slot, int hash, int firstRow) {
+            int group = size++;
+            if (group == hashes.length) {
+                int capacity = hashes.length * 2;
+                keys = Arrays.copyOf(keys, capacity * stride);
+                hashes = Arrays.copyOf(hashes, capacity);
+                firstRows = Arrays.copyOf(firstRows, capacity);
+                for (int aggregate = 0; aggregate < aggregates.size(); aggregate++) {
+                    counts[aggregate] = Arrays.copyOf(counts[aggregate], capacity);
+                    sums[aggregate] = Arrays.copyOf(sums[aggregate], capacity);
+                }
+            }
+            System.arraycopy(rowKey, 0, keys, group * stride, stride);
+            hashes[group] = hash;
+            firstRows[group] = firstRow;
+            slots[slot] = group + 1;
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+            return group;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int group = 0; group < size; group++) {
+                int slot = hashes[group] & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = group + 1;
+            }
+        }
+
+        private void accumulate(int aggregate, int selected) {
+            Aggregate definition = aggregates.get(aggregate);
+            long[] count = counts[aggregate];
+            long[] sum = sums[aggregate];
+            ColumnVector column = definition.column();
+            switch (definition.kind()) {
+                case COUNT_ALL -> {
+                    for (int i = 0; i < selected; i++) {
+                        count[selectionGroups[i]]++;
+                    }
+                }
+                case COUNT -> {
+                    for (int i = 0; i < selected; i++) {
+                        if (!column.isNull(selection[i])) {
+                            count[selectionGroups[i]]++;
+                        }
+                    }
+                }
+                case SUM, AVG -> {
+                    if (column instanceof IntVector ints) {
+                        for (int i = 0; i < selected; i++) {
+                            int row = selection[i];
+                            if (!ints.isNull(row)) {
+                                sum[selectionGroups[i]] += ints.get(row);
+                                count[selectionGroups[i]]++;
+                            }
+                        }
+                    } else {
+                        LongVector longs = (LongVector) column;
+                        for (int i = 0; i < selected; i++) {
+                            int row = selection[i];
+                            if (!longs.isNull(row)) {
+                                sum[selectionGroups[i]] = Math.addExact(sum[selectionGroups[i]], longs.get(row));
+                                count[selectionGroups[i]]++;
+                            }
+                        }
+                    }
+                }
+                case MIN, MAX -> {
+                    for (int i = 0; i < selected; i++) {
+                        int row = selection[i];
+                        int group = selectionGroups[i];
+                        if (!column.isNull(row) && (count[group] == 0 || better(aggregate, row, (int) count[group] - 1))) {
+                            count[group] = row + 1;
+                        }
+                    }
+                }
+            }
+        }
+
+        private boolean better(int aggregate, int row, int current) {
+            Aggregate definition = aggregates.get(aggregate);
+            int comparison = definition.column().compare(row, current);
+            return definition.kind() == AggregateKind.MIN ? comparison < 0 : comparison > 0;
+        }
+    }
+}
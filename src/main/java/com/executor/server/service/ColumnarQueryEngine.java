@@ -0,0 +1,119 @@
+package com.executor.server.service;
+
+import com.executor.QueryExecutorConfig;
+import com.executor.server.repository.DatasetRepository;
+import com.executor.server.repository.DatasetVersion;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Optional engine answering simple queries over datasets from in-memory columnar copies instead of H2
+ * (see {@link ColumnarQuery} for what it supports). A dataset is copied on the first query reading it and
+ * dropped whenever a new version is published. Queries it can't answer exactly are left to H2.
+ */
+@Service
+public class ColumnarQueryEngine {
+    private static final Logger log = LoggerFactory.getLogger(ColumnarQueryEngine.class);
+
+    private final QueryValidationService validationService;
+    private final DatasetRepository datasetRepository;
+    private final ForkJoinPool pool;
+    private final boolean enabled;
+    private final long maxRows;
+    // A holder is put first and the table is loaded outside the map, so a slow copy doesn't block lookups of other
+    // tables. Holders of tables that aren't copied stay empty until the next publish, so they aren't looked up again.
+    // An eviction removes the holder, a load still running only serves the queries that were already waiting for it
+    private final ConcurrentMap<String, CompletableFuture<Optional<ColumnarTable>>> tables = new ConcurrentHashMap<>();
+
+    public ColumnarQueryEngine(QueryValidationService validationService, DatasetRepository datasetRepository,
+                               @Qualifier(QueryExecutorConfig.COLUMNAR_POOL) ForkJoinPool pool,
+                               @Value("${query.columnar.enabled:false}") boolean enabled,
+                               @Value("${query.columnar.max-rows:10000000}") long maxRows) {
+        this.validationService = validationService;
+        this.datasetRepository = datasetRepository;
+        this.pool = pool;
+        this.enabled = enabled;
+        this.maxRows = Math.min(maxRows, Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * @return result rows, or empty if the query should run on H2
+     */
+    public Optional<List<List<Object>>> execute(String query, Map<String, ?> parameters) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        try {
+            Statement statement = validationService.validateQuery(query);
+            Optional<ColumnarTable> table = table(ColumnarQuery.tableName(statement));
+            if (table.isEmpty()) {
+                return Optional.empty();
+            }
+            return Optional.of(ColumnarQuery.compile((PlainSelect) statement, table.get(), parameters).execute(pool));
+        } catch (ColumnarQuery.UnsupportedQueryException e) {
+            log.debug("Query runs on H2: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Drops the copy of the dataset, the next query reads the current version.
+     */
+    public void evict(String name) {
+        tables.remove(name.toUpperCase(Locale.ROOT));
+    }
+
+    // The first query of a table loads it, later ones wait for that load. A failed load isn't kept
+    private Optional<ColumnarTable> table(String name) {
+        CompletableFuture<Optional<ColumnarTable>> holder = tables.get(name);
+        if (holder == null) {
+            CompletableFuture<Optional<ColumnarTable>> created = new CompletableFuture<>();
+            holder = tables.putIfAbsent(name, created);
+            if (holder == null) {
+                try {
+                    created.complete(load(name));
+                } catch (RuntimeException | Error e) {
+                    tables.remove(name, created);
+                    created.completeExceptionally(e);
+                    throw e;
+                }
+                holder = created;
+            }
+        }
+        try {
+            return holder.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    // Only datasets in the catalog are copied, application tables always stay in H2
+    private Optional<ColumnarTable> load(String name) {
+        Optional<DatasetVersion> version = datasetRepository.findVersion(name)
+                .filter(dataset -> dataset.name().equals(name) && dataset.rowCount() <= maxRows);
+        if (version.isEmpty()) {
+            return Optional.empty();
+        }
+        long startedAt = System.nanoTime();
+        ColumnarTable table = datasetRepository.readTable(name,
+                resultSet -> ColumnarTable.read(name, resultSet, (int) version.get().rowCount()));
+        log.info("Copied dataset {} version {} to columnar memory: {} rows in {} ms", name, version.get().version(),
+                table.rowCount(), (System.nanoTime() - startedAt) / 1_000_000);
+        return Optional.of(table);
+    }
+}
@@ -0,0 +1,339 @@
+package com.executor.server.service;
+
+import com.executor.server.repository.ColumnType;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only copy of a dataset table kept column by column in primitive arrays, queried by {@link ColumnarQuery}.
+ * Text columns are dictionary-encoded, so grouping and filtering them compares ints instead of strings.
+ */
+final class ColumnarTable {
+
+    private final String name;
+    private final int rowCount;
+    private final List<String> columnNames;
+    private final ColumnVector[] columns;
+
+    private ColumnarTable(String name, int rowCount, List<String> columnNames, ColumnVector[] columns) {
+        this.name = name;
+        this.rowCount = rowCount;
+        this.columnNames = columnNames;
+        this.columns = columns;
+    }
+
+    String name() {
+        return name;
+    }
+
+    int rowCount() {
+        return rowCount;
+    }
+
+    List<String> columnNames() {
+        return columnNames;
+    }
+
+    /**
+     * @return index of the column with exactly this name, -1 if there is none
+     */
+    int columnIndex(String columnName) {
+        return columnNames.indexOf(columnName);
+    }
+
+    ColumnVector column(int index) {
+        return columns[index];
+    }
+
+    /**
+     * Reads all rows of the result set, which must only have dataset column types.
+     *
+     * @param expectedRows size hint for the arrays
+     * @throws IllegalArgumentException if a column has another type
+     */
+    static ColumnarTable read(String name, ResultSet resultSet, int expectedRows) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        List<String> columnNames = new ArrayList<>(columnCount);
+        ColumnBuilder[] builders = new ColumnBuilder[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            ColumnType type = ColumnType.ofSqlType(metaData.getColumnType(i + 1));
+            if (type == null) {
+                throw new IllegalArgumentException("Column " + metaData.getColumnLabel(i + 1) + " has unsupported type "
+                        + metaData.getColumnTypeName(i + 1));
+            }
+            columnNames.add(metaData.getColumnLabel(i + 1));
+            builders[i] = new ColumnBuilder(type, Math.max(16, expectedRows));
+        }
+
+        int rows = 0;
+        while (resultSet.next()) {
+            for (int i = 0; i < columnCount; i++) {
+                builders[i].add(resultSet, i + 1, rows);
+            }
+            rows++;
+        }
+
+        ColumnVector[] columns = new ColumnVector[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columns[i] = builders[i].build(rows);
+        }
+        return new ColumnarTable(name, rows, List.copyOf(columnNames), columns);
+    }
+
+    /**
+     * Values of one column. Rows are indexes from 0, nulls are kept in a bitmap next to the values.
+     */
+    abstract static sealed class ColumnVector {
+        private final ColumnType type;
+        private final long[] nulls;
+
+        ColumnVector(ColumnType type, long[] nulls) {
+            this.type = type;
+            this.nulls = nulls;
+        }
+
+        ColumnType type() {
+            return type;
+        }
+
+        final boolean isNull(int row) {
+            return (nulls[row >>> 6] & (1L << row)) != 0;
+        }
+
+        /**
+         * @return key which is equal for equal non-null values, used to group rows
+         */
+        abstract long key(int row);
+
+        /**
+         * @return value of the row as returned by JDBC, null for null
+         */
+        abstract Object value(int row);
+
+        /**
+         * Compares values of two non-null rows in the order H2 sorts them.
+         */
+        abstract int compare(int first, int second);
+    }
+
+    static final class IntVector extends ColumnVector {
+        private final int[] values;
+
+        IntVector(int[] values, long[] nulls) {
+            super(ColumnType.INTEGER, nulls);
+            this.values = values;
+        }
+
+        int get(int row) {
+            return values[row];
+        }
+
+        @Override
+        long key(int row) {
+            return values[row];
+        }
+
+        @Override
+        Object value(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        int compare(int first, int second) {
+            return Integer.compare(values[first], values[second]);
+        }
+    }
+
+    static final class LongVector extends ColumnVector {
+        private final long[] values;
+
+        LongVector(long[] values, long[] nulls) {
+            super(ColumnType.BIGINT, nulls);
+            this.values = values;
+        }
+
+        long get(int row) {
+            return values[row];
+        }
+
+        @Override
+        long key(int row) {
+            return values[row];
+        }
+
+        @Override
+        Object value(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        int compare(int first, int second) {
+            return Long.compare(values[first], values[second]);
+        }
+    }
+
+    static final class DoubleVector extends ColumnVector {
+        private final double[] values;
+
+        DoubleVector(double[] values, long[] nulls) {
+            super(ColumnType.DOUBLE, nulls);
+            this.values = values;
+        }
+
+        double get(int row) {
+            return values[row];
+        }
+
+        @Override
+        long key(int row) {
+            return Double.doubleToLongBits(values[row]);
+        }
+
+        @Override
+        Object value(int row) {
+            return isNull(row) ? null : values[row];
+        }
+
+        @Override
+        int compare(int first, int second) {
+            return Double.compare(values[first], values[second]);
+        }
+    }
+
+    static final class StringVector extends ColumnVector {
+        private final int[] codes;
+        private final String[] dictionary;
+        // Position of every dictionary entry in sorted order, so rows are compared without touching the strings
+        private final int[] ranks;
+
+        StringVector(int[] codes, String[] dictionary, long[] nulls) {
+            super(ColumnType.VARCHAR, nulls);
+            this.codes = codes;
+            this.dictionary = dictionary;
+            Integer[] sorted = new Integer[dictionary.length];
+            Arrays.setAll(sorted, i -> i);
+            Arrays.sort(sorted, (first, second) -> dictionary[first].compareTo(dictionary[second]));
+            this.ranks = new int[dictionary.length];
+            for (int i = 0; i < sorted.length; i++) {
+                ranks[sorted[i]] = i;
+            }
+        }
+
+        int code(int row) {
+            return codes[row];
+        }
+
+        String[] dictionary() {
+            return dictionary;
+        }
+
+        @Override
+        long key(int row) {
+            return codes[row];
+        }
+
+        @Override
+        Object value(int row) {
+            return isNull(row) ? null : dictionary[codes[row]];
+        }
+
+        @Override
+        int compare(int first, int second) {
+            return Integer.compare(ranks[codes[first]], ranks[codes[second]]);
+        }
+    }
+
+    // Collects values of one column into growing arrays while the result set is read
+    private static final class ColumnBuilder {
+        private final ColumnType type;
+        private long[] nulls;
+        private int[] ints;
+        private long[] longs;
+        private double[] doubles;
+        private Map<String, Integer> codes;
+        private List<String> dictionary;
+
+        ColumnBuilder(ColumnType type, int capacity) {
+            this.type = type;
+            this.nulls = new long[(capacity + 63) >>> 6];
+            switch (type) {
+                case INTEGER -> ints = new int[capacity];
+                case BIGINT -> longs = new long[capacity];
+                case DOUBLE -> doubles = new double[capacity];
+                case VARCHAR -> {
+                    ints = new int[capacity];
+                    codes = new HashMap<>();
+                    dictionary = new ArrayList<>();
+                }
+            }
+        }
+
+        void add(ResultSet resultSet, int index, int row) throws SQLException {
+            ensureCapacity(row + 1);
+            boolean isNull;
+            switch (type) {
+                case INTEGER -> {
+                    ints[row] = resultSet.getInt(index);
+                    isNull = resultSet.wasNull();
+                }
+                case BIGINT -> {
+                    longs[row] = resultSet.getLong(index);
+                    isNull = resultSet.wasNull();
+                }
+                case DOUBLE -> {
+                    doubles[row] = resultSet.getDouble(index);
+                    isNull = resultSet.wasNull();
+                }
+                default -> {
+                    String value = resultSet.getString(index);
+                    isNull = value == null;
+                    if (!isNull) {
+                        ints[row] = codes.computeIfAbsent(value, key -> {
+                            dictionary.add(key);
+                            return dictionary.size() - 1;
+                        });
+                    }
+                }
+            }
+            if (isNull) {
+                nulls[row >>> 6] |= 1L << row;
+            }
+        }
+
+        ColumnVector build(int rows) {
+            long[] rowNulls = Arrays.copyOf(nulls, (rows + 63) >>> 6);
+            return switch (type) {
+                case INTEGER -> new IntVector(Arrays.copyOf(ints, rows), rowNulls);
+                case BIGINT -> new LongVector(Arrays.copyOf(longs, rows), rowNulls);
+                case DOUBLE -> new DoubleVector(Arrays.copyOf(doubles, rows), rowNulls);
+                case VARCHAR -> new StringVector(Arrays.copyOf(ints, rows), dictionary.toArray(String[]::new), rowNulls);
+            };
+        }
+
+        private void ensureCapacity(int rows) {
+            int capacity = switch (type) {
+                case BIGINT -> longs.length;
+                case DOUBLE -> doubles.length;
+                default -> ints.length;
+            };
+            if (rows <= capacity) {
+                return;
+            }
+            int grown = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(rows, capacity * 2L));
+            switch (type) {
+                case BIGINT -> longs = Arrays.copyOf(longs, grown);
+                case DOUBLE -> doubles = Arrays.copyOf(doubles, grown);
+                default -> ints = Arrays.copyOf(ints, grown);
+            }
+            nulls = Arrays.copyOf(nulls, (grown + 63) >>> 6);
+        }
+    }
+}
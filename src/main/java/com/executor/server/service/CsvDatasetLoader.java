@@ -0,0 +1,273 @@
+package com.executor.server.service;
+
+import com.executor.QueryExecutorConfig;
+import com.executor.server.repository.ColumnType;
+import com.executor.server.repository.DatasetRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Loads CSV files into dataset tables. The file is memory-mapped and split into chunks on record boundaries,
+ * then chunks are parsed in parallel twice: once to infer column types (INTEGER, BIGINT, DOUBLE, VARCHAR)
+ * and count rows, and once to insert the typed rows in JDBC batches, each chunk over its own connection.
+ * The first record of the file holds the column names.
+ */
+@Service
+public class CsvDatasetLoader {
+    private static final Logger log = LoggerFactory.getLogger(CsvDatasetLoader.class);
+    private static final Pattern DATASET_NAME = Pattern.compile("[A-Za-z][A-Za-z0-9_]{0,59}");
+    // A mapped buffer is indexed by int, so no chunk may get near 2 GB
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+    private static final int SCAN_WINDOW_BYTES = 64 * 1024;
+
+    private record Chunk(long start, long end) {
+    }
+
+    private record ChunkScan(ColumnType[] types, long rows) {
+    }
+
+    private final DatasetRepository datasetRepository;
+    private final DatasetPublisher datasetPublisher;
+    private final ForkJoinPool loadPool;
+    private final long chunkBytes;
+    private final int batchSize;
+
+    public CsvDatasetLoader(DatasetRepository datasetRepository, DatasetPublisher datasetPublisher,
+                            @Qualifier(QueryExecutorConfig.DATASET_LOAD_POOL) ForkJoinPool loadPool,
+                            @Value("${datasets.load.chunk-size:8MB}") DataSize chunkSize,
+                            @Value("${datasets.load.batch-size:1000}") int batchSize) {
+        this.datasetRepository = datasetRepository;
+        this.datasetPublisher = datasetPublisher;
+        this.loadPool = loadPool;
+        this.chunkBytes = Math.max(1, Math.min(chunkSize.toBytes(), MAX_CHUNK_BYTES));
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Loads the resource as the dataset, replacing its previous version. Resources which are not files,
+     * e.g. inside a jar, are copied to a temporary file first so they can be mapped.
+     */
+    public DatasetLoadResult load(String name, Resource resource) throws DatasetException {
+        try {
+            if (resource.isFile()) {
+                return load(name, resource.getFile().toPath());
+            }
+            Path copy = Files.createTempFile("dataset-", ".csv");
+            try (InputStream in = resource.getInputStream()) {
+                Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+                return load(name, copy);
+            } finally {
+                Files.deleteIfExists(copy);
+            }
+        } catch (IOException e) {
+            throw new DatasetException("Can't read dataset " + resource.getDescription(), e);
+        }
+    }
+
+    /**
+     * Loads the file as the dataset, replacing its previous version once all rows are inserted.
+     */
+    public DatasetLoadResult load(String name, Path file) throws DatasetException {
+        checkDatasetName(datasetRepository, name);
+
+        long startedAt = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long headerEnd = recordEnd(channel, 0, false);
+            List<String> header = readHeader(channel, headerEnd);
+            List<String> columns = DatasetRepository.columnNames(header);
+            List<Chunk> chunks = split(channel, headerEnd);
+
+            List<ChunkScan> scans = loadPool.submit(() -> chunks.parallelStream()
+                    .map(chunk -> scan(channel, chunk, columns.size()))
+                    .toList()).join();
+            List<ColumnType> types = mergeTypes(scans, columns.size());
+            long rows = scans.stream().mapToLong(ChunkScan::rows).sum();
+
+            String staging = datasetRepository.createStagingTable(name, columns, types);
+            try {
+                loadPool.submit(() -> chunks.parallelStream().forEach(chunk -> insert(channel, chunk, staging, types))).join();
+                datasetPublisher.publish(staging, name, rows);
+            } catch (RuntimeException e) {
+                datasetRepository.dropTable(staging);
+                throw e;
+            }
+
+            Map<String, ColumnType> columnTypes = new LinkedHashMap<>();
+            for (int i = 0; i < columns.size(); i++) {
+                columnTypes.put(columns.get(i), types.get(i));
+            }
+            DatasetLoadResult result = DatasetLoadResult.of(name, columnTypes, rows, System.nanoTime() - startedAt);
+            log.info("Loaded dataset {}: {} rows, {} columns, {} chunks in {} ms ({} rows/s)",
+                    name, rows, columns.size(), chunks.size(), result.elapsedMs(), result.rowsPerSecond());
+            return result;
+        } catch (IOException | UncheckedIOException e) {
+            throw new DatasetException("Can't read dataset file " + file, e);
+        }
+    }
+
+    /**
+     * @throws DatasetException if the name is not a valid dataset name, or belongs to a table which is not a dataset
+     */
+    static void checkDatasetName(DatasetRepository datasetRepository, String name) {
+        if (name == null || !DATASET_NAME.matcher(name).matches()) {
+            throw new DatasetException("Dataset name should start with a letter and contain only letters, digits and underscores");
+        }
+        if (!datasetRepository.isReplaceable(name)) {
+            throw new DatasetException("Table " + name + " exists and is not a dataset");
+        }
+    }
+
+    private List<String> readHeader(FileChannel channel, long headerEnd) throws IOException {
+        if (headerEnd == 0) {
+            throw new DatasetException("Dataset file is empty");
+        }
+        List<String> header = new ArrayList<>();
+        new CsvRecordReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, headerEnd)).next(header);
+        return header;
+    }
+
+    // Cuts the data into chunks of about chunkBytes. A cut point is moved forward to the next record start,
+    // found from whether the point is inside quotes: that follows from the parity of quotes before it,
+    // counted for all chunks in parallel, so no thread has to read the file from the start
+    private List<Chunk> split(FileChannel channel, long dataStart) throws IOException {
+        long size = channel.size();
+        int count = (int) Math.max(1, (size - dataStart + chunkBytes - 1) / chunkBytes);
+
+        boolean[] oddQuotes = new boolean[count];
+        loadPool.submit(() -> IntStream.range(0, count).parallel().forEach(i -> {
+            long start = dataStart + i * chunkBytes;
+            oddQuotes[i] = countQuotes(map(channel, new Chunk(start, Math.min(start + chunkBytes, size)))) % 2 == 1;
+        })).join();
+
+        long[] bounds = new long[count + 1];
+        bounds[0] = dataStart;
+        bounds[count] = size;
+        boolean inQuotes = false;
+        for (int i = 1; i < count; i++) {
+            inQuotes ^= oddQuotes[i - 1];
+            bounds[i] = Math.max(bounds[i - 1], recordEnd(channel, dataStart + i * chunkBytes, inQuotes));
+        }
+
+        List<Chunk> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (bounds[i] < bounds[i + 1]) {
+                chunks.add(new Chunk(bounds[i], bounds[i + 1]));
+            }
+        }
+        return chunks;
+    }
+
+    // Position after the first line break outside quotes at or after from, or end of file
+    private static long recordEnd(FileChannel channel, long from, boolean inQuotes) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(SCAN_WINDOW_BYTES);
+        long position = from;
+        while (channel.read(window.clear(), position) > 0) {
+            window.flip();
+            while (window.hasRemaining()) {
+                byte b = window.get();
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes) {
+                    return position + window.position();
+                }
+            }
+            position += window.limit();
+        }
+        return channel.size();
+    }
+
+    private static long countQuotes(ByteBuffer buffer) {
+        long quotes = 0;
+        while (buffer.hasRemaining()) {
+            if (buffer.get() == '"') {
+                quotes++;
+            }
+        }
+        return quotes;
+    }
+
+    private static ChunkScan scan(FileChannel channel, Chunk chunk, int columnCount) {
+        ColumnType[] types = new ColumnType[columnCount];
+        long rows = 0;
+        CsvRecordReader reader = new CsvRecordReader(map(channel, chunk));
+        List<String> fields = new ArrayList<>(columnCount);
+        while (reader.next(fields)) {
+            checkWidth(fields, columnCount, chunk, reader);
+            for (int i = 0; i < columnCount; i++) {
+                types[i] = ColumnType.widest(types[i], ColumnType.of(fields.get(i)));
+            }
+            rows++;
+        }
+        return new ChunkScan(types, rows);
+    }
+
+    private static List<ColumnType> mergeTypes(List<ChunkScan> scans, int columnCount) {
+        ColumnType[] types = new ColumnType[columnCount];
+        for (ChunkScan scan : scans) {
+            for (int i = 0; i < columnCount; i++) {
+                types[i] = ColumnType.widest(types[i], scan.types()[i]);
+            }
+        }
+        // Columns without any value stay text
+        return Arrays.stream(types).map(type -> type == null ? ColumnType.VARCHAR : type).toList();
+    }
+
+    private void insert(FileChannel channel, Chunk chunk, String table, List<ColumnType> types) {
+        CsvRecordReader reader = new CsvRecordReader(map(channel, chunk));
+        List<String> fields = new ArrayList<>(types.size());
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        while (reader.next(fields)) {
+            Object[] row = new Object[types.size()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = types.get(i).parse(fields.get(i));
+            }
+            batch.add(row);
+            if (batch.size() == batchSize) {
+                datasetRepository.insertRows(table, types, batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            datasetRepository.insertRows(table, types, batch);
+        }
+    }
+
+    private static void checkWidth(List<String> fields, int columnCount, Chunk chunk, CsvRecordReader reader) {
+        if (fields.size() != columnCount) {
+            throw new DatasetException("Record at byte " + (chunk.start() + reader.recordStart()) + " has " + fields.size()
+                    + " fields, header has " + columnCount);
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, Chunk chunk) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, chunk.start(), chunk.end() - chunk.start());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
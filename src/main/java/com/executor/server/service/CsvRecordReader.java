@@ -0,0 +1,124 @@
+package com.executor.server.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads CSV records (RFC 4180) of UTF-8 bytes: fields separated by commas, optionally quoted with {@code "}
+ * and quotes inside doubled, records ending with LF or CRLF. Empty fields are read as null, blank lines are skipped.
+ * Input is either a buffer holding whole records or a stream read in blocks, keeping only the current record.
+ */
+final class CsvRecordReader implements DatasetRecordReader {
+    private static final int STREAM_BLOCK_BYTES = 64 * 1024;
+
+    private final ByteBuffer buffer;
+    // Refills the buffer once it is consumed, null if the buffer holds the whole input
+    private final ReadableByteChannel source;
+    private long bufferOffset;
+    private byte[] field = new byte[64];
+    private int length;
+    private long recordStart;
+
+    CsvRecordReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.source = null;
+    }
+
+    CsvRecordReader(InputStream in) {
+        this.buffer = ByteBuffer.allocate(STREAM_BLOCK_BYTES).flip();
+        this.source = Channels.newChannel(in);
+    }
+
+    @Override
+    public boolean next(List<String> fields) {
+        fields.clear();
+        while (hasByte() && (peek() == '\n' || peek() == '\r')) {
+            buffer.get();
+        }
+        if (!hasByte()) {
+            return false;
+        }
+
+        recordStart = bufferOffset + buffer.position();
+        length = 0;
+        boolean quoted = false;
+        while (hasByte()) {
+            byte b = buffer.get();
+            if (quoted) {
+                if (b != '"') {
+                    append(b);
+                } else if (hasByte() && peek() == '"') {
+                    append(buffer.get());
+                } else {
+                    quoted = false;
+                }
+            } else if (b == '"') {
+                quoted = true;
+            } else if (b == ',') {
+                fields.add(takeField());
+            } else if (b == '\n') {
+                break;
+            } else {
+                append(b);
+            }
+        }
+        if (length > 0 && field[length - 1] == '\r') {
+            length--;
+        }
+        fields.add(takeField());
+        return true;
+    }
+
+    /**
+     * @return offset in the input where the last record read starts
+     */
+    long recordStart() {
+        return recordStart;
+    }
+
+    private boolean hasByte() {
+        return buffer.hasRemaining() || refill();
+    }
+
+    private byte peek() {
+        return buffer.get(buffer.position());
+    }
+
+    private boolean refill() {
+        if (source == null) {
+            return false;
+        }
+        try {
+            bufferOffset += buffer.limit();
+            buffer.clear();
+            int read;
+            do {
+                read = source.read(buffer);
+            } while (read == 0);
+            buffer.flip();
+            return read > 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void append(byte b) {
+        if (length == field.length) {
+            field = Arrays.copyOf(field, length * 2);
+        }
+        field[length++] = b;
+    }
+
+    private String takeField() {
+        String value = length == 0 ? null : new String(field, 0, length, StandardCharsets.UTF_8);
+        length = 0;
+        return value;
+    }
+}
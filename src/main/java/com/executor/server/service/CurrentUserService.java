@@ -0,0 +1,37 @@
+package com.executor.server.service;
+
+import com.executor.entity.User;
+import com.executor.server.repository.UserRepository;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * User the current request is authenticated as, by Basic credentials or a bearer token.
+ * Empty outside of an authenticated request, e.g. in background tasks.
+ */
+@Service
+public class CurrentUserService {
+
+    private final UserRepository userRepository;
+
+    public CurrentUserService(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    public Optional<Long> getUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
+            return Optional.empty();
+        }
+        return userRepository.findIdByUsername(authentication.getName());
+    }
+
+    // Reference only, the user row isn't loaded to set it as an owner
+    public Optional<User> getUser() {
+        return getUserId().map(userRepository::getReferenceById);
+    }
+}
@@ -0,0 +1,6 @@
+package com.executor.server.service;
+
+public enum DatasetFormat {
+    CSV,
+    NDJSON
+}
@@ -0,0 +1,217 @@
+package com.executor.server.service;
+
+import com.executor.entity.DatasetIngestionJob;
+import com.executor.entity.QueryExecutionJob;
+import com.executor.server.repository.ColumnType;
+import com.executor.server.repository.DatasetIngestionJobRepository;
+import com.executor.server.repository.DatasetRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Streams uploaded datasets into a new table version while the body is still arriving. Records are parsed
+ * one at a time and inserted in JDBC batches, a bounded number of batches per transaction, so neither the
+ * body nor the rows are ever held in memory as a whole. Column types are inferred from the first batch and
+ * widened in place when later values don't fit.
+ */
+@Service
+public class DatasetIngestionService {
+    private static final Logger log = LoggerFactory.getLogger(DatasetIngestionService.class);
+
+    private final DatasetRepository datasetRepository;
+    private final DatasetIngestionJobRepository jobRepository;
+    private final DatasetPublisher datasetPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int batchesPerTransaction;
+
+    public DatasetIngestionService(DatasetRepository datasetRepository, DatasetIngestionJobRepository jobRepository,
+                                   DatasetPublisher datasetPublisher, PlatformTransactionManager transactionManager,
+                                   ObjectMapper objectMapper,
+                                   @Value("${datasets.ingest.batch-size:1000}") int batchSize,
+                                   @Value("${datasets.ingest.batches-per-transaction:50}") int batchesPerTransaction) {
+        this.datasetRepository = datasetRepository;
+        this.jobRepository = jobRepository;
+        this.datasetPublisher = datasetPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.batchesPerTransaction = batchesPerTransaction;
+    }
+
+    /**
+     * Reads the body into a new version of the dataset, published once the whole body is loaded.
+     * Invalid data doesn't throw, it fails the returned job and keeps the previous version.
+     *
+     * @throws DatasetException if the name can't be used for a dataset
+     */
+    public DatasetIngestionJob ingest(String name, DatasetFormat format, InputStream body) throws DatasetException {
+        CsvDatasetLoader.checkDatasetName(datasetRepository, name);
+        DatasetIngestionJob job = jobRepository.save(new DatasetIngestionJob(name));
+        long startedAt = System.nanoTime();
+
+        Upload upload = new Upload();
+        try {
+            upload.start(name, format == DatasetFormat.NDJSON ? new NdjsonRecordReader(objectMapper, body) : new CsvRecordReader(body));
+            while (upload.hasRows()) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    for (int i = 0; i < batchesPerTransaction && upload.hasRows(); i++) {
+                        upload.insertBatch();
+                    }
+                    jobRepository.updateRowsLoaded(job.getId(), upload.rows);
+                });
+            }
+            upload.finish();
+            datasetPublisher.publish(upload.staging, name, upload.rows);
+
+            job.setStatus(QueryExecutionJob.JobStatus.COMPLETED);
+            long elapsedNanos = System.nanoTime() - startedAt;
+            log.info("Ingested dataset {}: {} rows in {} ms ({} rows/s)", name, upload.rows, elapsedNanos / 1_000_000,
+                    elapsedNanos == 0 ? upload.rows : (long) (upload.rows * 1e9 / elapsedNanos));
+        } catch (RuntimeException e) {
+            if (upload.staging != null) {
+                datasetRepository.dropTable(upload.staging);
+            }
+            job.setStatus(QueryExecutionJob.JobStatus.FAILED);
+            job.setErrorMessage(errorMessage(e));
+            log.warn("Ingestion of dataset {} failed after {} rows", name, upload.rows, e);
+        }
+
+        job.setRowsLoaded(upload.rows);
+        job.setFinishedAt(LocalDateTime.now());
+        return jobRepository.save(job);
+    }
+
+    public Optional<DatasetIngestionJob> getJob(Long id) {
+        return jobRepository.findById(id);
+    }
+
+    /**
+     * @return latest 100 uploads of the dataset, newest first
+     */
+    public List<DatasetIngestionJob> getJobs(String name) {
+        return jobRepository.findTop100ByDatasetNameOrderByCreatedAtDescIdDesc(name);
+    }
+
+    private static String errorMessage(RuntimeException e) {
+        if (e instanceof UncheckedIOException) {
+            return "Upload was interrupted: " + e.getCause().getMessage();
+        }
+        if (e instanceof DataAccessException dataAccessException) {
+            return dataAccessException.getMostSpecificCause().getMessage();
+        }
+        return e.getMessage();
+    }
+
+    // State of one upload: the table being filled, its current column types and the batch read ahead
+    private final class Upload {
+        private DatasetRecordReader reader;
+        private int columnCount;
+        private List<String> columns;
+        private ColumnType[] tableTypes;
+        private boolean[] hasValues;
+        private String staging;
+        private List<String[]> pending;
+        private long recordsRead;
+        private long rows;
+
+        void start(String name, DatasetRecordReader reader) {
+            this.reader = reader;
+            List<String> header = new ArrayList<>();
+            if (!reader.next(header)) {
+                throw new DatasetException("Dataset is empty");
+            }
+            columns = DatasetRepository.columnNames(header);
+            columnCount = columns.size();
+            hasValues = new boolean[columnCount];
+            pending = readBatch();
+
+            // Columns without values so far start narrowest, later values widen them
+            ColumnType[] types = batchTypes(pending);
+            tableTypes = Arrays.stream(types).map(type -> type == null ? ColumnType.INTEGER : type).toArray(ColumnType[]::new);
+            staging = datasetRepository.createStagingTable(name, columns, List.of(tableTypes));
+        }
+
+        boolean hasRows() {
+            return !pending.isEmpty();
+        }
+
+        void insertBatch() {
+            List<String[]> batch = pending;
+            ColumnType[] types = batchTypes(batch);
+            for (int i = 0; i < columnCount; i++) {
+                if (types[i] != null) {
+                    hasValues[i] = true;
+                    widen(i, types[i]);
+                }
+            }
+
+            List<Object[]> rowValues = new ArrayList<>(batch.size());
+            for (String[] record : batch) {
+                Object[] values = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    values[i] = tableTypes[i].parse(record[i]);
+                }
+                rowValues.add(values);
+            }
+            datasetRepository.insertRows(staging, List.of(tableTypes), rowValues);
+            rows += batch.size();
+            pending = readBatch();
+        }
+
+        // Columns which never had a value stay text, like in datasets loaded from files
+        void finish() {
+            for (int i = 0; i < columnCount; i++) {
+                if (!hasValues[i]) {
+                    widen(i, ColumnType.VARCHAR);
+                }
+            }
+        }
+
+        private void widen(int column, ColumnType type) {
+            ColumnType widened = ColumnType.widest(tableTypes[column], type);
+            if (widened != tableTypes[column]) {
+                datasetRepository.widenColumn(staging, columns.get(column), widened);
+                tableTypes[column] = widened;
+            }
+        }
+
+        private List<String[]> readBatch() {
+            List<String[]> batch = new ArrayList<>(batchSize);
+            List<String> fields = new ArrayList<>(columnCount);
+            while (batch.size() < batchSize && reader.next(fields)) {
+                recordsRead++;
+                if (fields.size() != columnCount) {
+                    throw new DatasetException("Record " + recordsRead + " has " + fields.size() + " fields, header has " + columnCount);
+                }
+                batch.add(fields.toArray(String[]::new));
+            }
+            return batch;
+        }
+
+        private ColumnType[] batchTypes(List<String[]> batch) {
+            ColumnType[] types = new ColumnType[columnCount];
+            for (String[] record : batch) {
+                for (int i = 0; i < columnCount; i++) {
+                    types[i] = ColumnType.widest(types[i], ColumnType.of(record[i]));
+                }
+            }
+            return types;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.executor.server.service;
+
+import com.executor.server.repository.ColumnType;
+
+import java.util.Map;
+
+/**
+ * Outcome of a dataset load: columns with their inferred types, in table order, and load throughput.
+ */
+public record DatasetLoadResult(String name, Map<String, ColumnType> columns, long rows, long elapsedMs, long rowsPerSecond) {
+
+    static DatasetLoadResult of(String name, Map<String, ColumnType> columns, long rows, long elapsedNanos) {
+        long elapsedMs = elapsedNanos / 1_000_000;
+        long rowsPerSecond = elapsedNanos == 0 ? rows : (long) (rows * 1e9 / elapsedNanos);
+        return new DatasetLoadResult(name, columns, rows, elapsedMs, rowsPerSecond);
+    }
+}
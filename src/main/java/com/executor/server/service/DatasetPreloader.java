@@ -0,0 +1,108 @@
+package com.executor.server.service;
+
+import com.executor.server.repository.DatasetRepository;
+import com.executor.server.repository.DatasetVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Loads the configured dataset at startup, before the application reports itself ready.
+ * The location is a Spring resource, so it doesn't depend on the working directory.
+ * <p>
+ * With a file database the dataset table survives restarts, and it is reused as long as the source
+ * looks unchanged: same size and modification time skip reading the file at all, so startup doesn't
+ * depend on the dataset size; a new modification time alone is checked against the SHA-256 of the file.
+ */
+@Component
+public class DatasetPreloader implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(DatasetPreloader.class);
+
+    private final CsvDatasetLoader datasetLoader;
+    private final DatasetRepository datasetRepository;
+    private final ResourceLoader resourceLoader;
+    private final String name;
+    private final String location;
+
+    public DatasetPreloader(CsvDatasetLoader datasetLoader, DatasetRepository datasetRepository, ResourceLoader resourceLoader,
+                            @Value("${datasets.preload.name:Titanic}") String name,
+                            @Value("${datasets.preload.location:classpath:/static/titanic.csv}") String location) {
+        this.datasetLoader = datasetLoader;
+        this.datasetRepository = datasetRepository;
+        this.resourceLoader = resourceLoader;
+        this.name = name;
+        this.location = location;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        List<String> recovered = datasetRepository.recoverStagingTables();
+        if (!recovered.isEmpty()) {
+            log.info("Finished publishing datasets {} interrupted by the previous shutdown", recovered);
+        }
+        if (location.isBlank()) {
+            return;
+        }
+
+        Resource resource = resourceLoader.getResource(location);
+        long size = resource.contentLength();
+        long modified = lastModified(resource);
+        Optional<DatasetVersion> current = datasetRepository.tableExists(name) ? datasetRepository.findVersion(name) : Optional.empty();
+        if (current.isPresent()) {
+            DatasetVersion version = current.get();
+            if (modified > 0 && version.isPreloadedFrom(location, size, modified)) {
+                log.info("Reusing dataset {} version {} ({} rows), {} is unchanged", name, version.version(), version.rowCount(), location);
+                return;
+            }
+            if (location.equals(version.sourceLocation()) && version.sourceSize() != null && version.sourceSize() == size) {
+                String checksum = checksum(resource);
+                if (checksum.equals(version.sourceChecksum())) {
+                    log.info("Reusing dataset {} version {} ({} rows), {} has the same content", name, version.version(),
+                            version.rowCount(), location);
+                    datasetRepository.recordSource(name, location, size, modified, checksum);
+                    return;
+                }
+            }
+        }
+
+        datasetLoader.load(name, resource);
+        datasetRepository.recordSource(name, location, size, modified, checksum(resource));
+    }
+
+    // Resources inside a jar may not know their modification time, their checksum is compared instead
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String checksum(Resource resource) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (InputStream in = new DigestInputStream(resource.getInputStream(), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,34 @@
+package com.executor.server.service;
+
+import com.executor.server.repository.DatasetRepository;
+import org.springframework.stereotype.Service;
+
+/**
+ * Makes a fully loaded staging table the current version of a dataset and counts the version in the
+ * dataset catalog. Columnar copies and materialized results of the dataset are evicted, and the new version
+ * is passed to {@link TableVersions} so cached results read from the old rows become misses; the next execution
+ * sees the new rows.
+ */
+@Service
+public class DatasetPublisher {
+
+    private final DatasetRepository datasetRepository;
+    private final TableVersions tableVersions;
+    private final ColumnarQueryEngine columnarQueryEngine;
+    private final MaterializedQueryService materializedQueryService;
+
+    public DatasetPublisher(DatasetRepository datasetRepository, TableVersions tableVersions,
+                            ColumnarQueryEngine columnarQueryEngine, MaterializedQueryService materializedQueryService) {
+        this.datasetRepository = datasetRepository;
+        this.tableVersions = tableVersions;
+        this.columnarQueryEngine = columnarQueryEngine;
+        this.materializedQueryService = materializedQueryService;
+    }
+
+    public void publish(String staging, String name, long rows) {
+        long version = datasetRepository.replaceTable(staging, name, rows);
+        columnarQueryEngine.evict(name);
+        materializedQueryService.evictReferencing(name);
+        tableVersions.published(name, version);
+    }
+}
@@ -0,0 +1,16 @@
+package com.executor.server.service;
+
+import java.util.List;
+
+/**
+ * Reads records of a dataset one at a time. The first record holds the column names.
+ */
+interface DatasetRecordReader {
+
+    /**
+     * Replaces content of {@code fields} with the next record, missing values are null.
+     *
+     * @return false if there are no more records
+     */
+    boolean next(List<String> fields);
+}
@@ -0,0 +1,82 @@
+package com.executor.server.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent executions of the same query: the first caller for a key computes the result,
+ * callers arriving while it runs wait for that computation instead of starting their own.
+ */
+@Component
+public class InFlightQueryRegistry {
+    private final ConcurrentMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    public String execute(String key, Callable<String> computation) throws Exception {
+        return execute(key, new CompletableFuture<>(), computation);
+    }
+
+    /**
+     * @param abandoned completed when the caller no longer needs the result: a waiting caller then stops waiting
+     *                  with a {@link QueryCancelledException}, the computation itself goes on for the others
+     */
+    public String execute(String key, CompletableFuture<?> abandoned, Callable<String> computation) throws Exception {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            return await(existing, abandoned);
+        }
+
+        try {
+            String result = computation.call();
+            pending.complete(result);
+            return result;
+        } catch (Throwable e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Only the future registered by this call is removed, a newer one for the same key stays
+            inFlight.remove(key, pending);
+        }
+    }
+
+    public boolean isInFlight(String key) {
+        return inFlight.containsKey(key);
+    }
+
+    // Number of callers currently waiting for the running computation of the key
+    int waitingCallers(String key) {
+        CompletableFuture<String> future = inFlight.get(key);
+        return future == null ? 0 : future.getNumberOfDependents();
+    }
+
+    private String await(CompletableFuture<String> future, CompletableFuture<?> abandoned) throws Exception {
+        try {
+            CompletableFuture.anyOf(future, abandoned).get();
+        } catch (ExecutionException e) {
+            // Failure of the computation is rethrown below
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+        if (!future.isDone()) {
+            throw new QueryCancelledException("Job was cancelled");
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw new QueryExecutionJobException("Shared query execution failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.executor.server.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Lets clients wait for a job to finish without polling its status.
+ * <p>
+ * Waiters are plain futures, nothing blocks while waiting. A waiter has to be completed or cancelled
+ * by its owner (e.g. on timeout) if the job never finishes, which removes it from the notifier.
+ */
+@Component
+public class JobCompletionNotifier {
+    // Sets are only touched inside compute methods of the map, which serialize access per key
+    private final ConcurrentMap<Long, Set<CompletableFuture<JobFinishedEvent>>> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * Subscribe before reading the job status, otherwise a job finishing in between is missed.
+     */
+    public CompletableFuture<JobFinishedEvent> awaitFinish(Long jobId) {
+        CompletableFuture<JobFinishedEvent> waiter = new CompletableFuture<>();
+        waiters.compute(jobId, (id, jobWaiters) -> {
+            Set<CompletableFuture<JobFinishedEvent>> subscribed = jobWaiters == null ? new HashSet<>() : jobWaiters;
+            subscribed.add(waiter);
+            return subscribed;
+        });
+        waiter.whenComplete((event, e) -> release(jobId, waiter));
+        return waiter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onJobFinished(JobFinishedEvent event) {
+        Set<CompletableFuture<JobFinishedEvent>> finished = waiters.remove(event.jobId());
+        if (finished != null) {
+            finished.forEach(waiter -> waiter.complete(event));
+        }
+    }
+
+    int waitingClients(Long jobId) {
+        Set<CompletableFuture<JobFinishedEvent>> jobWaiters = waiters.get(jobId);
+        return jobWaiters == null ? 0 : jobWaiters.size();
+    }
+
+    private void release(Long jobId, CompletableFuture<JobFinishedEvent> waiter) {
+        waiters.computeIfPresent(jobId, (id, jobWaiters) -> {
+            jobWaiters.remove(waiter);
+            return jobWaiters.isEmpty() ? null : jobWaiters;
+        });
+    }
+}
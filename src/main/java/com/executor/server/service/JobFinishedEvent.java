@@ -0,0 +1,9 @@
+package com.executor.server.service;
+
+import com.executor.entity.QueryExecutionJob;
+
+/**
+ * Published when a job reaches a final status, delivered to listeners once the status is visible to readers.
+ */
+public record JobFinishedEvent(Long jobId, QueryExecutionJob.JobStatus status) {
+}
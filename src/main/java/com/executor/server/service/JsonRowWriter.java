@@ -0,0 +1,46 @@
+package com.executor.server.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Writes every fetched row as a JSON array of column values, in the same shape
+ * {@link QueryExecutionService} produces for stored results.
+ */
+class JsonRowWriter implements RowCallbackHandler {
+    private final JsonGenerator generator;
+    private int columnCount = -1;
+    private long rowCount;
+
+    JsonRowWriter(JsonGenerator generator) {
+        this.generator = generator;
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        if (columnCount < 0) {
+            columnCount = rs.getMetaData().getColumnCount();
+        }
+
+        try {
+            generator.writeStartArray();
+            for (int i = 1; i <= columnCount; i++) {
+                generator.writeObject(JdbcUtils.getResultSetValue(rs, i));
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        rowCount++;
+    }
+
+    long getRowCount() {
+        return rowCount;
+    }
+}
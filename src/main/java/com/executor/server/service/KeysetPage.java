@@ -0,0 +1,25 @@
+package com.executor.server.service;
+
+import com.executor.server.repository.KeysetCursor;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated listing. {@code nextCursor} is null on the last page.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record KeysetPage<T>(List<T> items, String nextCursor) {
+
+    /**
+     * @param rows up to {@code limit + 1} rows, the extra one only tells that another page exists
+     */
+    static <T> KeysetPage<T> of(List<T> rows, int limit, Function<T, KeysetCursor> keyOf) {
+        if (rows.size() <= limit) {
+            return new KeysetPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new KeysetPage<>(List.copyOf(items), keyOf.apply(items.getLast()).encode());
+    }
+}
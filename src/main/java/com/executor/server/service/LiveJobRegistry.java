@@ -0,0 +1,128 @@
+package com.executor.server.service;
+
+import com.executor.entity.QueryExecutionJob;
+import com.executor.server.repository.JobStateRepository;
+import com.executor.server.repository.JobStatusView;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Source of truth for the state of jobs that are still in flight.
+ * <p>
+ * Status transitions are compare-and-set on the map and don't touch the database. Changed jobs are
+ * written in batches by {@link #flush()}; once the final state of a job is written, the job is dropped
+ * from memory and read from the database again. States not yet flushed are lost on a crash or restart,
+ * so jobs left PENDING or RUNNING in the database are marked FAILED once at startup: nothing runs them anymore.
+ */
+@Component
+public class LiveJobRegistry implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(LiveJobRegistry.class);
+    static final String INTERRUPTED_MESSAGE = "Interrupted by restart";
+
+    private final ConcurrentMap<Long, JobStatusView> jobs = new ConcurrentHashMap<>();
+    private final Set<Long> dirtyJobs = ConcurrentHashMap.newKeySet();
+    private final JobStateRepository jobStateRepository;
+
+    public LiveJobRegistry(JobStateRepository jobStateRepository) {
+        this.jobStateRepository = jobStateRepository;
+    }
+
+    // Runs once the schema exists and before the web server accepts requests, so no job of this run is touched
+    @Override
+    public void afterSingletonsInstantiated() {
+        int interrupted = jobStateRepository.failActiveJobs(INTERRUPTED_MESSAGE);
+        if (interrupted > 0) {
+            log.info("Marked {} jobs left unfinished by the previous run as failed", interrupted);
+        }
+    }
+
+    public void register(JobStatusView job) {
+        jobs.put(job.id(), job);
+    }
+
+    public void remove(Long jobId) {
+        jobs.remove(jobId);
+        dirtyJobs.remove(jobId);
+    }
+
+    public Optional<JobStatusView> get(Long jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    public boolean isActive(Long jobId) {
+        JobStatusView job = jobs.get(jobId);
+        return job != null && !job.status().isFinished();
+    }
+
+    /**
+     * Moves the job to {@code status} if it is currently in one of the {@code expected} statuses.
+     *
+     * @return false if the job is not live or another transition got there first
+     */
+    public boolean transition(Long jobId, Set<QueryExecutionJob.JobStatus> expected, QueryExecutionJob.JobStatus status,
+                              String errorMessage, Long resultRowCount) {
+        while (true) {
+            JobStatusView current = jobs.get(jobId);
+            if (current == null || !expected.contains(current.status())) {
+                return false;
+            }
+
+            JobStatusView next = new JobStatusView(current.id(), current.sourceQueryId(), status, errorMessage,
+                    current.createdAt(), resultRowCount);
+            if (jobs.replace(jobId, current, next)) {
+                dirtyJobs.add(jobId);
+                return true;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${query.jobs.flush-interval-ms:200}")
+    public synchronized void flush() {
+        List<JobStatusView> batch = new ArrayList<>();
+        for (Iterator<Long> iterator = dirtyJobs.iterator(); iterator.hasNext(); ) {
+            Long jobId = iterator.next();
+            iterator.remove();
+            JobStatusView job = jobs.get(jobId);
+            if (job != null) {
+                batch.add(job);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jobStateRepository.updateStates(batch);
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush state of {} jobs, retrying with the next flush", batch.size(), e);
+            batch.forEach(job -> dirtyJobs.add(job.id()));
+            return;
+        }
+
+        // Final states are in the database now, jobs changed meanwhile stay until their next flush
+        batch.stream()
+                .filter(job -> job.status().isFinished())
+                .forEach(job -> jobs.remove(job.id(), job));
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    int liveJobs() {
+        return jobs.size();
+    }
+}
@@ -0,0 +1,14 @@
+package com.executor.server.service;
+
+import com.executor.entity.StoredQuery;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Materialization of a stored query: its mode, executions counted so far, and if a result is kept,
+ * when it was computed and from which dataset versions.
+ */
+public record MaterializationStatus(Long queryId, StoredQuery.MaterializationMode mode, long executionCount,
+                                    boolean materialized, LocalDateTime refreshedAt, Map<String, Long> datasetVersions) {
+}
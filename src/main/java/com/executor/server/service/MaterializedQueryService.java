@@ -0,0 +1,332 @@
+package com.executor.server.service;
+
+import com.executor.CacheConfig;
+import com.executor.QueryExecutorConfig;
+import com.executor.entity.QueryAnalysis;
+import com.executor.entity.StoredQuery;
+import com.executor.server.repository.DatasetRepository;
+import com.executor.server.repository.DatasetVersion;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps results of hot stored queries precomputed, so their jobs complete without executing anything.
+ * <p>
+ * Executions are counted in memory and added to the stored queries in batches by {@link #refresh()}, which
+ * then materializes the queries set to ALWAYS and, if {@code query.materialization.auto-threshold} is above 0,
+ * the AUTO ones executed at least that many times. Only queries without parameters reading datasets alone
+ * qualify: a result is tagged with the versions of the datasets it was computed from and is served only
+ * while they are current. Publishing a dataset drops the results reading it, the next refresh computes them
+ * again and jobs execute the query as usual meanwhile. Results live in memory and are computed again after a restart.
+ * They share {@code query.materialization.max-bytes}, a result that doesn't fit is not kept, and not computed again
+ * until the datasets it read change.
+ * <p>
+ * Results are computed on the query executor like jobs, so they count against its bounds; a query that finds
+ * the executor full is left to the next refresh. Their statements are registered under their own execution key,
+ * so cancelling jobs of the same query never cancels a refresh.
+ */
+@Service
+public class MaterializedQueryService {
+    private static final Logger log = LoggerFactory.getLogger(MaterializedQueryService.class);
+    private static final String EXECUTION_KEY_PREFIX = "materialization:";
+
+    private final StoredQueryService storedQueryService;
+    private final QueryExecutionService queryExecutionService;
+    private final DatasetRepository datasetRepository;
+    private final TaskExecutor queryExecutor;
+    private final long autoThreshold;
+    private final int maxQueries;
+    private final long maxBytes;
+    private final ConcurrentMap<Long, LongAdder> pendingExecutions = new ConcurrentHashMap<>();
+    // Queries chosen by the last refresh, a result is only stored while its query is still one of them
+    private final ConcurrentMap<Long, StoredQuery.MaterializationMode> selectedQueries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Materialization> materializations = new ConcurrentHashMap<>();
+    // Guards changes of the kept results together with their estimated size
+    private final Object keptLock = new Object();
+    private long keptBytes;
+    // Dataset versions a result too large for the budget was computed from, so it isn't computed again for them
+    private final ConcurrentMap<Long, Map<String, Long>> overBudget = new ConcurrentHashMap<>();
+    // Queries whose result is being computed, so a slow one isn't submitted again by every refresh
+    private final Set<Long> computing = ConcurrentHashMap.newKeySet();
+
+    private record Materialization(String result, Map<String, Long> datasetVersions, LocalDateTime refreshedAt, long bytes) {
+    }
+
+    public MaterializedQueryService(StoredQueryService storedQueryService, QueryExecutionService queryExecutionService,
+                                    DatasetRepository datasetRepository,
+                                    @Qualifier(QueryExecutorConfig.QUERY_EXECUTOR) TaskExecutor queryExecutor,
+                                    @Value("${query.materialization.auto-threshold:0}") long autoThreshold,
+                                    @Value("${query.materialization.max-queries:50}") int maxQueries,
+                                    @Value("${query.materialization.max-bytes:67108864}") long maxBytes) {
+        this.storedQueryService = storedQueryService;
+        this.queryExecutionService = queryExecutionService;
+        this.datasetRepository = datasetRepository;
+        this.queryExecutor = queryExecutor;
+        this.autoThreshold = autoThreshold > 0 ? autoThreshold : Long.MAX_VALUE;
+        this.maxQueries = maxQueries;
+        this.maxBytes = maxBytes;
+    }
+
+    public void recordExecution(Long queryId) {
+        pendingExecutions.computeIfAbsent(queryId, id -> new LongAdder()).increment();
+    }
+
+    /**
+     * @return materialized result of the execution, empty if there is none, the query is set to NEVER
+     * or the datasets it read have changed since
+     */
+    public Optional<String> findResult(StoredQuery query, Map<String, ?> parameters) {
+        if (!parameters.isEmpty() || query.getMaterialization() == StoredQuery.MaterializationMode.NEVER) {
+            return Optional.empty();
+        }
+        Materialization materialization = materializations.get(query.getId());
+        if (materialization == null) {
+            return Optional.empty();
+        }
+        // A refresh running while a dataset was published may have stored a result of the previous version
+        if (!datasetVersions(materialization.datasetVersions().keySet()).equals(materialization.datasetVersions())) {
+            drop(query.getId(), materialization);
+            return Optional.empty();
+        }
+        return Optional.of(materialization.result());
+    }
+
+    /**
+     * Drops results computed from the dataset, they are computed again from the new version by the next refresh.
+     */
+    public void evictReferencing(String dataset) {
+        String name = dataset.toUpperCase(Locale.ROOT);
+        materializations.forEach((queryId, materialization) -> {
+            if (materialization.datasetVersions().containsKey(name)) {
+                drop(queryId, materialization);
+            }
+        });
+    }
+
+    /**
+     * Sets how the query is materialized, a result kept for a query set to NEVER is dropped at once.
+     *
+     * @throws StoredQueryException if the query doesn't exist, or is set to ALWAYS but can't be materialized
+     */
+    public MaterializationStatus setMode(Long queryId, StoredQuery.MaterializationMode mode) {
+        if (mode == StoredQuery.MaterializationMode.ALWAYS) {
+            StoredQuery existing = storedQueryService.getQueryById(queryId).orElseThrow(() -> new StoredQueryException("Query not found"));
+            if (datasetTables(existing).isEmpty()) {
+                throw new StoredQueryException("Only queries without parameters reading datasets alone can be materialized");
+            }
+        }
+        StoredQuery query = storedQueryService.setMaterialization(queryId, mode);
+        if (mode == StoredQuery.MaterializationMode.NEVER) {
+            // Unselected first, so a result still being computed isn't stored after it is dropped
+            selectedQueries.remove(queryId);
+            drop(queryId);
+        }
+        return status(query);
+    }
+
+    public MaterializationStatus getStatus(Long queryId) {
+        return status(storedQueryService.getQueryById(queryId).orElseThrow(() -> new StoredQueryException("Query not found")));
+    }
+
+    /**
+     * Writes counted executions, then submits computing results of the selected queries which have none
+     * or an outdated one. Results of queries no longer selected are dropped.
+     */
+    @Scheduled(fixedDelayString = "${query.materialization.refresh-interval-ms:5000}")
+    public synchronized void refresh() {
+        flushExecutions();
+
+        Map<StoredQuery, Set<String>> selected = new LinkedHashMap<>();
+        for (StoredQuery query : storedQueryService.getMaterializationCandidates(autoThreshold)) {
+            if (selected.size() == maxQueries) {
+                break;
+            }
+            Set<String> tables = datasetTables(query);
+            if (!tables.isEmpty()) {
+                selected.put(query, tables);
+            }
+        }
+        Set<Long> selectedIds = new HashSet<>();
+        selected.keySet().forEach(query -> {
+            selectedIds.add(query.getId());
+            selectedQueries.put(query.getId(), query.getMaterialization());
+        });
+        selectedQueries.keySet().retainAll(selectedIds);
+        overBudget.keySet().retainAll(selectedIds);
+        for (Long queryId : materializations.keySet()) {
+            if (!selectedIds.contains(queryId)) {
+                drop(queryId);
+            }
+        }
+
+        selected.forEach(this::materialize);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flushExecutions();
+    }
+
+    private void flushExecutions() {
+        // An execution counted while its adder is being removed can get lost, counts only need to be roughly right
+        Map<Long, Long> counts = new HashMap<>();
+        for (Long queryId : pendingExecutions.keySet()) {
+            LongAdder executions = pendingExecutions.remove(queryId);
+            if (executions != null) {
+                counts.put(queryId, executions.sum());
+            }
+        }
+        if (counts.isEmpty()) {
+            return;
+        }
+
+        try {
+            storedQueryService.addExecutions(counts);
+        } catch (RuntimeException e) {
+            log.warn("Failed to write execution counts of {} queries, retrying with the next refresh", counts.size(), e);
+            counts.forEach((queryId, count) -> pendingExecutions.computeIfAbsent(queryId, id -> new LongAdder()).add(count));
+        }
+    }
+
+    private void materialize(StoredQuery query, Set<String> tables) {
+        Materialization current = materializations.get(query.getId());
+        // Versions are read before executing, a dataset published meanwhile makes the result outdated rather than wrongly current
+        Map<String, Long> versions = datasetVersions(tables);
+        if ((current != null && current.datasetVersions().equals(versions)) || versions.size() != tables.size()
+                || versions.equals(overBudget.get(query.getId())) || !computing.add(query.getId())) {
+            return;
+        }
+
+        try {
+            queryExecutor.execute(() -> {
+                try {
+                    compute(query, versions);
+                } finally {
+                    computing.remove(query.getId());
+                }
+            });
+        } catch (TaskRejectedException e) {
+            computing.remove(query.getId());
+            log.debug("Query executor is full, query {} is materialized by a later refresh", query.getId());
+        }
+    }
+
+    private void compute(StoredQuery query, Map<String, Long> versions) {
+        long startedAt = System.nanoTime();
+        try {
+            String result = queryExecutionService.executeQuery(EXECUTION_KEY_PREFIX + query.getFingerprint(), query.getQuery(), Map.of());
+            Materialization materialization = new Materialization(result, versions, LocalDateTime.now(),
+                    CacheConfig.estimateBytes(query.getId(), new CachedResult(result, versions)));
+            // Stored while holding the selection entry, a query set to NEVER or dropped by a refresh meanwhile gets nothing
+            boolean[] stored = new boolean[1];
+            selectedQueries.computeIfPresent(query.getId(), (queryId, mode) -> {
+                stored[0] = store(queryId, materialization);
+                return mode;
+            });
+            if (stored[0]) {
+                overBudget.remove(query.getId());
+                log.info("Materialized query {} for datasets {} in {} ms", query.getId(), versions,
+                        (System.nanoTime() - startedAt) / 1_000_000);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to materialize query {}, jobs execute it until the next refresh", query.getId(), e);
+        }
+    }
+
+    // Replaces the kept result if the new one fits in the budget once the old one's size is released
+    private boolean store(Long queryId, Materialization materialization) {
+        synchronized (keptLock) {
+            Materialization current = materializations.get(queryId);
+            long bytes = keptBytes - (current == null ? 0 : current.bytes()) + materialization.bytes();
+            if (bytes > maxBytes) {
+                overBudget.put(queryId, materialization.datasetVersions());
+                log.warn("Result of query {} takes about {} bytes and doesn't fit in query.materialization.max-bytes, jobs execute it",
+                        queryId, materialization.bytes());
+                return false;
+            }
+            materializations.put(queryId, materialization);
+            keptBytes = bytes;
+            return true;
+        }
+    }
+
+    private void drop(Long queryId) {
+        synchronized (keptLock) {
+            Materialization materialization = materializations.remove(queryId);
+            if (materialization != null) {
+                keptBytes -= materialization.bytes();
+            }
+        }
+    }
+
+    private void drop(Long queryId, Materialization materialization) {
+        synchronized (keptLock) {
+            if (materializations.remove(queryId, materialization)) {
+                keptBytes -= materialization.bytes();
+            }
+        }
+    }
+
+    /**
+     * @return names of the datasets the query reads, empty if it has parameters or reads anything else
+     */
+    private Set<String> datasetTables(StoredQuery query) {
+        QueryAnalysis analysis = query.getAnalysis();
+        if (!query.getParameterNames().isEmpty() || analysis == null
+                || analysis.getStatementType() != QueryAnalysis.StatementType.SELECT
+                || analysis.getReferencedTables().isEmpty()) {
+            return Set.of();
+        }
+        Set<String> tables = new HashSet<>();
+        for (String table : analysis.getReferencedTables()) {
+            String name = TableVersions.tableKey(table);
+            if (datasetRepository.findVersion(name).isEmpty()) {
+                return Set.of();
+            }
+            tables.add(name);
+        }
+        return tables;
+    }
+
+    // Datasets missing from the catalog are left out
+    private Map<String, Long> datasetVersions(Set<String> tables) {
+        Map<String, Long> versions = new HashMap<>();
+        for (String table : tables) {
+            datasetRepository.findVersion(table).map(DatasetVersion::version).ifPresent(version -> versions.put(table, version));
+        }
+        return versions;
+    }
+
+    private MaterializationStatus status(StoredQuery query) {
+        Materialization materialization = materializations.get(query.getId());
+        LongAdder pending = pendingExecutions.get(query.getId());
+        return new MaterializationStatus(query.getId(), query.getMaterialization(),
+                query.getExecutionCount() + (pending == null ? 0 : pending.sum()),
+                materialization != null,
+                materialization == null ? null : materialization.refreshedAt(),
+                materialization == null ? Map.of() : materialization.datasetVersions());
+    }
+
+    int materializedQueries() {
+        return materializations.size();
+    }
+}
@@ -0,0 +1,95 @@
+package com.executor.server.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads newline-delimited JSON objects from a stream, one object at a time. Field names of the first object
+ * are the columns and come out as the first record. Later objects may leave fields out, but not add new ones.
+ * Nested objects and arrays are kept as JSON text.
+ */
+final class NdjsonRecordReader implements DatasetRecordReader {
+    private final MappingIterator<JsonNode> objects;
+    private final List<String> columns = new ArrayList<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+    private JsonNode first;
+    private long record;
+
+    NdjsonRecordReader(ObjectMapper objectMapper, InputStream in) {
+        try {
+            this.objects = objectMapper.readerFor(JsonNode.class).readValues(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean next(List<String> fields) {
+        fields.clear();
+        if (record == 0) {
+            first = nextObject();
+            if (first == null) {
+                return false;
+            }
+            first.fieldNames().forEachRemaining(name -> {
+                positions.put(name, columns.size());
+                columns.add(name);
+            });
+            fields.addAll(columns);
+            return true;
+        }
+
+        JsonNode object = first != null ? first : nextObject();
+        first = null;
+        if (object == null) {
+            return false;
+        }
+        String[] values = new String[columns.size()];
+        object.properties().forEach(property -> {
+            Integer position = positions.get(property.getKey());
+            if (position == null) {
+                throw new DatasetException("Record " + record + " has field " + property.getKey() + " missing in the first record");
+            }
+            values[position] = text(property.getValue());
+        });
+        fields.addAll(Arrays.asList(values));
+        return true;
+    }
+
+    private JsonNode nextObject() {
+        long number = record + 1;
+        try {
+            if (!objects.hasNextValue()) {
+                return null;
+            }
+            JsonNode object = objects.nextValue();
+            record = number;
+            if (!object.isObject()) {
+                throw new DatasetException("Record " + number + " is not a JSON object");
+            }
+            return object;
+        } catch (JsonProcessingException e) {
+            throw new DatasetException("Record " + number + " is not valid JSON", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String text(JsonNode value) {
+        if (value.isNull()) {
+            return null;
+        }
+        return value.isValueNode() ? value.asText() : value.toString();
+    }
+}
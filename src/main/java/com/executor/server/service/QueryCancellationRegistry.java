@@ -0,0 +1,140 @@
+package com.executor.server.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+
+/**
+ * Tracks what has to be stopped to cancel a job: its task on the query executor while it is queued,
+ * and the JDBC statement of the execution it is attached to while it runs.
+ * <p>
+ * Several jobs can be attached to one execution (see {@link InFlightQueryRegistry}), so the statement
+ * is cancelled only when the last job waiting for it is cancelled. The other jobs stop waiting at once
+ * through the future returned by {@link #attach(Long, String)}.
+ * <p>
+ * H2 reports a cancelled statement like one that timed out, so statements cancelled here are remembered
+ * until they are unregistered and executions can tell a user cancel from a timeout with {@link #wasCancelled(Statement)}.
+ */
+@Component
+public class QueryCancellationRegistry {
+    private static final Logger log = LoggerFactory.getLogger(QueryCancellationRegistry.class);
+
+    private final ConcurrentMap<Long, Future<?>> jobTasks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, String> jobExecutions = new ConcurrentHashMap<>();
+    // Sets are only touched inside compute methods of the map, which serialize access per key
+    private final ConcurrentMap<String, Set<Long>> executionJobs = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Statement> statements = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, CompletableFuture<Void>> cancellations = new ConcurrentHashMap<>();
+    private final Set<Statement> cancelledStatements = ConcurrentHashMap.newKeySet();
+
+    public void trackTask(Long jobId, Future<?> task) {
+        jobTasks.put(jobId, task);
+        if (task.isDone()) {
+            jobTasks.remove(jobId, task);
+        }
+    }
+
+    public void forgetTask(Long jobId) {
+        jobTasks.remove(jobId);
+    }
+
+    /**
+     * @return future completed when the job is cancelled while attached
+     */
+    public CompletableFuture<Void> attach(Long jobId, String executionKey) {
+        CompletableFuture<Void> cancellation = new CompletableFuture<>();
+        cancellations.put(jobId, cancellation);
+        jobExecutions.put(jobId, executionKey);
+        executionJobs.compute(executionKey, (key, jobs) -> {
+            Set<Long> attached = jobs == null ? new HashSet<>() : jobs;
+            attached.add(jobId);
+            return attached;
+        });
+        return cancellation;
+    }
+
+    /**
+     * @return true if no other job is attached to the execution anymore
+     */
+    public boolean detach(Long jobId) {
+        cancellations.remove(jobId);
+        String executionKey = jobExecutions.remove(jobId);
+        if (executionKey == null) {
+            return false;
+        }
+
+        boolean[] last = {false};
+        executionJobs.computeIfPresent(executionKey, (key, jobs) -> {
+            jobs.remove(jobId);
+            if (jobs.isEmpty()) {
+                last[0] = true;
+                return null;
+            }
+            return jobs;
+        });
+        return last[0];
+    }
+
+    public void registerStatement(String executionKey, Statement statement) {
+        statements.put(executionKey, statement);
+    }
+
+    public void unregisterStatement(String executionKey, Statement statement) {
+        if (statement != null) {
+            statements.remove(executionKey, statement);
+            cancelledStatements.remove(statement);
+        }
+    }
+
+    /**
+     * @return true if the statement was cancelled for the jobs waiting for it, to be asked before it is unregistered
+     */
+    public boolean wasCancelled(Statement statement) {
+        return statement != null && cancelledStatements.contains(statement);
+    }
+
+    /**
+     * Stops the job: removes its task if it has not started yet, and cancels the running statement
+     * if the job was the last one waiting for it.
+     *
+     * @return true if the job had a task that was still queued or running
+     */
+    public boolean cancel(Long jobId) {
+        CompletableFuture<Void> cancellation = cancellations.get(jobId);
+        if (cancellation != null) {
+            cancellation.complete(null);
+        }
+
+        String executionKey = jobExecutions.get(jobId);
+        if (executionKey != null && detach(jobId)) {
+            cancelStatement(executionKey);
+        }
+
+        Future<?> task = jobTasks.remove(jobId);
+        return task != null && task.cancel(false);
+    }
+
+    private void cancelStatement(String executionKey) {
+        Statement statement = statements.get(executionKey);
+        if (statement == null) {
+            return;
+        }
+
+        // Recorded first, the execution may fail as soon as the statement is cancelled
+        cancelledStatements.add(statement);
+        try {
+            statement.cancel();
+        } catch (SQLException e) {
+            log.warn("Failed to cancel statement of execution {}", executionKey, e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.executor.server.service;
+
+/**
+ * Thrown when an execution stops because the jobs waiting for it were cancelled by their users,
+ * as opposed to the query failing or running out of time.
+ */
+public class QueryCancelledException extends QueryExecutionJobException {
+    public QueryCancelledException(String message) {
+        super(message);
+    }
+
+    public QueryCancelledException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
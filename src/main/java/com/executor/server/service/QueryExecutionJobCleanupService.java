@@ -1,32 +1,162 @@
 package com.executor.server.service;
 
+import com.executor.entity.QueryExecutionJob;
+import com.executor.server.repository.JobCleanupCandidate;
 import com.executor.server.repository.QueryExecutionJobRepository;
-import org.springframework.stereotype.Service;
-import org.springframework.scheduling.annotation.Scheduled;
+import com.executor.server.repository.QueryResultChunkRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Deletes finished jobs, oldest first, once any retention limit (age, number of jobs, total size of
+ * stored results) is exceeded. Jobs go in small batches, each in its own short transaction with a pause
+ * after it, so status writes of running jobs are never blocked for long.
+ */
 @Service
 public class QueryExecutionJobCleanupService {
     private static final Logger log = LoggerFactory.getLogger(QueryExecutionJobCleanupService.class);
+    private static final Set<QueryExecutionJob.JobStatus> ACTIVE_STATUSES =
+            EnumSet.of(QueryExecutionJob.JobStatus.PENDING, QueryExecutionJob.JobStatus.RUNNING);
+
+    enum RetentionRule {
+        AGE, COUNT, RESULT_BYTES
+    }
+
     private final QueryExecutionJobRepository repository;
+    private final QueryResultChunkRepository chunkRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final Duration maxAge;
+    private final long maxCount;
+    private final long maxResultBytes;
+    private final int batchSize;
+    private final Duration pause;
 
-    private static final int RETENTION_HOURS = 12;
+    private final Timer cleanupTimer;
+    private final Counter freedBytes;
+    private final AtomicLong retainedJobs;
+    private final AtomicLong retainedResultBytes;
 
-    public QueryExecutionJobCleanupService(QueryExecutionJobRepository repository) {
+    public QueryExecutionJobCleanupService(QueryExecutionJobRepository repository, QueryResultChunkRepository chunkRepository,
+                                           PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                           @Value("${query.jobs.retention.max-age:12h}") Duration maxAge,
+                                           @Value("${query.jobs.retention.max-count:100000}") long maxCount,
+                                           @Value("${query.jobs.retention.max-result-bytes:1073741824}") long maxResultBytes,
+                                           @Value("${query.jobs.cleanup.batch-size:500}") int batchSize,
+                                           @Value("${query.jobs.cleanup.pause:50ms}") Duration pause) {
         this.repository = repository;
+        this.chunkRepository = chunkRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.maxAge = maxAge;
+        this.maxCount = maxCount;
+        this.maxResultBytes = maxResultBytes;
+        this.batchSize = batchSize;
+        this.pause = pause;
+
+        this.cleanupTimer = meterRegistry.timer("query.jobs.cleanup.duration");
+        this.freedBytes = meterRegistry.counter("query.jobs.cleanup.freed.bytes");
+        this.retainedJobs = meterRegistry.gauge("query.jobs.retained", new AtomicLong());
+        this.retainedResultBytes = meterRegistry.gauge("query.jobs.retained.result.bytes", new AtomicLong());
     }
 
-    // fixedRate = 3600000 ms (1 hour)
-    @Scheduled(fixedRate = 3600000)
+    @Scheduled(fixedDelayString = "${query.jobs.cleanup.interval-ms:3600000}")
     public void cleanupOldJobs() {
-        LocalDateTime cutoff = LocalDateTime.now().minusHours(RETENTION_HOURS);
+        cleanupTimer.record(this::cleanup);
+    }
 
-        log.info("Starting cleanup of jobs older than {}", cutoff);
+    private void cleanup() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(maxAge);
+        long jobCount = repository.count();
+        long resultBytes = chunkRepository.sumByteCount();
 
-        int deletedCount = repository.deleteOlderThan(cutoff);
+        log.info("Starting cleanup of jobs older than {}, {} jobs with {} result bytes stored", cutoff, jobCount, resultBytes);
+        int deletedJobs = 0;
+
+        while (true) {
+            List<JobCleanupCandidate> batch = repository.findOldestFinished(ACTIVE_STATUSES, PageRequest.of(0, batchSize));
+
+            // Candidates are oldest first, so once one may stay all later ones may stay too
+            List<JobCleanupCandidate> expired = new ArrayList<>();
+            List<RetentionRule> reasons = new ArrayList<>();
+            for (JobCleanupCandidate job : batch) {
+                RetentionRule reason = violatedRule(job, cutoff, jobCount, resultBytes);
+                if (reason == null) {
+                    break;
+                }
+                expired.add(job);
+                reasons.add(reason);
+                jobCount--;
+                resultBytes -= job.resultBytes();
+            }
+            if (expired.isEmpty()) {
+                break;
+            }
+
+            deleteBatch(expired);
+            deletedJobs += expired.size();
+            reasons.forEach(reason -> meterRegistry.counter("query.jobs.cleanup.deleted", "reason", reason.name().toLowerCase()).increment());
+            freedBytes.increment(expired.stream().mapToLong(JobCleanupCandidate::resultBytes).sum());
+
+            if (expired.size() < batchSize || !pause()) {
+                break;
+            }
+        }
+
+        retainedJobs.set(jobCount);
+        retainedResultBytes.set(resultBytes);
+        log.info("Cleanup finished. Deleted {} jobs, {} jobs with {} result bytes left.", deletedJobs, jobCount, resultBytes);
+    }
+
+    private RetentionRule violatedRule(JobCleanupCandidate job, LocalDateTime cutoff, long jobCount, long resultBytes) {
+        if (job.createdAt().isBefore(cutoff)) {
+            return RetentionRule.AGE;
+        }
+        if (jobCount > maxCount) {
+            return RetentionRule.COUNT;
+        }
+        if (resultBytes > maxResultBytes) {
+            return RetentionRule.RESULT_BYTES;
+        }
+        return null;
+    }
+
+    private void deleteBatch(List<JobCleanupCandidate> jobs) {
+        List<Long> ids = jobs.stream().map(JobCleanupCandidate::id).toList();
+        transactionTemplate.executeWithoutResult(status -> {
+            chunkRepository.deleteByJobIdIn(ids);
+            repository.deleteAllByIdInBatch(ids);
+        });
+    }
 
-        log.info("Cleanup finished. Deleted {} old job entities.", deletedCount);
+    /**
+     * @return false if the thread was interrupted, cleanup should stop then
+     */
+    private boolean pause() {
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 }
@@ -1,24 +1,66 @@
 package com.executor.server.service;
 
 import com.executor.entity.QueryExecutionJob;
+import com.executor.server.repository.JobStateRepository;
+import com.executor.server.repository.JobStatusView;
+import com.executor.server.repository.KeysetCursor;
 import com.executor.server.repository.QueryExecutionJobRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
+/**
+ * Jobs are inserted into the database right away, their later status changes go through
+ * {@link LiveJobRegistry} and reach the database in batches.
+ */
 @Transactional
 @Service
 public class QueryExecutionJobService {
+    private static final Set<QueryExecutionJob.JobStatus> ACTIVE_STATUSES =
+            EnumSet.of(QueryExecutionJob.JobStatus.PENDING, QueryExecutionJob.JobStatus.RUNNING);
+    private static final TypeReference<Map<String, Object>> PARAMETERS_TYPE = new TypeReference<>() {};
+
     private final QueryExecutionJobRepository jobRepository;
+    private final QueryResultStorageService resultStorageService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final LiveJobRegistry liveJobs;
+    private final JobStateRepository jobStateRepository;
+    private final ObjectMapper objectMapper;
+    private final CurrentUserService currentUserService;
 
-    public QueryExecutionJobService(QueryExecutionJobRepository jobRepository) {
+    public QueryExecutionJobService(QueryExecutionJobRepository jobRepository, QueryResultStorageService resultStorageService,
+                                    ApplicationEventPublisher eventPublisher, LiveJobRegistry liveJobs,
+                                    JobStateRepository jobStateRepository, ObjectMapper objectMapper,
+                                    CurrentUserService currentUserService) {
         this.jobRepository = jobRepository;
+        this.resultStorageService = resultStorageService;
+        this.eventPublisher = eventPublisher;
+        this.liveJobs = liveJobs;
+        this.jobStateRepository = jobStateRepository;
+        this.objectMapper = objectMapper;
+        this.currentUserService = currentUserService;
     }
 
     public QueryExecutionJob addJob(Long queryId){
+        return addJob(queryId, Map.of());
+    }
+
+    public QueryExecutionJob addJob(Long queryId, Map<String, ?> parameters){
         if (queryId == null) {
             throw new QueryExecutionJobException("Query cannot be null");
         }
@@ -26,7 +68,35 @@ public class QueryExecutionJobService {
         QueryExecutionJob queryExecutionJob = new QueryExecutionJob();
         queryExecutionJob.setSourceQueryId(queryId);
         queryExecutionJob.setStatus(QueryExecutionJob.JobStatus.PENDING);
-        return jobRepository.save(queryExecutionJob);
+        queryExecutionJob.setOwner(currentUserService.getUser().orElse(null));
+        if (!parameters.isEmpty()) {
+            queryExecutionJob.setParameters(writeParameters(parameters));
+        }
+        QueryExecutionJob savedJob = jobRepository.save(queryExecutionJob);
+
+        liveJobs.register(JobStatusView.of(savedJob));
+        return savedJob;
+    }
+
+    /**
+     * Inserts jobs for all queries in one JDBC batch, owned by the authenticated user.
+     *
+     * @return created jobs, in the order of {@code queryIds}
+     */
+    public List<JobStatusView> addJobs(List<Long> queryIds) {
+        List<JobStatusView> jobs = jobStateRepository.insertPendingJobs(queryIds, currentUserService.getUserId().orElse(null));
+        jobs.forEach(liveJobs::register);
+        return jobs;
+    }
+
+    public void removeJob(Long id) {
+        liveJobs.remove(id);
+        jobRepository.deleteById(id);
+    }
+
+    public void removeJobs(List<Long> ids) {
+        ids.forEach(liveJobs::remove);
+        jobRepository.deleteAllByIdInBatch(ids);
     }
 
     public List<QueryExecutionJob> getAllJobs() {
@@ -37,23 +107,162 @@ public class QueryExecutionJobService {
         return jobRepository.findById(id);
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void markJobRunning(Long jobId) {
-        QueryExecutionJob job = getJobById(jobId).orElseThrow();
-        job.setStatus(QueryExecutionJob.JobStatus.RUNNING);
+    /**
+     * @return bind parameter values the job was started with, empty for queries without parameters
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> getJobParameters(Long id) {
+        return jobRepository.findParametersById(id)
+                .map(this::readParameters)
+                .orElse(Map.of());
+    }
+
+    /**
+     * Jobs in flight are read from memory, others only read lifecycle columns,
+     * so cost does not depend on size of the result.
+     */
+    @Transactional(readOnly = true)
+    public Optional<JobStatusView> getJobStatus(Long id) {
+        Optional<JobStatusView> liveJob = liveJobs.get(id);
+        return liveJob.isPresent() ? liveJob : jobRepository.findStatusById(id);
+    }
+
+    /**
+     * Jobs not in flight are read with one query, unknown ids are skipped.
+     */
+    @Transactional(readOnly = true)
+    public List<JobStatusView> getJobStatuses(Collection<Long> ids) {
+        List<JobStatusView> jobs = new ArrayList<>();
+        List<Long> storedIds = new ArrayList<>();
+        for (Long id : new TreeSet<>(ids).descendingSet()) {
+            liveJobs.get(id).ifPresentOrElse(jobs::add, () -> storedIds.add(id));
+        }
+
+        if (!storedIds.isEmpty()) {
+            jobs.addAll(jobRepository.findStatusesByIdIn(storedIds));
+            jobs.sort(Comparator.comparing(JobStatusView::id).reversed());
+        }
+        return jobs;
+    }
+
+    /**
+     * Page of jobs, newest first, starting after {@code cursor} (first page if null).
+     * Owner and status filters are skipped when null.
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<JobStatusView> listJobStatuses(Long ownerId, QueryExecutionJob.JobStatus status, String cursor, int limit) {
+        Specification<QueryExecutionJob> filter = (root, query, builder) -> builder.conjunction();
+        if (ownerId != null) {
+            filter = filter.and((root, query, builder) -> builder.equal(root.get("owner").get("id"), ownerId));
+        }
+        if (status != null) {
+            filter = filter.and((root, query, builder) -> builder.equal(root.get("status"), status));
+        }
+        if (cursor != null) {
+            filter = filter.and(decodeCursor(cursor).rowsAfter());
+        }
+
+        List<QueryExecutionJob> rows = jobRepository.findBy(filter, query -> query.sortBy(KeysetCursor.ORDER).limit(limit + 1).all());
+        KeysetPage<JobStatusView> page = KeysetPage.of(rows.stream().map(JobStatusView::of).toList(), limit,
+                job -> new KeysetCursor(job.createdAt(), job.id()));
+
+        // Live jobs are always inserted already, their rows may just be behind. The status filter
+        // is checked again on live state, so a page can come out shorter than the limit
+        List<JobStatusView> jobs = page.items().stream()
+                .map(job -> liveJobs.get(job.id()).orElse(job))
+                .filter(job -> status == null || job.status() == status)
+                .toList();
+        return new KeysetPage<>(jobs, page.nextCursor());
+    }
+
+    // Transitions below don't touch the database, surrounding transaction would only delay the notification
+
+    /**
+     * @return false if the job is no longer pending, e.g. it was cancelled while queued
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public boolean markJobRunning(Long jobId) {
+        return liveJobs.transition(jobId, EnumSet.of(QueryExecutionJob.JobStatus.PENDING),
+                QueryExecutionJob.JobStatus.RUNNING, null, null);
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    // Result is stored before the job turns COMPLETED, so readers never see a completed job without its rows.
+    // Result of a job finished in the meantime (cancelled) is dropped.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void markJobCompleted(Long jobId, String result) {
-        QueryExecutionJob job = getJobById(jobId).orElseThrow();
-        job.setResult(result);
-        job.setStatus(QueryExecutionJob.JobStatus.COMPLETED);
+        if (!liveJobs.isActive(jobId)) {
+            return;
+        }
+
+        long rowCount = resultStorageService.storeResult(jobId, result);
+        if (!finishJob(jobId, QueryExecutionJob.JobStatus.COMPLETED, null, rowCount)) {
+            resultStorageService.deleteResult(jobId);
+        }
+    }
+
+    /**
+     * @return writer storing the result of the job while it is fetched, see {@link #markJobCompleted(Long, ResultChunkWriter)}
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResultChunkWriter openResult(Long jobId) {
+        return resultStorageService.openResult(jobId);
     }
 
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    // Rows are already stored by the finished writer, they are dropped if the job was finished in the meantime
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void markJobCompleted(Long jobId, ResultChunkWriter storedResult) {
+        if (!finishJob(jobId, QueryExecutionJob.JobStatus.COMPLETED, null, storedResult.getRowCount())) {
+            resultStorageService.deleteResult(jobId);
+        }
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void markJobFailed(Long jobId, String errorMessage) {
-        QueryExecutionJob job = getJobById(jobId).orElseThrow();
-        job.setErrorMessage(errorMessage);
-        job.setStatus(QueryExecutionJob.JobStatus.FAILED);
+        finishJob(jobId, QueryExecutionJob.JobStatus.FAILED, errorMessage, null);
+    }
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void markJobTimedOut(Long jobId, String errorMessage) {
+        finishJob(jobId, QueryExecutionJob.JobStatus.TIMED_OUT, errorMessage, null);
+    }
+
+    /**
+     * @return false if the job is already finished
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public boolean markJobCancelled(Long jobId) {
+        return finishJob(jobId, QueryExecutionJob.JobStatus.CANCELLED, "Cancelled by user", null);
+    }
+
+    private String writeParameters(Map<String, ?> parameters) {
+        try {
+            return objectMapper.writeValueAsString(parameters);
+        } catch (JsonProcessingException e) {
+            throw new QueryExecutionJobException("Parameters can't be serialized", e);
+        }
+    }
+
+    private static KeysetCursor decodeCursor(String cursor) {
+        try {
+            return KeysetCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new QueryExecutionJobException("Invalid cursor", e);
+        }
+    }
+
+    private Map<String, Object> readParameters(String parameters) {
+        try {
+            return objectMapper.readValue(parameters, PARAMETERS_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new QueryExecutionJobException("Stored parameters are not valid JSON", e);
+        }
+    }
+
+    private boolean finishJob(Long jobId, QueryExecutionJob.JobStatus status, String errorMessage, Long resultRowCount) {
+        if (!liveJobs.transition(jobId, ACTIVE_STATUSES, status, errorMessage, resultRowCount)) {
+            return false;
+        }
+        eventPublisher.publishEvent(new JobFinishedEvent(jobId, status));
+        return true;
     }
 }
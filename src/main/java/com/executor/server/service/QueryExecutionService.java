@@ -1,36 +1,193 @@
 package com.executor.server.service;
 
+import com.executor.CacheConfig;
+import com.executor.entity.QueryAnalysis;
+import com.executor.entity.StoredQuery;
 import com.executor.server.repository.QueryExecutionRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.cache.annotation.Cacheable;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.sql.Statement;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 
 @Service
 public class QueryExecutionService {
+    private static final ObjectWriter KEY_WRITER = new ObjectMapper().writer();
+
     private final QueryExecutionRepository queryExecutionRepository;
     private final ObjectMapper objectMapper;
+    private final QueryCancellationRegistry cancellationRegistry;
+    private final CacheManager cacheManager;
+    private final ColumnarQueryEngine columnarQueryEngine;
+    private final QueryValidationService validationService;
+    private final TableVersions tableVersions;
 
-    public QueryExecutionService(QueryExecutionRepository queryExecutionRepository, ObjectMapper objectMapper) {
+    public QueryExecutionService(QueryExecutionRepository queryExecutionRepository, ObjectMapper objectMapper,
+                                 QueryCancellationRegistry cancellationRegistry, CacheManager cacheManager,
+                                 ColumnarQueryEngine columnarQueryEngine, QueryValidationService validationService,
+                                 TableVersions tableVersions) {
         this.queryExecutionRepository = queryExecutionRepository;
         this.objectMapper = objectMapper;
+        this.cancellationRegistry = cancellationRegistry;
+        this.cacheManager = cacheManager;
+        this.columnarQueryEngine = columnarQueryEngine;
+        this.validationService = validationService;
+        this.tableVersions = tableVersions;
+    }
+
+    /**
+     * Identifies one execution: the query fingerprint, plus the parameter values for parameterized queries.
+     * Values are written as JSON with sorted names, so {@code 1} and {@code "1"} give different keys.
+     */
+    public static String executionKey(String fingerprint, Map<String, ?> parameters) {
+        if (parameters.isEmpty()) {
+            return fingerprint;
+        }
+        try {
+            return fingerprint + KEY_WRITER.writeValueAsString(new TreeMap<>(parameters));
+        } catch (JsonProcessingException e) {
+            throw new QueryExecutionJobException("Parameters can't be serialized", e);
+        }
+    }
+
+    /**
+     * @return cached result of the execution, empty if there is none or the tables it read have changed since
+     */
+    public Optional<String> findCachedResult(String executionKey) {
+        Cache cache = cacheManager.getCache(CacheConfig.QUERY_RESULTS_CACHE);
+        CachedResult cached = cache == null ? null : cache.get(executionKey, CachedResult.class);
+        if (cached == null || !isCurrent(cached)) {
+            return Optional.empty();
+        }
+        return Optional.of(cached.json());
+    }
+
+    /**
+     * Results are cached by {@link #executionKey(String, Map)}, so equivalent queries written differently
+     * share one entry, and every parameter tuple gets its own. Results of queries reading datasets alone are
+     * tagged with the versions of those datasets and kept for {@code query.cache.dataset-ttl}; once any of them
+     * changes, the entry is a miss and is evicted on that lookup. Other results are kept for the short
+     * {@code query.cache.ttl}, see {@link CacheConfig}. Queries the columnar engine supports don't reach H2.
+     * <p>
+     * On a miss the rows go to {@code rows} while they are fetched, so the result is never held in memory as a whole.
+     * Only a result small enough to be kept as JSON by the writer is cached and returned.
+     *
+     * @return JSON of the result; null if it was only stored by {@code rows}, which stays untouched on a cache hit
+     */
+    public String cacheableQueryExecution(String executionKey, StoredQuery storedQuery, Map<String, ?> parameters,
+                                          ResultChunkWriter rows) throws IOException {
+        String query = storedQuery.getQuery();
+        Cache cache = cacheManager.getCache(CacheConfig.QUERY_RESULTS_CACHE);
+        if (cache == null) {
+            return storeQueryExecution(executionKey, query, parameters, rows).orElse(null);
+        }
+
+        CachedResult cached = cache.get(executionKey, CachedResult.class);
+        if (cached != null) {
+            if (isCurrent(cached)) {
+                return cached.json();
+            }
+            evictStale(cache, executionKey, cached);
+        }
+
+        // Versions are taken before executing, a dataset published meanwhile leaves a stale entry rather than a wrongly current one
+        Optional<Map<String, Long>> versions = tableVersions.snapshot(referencedTables(storedQuery));
+        Optional<String> result = storeQueryExecution(executionKey, query, parameters, rows);
+        result.ifPresent(json -> cache.put(executionKey, versions.map(datasetVersions -> new CachedResult(json, datasetVersions))
+                .orElseGet(() -> CachedResult.untagged(json))));
+        return result.orElse(null);
+    }
+
+    // Taken from the analysis made when the query was stored, queries stored before it existed are parsed again
+    private List<String> referencedTables(StoredQuery storedQuery) {
+        QueryAnalysis analysis = storedQuery.getAnalysis();
+        if (analysis == null) {
+            analysis = validationService.analyze(validationService.validateQuery(storedQuery.getQuery()));
+        }
+        return analysis.getReferencedTables();
+    }
+
+    private boolean isCurrent(CachedResult cached) {
+        return !cached.isTagged() || tableVersions.isCurrent(cached.datasetVersions());
     }
 
-    @Cacheable("queryResults")
-    public String cacheableQueryExecution(String query) throws JsonProcessingException {
-        List<Map<String, Object>> queryResult = queryExecutionRepository.executeNativeQuery(query);
+    /**
+     * Executes the query without looking into the result cache, the result is returned as JSON array of rows.
+     * Rows are written to the JSON as they are fetched, nothing else holds them.
+     */
+    public String executeQuery(String executionKey, String query, Map<String, ?> parameters) throws IOException {
+        Optional<List<List<Object>>> columnarResult = columnarQueryEngine.execute(query, parameters);
+        if (columnarResult.isPresent()) {
+            return objectMapper.writeValueAsString(columnarResult.get());
+        }
+
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(json)) {
+            generator.writeStartArray();
+            streamQuery(executionKey, query, parameters, new JsonRowWriter(generator));
+            generator.writeEndArray();
+        }
+        return json.toString();
+    }
 
-        List<List<Object>> formattedResult = convertResultToList(queryResult);
+    // Rows stored so far are deleted if the execution fails, so it can be run again with the same writer
+    private Optional<String> storeQueryExecution(String executionKey, String query, Map<String, ?> parameters,
+                                                 ResultChunkWriter rows) throws IOException {
+        try {
+            Optional<List<List<Object>>> columnarResult = columnarQueryEngine.execute(query, parameters);
+            if (columnarResult.isPresent()) {
+                for (List<Object> row : columnarResult.get()) {
+                    rows.writeRow(row);
+                }
+            } else {
+                streamQuery(executionKey, query, parameters, rows);
+            }
+            rows.finish();
+        } catch (IOException | RuntimeException e) {
+            rows.discard();
+            throw e;
+        }
+        return rows.getJson();
+    }
 
-        return objectMapper.writeValueAsString(formattedResult);
+    private void streamQuery(String executionKey, String query, Map<String, ?> parameters, RowCallbackHandler rowHandler) throws IOException {
+        // Statement is registered under the execution key, jobs waiting for this execution are attached to it
+        Statement[] running = new Statement[1];
+        try {
+            queryExecutionRepository.streamNativeQuery(query, parameters, statement -> {
+                running[0] = statement;
+                cancellationRegistry.registerStatement(executionKey, statement);
+            }, rowHandler);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            if (cancellationRegistry.wasCancelled(running[0])) {
+                throw new QueryCancelledException("Execution was cancelled", e);
+            }
+            throw e;
+        } finally {
+            cancellationRegistry.unregisterStatement(executionKey, running[0]);
+        }
     }
 
-    private List<List<Object>> convertResultToList(List<Map<String, Object>> result) {
-        return result.stream()
-                .map(row -> row.values().stream().toList())
-                .toList();
+    // Removes the entry only if it is still the stale one, a current result put meanwhile by another execution stays
+    private static void evictStale(Cache cache, String executionKey, CachedResult stale) {
+        if (cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> results) {
+            results.asMap().remove(executionKey, stale);
+        } else {
+            cache.evict(executionKey);
+        }
     }
 }
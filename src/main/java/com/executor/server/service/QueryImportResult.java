@@ -0,0 +1,10 @@
+package com.executor.server.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of one item of a bulk import: {@code id} of the stored query, or {@code error} if it was rejected.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record QueryImportResult(int index, Long id, String error) {
+}
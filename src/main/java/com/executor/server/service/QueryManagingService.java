@@ -1,42 +1,115 @@
 package com.executor.server.service;
 
-import com.executor.entity.QueryExecutionJob;
 import com.executor.entity.StoredQuery;
+import com.executor.server.repository.JobStatusView;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.stereotype.Service;
 
+import java.sql.SQLTimeoutException;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class QueryManagingService {
     private final QueryExecutionService queryExecutionService;
     private final StoredQueryService storedQueryService;
     private final QueryExecutionJobService jobService;
+    private final InFlightQueryRegistry inFlightRegistry;
+    private final QueryCancellationRegistry cancellationRegistry;
+    private final MaterializedQueryService materializedQueryService;
 
-    public QueryManagingService(QueryExecutionService queryExecutionService, StoredQueryService storedQueryService, QueryExecutionJobService jobService) {
+    public QueryManagingService(QueryExecutionService queryExecutionService, StoredQueryService storedQueryService, QueryExecutionJobService jobService,
+                                InFlightQueryRegistry inFlightRegistry, QueryCancellationRegistry cancellationRegistry,
+                                MaterializedQueryService materializedQueryService) {
         this.queryExecutionService = queryExecutionService;
         this.storedQueryService = storedQueryService;
         this.jobService = jobService;
+        this.inFlightRegistry = inFlightRegistry;
+        this.cancellationRegistry = cancellationRegistry;
+        this.materializedQueryService = materializedQueryService;
     }
 
     protected void executeQuery(Long jobId) {
-        jobService.markJobRunning(jobId);
+        executeQuery(jobId, Map.of());
+    }
+
+    protected void executeQuery(Long jobId, Map<String, ?> parameters) {
+        JobStatusView job = jobService.getJobStatus(jobId).orElseThrow();
 
-        QueryExecutionJob job = jobService.getJobById(jobId).orElseThrow();
-        Optional<StoredQuery> storedQuery = storedQueryService.getQueryById(job.getSourceQueryId());
+        // Job cancelled while it was waiting in the queue
+        if (!jobService.markJobRunning(jobId)) {
+            return;
+        }
+
+        Optional<StoredQuery> storedQuery = storedQueryService.getQueryById(job.sourceQueryId());
 
         if (storedQuery.isEmpty()) {
             jobService.markJobFailed(jobId, "Source query not found");
             return;
         }
 
-        String query = storedQuery.get().getQuery();
+        materializedQueryService.recordExecution(storedQuery.get().getId());
+        // Hot queries are answered from their precomputed result while the datasets they read are unchanged
+        Optional<String> materialized = materializedQueryService.findResult(storedQuery.get(), parameters);
+        if (materialized.isPresent()) {
+            jobService.markJobCompleted(jobId, materialized.get());
+            return;
+        }
+
+        StoredQuery query = storedQuery.get();
+        String executionKey = QueryExecutionService.executionKey(storedQuery.get().getFingerprint(), parameters);
 
+        CompletableFuture<Void> cancellation = cancellationRegistry.attach(jobId, executionKey);
+        ResultChunkWriter rows = jobService.openResult(jobId);
         try {
-            String result = queryExecutionService.cacheableQueryExecution(query);
-            jobService.markJobCompleted(jobId, result);
+            String result;
+            try {
+                result = execute(executionKey, cancellation, query, parameters, rows);
+            } catch (QueryCancelledException e) {
+                if (cancellation.isDone()) {
+                    return;
+                }
+                // The execution was stopped for the jobs that had been waiting for it, this one attached meanwhile
+                result = execute(executionKey, cancellation, query, parameters, rows);
+            }
+            // Result of the execution this job waited for was too large to be shared, one of the waiting jobs runs it again
+            while (result == null && !rows.isFinished()) {
+                result = execute(executionKey, cancellation, query, parameters, rows);
+            }
+
+            if (rows.isFinished()) {
+                jobService.markJobCompleted(jobId, rows);
+            } else {
+                jobService.markJobCompleted(jobId, result);
+            }
         } catch (Exception e) {
-            jobService.markJobFailed(jobId, e.getMessage());
+            // Cancelled jobs already have their final status, these transitions don't change it
+            if (!(e instanceof QueryCancelledException) && isTimeout(e)) {
+                jobService.markJobTimedOut(jobId, e.getMessage());
+            } else {
+                jobService.markJobFailed(jobId, e.getMessage());
+            }
+        } finally {
+            cancellationRegistry.detach(jobId);
+        }
+    }
+
+    // Jobs started for the same query while it is still running reuse its result, the running job stores the rows
+    // for itself while they are fetched. Waiting jobs get null if the result was too large to be kept as JSON
+    private String execute(String executionKey, CompletableFuture<Void> cancellation, StoredQuery query,
+                           Map<String, ?> parameters, ResultChunkWriter rows) throws Exception {
+        return inFlightRegistry.execute(executionKey, cancellation,
+                () -> queryExecutionService.cacheableQueryExecution(executionKey, query, parameters, rows));
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof QueryTimeoutException || cause instanceof SQLTimeoutException) {
+                return true;
+            }
         }
+        return false;
     }
 
 }
@@ -0,0 +1,197 @@
+package com.executor.server.service;
+
+import com.executor.entity.QueryResultChunk;
+import com.executor.server.repository.QueryResultChunkRepository;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Stores job results as fixed-size row chunks and reads back only the chunks covering a requested page.
+ */
+@Transactional
+@Service
+public class QueryResultStorageService {
+    private static final TypeReference<List<List<Object>>> ROWS_TYPE = new TypeReference<>() {};
+
+    private final QueryResultChunkRepository chunkRepository;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int inlineMaxBytes;
+
+    public QueryResultStorageService(QueryResultChunkRepository chunkRepository, ObjectMapper objectMapper,
+                                     @Value("${query.result.chunk-size:1000}") int chunkSize,
+                                     @Value("${query.result.inline-max-bytes:1048576}") int inlineMaxBytes) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size should be positive");
+        }
+        this.chunkRepository = chunkRepository;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.inlineMaxBytes = inlineMaxBytes;
+    }
+
+    /**
+     * Starts storing the result of the job while it is fetched. Each chunk is saved in its own transaction,
+     * the query feeding the writer doesn't hold one. JSON of the whole result is kept only up to
+     * {@code query.result.inline-max-bytes}.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResultChunkWriter openResult(Long jobId) {
+        return new ResultChunkWriter(chunkRepository, objectMapper.getFactory(), jobId, chunkSize, inlineMaxBytes);
+    }
+
+    /**
+     * Splits JSON array of rows into chunks and saves them for the job.
+     * Rows are copied token by token, so only one chunk is held in memory at a time.
+     *
+     * @return total number of stored rows
+     */
+    public long storeResult(Long jobId, String resultJson) {
+        JsonFactory factory = objectMapper.getFactory();
+
+        try (JsonParser parser = factory.createParser(resultJson)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new QueryExecutionJobException("Result should be a JSON array of rows");
+            }
+
+            long totalRows = 0;
+            int chunkIndex = 0;
+            int rowsInChunk = 0;
+            StringWriter buffer = new StringWriter();
+            JsonGenerator generator = factory.createGenerator(buffer);
+            generator.writeStartArray();
+
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                generator.copyCurrentStructure(parser);
+                rowsInChunk++;
+                totalRows++;
+
+                if (rowsInChunk == chunkSize) {
+                    saveChunk(jobId, chunkIndex++, rowsInChunk, generator, buffer);
+                    rowsInChunk = 0;
+                    buffer = new StringWriter();
+                    generator = factory.createGenerator(buffer);
+                    generator.writeStartArray();
+                }
+            }
+
+            if (rowsInChunk > 0) {
+                saveChunk(jobId, chunkIndex, rowsInChunk, generator, buffer);
+            }
+            return totalRows;
+        } catch (IOException e) {
+            throw new QueryExecutionJobException("Failed to store result of job " + jobId, e);
+        }
+    }
+
+    public void deleteResult(Long jobId) {
+        chunkRepository.deleteByJobId(jobId);
+    }
+
+    /**
+     * Reads rows {@code [offset, offset + limit)} of a result holding {@code totalRows} rows,
+     * loading only the chunks that overlap the range.
+     */
+    @Transactional(readOnly = true)
+    public ResultPage readResultPage(Long jobId, long totalRows, long offset, int limit) {
+        if (offset < 0 || limit <= 0) {
+            throw new QueryExecutionJobException("Offset should not be negative and limit should be positive");
+        }
+
+        long end = Math.min(totalRows, offset + limit);
+        if (offset >= end) {
+            return new ResultPage(List.of(), offset, totalRows, null);
+        }
+
+        int firstChunk = (int) (offset / chunkSize);
+        int lastChunk = (int) ((end - 1) / chunkSize);
+
+        List<List<Object>> rows = new ArrayList<>((int) (end - offset));
+        for (QueryResultChunk chunk : chunkRepository.findAllByJobIdAndChunkIndexBetweenOrderByChunkIndexAsc(jobId, firstChunk, lastChunk)) {
+            long chunkStart = (long) chunk.getChunkIndex() * chunkSize;
+            List<List<Object>> chunkRows = parseRows(chunk);
+
+            int from = (int) Math.max(0, offset - chunkStart);
+            int to = (int) Math.min(chunkRows.size(), end - chunkStart);
+            rows.addAll(chunkRows.subList(from, to));
+        }
+
+        String nextCursor = end < totalRows ? encodeCursor(jobId, end) : null;
+        return new ResultPage(rows, offset, totalRows, nextCursor);
+    }
+
+    /**
+     * Writes the whole result of {@code totalRows} rows to {@code outputStream} as one JSON array, loading one chunk
+     * at a time. Every chunk is read in its own transaction, so a slow client doesn't hold a connection.
+     * The stream is flushed but left open for the caller.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void streamResult(Long jobId, long totalRows, OutputStream outputStream) throws IOException {
+        long chunks = (totalRows + chunkSize - 1) / chunkSize;
+        outputStream.write('[');
+        for (int chunkIndex = 0; chunkIndex < chunks; chunkIndex++) {
+            int index = chunkIndex;
+            QueryResultChunk chunk = chunkRepository.findByJobIdAndChunkIndex(jobId, index)
+                    .orElseThrow(() -> new QueryExecutionJobException("Missing result chunk " + index + " of job " + jobId));
+            if (chunkIndex > 0) {
+                outputStream.write(',');
+            }
+            // Chunks are compact JSON arrays, their rows are copied without the brackets
+            String rows = chunk.getRows();
+            outputStream.write(rows.substring(1, rows.length() - 1).getBytes(StandardCharsets.UTF_8));
+        }
+        outputStream.write(']');
+        outputStream.flush();
+    }
+
+    /**
+     * Cursor is an opaque token bound to the job, so it cannot be replayed against another job's result.
+     */
+    public String encodeCursor(Long jobId, long offset) {
+        String raw = jobId + ":" + offset;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public long decodeCursor(Long jobId, String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 2 || !parts[0].equals(String.valueOf(jobId))) {
+                throw new QueryExecutionJobException("Invalid cursor");
+            }
+            return Long.parseLong(parts[1]);
+        } catch (IllegalArgumentException e) {
+            throw new QueryExecutionJobException("Invalid cursor", e);
+        }
+    }
+
+    private void saveChunk(Long jobId, int chunkIndex, int rowCount, JsonGenerator generator, StringWriter buffer) throws IOException {
+        generator.writeEndArray();
+        generator.close();
+        chunkRepository.save(new QueryResultChunk(jobId, chunkIndex, rowCount, buffer.toString()));
+    }
+
+    private List<List<Object>> parseRows(QueryResultChunk chunk) {
+        try {
+            return objectMapper.readValue(chunk.getRows(), ROWS_TYPE);
+        } catch (IOException e) {
+            throw new QueryExecutionJobException("Corrupted result chunk " + chunk.getChunkIndex() + " of job " + chunk.getJobId(), e);
+        }
+    }
+}
@@ -1,35 +1,198 @@
 package com.executor.server.service;
 
+import com.executor.entity.QueryAnalysis;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import net.sf.jsqlparser.JSQLParserException;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.statement.DescribeStatement;
 import net.sf.jsqlparser.statement.ShowStatement;
 import net.sf.jsqlparser.statement.Statement;
 import net.sf.jsqlparser.statement.Statements;
+import net.sf.jsqlparser.statement.select.ParenthesedSelect;
+import net.sf.jsqlparser.statement.select.PlainSelect;
 import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 @Service
 public class QueryValidationService {
 
-    public void validateQuery(String query){
+    // Parsed statements by exact query text, so the same text is parsed only once. Cached ASTs are
+    // shared between callers and must not be modified
+    private final Cache<String, Statement> parsedStatements;
+
+    public QueryValidationService(@Value("${query.validation.ast-cache-size:1000}") long astCacheSize) {
+        this.parsedStatements = Caffeine.newBuilder()
+                .maximumSize(astCacheSize)
+                .build();
+    }
+
+    /**
+     * Checks that query is a single data retrieving statement.
+     *
+     * @return parsed statement, so callers can analyse it without parsing again
+     */
+    public Statement validateQuery(String query){
         if (query == null || query.trim().isEmpty()) {
             throw new SecurityException("Query cannot be empty");
         }
 
-        Statement sqlStatement;
+        // Failed parses are not cached, the exception reaches the caller every time
+        Statement sqlStatement = parsedStatements.get(query, QueryValidationService::parse);
+
+        if (!(sqlStatement instanceof Select || sqlStatement instanceof DescribeStatement || sqlStatement instanceof ShowStatement)){
+            throw new SecurityException("Only retrieving data queries are allowed");
+        }
+
+        return sqlStatement;
+    }
+
+    /**
+     * Collects what later checks need to know about the statement: its type, tables and columns
+     * it reads and whether the number of returned rows is limited.
+     */
+    public QueryAnalysis analyze(Statement statement) {
+        if (statement instanceof Select select) {
+            ColumnCollector collector = new ColumnCollector();
+            List<String> tables = List.copyOf(collector.getTables(select));
+            return new QueryAnalysis(QueryAnalysis.StatementType.SELECT, tables, List.copyOf(collector.columns), isLimited(select));
+        }
+        if (statement instanceof DescribeStatement describe) {
+            return new QueryAnalysis(QueryAnalysis.StatementType.DESCRIBE,
+                    List.of(describe.getTable().getFullyQualifiedName()), List.of(), false);
+        }
+        return new QueryAnalysis(QueryAnalysis.StatementType.SHOW, List.of(), List.of(), false);
+    }
+
+    /**
+     * Builds a fingerprint that is equal for queries differing only in comments, whitespace,
+     * keyword or unquoted identifier case. Literal values are kept, as they change the result.
+     */
+    public String fingerprint(Statement statement) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(canonicalize(statement.toString()).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    /**
+     * Names of the named bind parameters ({@code :name}) of the statement, in order of first use.
+     * H2 casts ({@code ::type}) and quoted text are not parameters.
+     */
+    public List<String> parameterNames(Statement statement) {
+        String sql = statement.toString();
+        Set<String> names = new LinkedHashSet<>();
+
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+
+            if (c == '\'' || c == '"' || c == '`') {
+                i = closingQuote(sql, i);
+            } else if (c == ':' && i + 1 < sql.length() && sql.charAt(i + 1) == ':') {
+                i++;
+            } else if (c == ':' && i + 1 < sql.length() && Character.isJavaIdentifierStart(sql.charAt(i + 1))) {
+                int end = i + 1;
+                while (end < sql.length() && Character.isJavaIdentifierPart(sql.charAt(end))) {
+                    end++;
+                }
+                names.add(sql.substring(i + 1, end));
+                i = end - 1;
+            }
+        }
+        return List.copyOf(names);
+    }
+
+    private static Statement parse(String query) {
         try {
             Statements statements = CCJSqlParserUtil.parseStatements(query);
             if (statements.size() != 1)
                 throw new SecurityException("Query should contain only one statement");
 
-            sqlStatement = statements.getFirst();
+            return statements.getFirst();
         } catch (JSQLParserException e) {
             throw new SecurityException("Bad query", e);
         }
+    }
+
+    private static boolean isLimited(Select select) {
+        if (select instanceof ParenthesedSelect parenthesed && parenthesed.getSelect() != null) {
+            return select.getLimit() != null || select.getFetch() != null || isLimited(parenthesed.getSelect());
+        }
+        return select.getLimit() != null
+                || select.getFetch() != null
+                || select instanceof PlainSelect plainSelect && plainSelect.getTop() != null;
+    }
 
-        if (!(sqlStatement instanceof Select || sqlStatement instanceof DescribeStatement || sqlStatement instanceof ShowStatement)){
-            throw new SecurityException("Only retrieving data queries are allowed");
+    /**
+     * Normalizes SQL deparsed from the AST (which already has no comments and uniform formatting):
+     * collapses whitespace and lower-cases everything outside of quoted literals and identifiers.
+     */
+    static String canonicalize(String sql) {
+        StringBuilder canonical = new StringBuilder(sql.length());
+        boolean pendingSpace = false;
+
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                pendingSpace = !canonical.isEmpty();
+                continue;
+            }
+            if (pendingSpace) {
+                canonical.append(' ');
+                pendingSpace = false;
+            }
+
+            if (c == '\'' || c == '"' || c == '`') {
+                int end = closingQuote(sql, i);
+                canonical.append(sql, i, end + 1);
+                i = end;
+            } else {
+                canonical.append(Character.toLowerCase(c));
+            }
+        }
+        return canonical.toString();
+    }
+
+    // Quote inside a quoted token is escaped by doubling it
+    private static int closingQuote(String sql, int start) {
+        char quote = sql.charAt(start);
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i;
+            }
+            i++;
+        }
+        return sql.length() - 1;
+    }
+
+    // Table finder already walks every expression of the statement, columns are picked up on the way
+    private static class ColumnCollector extends TablesNamesFinder<Void> {
+        private final Set<String> columns = new LinkedHashSet<>();
+
+        @Override
+        public <S> Void visit(Column column, S context) {
+            columns.add(column.getFullyQualifiedName());
+            return super.visit(column, context);
         }
     }
-}
\ No newline at end of file
+}
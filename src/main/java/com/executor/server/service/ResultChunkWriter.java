@@ -0,0 +1,159 @@
+package com.executor.server.service;
+
+import com.executor.entity.QueryResultChunk;
+import com.executor.server.repository.QueryResultChunkRepository;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stores rows of a job result while they are produced: every chunk size rows are saved as one
+ * {@link QueryResultChunk}, so only the chunk being filled is held in memory. The JSON of the whole result
+ * is also kept as long as it stays within {@code keepBytes}, so a small result can be cached and handed
+ * to jobs waiting for the same execution.
+ */
+public class ResultChunkWriter implements RowCallbackHandler {
+    private final QueryResultChunkRepository chunkRepository;
+    private final JsonFactory factory;
+    private final Long jobId;
+    private final int chunkSize;
+    private final int keepBytes;
+
+    private StringWriter buffer;
+    private JsonGenerator generator;
+    private JsonRowWriter rowWriter;
+    private int chunkIndex;
+    private int rowsInChunk;
+    private long rowCount;
+    private StringBuilder kept;
+    private boolean finished;
+
+    ResultChunkWriter(QueryResultChunkRepository chunkRepository, JsonFactory factory, Long jobId, int chunkSize, int keepBytes) {
+        this.chunkRepository = chunkRepository;
+        this.factory = factory;
+        this.jobId = jobId;
+        this.chunkSize = chunkSize;
+        this.keepBytes = keepBytes;
+        reset();
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        try {
+            int start = startRow();
+            rowWriter.processRow(rs);
+            endRow(start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void writeRow(List<?> row) throws IOException {
+        int start = startRow();
+        generator.writeObject(row);
+        endRow(start);
+    }
+
+    /**
+     * Saves the last chunk, rows can't be added afterwards.
+     *
+     * @return number of stored rows
+     */
+    public long finish() throws IOException {
+        if (rowsInChunk > 0) {
+            saveChunk();
+        }
+        if (kept != null) {
+            kept.append(']');
+        }
+        finished = true;
+        return rowCount;
+    }
+
+    /**
+     * Deletes the chunks saved so far, the writer can be used again from the first row.
+     */
+    public void discard() {
+        if (chunkIndex > 0) {
+            chunkRepository.deleteByJobId(jobId);
+        }
+        reset();
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return JSON of the whole finished result, empty if it is larger than the kept size
+     */
+    public Optional<String> getJson() {
+        return finished && kept != null ? Optional.of(kept.toString()) : Optional.empty();
+    }
+
+    private int startRow() throws IOException {
+        if (finished) {
+            throw new IllegalStateException("Result of job " + jobId + " is already finished");
+        }
+        generator.flush();
+        return buffer.getBuffer().length();
+    }
+
+    // Text of the row is copied to the kept JSON, without the separator the generator wrote before it
+    private void endRow(int start) throws IOException {
+        generator.flush();
+        rowCount++;
+        if (kept != null) {
+            StringBuffer chunk = buffer.getBuffer();
+            int from = rowsInChunk > 0 ? start + 1 : start;
+            if (kept.length() + chunk.length() - from + 1 > keepBytes) {
+                kept = null;
+            } else {
+                kept.append(kept.length() > 1 ? "," : "").append(chunk, from, chunk.length());
+            }
+        }
+        if (++rowsInChunk == chunkSize) {
+            saveChunk();
+            startChunk();
+        }
+    }
+
+    private void saveChunk() throws IOException {
+        generator.writeEndArray();
+        generator.close();
+        chunkRepository.save(new QueryResultChunk(jobId, chunkIndex++, rowsInChunk, buffer.toString()));
+        rowsInChunk = 0;
+    }
+
+    private void startChunk() {
+        try {
+            buffer = new StringWriter();
+            generator = factory.createGenerator(buffer);
+            generator.writeStartArray();
+            rowWriter = new JsonRowWriter(generator);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void reset() {
+        chunkIndex = 0;
+        rowsInChunk = 0;
+        rowCount = 0;
+        kept = new StringBuilder("[");
+        finished = false;
+        startChunk();
+    }
+}
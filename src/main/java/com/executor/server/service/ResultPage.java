@@ -0,0 +1,9 @@
+package com.executor.server.service;
+
+import java.util.List;
+
+/**
+ * Slice of a job result starting at {@code offset}. {@code nextCursor} is null once the last row was returned.
+ */
+public record ResultPage(List<List<Object>> rows, long offset, long totalRows, String nextCursor) {
+}
@@ -1,12 +1,27 @@
 package com.executor.server.service;
 
+import com.executor.QueryExecutorConfig;
 import com.executor.entity.StoredQuery;
+import com.executor.entity.User;
+import com.executor.server.repository.KeysetCursor;
 import com.executor.server.repository.StoredQueryRepository;
+import net.sf.jsqlparser.statement.Statement;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 @Transactional
 @Service
@@ -14,30 +29,175 @@ public class StoredQueryService {
 
     private final StoredQueryRepository queryRepository;
     private final QueryValidationService validationService;
+    private final ForkJoinPool validationPool;
+    private final CurrentUserService currentUserService;
 
-    public StoredQueryService(StoredQueryRepository queryRepository, QueryValidationService validationService) {
+    public StoredQueryService(StoredQueryRepository queryRepository, QueryValidationService validationService,
+                              @Qualifier(QueryExecutorConfig.VALIDATION_POOL) ForkJoinPool validationPool,
+                              CurrentUserService currentUserService) {
         this.queryRepository = queryRepository;
         this.validationService = validationService;
+        this.validationPool = validationPool;
+        this.currentUserService = currentUserService;
     }
 
+    /**
+     * Stores the query, owned by the authenticated user.
+     */
     public StoredQuery addQuery(String query) throws StoredQueryException {
+        StoredQuery newQuery = prepareQuery(query);
+        newQuery.setOwner(currentUserService.getUser().orElse(null));
+        return queryRepository.save(newQuery);
+    }
+
+    /**
+     * Validates all queries in parallel and stores the valid ones in batches, owned by the authenticated user.
+     * Invalid queries don't stop the import.
+     *
+     * @return outcome of every query, in the order of {@code queries}
+     */
+    public List<QueryImportResult> importQueries(List<String> queries) {
+        // Read on the request thread, the security context isn't passed to the validation pool
+        User owner = currentUserService.getUser().orElse(null);
+        // Parallel stream started inside the pool runs its tasks there instead of in the common pool
+        List<PreparedQuery> prepared = validationPool.submit(() -> IntStream.range(0, queries.size())
+                .parallel()
+                .mapToObj(i -> tryPrepareQuery(queries.get(i)))
+                .toList()).join();
+
+        List<StoredQuery> valid = prepared.stream()
+                .map(PreparedQuery::query)
+                .filter(Objects::nonNull)
+                .toList();
+        valid.forEach(query -> query.setOwner(owner));
+        queryRepository.insertAll(valid);
+
+        List<QueryImportResult> results = new ArrayList<>(prepared.size());
+        for (int i = 0; i < prepared.size(); i++) {
+            PreparedQuery item = prepared.get(i);
+            results.add(new QueryImportResult(i, item.query() == null ? null : item.query().getId(), item.error()));
+        }
+        return results;
+    }
+
+    // Parses the query once and keeps everything later stages need from the AST
+    private StoredQuery prepareQuery(String query) {
         if (query == null || query.trim().isEmpty()) {
             throw new StoredQueryException("Query cannot be null");
         }
 
-        validationService.validateQuery(query);
+        Statement statement = validationService.validateQuery(query);
 
         StoredQuery newQuery = new StoredQuery(query);
-        return queryRepository.save(newQuery);
+        newQuery.setFingerprint(validationService.fingerprint(statement));
+        newQuery.setParameterNames(validationService.parameterNames(statement));
+        newQuery.setAnalysis(validationService.analyze(statement));
+        return newQuery;
+    }
+
+    // Any failure rejects only its own item, one unexpected error must not fail the whole import
+    private PreparedQuery tryPrepareQuery(String query) {
+        try {
+            return new PreparedQuery(prepareQuery(query), null);
+        } catch (RuntimeException e) {
+            return new PreparedQuery(null, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+    }
+
+    // Either the query ready to be stored or the reason it was rejected
+    private record PreparedQuery(StoredQuery query, String error) {
     }
 
     public List<StoredQuery> getAllQueries() {
         return queryRepository.findAllByOrderByCreatedAtDesc();
     }
 
+    /**
+     * Page of queries, newest first, starting after {@code cursor} (first page if null).
+     * Owner filter is skipped when null.
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<StoredQuery> listQueries(Long ownerId, String cursor, int limit) {
+        Specification<StoredQuery> filter = (root, query, builder) -> builder.conjunction();
+        if (ownerId != null) {
+            filter = filter.and((root, query, builder) -> builder.equal(root.get("owner").get("id"), ownerId));
+        }
+        if (cursor != null) {
+            try {
+                filter = filter.and(KeysetCursor.decode(cursor).rowsAfter());
+            } catch (IllegalArgumentException e) {
+                throw new StoredQueryException("Invalid cursor", e);
+            }
+        }
+
+        List<StoredQuery> rows = queryRepository.findBy(filter, query -> query.sortBy(KeysetCursor.ORDER).limit(limit + 1).all());
+        return KeysetPage.of(rows, limit, query -> new KeysetCursor(query.getCreatedAt(), query.getId()));
+    }
+
     public Optional<StoredQuery> getQueryById(Long id) {
         return queryRepository.findById(id);
     }
 
+    /**
+     * Checks that values are given for exactly the parameters of the query. A value is a single
+     * scalar, or a list of scalars for {@code IN (:name)}.
+     */
+    public void validateParameters(StoredQuery query, Map<String, ?> values) {
+        Set<String> missing = new LinkedHashSet<>(query.getParameterNames());
+        missing.removeAll(values.keySet());
+        if (!missing.isEmpty()) {
+            throw new StoredQueryException("Missing query parameters: " + missing);
+        }
+
+        Set<String> unknown = new LinkedHashSet<>(values.keySet());
+        query.getParameterNames().forEach(unknown::remove);
+        if (!unknown.isEmpty()) {
+            throw new StoredQueryException("Unknown query parameters: " + unknown);
+        }
+
+        values.forEach((name, value) -> {
+            boolean nested = value instanceof Map<?, ?>
+                    || value instanceof Collection<?> list && list.stream().anyMatch(item -> item instanceof Map<?, ?> || item instanceof Collection<?>);
+            if (nested) {
+                throw new StoredQueryException("Parameter " + name + " should be a value or a list of values");
+            }
+        });
+    }
+
+    /**
+     * Loads all queries with one lookup.
+     *
+     * @throws StoredQueryException if any of the ids doesn't exist
+     */
+    public List<StoredQuery> getQueriesByIds(Collection<Long> ids) {
+        Set<Long> requested = new HashSet<>(ids);
+        List<StoredQuery> queries = queryRepository.findAllById(requested);
 
+        if (queries.size() != requested.size()) {
+            queries.forEach(query -> requested.remove(query.getId()));
+            throw new StoredQueryException("Queries not found: " + requested);
+        }
+        return queries;
+    }
+
+    /**
+     * Adds executions counted since the last call to the stored queries, one update per query.
+     */
+    public void addExecutions(Map<Long, Long> counts) {
+        counts.forEach(queryRepository::addExecutions);
+    }
+
+    /**
+     * Queries an operator set to ALWAYS, plus AUTO ones executed at least {@code threshold} times, most executed first.
+     */
+    public List<StoredQuery> getMaterializationCandidates(long threshold) {
+        return queryRepository.findMaterializationCandidates(threshold,
+                StoredQuery.MaterializationMode.ALWAYS, StoredQuery.MaterializationMode.AUTO);
+    }
+
+    public StoredQuery setMaterialization(Long id, StoredQuery.MaterializationMode mode) {
+        StoredQuery query = queryRepository.findById(id).orElseThrow(() -> new StoredQueryException("Query not found"));
+        query.setMaterialization(mode);
+        return query;
+    }
 }
@@ -0,0 +1,85 @@
+package com.executor.server.service;
+
+import com.executor.server.repository.DatasetRepository;
+import com.executor.server.repository.DatasetVersion;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Published versions of datasets as counted in dataset_catalog. Cached results are tagged with the versions of
+ * the datasets they read and count as stale once any of them moves on.
+ * <p>
+ * The catalog is the only source of versions: a table is read from it the first time it is asked for, and
+ * {@link DatasetPublisher} passes every version it records, so lookups don't touch the database afterwards.
+ * Tables missing from the catalog aren't datasets, nothing tells when they change. Tables are keyed by their
+ * unqualified upper-case name, so {@code titanic}, {@code "TITANIC"} and {@code PUBLIC.Titanic} are one table.
+ */
+@Component
+public class TableVersions {
+    private static final long NOT_A_DATASET = -1;
+
+    private final DatasetRepository datasetRepository;
+    private final ConcurrentMap<String, Long> versions = new ConcurrentHashMap<>();
+
+    public TableVersions(DatasetRepository datasetRepository) {
+        this.datasetRepository = datasetRepository;
+    }
+
+    /**
+     * Records a version just counted in the catalog, an older one arriving late is ignored.
+     */
+    public void published(String table, long version) {
+        versions.merge(tableKey(table), version, Math::max);
+    }
+
+    /**
+     * @return current versions of the tables, to be checked later with {@link #isCurrent(Map)};
+     * empty if any of them is not a dataset, or if there are none (e.g. {@code SELECT NOW()}) as nothing tells
+     * when such a result changes
+     */
+    public Optional<Map<String, Long>> snapshot(Collection<String> tables) {
+        if (tables.isEmpty()) {
+            return Optional.empty();
+        }
+        Map<String, Long> snapshot = new HashMap<>();
+        for (String table : tables) {
+            long version = current(tableKey(table));
+            if (version == NOT_A_DATASET) {
+                return Optional.empty();
+            }
+            snapshot.put(tableKey(table), version);
+        }
+        return Optional.of(snapshot);
+    }
+
+    /**
+     * @return true if none of the datasets got a new version since the snapshot was taken
+     */
+    public boolean isCurrent(Map<String, Long> snapshot) {
+        for (Map.Entry<String, Long> table : snapshot.entrySet()) {
+            if (current(table.getKey()) != table.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long current(String key) {
+        return versions.computeIfAbsent(key, name -> datasetRepository.findVersion(name).map(DatasetVersion::version).orElse(NOT_A_DATASET));
+    }
+
+    /**
+     * Table name as written in a query, without schema and quotes, in upper case.
+     */
+    static String tableKey(String name) {
+        String unqualified = name.substring(name.lastIndexOf('.') + 1);
+        return unqualified.replaceAll("[\"`\\[\\]]", "").toUpperCase(Locale.ROOT);
+    }
+}
@@ -6,15 +6,20 @@ import com.executor.server.repository.UserRepository;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+// Every change of a user revokes its access tokens along with the change and drops what AuthenticationCache holds
+// for it once saved, so it applies to the next request.
+// Methods are not transactional on purpose: invalidating before commit would let a request cache the old state again
 @Service
 public class UserManagingService {
 
     private final UserRepository userRepo;
     private final PasswordEncoder passwordEncoder;
+    private final AuthenticationCache authenticationCache;
 
-    public UserManagingService(UserRepository userRepo, PasswordEncoder passwordEncoder) {
+    public UserManagingService(UserRepository userRepo, PasswordEncoder passwordEncoder, AuthenticationCache authenticationCache) {
         this.userRepo = userRepo;
         this.passwordEncoder = passwordEncoder;
+        this.authenticationCache = authenticationCache;
     }
 
     public void registerUser(String name, String password, Authority.USER_ROLES role) {
@@ -26,5 +31,28 @@ public class UserManagingService {
         user.addAuthority(role);
 
         userRepo.save(user);
+        authenticationCache.invalidate(name);
+    }
+
+    public void changePassword(String name, String password) {
+        User user = findUser(name);
+        user.setPassword(passwordEncoder.encode(password));
+        saveAndRevokeTokens(user);
+    }
+
+    public void setEnabled(String name, boolean enabled) {
+        User user = findUser(name);
+        user.setEnabled(enabled);
+        saveAndRevokeTokens(user);
+    }
+
+    private void saveAndRevokeTokens(User user) {
+        user.setTokensValidAfter(System.currentTimeMillis());
+        userRepo.save(user);
+        authenticationCache.invalidate(user.getUsername());
+    }
+
+    private User findUser(String name) {
+        return userRepo.findByUsername(name).orElseThrow(() -> new IllegalArgumentException("User not found: " + name));
     }
 }
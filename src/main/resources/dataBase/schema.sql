@@ -2,7 +2,6 @@ DROP TABLE IF EXISTS QueryExecutionJob;
 DROP TABLE IF EXISTS StoredQueries;
 DROP TABLE IF EXISTS authorities;
 DROP TABLE IF EXISTS users;
-DROP TABLE IF EXISTS Titanic;
 
 CREATE TABLE users
 (
@@ -10,6 +9,7 @@ CREATE TABLE users
     username VARCHAR(50)  NOT NULL,
     password VARCHAR(100) NOT NULL,
     enabled  BOOLEAN      NOT NULL,
+    tokens_valid_after BIGINT,
     CONSTRAINT uq_username UNIQUE (username)
 );
 
@@ -27,6 +27,7 @@ CREATE TABLE StoredQueries
 (
     id        INT PRIMARY KEY AUTO_INCREMENT,
     query     VARCHAR NOT NULL,
+    fingerprint VARCHAR(64) NOT NULL,
     createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     user_id   INT,
     CONSTRAINT storedQueries_user FOREIGN KEY (user_id) REFERENCES users (id_users)
@@ -37,13 +38,22 @@ CREATE TABLE QueryExecutionJob
     id            INT PRIMARY KEY AUTO_INCREMENT,
     sourceQueryId VARCHAR NOT NULL,
     status        VARCHAR NOT NULL,
-    result        VARCHAR,
+    resultRowCount BIGINT,
     errorMessage  VARCHAR,
     createdAt     Date,
     user_id       INT,
     CONSTRAINT jobs_user FOREIGN KEY (user_id) REFERENCES users (id_users)
 );
 
-CREATE TABLE Titanic AS
-SELECT *
-FROM CSVREAD('src/main/resources/static/titanic.csv');
\ No newline at end of file
+-- Datasets outlive restarts in a file database, so their catalog is only created once
+CREATE TABLE IF NOT EXISTS dataset_catalog
+(
+    name            VARCHAR PRIMARY KEY,
+    version         BIGINT    NOT NULL,
+    row_count       BIGINT    NOT NULL,
+    published_at    TIMESTAMP NOT NULL,
+    source_location VARCHAR,
+    source_size     BIGINT,
+    source_modified BIGINT,
+    source_checksum VARCHAR(64)
+);
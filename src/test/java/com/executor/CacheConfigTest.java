@@ -0,0 +1,66 @@
+package com.executor;
+
+import com.executor.server.service.CachedResult;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy.VarExpiration;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheConfigTest {
+
+    private final CacheConfig cacheConfig = new CacheConfig();
+
+    @Test
+    void estimateBytes_GrowsWithValueLength() {
+        int small = CacheConfig.estimateBytes("SELECT 1", "[[1]]");
+        int large = CacheConfig.estimateBytes("SELECT 1", "[" + "[1],".repeat(1000) + "[1]]");
+
+        assertTrue(large > small);
+        assertTrue(large >= 4000);
+    }
+
+    @Test
+    void estimateBytes_CachedResult_CountsResultLength() {
+        String json = "[" + "[1],".repeat(1000) + "[1]]";
+
+        assertTrue(CacheConfig.estimateBytes("key", new CachedResult(json, Map.of("TITANIC", 1L))) > json.length());
+    }
+
+    @Test
+    void cacheManager_EvictsEntriesOverMemoryBudget() {
+        CacheManager cacheManager = cacheConfig.cacheManager(1000, Duration.ofMinutes(10), Duration.ofHours(6));
+        CaffeineCache cache = (CaffeineCache) cacheManager.getCache(CacheConfig.QUERY_RESULTS_CACHE);
+        assertNotNull(cache);
+
+        for (int i = 0; i < 20; i++) {
+            cache.put("query" + i, "x".repeat(200));
+        }
+
+        Cache<Object, Object> nativeCache = cache.getNativeCache();
+        nativeCache.cleanUp();
+
+        long totalWeight = nativeCache.policy().eviction().orElseThrow().weightedSize().orElseThrow();
+        assertTrue(totalWeight <= 1000);
+        assertTrue(nativeCache.estimatedSize() < 20);
+    }
+
+    @Test
+    void cacheManager_KeepsTaggedResultsForDatasetTtl() {
+        CacheManager cacheManager = cacheConfig.cacheManager(1000, Duration.ofMinutes(5), Duration.ofHours(6));
+        CaffeineCache cache = (CaffeineCache) cacheManager.getCache(CacheConfig.QUERY_RESULTS_CACHE);
+        assertNotNull(cache);
+
+        cache.put("tagged", new CachedResult("[[1]]", Map.of("TITANIC", 1L)));
+        cache.put("untagged", CachedResult.untagged("[[1]]"));
+
+        VarExpiration<Object, Object> expiration = cache.getNativeCache().policy().expireVariably().orElseThrow();
+        assertTrue(expiration.getExpiresAfter("tagged").orElseThrow().compareTo(Duration.ofMinutes(5)) > 0);
+        assertTrue(expiration.getExpiresAfter("untagged").orElseThrow().compareTo(Duration.ofMinutes(5)) <= 0);
+    }
+}
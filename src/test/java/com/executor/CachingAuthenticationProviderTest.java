@@ -0,0 +1,84 @@
+package com.executor;
+
+import com.executor.server.service.AuthenticationCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CachingAuthenticationProviderTest {
+
+    @Mock
+    private AuthenticationProvider delegate;
+
+    private final AuthenticationCache authenticationCache = new AuthenticationCache(Duration.ofMinutes(1), 100);
+
+    private final UserDetails user = User.withUsername("user").password("{bcrypt}hash").roles("ANALYST").build();
+
+    @Test
+    void authenticate_SameCredentialsTwice_DelegatesOnce() {
+        CachingAuthenticationProvider provider = new CachingAuthenticationProvider(delegate, authenticationCache);
+        when(delegate.authenticate(any())).thenReturn(UsernamePasswordAuthenticationToken.authenticated(user, "secret", user.getAuthorities()));
+
+        provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("user", "secret"));
+        Authentication cached = provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("user", "secret"));
+
+        verify(delegate, times(1)).authenticate(any());
+        assertTrue(cached.isAuthenticated());
+        assertEquals("user", cached.getName());
+        assertNull(cached.getCredentials());
+        assertEquals(user.getAuthorities(), cached.getAuthorities());
+    }
+
+    @Test
+    void authenticate_DifferentPassword_IsVerifiedAgain() {
+        CachingAuthenticationProvider provider = new CachingAuthenticationProvider(delegate, authenticationCache);
+        when(delegate.authenticate(any()))
+                .thenReturn(UsernamePasswordAuthenticationToken.authenticated(user, "secret", user.getAuthorities()))
+                .thenThrow(new BadCredentialsException("Bad credentials"));
+
+        provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("user", "secret"));
+
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("user", "wrong")));
+        verify(delegate, times(2)).authenticate(any());
+    }
+
+    @Test
+    void authenticate_UserInvalidated_IsVerifiedAgain() {
+        CachingAuthenticationProvider provider = new CachingAuthenticationProvider(delegate, authenticationCache);
+        when(delegate.authenticate(any())).thenReturn(UsernamePasswordAuthenticationToken.authenticated(user, "secret", user.getAuthorities()));
+
+        provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("user", "secret"));
+        authenticationCache.invalidate("user");
+        provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("user", "secret"));
+
+        verify(delegate, times(2)).authenticate(any());
+    }
+
+    @Test
+    void userCache_ReturnsCopies() {
+        authenticationCache.putUserInCache(user);
+
+        UserDetails first = authenticationCache.getUserFromCache("user");
+        ((User) first).eraseCredentials();
+
+        assertEquals("{bcrypt}hash", authenticationCache.getUserFromCache("user").getPassword());
+
+        authenticationCache.invalidate("user");
+        assertNull(authenticationCache.getUserFromCache("user"));
+    }
+}
@@ -0,0 +1,59 @@
+package com.executor;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryExecutorConfigTest {
+
+    private final QueryExecutorConfig config = new QueryExecutorConfig();
+
+    @Test
+    void queryExecutor_QueueFull_RejectsWork() throws Exception {
+        ThreadPoolTaskExecutor executor = config.queryExecutor(1, 1, false);
+        executor.initialize();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.execute(() -> awaitQuietly(release));
+            executor.execute(() -> awaitQuietly(release));
+
+            assertThrows(TaskRejectedException.class, () -> executor.execute(() -> { }));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void queryExecutor_VirtualThreads_RunsOnVirtualThread() throws Exception {
+        ThreadPoolTaskExecutor executor = config.queryExecutor(2, 10, true);
+        executor.initialize();
+        AtomicBoolean virtual = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            executor.execute(() -> {
+                virtual.set(Thread.currentThread().isVirtual());
+                done.countDown();
+            });
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertTrue(virtual.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
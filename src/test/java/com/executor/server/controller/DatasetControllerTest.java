@@ -0,0 +1,93 @@
+package com.executor.server.controller;
+
+import com.executor.entity.DatasetIngestionJob;
+import com.executor.entity.QueryExecutionJob;
+import com.executor.server.service.DatasetException;
+import com.executor.server.service.DatasetFormat;
+import com.executor.server.service.DatasetIngestionService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DatasetControllerTest {
+
+    @Mock
+    private DatasetIngestionService ingestionService;
+
+    @InjectMocks
+    private DatasetController datasetController;
+
+    private final InputStream body = new ByteArrayInputStream(new byte[0]);
+
+    private static DatasetIngestionJob job(QueryExecutionJob.JobStatus status, String error) {
+        DatasetIngestionJob job = new DatasetIngestionJob("Data");
+        job.setStatus(status);
+        job.setRowsLoaded(3);
+        job.setErrorMessage(error);
+        return job;
+    }
+
+    @Test
+    void uploadDataset_Completed_ReturnsCreated() {
+        when(ingestionService.ingest("Data", DatasetFormat.CSV, body)).thenReturn(job(QueryExecutionJob.JobStatus.COMPLETED, null));
+
+        ResponseEntity<Map<String, Object>> response = datasetController.uploadDataset("Data", MediaType.parseMediaType("text/csv"), body);
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertEquals(QueryExecutionJob.JobStatus.COMPLETED, response.getBody().get("status"));
+        assertEquals(3L, response.getBody().get("rowsLoaded"));
+        assertFalse(response.getBody().containsKey("error"));
+    }
+
+    @Test
+    void uploadDataset_Ndjson_UsesNdjsonFormat() {
+        when(ingestionService.ingest(any(), any(), any())).thenReturn(job(QueryExecutionJob.JobStatus.COMPLETED, null));
+
+        datasetController.uploadDataset("Data", MediaType.parseMediaType("application/x-ndjson;charset=UTF-8"), body);
+
+        verify(ingestionService).ingest("Data", DatasetFormat.NDJSON, body);
+    }
+
+    @Test
+    void uploadDataset_Failed_ReturnsBadRequestWithError() {
+        when(ingestionService.ingest("Data", DatasetFormat.CSV, body))
+                .thenReturn(job(QueryExecutionJob.JobStatus.FAILED, "Record 3 has 1 fields, header has 2"));
+
+        ResponseEntity<Map<String, Object>> response = datasetController.uploadDataset("Data", MediaType.parseMediaType("text/csv"), body);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Record 3 has 1 fields, header has 2", response.getBody().get("error"));
+    }
+
+    @Test
+    void uploadDataset_InvalidName_ReturnsBadRequest() {
+        when(ingestionService.ingest("users", DatasetFormat.CSV, body)).thenThrow(new DatasetException("Table users exists and is not a dataset"));
+
+        ResponseEntity<Map<String, Object>> response = datasetController.uploadDataset("users", MediaType.parseMediaType("text/csv"), body);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("Table users exists and is not a dataset", response.getBody().get("message"));
+    }
+
+    @Test
+    void getIngestion_UnknownJob_ReturnsNotFound() {
+        when(ingestionService.getJob(42L)).thenReturn(Optional.empty());
+
+        assertEquals(HttpStatus.NOT_FOUND, datasetController.getIngestion(42L).getStatusCode());
+    }
+}
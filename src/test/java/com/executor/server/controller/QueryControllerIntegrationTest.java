@@ -2,6 +2,7 @@ package com.executor.server.controller;
 
 import com.executor.entity.StoredQuery;
 import com.executor.server.service.StoredQueryService;
+import com.jayway.jsonpath.JsonPath;
 import jakarta.servlet.ServletException;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -96,7 +97,8 @@ public class QueryControllerIntegrationTest {
     public void getAllQueries_EmptyDatabase_ReturnsEmptyList() throws Exception {
         mockMvc.perform(get("/api/queries"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.length()").value(0));
+                .andExpect(jsonPath("$.items.length()").value(0))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
     }
 
     @Test
@@ -106,11 +108,32 @@ public class QueryControllerIntegrationTest {
 
         mockMvc.perform(get("/api/queries"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.length()").value(2))
-                .andExpect(jsonPath("$[0].id").value(query2.getId()))
-                .andExpect(jsonPath("$[0].query").value("SELECT name FROM table2"))
-                .andExpect(jsonPath("$[1].id").value(query1.getId()))
-                .andExpect(jsonPath("$[1].query").value("SELECT * FROM table1"));
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].id").value(query2.getId()))
+                .andExpect(jsonPath("$.items[0].query").value("SELECT name FROM table2"))
+                .andExpect(jsonPath("$.items[1].id").value(query1.getId()))
+                .andExpect(jsonPath("$.items[1].query").value("SELECT * FROM table1"));
+    }
+
+    @Test
+    public void getAllQueries_PagedByCursor_ReturnsEveryQueryOnce() throws Exception {
+        StoredQuery query1 = queryService.addQuery("SELECT * FROM table1");
+        StoredQuery query2 = queryService.addQuery("SELECT name FROM table2");
+        StoredQuery query3 = queryService.addQuery("SELECT age FROM table3");
+
+        String firstPage = mockMvc.perform(get("/api/queries").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].id").value(query3.getId()))
+                .andExpect(jsonPath("$.items[1].id").value(query2.getId()))
+                .andReturn().getResponse().getContentAsString();
+        String cursor = JsonPath.read(firstPage, "$.nextCursor");
+
+        mockMvc.perform(get("/api/queries").param("limit", "2").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].id").value(query1.getId()))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
     }
 
     @Test
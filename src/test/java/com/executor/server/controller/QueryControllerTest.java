@@ -2,23 +2,43 @@ package com.executor.server.controller;
 
 import com.executor.entity.QueryExecutionJob;
 import com.executor.entity.StoredQuery;
+import com.executor.server.repository.JobStatusView;
+import com.executor.server.service.JobCompletionNotifier;
+import com.executor.server.service.JobFinishedEvent;
+import com.executor.server.service.KeysetPage;
+import com.executor.server.service.MaterializedQueryService;
+import com.executor.server.service.QueryExecutionJobException;
 import com.executor.server.service.QueryExecutionJobService;
 import com.executor.server.service.AsyncQueryManagingService;
+import com.executor.server.service.QueryExecutionService;
+import com.executor.server.service.QueryImportResult;
+import com.executor.server.service.QueryResultStorageService;
+import com.executor.server.service.ResultPage;
 import com.executor.server.service.StoredQueryService;
 import com.executor.server.service.StoredQueryException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -35,6 +55,24 @@ public class QueryControllerTest {
     @Mock
     private QueryExecutionJobService jobService;
 
+    @Mock
+    private QueryExecutionService queryExecutionService;
+
+    @Mock
+    private QueryResultStorageService resultStorageService;
+
+    @Mock
+    private JobCompletionNotifier completionNotifier;
+
+    @Mock
+    private MaterializedQueryService materializedQueryService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private SyncTaskExecutor webAsyncExecutor = new SyncTaskExecutor();
+
     @InjectMocks
     private QueryController queryController;
 
@@ -56,6 +94,46 @@ public class QueryControllerTest {
         verify(queryService).addQuery(queryText);
     }
 
+    @Test
+    public void importQueries_JsonArray_ReturnsPerItemOutcome() throws Exception {
+        List<QueryImportResult> results = List.of(new QueryImportResult(0, 7L, null), new QueryImportResult(1, null, "Bad query"));
+        when(queryService.importQueries(List.of("SELECT 1", "SELEC 2"))).thenReturn(results);
+
+        ResponseEntity<Map<String, Object>> response = queryController.importQueries(
+                List.of(objectMapper.readTree("\"SELECT 1\""), objectMapper.readTree("{\"query\": \"SELEC 2\"}")));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1L, response.getBody().get("imported"));
+        assertEquals(1L, response.getBody().get("failed"));
+        assertEquals(results, response.getBody().get("results"));
+    }
+
+    @Test
+    public void importQueriesNdjson_SkipsBlankLines() {
+        when(queryService.importQueries(List.of("SELECT 1", "SELECT 2"))).thenReturn(List.of(
+                new QueryImportResult(0, 7L, null), new QueryImportResult(1, 8L, null)));
+
+        ResponseEntity<Map<String, Object>> response = queryController.importQueriesNdjson("\"SELECT 1\"\n\n{\"query\": \"SELECT 2\"}\n");
+
+        assertEquals(2L, response.getBody().get("imported"));
+        verify(queryService).importQueries(List.of("SELECT 1", "SELECT 2"));
+    }
+
+    @Test
+    public void importQueriesNdjson_InvalidLine_ThrowsException() {
+        StoredQueryException exception = assertThrows(StoredQueryException.class,
+                () -> queryController.importQueriesNdjson("\"SELECT 1\"\n{broken"));
+
+        assertEquals("Line 2 is not valid JSON", exception.getMessage());
+        verifyNoInteractions(queryService);
+    }
+
+    @Test
+    public void importQueries_Empty_ThrowsException() {
+        assertThrows(StoredQueryException.class, () -> queryController.importQueries(List.of()));
+        verifyNoInteractions(queryService);
+    }
+
     @Test
     public void storeQuery_ComplexQuery_ReturnsId() {
         String complexQuery = "SELECT name, age FROM passengers WHERE age > 18 AND survived = 1 ORDER BY name";
@@ -85,20 +163,20 @@ public class QueryControllerTest {
     }
 
     @Test
-    public void getAllQueries_EmptyList_ReturnsEmptyList() {
-        when(queryService.getAllQueries()).thenReturn(List.of());
+    public void getAllQueries_EmptyList_ReturnsEmptyPage() {
+        when(queryService.listQueries(null, null, 100)).thenReturn(new KeysetPage<>(List.of(), null));
 
-        ResponseEntity<List<StoredQuery>> response = queryController.getAllQueries();
+        ResponseEntity<KeysetPage<StoredQuery>> response = queryController.getAllQueries(null, null, 100);
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
-        assertTrue(response.getBody().isEmpty());
-        verify(queryService).getAllQueries();
+        assertTrue(response.getBody().items().isEmpty());
+        assertNull(response.getBody().nextCursor());
     }
 
     @Test
-    public void getAllQueries_WithQueries_ReturnsList() {
+    public void getAllQueries_WithQueries_ReturnsPage() {
         StoredQuery query1 = new StoredQuery("SELECT * FROM table1");
         query1.setId(1L);
         query1.setCreatedAt(LocalDateTime.now());
@@ -107,18 +185,25 @@ public class QueryControllerTest {
         query2.setId(2L);
         query2.setCreatedAt(LocalDateTime.now().minusHours(1));
 
-        List<StoredQuery> queries = List.of(query1, query2);
-
-        when(queryService.getAllQueries()).thenReturn(queries);
+        when(queryService.listQueries(7L, "cursor", 2)).thenReturn(new KeysetPage<>(List.of(query1, query2), "next"));
 
-        ResponseEntity<List<StoredQuery>> response = queryController.getAllQueries();
+        ResponseEntity<KeysetPage<StoredQuery>> response = queryController.getAllQueries(7L, "cursor", 2);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(2, Objects.requireNonNull(response.getBody()).size());
-        assertEquals(query1, response.getBody().get(0));
-        assertEquals(query2, response.getBody().get(1));
+        assertEquals(List.of(query1, query2), Objects.requireNonNull(response.getBody()).items());
+        assertEquals("next", response.getBody().nextCursor());
+    }
+
+    @Test
+    public void getAllQueries_LimitOutOfRange_IsClamped() {
+        when(queryService.listQueries(null, null, 1000)).thenReturn(new KeysetPage<>(List.of(), null));
+        when(queryService.listQueries(null, null, 1)).thenReturn(new KeysetPage<>(List.of(), null));
+
+        queryController.getAllQueries(null, null, 1_000_000);
+        queryController.getAllQueries(null, null, 0);
 
-        verify(queryService).getAllQueries();
+        verify(queryService).listQueries(null, null, 1000);
+        verify(queryService).listQueries(null, null, 1);
     }
 
     @Test
@@ -133,11 +218,10 @@ public class QueryControllerTest {
         job.setStatus(QueryExecutionJob.JobStatus.PENDING);
 
         when(queryService.getQueryById(queryId)).thenReturn(Optional.of(storedQuery));
-        when(jobService.getJobById(queryId)).thenReturn(Optional.empty());
-        when(jobService.addJob(queryId)).thenReturn(job);
-        doNothing().when(executionService).executeQuery(job.getId());
+        when(jobService.addJob(queryId, Map.of())).thenReturn(job);
+        doNothing().when(executionService).executeQuery(job.getId(), Map.of());
 
-        ResponseEntity<?> response = queryController.executeQuery(queryId);
+        ResponseEntity<?> response = queryController.executeQuery(queryId, null);
 
         assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
         assertNotNull(response.getBody());
@@ -152,9 +236,8 @@ public class QueryControllerTest {
         assertTrue(response.getHeaders().getLocation().toString().contains("/execution/100/status"));
 
         verify(queryService).getQueryById(queryId);
-        verify(jobService).getJobById(queryId);
-        verify(jobService).addJob(queryId);
-        verify(executionService).executeQuery(job.getId());
+        verify(jobService).addJob(queryId, Map.of());
+        verify(executionService).executeQuery(job.getId(), Map.of());
     }
 
     @Test
@@ -163,43 +246,19 @@ public class QueryControllerTest {
         when(queryService.getQueryById(queryId)).thenReturn(Optional.empty());
 
         RuntimeException exception = assertThrows(RuntimeException.class,
-                () -> queryController.executeQuery(queryId));
+                () -> queryController.executeQuery(queryId, null));
 
         assertEquals("Query not found", exception.getMessage());
         verify(queryService).getQueryById(queryId);
         verifyNoInteractions(jobService, executionService);
     }
 
-    @Test
-    public void executeQuery_JobAlreadyExists_ThrowsException() {
-        Long queryId = 1L;
-        StoredQuery storedQuery = new StoredQuery("SELECT * FROM test");
-        storedQuery.setId(queryId);
-
-        QueryExecutionJob existingJob = new QueryExecutionJob();
-        existingJob.setId(queryId);
-
-        when(queryService.getQueryById(queryId)).thenReturn(Optional.of(storedQuery));
-        when(jobService.getJobById(queryId)).thenReturn(Optional.of(existingJob));
-
-        RuntimeException exception = assertThrows(RuntimeException.class,
-                () -> queryController.executeQuery(queryId));
-
-        assertEquals("Job already exists", exception.getMessage());
-        verify(queryService).getQueryById(queryId);
-        verify(jobService).getJobById(queryId);
-        verifyNoMoreInteractions(jobService);
-        verifyNoInteractions(executionService);
-    }
-
     @Test
     public void getStatus_ValidJobId_ReturnsStatus() {
         Long jobId = 100L;
-        QueryExecutionJob job = new QueryExecutionJob();
-        job.setId(jobId);
-        job.setStatus(QueryExecutionJob.JobStatus.RUNNING);
+        JobStatusView job = new JobStatusView(jobId, 1L, QueryExecutionJob.JobStatus.RUNNING, null, null, null);
 
-        when(jobService.getJobById(jobId)).thenReturn(Optional.of(job));
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(job));
 
         ResponseEntity<?> response = queryController.getStatus(jobId);
 
@@ -210,29 +269,28 @@ public class QueryControllerTest {
         assertEquals(jobId, responseBody.get("jobId"));
         assertEquals(QueryExecutionJob.JobStatus.RUNNING, responseBody.get("status"));
 
-        verify(jobService).getJobById(jobId);
+        verify(jobService).getJobStatus(jobId);
+        verify(jobService, never()).getJobById(any());
     }
 
     @Test
     public void getStatus_JobNotFound_ThrowsException() {
         Long jobId = 999L;
-        when(jobService.getJobById(jobId)).thenReturn(Optional.empty());
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.empty());
 
         RuntimeException exception = assertThrows(RuntimeException.class,
                 () -> queryController.getStatus(jobId));
 
         assertEquals("Job not found", exception.getMessage());
-        verify(jobService).getJobById(jobId);
+        verify(jobService).getJobStatus(jobId);
     }
 
     @Test
     public void getStatus_CompletedJob_ReturnsCompletedStatus() {
         Long jobId = 100L;
-        QueryExecutionJob job = new QueryExecutionJob();
-        job.setId(jobId);
-        job.setStatus(QueryExecutionJob.JobStatus.COMPLETED);
+        JobStatusView job = new JobStatusView(jobId, 1L, QueryExecutionJob.JobStatus.COMPLETED, null, null, null);
 
-        when(jobService.getJobById(jobId)).thenReturn(Optional.of(job));
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(job));
 
         ResponseEntity<?> response = queryController.getStatus(jobId);
 
@@ -246,14 +304,14 @@ public class QueryControllerTest {
     @Test
     public void getResult_CompletedJob_ReturnsResult() {
         Long jobId = 100L;
-        QueryExecutionJob job = new QueryExecutionJob();
-        job.setId(jobId);
-        job.setStatus(QueryExecutionJob.JobStatus.COMPLETED);
-        job.setResult("[[\"John\",30],[\"Jane\",25]]");
+        JobStatusView job = new JobStatusView(jobId, 1L, QueryExecutionJob.JobStatus.COMPLETED, null, null, 2L);
+
+        List<List<Object>> rows = List.of(List.of("John", 30), List.of("Jane", 25));
 
-        when(jobService.getJobById(jobId)).thenReturn(Optional.of(job));
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(job));
+        when(resultStorageService.readResultPage(jobId, 2L, 0, 1000)).thenReturn(new ResultPage(rows, 0, 2L, null));
 
-        ResponseEntity<?> response = queryController.getResult(jobId);
+        ResponseEntity<?> response = queryController.getResult(jobId, 0, 1000, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
 
@@ -261,21 +319,21 @@ public class QueryControllerTest {
         Map<String, Object> responseBody = (Map<String, Object>) response.getBody();
         assertEquals(jobId, responseBody.get("jobId"));
         assertEquals(QueryExecutionJob.JobStatus.COMPLETED, responseBody.get("status"));
-        assertEquals("[[\"John\",30],[\"Jane\",25]]", responseBody.get("result"));
+        assertEquals(rows, responseBody.get("result"));
+        assertEquals(2L, responseBody.get("totalRows"));
+        assertFalse(responseBody.containsKey("nextCursor"));
 
-        verify(jobService).getJobById(jobId);
+        verify(jobService).getJobStatus(jobId);
     }
 
     @Test
     public void getResult_PendingJob_ReturnsStatusMessage() {
         Long jobId = 100L;
-        QueryExecutionJob job = new QueryExecutionJob();
-        job.setId(jobId);
-        job.setStatus(QueryExecutionJob.JobStatus.PENDING);
+        JobStatusView job = new JobStatusView(jobId, 1L, QueryExecutionJob.JobStatus.PENDING, null, null, null);
 
-        when(jobService.getJobById(jobId)).thenReturn(Optional.of(job));
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(job));
 
-        ResponseEntity<?> response = queryController.getResult(jobId);
+        ResponseEntity<?> response = queryController.getResult(jobId, 0, 1000, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
 
@@ -289,13 +347,11 @@ public class QueryControllerTest {
     @Test
     public void getResult_RunningJob_ReturnsStatusMessage() {
         Long jobId = 100L;
-        QueryExecutionJob job = new QueryExecutionJob();
-        job.setId(jobId);
-        job.setStatus(QueryExecutionJob.JobStatus.RUNNING);
+        JobStatusView job = new JobStatusView(jobId, 1L, QueryExecutionJob.JobStatus.RUNNING, null, null, null);
 
-        when(jobService.getJobById(jobId)).thenReturn(Optional.of(job));
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(job));
 
-        ResponseEntity<?> response = queryController.getResult(jobId);
+        ResponseEntity<?> response = queryController.getResult(jobId, 0, 1000, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
 
@@ -308,14 +364,11 @@ public class QueryControllerTest {
     @Test
     public void getResult_FailedJob_ReturnsStatusWithoutResult() {
         Long jobId = 100L;
-        QueryExecutionJob job = new QueryExecutionJob();
-        job.setId(jobId);
-        job.setStatus(QueryExecutionJob.JobStatus.FAILED);
-        job.setErrorMessage("Query execution failed");
+        JobStatusView job = new JobStatusView(jobId, 1L, QueryExecutionJob.JobStatus.FAILED, "Query execution failed", null, null);
 
-        when(jobService.getJobById(jobId)).thenReturn(Optional.of(job));
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(job));
 
-        ResponseEntity<?> response = queryController.getResult(jobId);
+        ResponseEntity<?> response = queryController.getResult(jobId, 0, 1000, null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
 
@@ -329,13 +382,13 @@ public class QueryControllerTest {
     @Test
     public void getResult_JobNotFound_ThrowsException() {
         Long jobId = 999L;
-        when(jobService.getJobById(jobId)).thenReturn(Optional.empty());
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.empty());
 
         RuntimeException exception = assertThrows(RuntimeException.class,
-                () -> queryController.getResult(jobId));
+                () -> queryController.getResult(jobId, 0, 1000, null));
 
         assertEquals("Job not found", exception.getMessage());
-        verify(jobService).getJobById(jobId);
+        verify(jobService).getJobStatus(jobId);
     }
 
     @Test
@@ -357,4 +410,365 @@ public class QueryControllerTest {
         assertFalse(body.containsKey("query"));
         assertFalse(body.containsKey("createdAt"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void streamResult_CompletedJob_StreamsStoredResult() throws Exception {
+        Long jobId = 100L;
+        JobStatusView job = new JobStatusView(jobId, 1L, QueryExecutionJob.JobStatus.COMPLETED, null, null, 2500L);
+
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(job));
+
+        ResponseEntity<?> response = queryController.streamResult(jobId);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ((StreamingResponseBody) Objects.requireNonNull(response.getBody())).writeTo(outputStream);
+
+        verify(resultStorageService).streamResult(jobId, 2500L, outputStream);
+        verifyNoInteractions(queryExecutionService, queryService);
+    }
+
+    @Test
+    public void streamResult_JobNotCompleted_ReturnsStatus() {
+        Long jobId = 100L;
+        JobStatusView job = new JobStatusView(jobId, 1L, QueryExecutionJob.JobStatus.FAILED, "Syntax error", null, null);
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(job));
+
+        ResponseEntity<?> response = queryController.streamResult(jobId);
+
+        assertEquals(Map.of("status", QueryExecutionJob.JobStatus.FAILED, "message", "Result not yet available."), response.getBody());
+        verifyNoInteractions(resultStorageService);
+    }
+
+    @Test
+    public void streamResult_JobNotFound_ThrowsException() {
+        Long jobId = 999L;
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.empty());
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> queryController.streamResult(jobId));
+
+        assertEquals("Job not found", exception.getMessage());
+        verifyNoInteractions(queryExecutionService);
+    }
+
+    @Test
+    public void getResult_WithCursor_ReadsPageFromCursorOffset() {
+        Long jobId = 100L;
+        JobStatusView job = new JobStatusView(jobId, 1L, QueryExecutionJob.JobStatus.COMPLETED, null, null, 5000L);
+
+        List<List<Object>> rows = List.of(List.of("Jane", 25));
+
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(job));
+        when(resultStorageService.decodeCursor(jobId, "cursor")).thenReturn(100L);
+        when(resultStorageService.readResultPage(jobId, 5000L, 100L, 100)).thenReturn(new ResultPage(rows, 100L, 5000L, "next"));
+
+        ResponseEntity<?> response = queryController.getResult(jobId, 0, 100, "cursor");
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> responseBody = (Map<String, Object>) response.getBody();
+        assertEquals(rows, responseBody.get("result"));
+        assertEquals(100L, responseBody.get("offset"));
+        assertEquals("next", responseBody.get("nextCursor"));
+    }
+
+    @Test
+    public void getAllJobs_ReturnsStatusViews() {
+        List<JobStatusView> jobs = List.of(
+                new JobStatusView(2L, 1L, QueryExecutionJob.JobStatus.RUNNING, null, LocalDateTime.now(), null),
+                new JobStatusView(1L, 1L, QueryExecutionJob.JobStatus.COMPLETED, null, LocalDateTime.now(), 10L)
+        );
+        when(jobService.listJobStatuses(null, QueryExecutionJob.JobStatus.RUNNING, null, 100))
+                .thenReturn(new KeysetPage<>(jobs, null));
+
+        ResponseEntity<KeysetPage<JobStatusView>> response = queryController.getAllJobs(null, QueryExecutionJob.JobStatus.RUNNING, null, 100);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(jobs, response.getBody().items());
+        verify(jobService, never()).getAllJobs();
+    }
+
+    @Test
+    public void executeQuery_ExecutorSaturated_ReturnsTooManyRequests() {
+        Long queryId = 1L;
+        StoredQuery storedQuery = new StoredQuery("SELECT * FROM test");
+        storedQuery.setId(queryId);
+
+        QueryExecutionJob job = new QueryExecutionJob();
+        job.setId(100L);
+
+        when(queryService.getQueryById(queryId)).thenReturn(Optional.of(storedQuery));
+        when(jobService.addJob(queryId, Map.of())).thenReturn(job);
+        doThrow(new TaskRejectedException("Queue is full")).when(executionService).executeQuery(100L, Map.of());
+
+        ResponseEntity<?> response = queryController.executeQuery(queryId, null);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("5", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        verify(jobService).removeJob(100L);
+    }
+
+    @Test
+    public void cancelJob_ActiveJob_ReturnsCancelled() {
+        Long jobId = 1L;
+        JobStatusView view = new JobStatusView(jobId, 1L, QueryExecutionJob.JobStatus.RUNNING, null, LocalDateTime.now(), null);
+
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(view));
+        when(executionService.cancelJob(jobId)).thenReturn(true);
+
+        ResponseEntity<?> response = queryController.cancelJob(jobId);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        Map<?, ?> responseBody = (Map<?, ?>) response.getBody();
+        assertNotNull(responseBody);
+        assertEquals(QueryExecutionJob.JobStatus.CANCELLED, responseBody.get("status"));
+    }
+
+    @Test
+    public void cancelJob_FinishedJob_ReturnsConflict() {
+        Long jobId = 1L;
+        JobStatusView view = new JobStatusView(jobId, 1L, QueryExecutionJob.JobStatus.COMPLETED, null, LocalDateTime.now(), 3L);
+
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(view));
+        when(executionService.cancelJob(jobId)).thenReturn(false);
+
+        ResponseEntity<?> response = queryController.cancelJob(jobId);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        Map<?, ?> responseBody = (Map<?, ?>) response.getBody();
+        assertNotNull(responseBody);
+        assertEquals(QueryExecutionJob.JobStatus.COMPLETED, responseBody.get("status"));
+    }
+
+    @Test
+    public void cancelJob_JobNotFound_ThrowsException() {
+        when(jobService.getJobStatus(999L)).thenReturn(Optional.empty());
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> queryController.cancelJob(999L));
+
+        assertEquals("Job not found", exception.getMessage());
+        verify(executionService, never()).cancelJob(any());
+    }
+
+    @Test
+    public void awaitStatus_FinishedJob_ReturnsImmediately() {
+        Long jobId = 1L;
+        CompletableFuture<JobFinishedEvent> finished = new CompletableFuture<>();
+        JobStatusView view = new JobStatusView(jobId, 1L, QueryExecutionJob.JobStatus.COMPLETED, null, LocalDateTime.now(), 3L);
+
+        when(completionNotifier.awaitFinish(jobId)).thenReturn(finished);
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(view));
+
+        CompletableFuture<ResponseEntity<?>> response = queryController.awaitStatus(jobId, 10000);
+
+        assertTrue(response.isDone());
+        assertTrue(finished.isCancelled());
+        Map<?, ?> responseBody = (Map<?, ?>) response.join().getBody();
+        assertNotNull(responseBody);
+        assertEquals(QueryExecutionJob.JobStatus.COMPLETED, responseBody.get("status"));
+    }
+
+    @Test
+    public void awaitStatus_RunningJob_CompletesWhenJobFinishes() {
+        Long jobId = 1L;
+        CompletableFuture<JobFinishedEvent> finished = new CompletableFuture<>();
+        JobStatusView view = new JobStatusView(jobId, 1L, QueryExecutionJob.JobStatus.RUNNING, null, LocalDateTime.now(), null);
+
+        when(completionNotifier.awaitFinish(jobId)).thenReturn(finished);
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(view));
+
+        CompletableFuture<ResponseEntity<?>> response = queryController.awaitStatus(jobId, 10000);
+        assertFalse(response.isDone());
+
+        finished.complete(new JobFinishedEvent(jobId, QueryExecutionJob.JobStatus.FAILED));
+
+        Map<?, ?> responseBody = (Map<?, ?>) response.join().getBody();
+        assertNotNull(responseBody);
+        assertEquals(QueryExecutionJob.JobStatus.FAILED, responseBody.get("status"));
+    }
+
+    @Test
+    public void awaitStatus_WaitExpires_ReturnsCurrentStatus() throws Exception {
+        Long jobId = 1L;
+        CompletableFuture<JobFinishedEvent> finished = new CompletableFuture<>();
+        JobStatusView view = new JobStatusView(jobId, 1L, QueryExecutionJob.JobStatus.PENDING, null, LocalDateTime.now(), null);
+
+        when(completionNotifier.awaitFinish(jobId)).thenReturn(finished);
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(view));
+
+        ResponseEntity<?> response = queryController.awaitStatus(jobId, 10).get(5, TimeUnit.SECONDS);
+
+        Map<?, ?> responseBody = (Map<?, ?>) response.getBody();
+        assertNotNull(responseBody);
+        assertEquals(QueryExecutionJob.JobStatus.PENDING, responseBody.get("status"));
+    }
+
+    @Test
+    public void awaitStatus_JobNotFound_ReleasesWaiter() {
+        CompletableFuture<JobFinishedEvent> finished = new CompletableFuture<>();
+
+        when(completionNotifier.awaitFinish(999L)).thenReturn(finished);
+        when(jobService.getJobStatus(999L)).thenReturn(Optional.empty());
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> queryController.awaitStatus(999L, 1000));
+
+        assertEquals("Job not found", exception.getMessage());
+        assertTrue(finished.isCancelled());
+    }
+
+    @Test
+    public void executeQueryAndWait_CachedResult_ReturnsResultInline() {
+        Long queryId = 1L;
+        Long jobId = 100L;
+        StoredQuery storedQuery = new StoredQuery("SELECT * FROM test");
+        storedQuery.setId(queryId);
+        storedQuery.setFingerprint("fingerprint");
+
+        QueryExecutionJob job = new QueryExecutionJob();
+        job.setId(jobId);
+        JobStatusView view = new JobStatusView(jobId, queryId, QueryExecutionJob.JobStatus.COMPLETED, null, LocalDateTime.now(), 1L);
+        ResultPage page = new ResultPage(List.of(List.of(1)), 0, 1, null);
+
+        when(queryService.getQueryById(queryId)).thenReturn(Optional.of(storedQuery));
+        when(jobService.addJob(queryId, Map.of())).thenReturn(job);
+        when(queryExecutionService.findCachedResult("fingerprint")).thenReturn(Optional.of("[[1]]"));
+        when(completionNotifier.awaitFinish(jobId)).thenReturn(new CompletableFuture<>());
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(view));
+        when(resultStorageService.readResultPage(jobId, 1L, 0, 1000)).thenReturn(page);
+
+        ResponseEntity<?> response = queryController.executeQueryAndWait(queryId, "500ms", null).join();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        Map<?, ?> responseBody = (Map<?, ?>) response.getBody();
+        assertNotNull(responseBody);
+        assertEquals(page.rows(), responseBody.get("result"));
+        verify(executionService).completeJob(jobId, "[[1]]");
+        verify(materializedQueryService).recordExecution(queryId);
+        verify(executionService, never()).executeQuery(any(), anyMap());
+    }
+
+    @Test
+    public void executeQueryAndWait_JobFinishesInTime_ReturnsResult() {
+        Long queryId = 1L;
+        Long jobId = 100L;
+        StoredQuery storedQuery = new StoredQuery("SELECT * FROM test");
+        storedQuery.setId(queryId);
+        storedQuery.setFingerprint("fingerprint");
+
+        QueryExecutionJob job = new QueryExecutionJob();
+        job.setId(jobId);
+        CompletableFuture<JobFinishedEvent> finished = new CompletableFuture<>();
+        JobStatusView running = new JobStatusView(jobId, queryId, QueryExecutionJob.JobStatus.RUNNING, null, LocalDateTime.now(), null);
+        JobStatusView completed = new JobStatusView(jobId, queryId, QueryExecutionJob.JobStatus.COMPLETED, null, LocalDateTime.now(), 0L);
+
+        when(queryService.getQueryById(queryId)).thenReturn(Optional.of(storedQuery));
+        when(jobService.addJob(queryId, Map.of())).thenReturn(job);
+        when(completionNotifier.awaitFinish(jobId)).thenReturn(finished);
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(running), Optional.of(completed));
+        when(resultStorageService.readResultPage(jobId, 0L, 0, 1000)).thenReturn(new ResultPage(List.of(), 0, 0, null));
+
+        CompletableFuture<ResponseEntity<?>> response = queryController.executeQueryAndWait(queryId, "2s", null);
+        finished.complete(new JobFinishedEvent(jobId, QueryExecutionJob.JobStatus.COMPLETED));
+
+        Map<?, ?> responseBody = (Map<?, ?>) response.join().getBody();
+        assertNotNull(responseBody);
+        assertEquals(QueryExecutionJob.JobStatus.COMPLETED, responseBody.get("status"));
+        assertEquals(0L, responseBody.get("totalRows"));
+        verify(executionService).executeQuery(jobId, Map.of());
+        verify(webAsyncExecutor).execute(any(Runnable.class));
+    }
+
+    @Test
+    public void executeQueryAndWait_BudgetExceeded_ReturnsAccepted() throws Exception {
+        Long queryId = 1L;
+        Long jobId = 100L;
+        StoredQuery storedQuery = new StoredQuery("SELECT * FROM test");
+        storedQuery.setId(queryId);
+        storedQuery.setFingerprint("fingerprint");
+
+        QueryExecutionJob job = new QueryExecutionJob();
+        job.setId(jobId);
+        JobStatusView pending = new JobStatusView(jobId, queryId, QueryExecutionJob.JobStatus.PENDING, null, LocalDateTime.now(), null);
+
+        when(queryService.getQueryById(queryId)).thenReturn(Optional.of(storedQuery));
+        when(jobService.addJob(queryId, Map.of())).thenReturn(job);
+        when(completionNotifier.awaitFinish(jobId)).thenReturn(new CompletableFuture<>());
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(pending));
+
+        ResponseEntity<?> response = queryController.executeQueryAndWait(queryId, "10ms", null).get(5, TimeUnit.SECONDS);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        verify(resultStorageService, never()).readResultPage(any(), anyLong(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void executeQueryAndWait_InvalidWait_ThrowsException() {
+        assertThrows(QueryExecutionJobException.class, () -> queryController.executeQueryAndWait(1L, "soon", null));
+        verifyNoInteractions(jobService);
+    }
+
+    @Test
+    public void executeQueries_ValidBatch_StartsAllJobs() {
+        List<Long> queryIds = List.of(1L, 2L);
+        List<JobStatusView> jobs = List.of(
+                new JobStatusView(10L, 1L, QueryExecutionJob.JobStatus.PENDING, null, LocalDateTime.now(), null),
+                new JobStatusView(11L, 2L, QueryExecutionJob.JobStatus.PENDING, null, LocalDateTime.now(), null));
+
+        when(jobService.addJobs(queryIds)).thenReturn(jobs);
+        when(executionService.executeQueries(List.of(10L, 11L))).thenReturn(List.of());
+
+        ResponseEntity<?> response = queryController.executeQueries(queryIds);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        Map<?, ?> responseBody = (Map<?, ?>) response.getBody();
+        assertNotNull(responseBody);
+        List<?> startedJobs = (List<?>) responseBody.get("jobs");
+        assertEquals(2, startedJobs.size());
+        assertEquals(10L, ((Map<?, ?>) startedJobs.get(0)).get("jobId"));
+        verify(queryService).getQueriesByIds(queryIds);
+        verify(jobService, never()).addJob(any(), anyMap());
+        verify(jobService, never()).removeJobs(any());
+    }
+
+    @Test
+    public void executeQueries_ExecutorPartiallyFull_RemovesRejectedJobs() {
+        List<Long> queryIds = List.of(1L, 2L);
+        List<JobStatusView> jobs = List.of(
+                new JobStatusView(10L, 1L, QueryExecutionJob.JobStatus.PENDING, null, LocalDateTime.now(), null),
+                new JobStatusView(11L, 2L, QueryExecutionJob.JobStatus.PENDING, null, LocalDateTime.now(), null));
+
+        when(jobService.addJobs(queryIds)).thenReturn(jobs);
+        when(executionService.executeQueries(List.of(10L, 11L))).thenReturn(List.of(11L));
+
+        ResponseEntity<?> response = queryController.executeQueries(queryIds);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        Map<?, ?> responseBody = (Map<?, ?>) response.getBody();
+        assertNotNull(responseBody);
+        Map<?, ?> rejectedJob = (Map<?, ?>) ((List<?>) responseBody.get("jobs")).get(1);
+        assertEquals("REJECTED", rejectedJob.get("status"));
+        assertNull(rejectedJob.get("jobId"));
+        verify(jobService).removeJobs(List.of(11L));
+    }
+
+    @Test
+    public void executeQueries_EmptyBatch_ThrowsException() {
+        assertThrows(QueryExecutionJobException.class, () -> queryController.executeQueries(List.of()));
+        verifyNoInteractions(queryService, jobService, executionService);
+    }
+
+    @Test
+    public void getJobs_ByIds_ReturnsStatusViews() {
+        List<JobStatusView> jobs = List.of(
+                new JobStatusView(2L, 1L, QueryExecutionJob.JobStatus.RUNNING, null, LocalDateTime.now(), null));
+        when(jobService.getJobStatuses(List.of(2L, 5L))).thenReturn(jobs);
+
+        ResponseEntity<List<JobStatusView>> response = queryController.getJobs(List.of(2L, 5L));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(jobs, response.getBody());
+        verify(jobService, never()).listJobStatuses(any(), any(), any(), anyInt());
+    }
+}
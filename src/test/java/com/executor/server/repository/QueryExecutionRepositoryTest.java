@@ -1,17 +1,29 @@
 package com.executor.server.repository;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -21,45 +33,80 @@ class QueryExecutionRepositoryTest {
     @Mock
     private JdbcTemplate jdbcTemplate;
 
-    @InjectMocks
     private QueryExecutionRepository queryExecutionRepository;
 
+    @BeforeEach
+    void setUp() {
+        queryExecutionRepository = new QueryExecutionRepository(jdbcTemplate, Duration.ofSeconds(30));
+    }
+
+    @Test
+    void streamNativeQuery_ValidQuery_DelegatesRowsToHandler() {
+        RowCallbackHandler handler = rs -> { };
+
+        queryExecutionRepository.streamNativeQuery("SELECT * FROM titanic", Map.of(), statement -> { }, handler);
+
+        verify(jdbcTemplate).query(any(PreparedStatementCreator.class), eq(handler));
+    }
+
     @Test
-    void executeNativeQuery_ValidQuery_ReturnsResults() {
-        // Arrange
-        String query = "SELECT * FROM titanic";
-        List<Map<String, Object>> expectedResults = List.of(
-                Map.of("id", 1, "name", "John"),
-                Map.of("id", 2, "name", "Jane")
-        );
+    void streamNativeQuery_CreatesStatementWithTimeoutAndReportsIt() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement("SELECT * FROM titanic")).thenReturn(preparedStatement);
 
-        when(jdbcTemplate.queryForList(query)).thenReturn(expectedResults);
+        doAnswer(invocation -> {
+            PreparedStatementCreator creator = invocation.getArgument(0);
+            creator.createPreparedStatement(connection);
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
 
-        List<Map<String, Object>> results = queryExecutionRepository.executeNativeQuery(query);
+        List<Statement> reported = new ArrayList<>();
+        queryExecutionRepository.streamNativeQuery("SELECT * FROM titanic", Map.of(), reported::add, rs -> { });
 
-        assertEquals(expectedResults, results);
-        verify(jdbcTemplate).queryForList(query);
+        verify(preparedStatement).setQueryTimeout(30);
+        verify(preparedStatement).setFetchSize(500);
+        assertEquals(List.of(preparedStatement), reported);
     }
 
     @Test
-    void executeNativeQuery_JdbcTemplateThrowsException_PropagatesException() {
+    void streamNativeQuery_JdbcTemplateThrowsException_PropagatesException() {
         String query = "INVALID SQL";
-        when(jdbcTemplate.queryForList(query))
-                .thenThrow(new RuntimeException("SQL syntax error"));
+        doThrow(new RuntimeException("SQL syntax error"))
+                .when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
 
         assertThrows(RuntimeException.class,
-                () -> queryExecutionRepository.executeNativeQuery(query));
+                () -> queryExecutionRepository.streamNativeQuery(query, Map.of(), statement -> { }, rs -> { }));
     }
 
     @Test
-    void executeNativeQuery_NullQuery_ThrowsException() {
+    void streamNativeQuery_NullQuery_ThrowsException() {
         assertThrows(IllegalArgumentException.class,
-                () -> queryExecutionRepository.executeNativeQuery(null));
+                () -> queryExecutionRepository.streamNativeQuery(null, Map.of(), statement -> { }, rs -> { }));
     }
 
     @Test
-    void executeNativeQuery_EmptyQuery_ThrowsException() {
+    void streamNativeQuery_EmptyQuery_ThrowsException() {
         assertThrows(IllegalArgumentException.class,
-                () -> queryExecutionRepository.executeNativeQuery(""));
+                () -> queryExecutionRepository.streamNativeQuery(" ", Map.of(), statement -> { }, rs -> { }));
+    }
+
+    @Test
+    void streamNativeQuery_NamedParameters_BindsValuesToPlaceholders() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement("SELECT * FROM titanic WHERE Pclass = ? AND Embarked = ?")).thenReturn(preparedStatement);
+
+        doAnswer(invocation -> {
+            PreparedStatementCreator creator = invocation.getArgument(0);
+            creator.createPreparedStatement(connection);
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        queryExecutionRepository.streamNativeQuery("SELECT * FROM titanic WHERE Pclass = :pclass AND Embarked = :port",
+                Map.of("pclass", 1, "port", "S"), statement -> { }, rs -> { });
+
+        verify(preparedStatement).setObject(1, 1);
+        verify(preparedStatement).setString(2, "S");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,133 @@
+package com.executor.server.service;
+
+import com.executor.server.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AccessTokenServiceTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final AuthenticationCache authenticationCache = new AuthenticationCache(Duration.ofMinutes(1), 100);
+    private final AccessTokenService tokenService = tokenService("");
+
+    private final Authentication user = new UsernamePasswordAuthenticationToken("user", "secret",
+            AuthorityUtils.createAuthorityList("ROLE_ANALYST"));
+
+    @BeforeEach
+    void setUp() {
+        when(userRepository.findTokensValidAfter("user")).thenReturn(Optional.of(0L));
+    }
+
+    private AccessTokenService tokenService(String secret) {
+        return new AccessTokenService(new ObjectMapper(), userRepository, authenticationCache, secret, Duration.ofMinutes(15));
+    }
+
+    @Test
+    void verify_IssuedToken_ReturnsUserWithRoles() {
+        AccessTokenService.IssuedToken token = tokenService.issue(user);
+
+        Optional<Authentication> authentication = tokenService.verify(token.token());
+
+        assertTrue(authentication.isPresent());
+        assertEquals("user", authentication.get().getName());
+        assertTrue(authentication.get().isAuthenticated());
+        assertEquals(AuthorityUtils.authorityListToSet(user.getAuthorities()),
+                AuthorityUtils.authorityListToSet(authentication.get().getAuthorities()));
+        assertNull(authentication.get().getCredentials());
+    }
+
+    @Test
+    void verify_TamperedClaims_ReturnsEmpty() {
+        String token = tokenService.issue(user).token();
+        String forged = tokenService("").issue(
+                new UsernamePasswordAuthenticationToken("admin", null, AuthorityUtils.createAuthorityList("ROLE_ADMIN"))).token();
+
+        String tampered = forged.substring(0, forged.indexOf('.')) + token.substring(token.indexOf('.'));
+
+        assertTrue(tokenService.verify(tampered).isEmpty());
+    }
+
+    @Test
+    void verify_OtherSigningKey_ReturnsEmpty() {
+        String token = tokenService("").issue(user).token();
+
+        assertTrue(tokenService.verify(token).isEmpty());
+    }
+
+    @Test
+    void verify_ConfiguredSecret_SharedBetweenInstances() {
+        String secret = "c2VjcmV0LWtleS1zaGFyZWQtYnktYWxsLWluc3RhbmNlcw==";
+        String token = tokenService(secret).issue(user).token();
+
+        assertTrue(tokenService(secret).verify(token).isPresent());
+    }
+
+    @Test
+    void verify_ExpiredToken_ReturnsEmpty() {
+        AccessTokenService.IssuedToken token = tokenService.issue(user);
+
+        assertTrue(tokenService.verify(token.token(), token.expiresAt().minusSeconds(1)).isPresent());
+        assertTrue(tokenService.verify(token.token(), token.expiresAt()).isEmpty());
+    }
+
+    @Test
+    void verify_RevokedUser_ReturnsEmpty() throws InterruptedException {
+        String token = tokenService.issue(user).token();
+        assertTrue(tokenService.verify(token).isPresent());
+        Thread.sleep(2);
+
+        // Another instance changed the user, this one learns about it once the cached time is dropped
+        when(userRepository.findTokensValidAfter("user")).thenReturn(Optional.of(System.currentTimeMillis()));
+        authenticationCache.invalidate("user");
+
+        assertTrue(tokenService.verify(token).isEmpty());
+        Thread.sleep(2);
+        assertTrue(tokenService.verify(tokenService.issue(user).token()).isPresent());
+    }
+
+    @Test
+    void verify_UnknownUser_ReturnsEmpty() {
+        when(userRepository.findTokensValidAfter("user")).thenReturn(Optional.empty());
+
+        assertTrue(tokenService.verify(tokenService.issue(user).token()).isEmpty());
+    }
+
+    @Test
+    void verify_RevocationTime_IsReadOncePerCacheTtl() {
+        String token = tokenService.issue(user).token();
+
+        tokenService.verify(token);
+        tokenService.verify(token);
+
+        verify(userRepository, times(1)).findTokensValidAfter("user");
+    }
+
+    @Test
+    void verify_MalformedToken_ReturnsEmpty() {
+        assertTrue(tokenService.verify("").isEmpty());
+        assertTrue(tokenService.verify("no-separator").isEmpty());
+        assertTrue(tokenService.verify("!!!.???").isEmpty());
+        assertTrue(tokenService.verify("e30.").isEmpty());
+    }
+
+    @Test
+    void issue_ExpiresAfterTtl() {
+        Instant before = Instant.now();
+
+        AccessTokenService.IssuedToken token = tokenService.issue(user);
+
+        assertFalse(token.expiresAt().isBefore(before.plus(Duration.ofMinutes(15))));
+        assertTrue(token.expiresAt().isBefore(Instant.now().plus(Duration.ofMinutes(16))));
+    }
+}
@@ -1,8 +1,8 @@
 package com.executor.server.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.executor.entity.QueryExecutionJob;
 import com.executor.entity.StoredQuery;
+import com.executor.server.repository.JobStatusView;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -27,7 +27,7 @@ public class AsyncQueryManagingServiceIntegrationTest {
     private QueryExecutionJobService jobService;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private QueryResultStorageService resultStorageService;
 
     private QueryExecutionJob waitForJobCompletion(Long jobId, long timeoutSeconds) throws InterruptedException {
         long startTime = System.currentTimeMillis();
@@ -42,13 +42,8 @@ public class AsyncQueryManagingServiceIntegrationTest {
         throw new RuntimeException("Job did not complete within " + timeoutSeconds + " seconds");
     }
 
-    @SuppressWarnings("unchecked")
     private List<List<Object>> parseJobResult(QueryExecutionJob job) {
-        try {
-            return objectMapper.readValue(job.getResult(), List.class);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to parse job result", e);
-        }
+        return resultStorageService.readResultPage(job.getId(), job.getResultRowCount(), 0, Integer.MAX_VALUE).rows();
     }
 
     @Test
@@ -255,16 +250,20 @@ public class AsyncQueryManagingServiceIntegrationTest {
         QueryExecutionJob job = jobService.addJob(storedQuery.getId());
 
         assertEquals(QueryExecutionJob.JobStatus.PENDING, job.getStatus());
-        assertNull(job.getResult());
+        assertNull(job.getResultRowCount());
         assertNull(job.getErrorMessage());
 
         asyncQueryManagingService.executeQuery(job.getId());
         QueryExecutionJob completedJob = waitForJobCompletion(job.getId(), 10);
 
         assertEquals(QueryExecutionJob.JobStatus.COMPLETED, completedJob.getStatus());
-        assertNotNull(completedJob.getResult());
+        assertNotNull(completedJob.getResultRowCount());
         assertNull(completedJob.getErrorMessage());
 
+        JobStatusView status = jobService.getJobStatus(job.getId()).orElseThrow();
+        assertEquals(QueryExecutionJob.JobStatus.COMPLETED, status.status());
+        assertEquals(1L, status.resultRowCount());
+
         List<List<Object>> result = parseJobResult(completedJob);
         assertEquals(1, result.size());
         assertEquals(1, result.getFirst().size());
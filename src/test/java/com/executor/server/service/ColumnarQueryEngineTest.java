@@ -0,0 +1,57 @@
+package com.executor.server.service;
+
+import com.executor.server.repository.DatasetRepository;
+import com.executor.server.repository.DatasetVersion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ColumnarQueryEngineTest {
+    @Mock
+    private DatasetRepository datasetRepository;
+
+    private ColumnarQueryEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new ColumnarQueryEngine(new QueryValidationService(100), datasetRepository, ForkJoinPool.commonPool(), true, 1000);
+    }
+
+    @Test
+    void execute_TableIsNotADataset_LooksItUpOnceUntilEvicted() {
+        when(datasetRepository.findVersion("USERS")).thenReturn(Optional.empty());
+
+        assertEquals(Optional.empty(), engine.execute("SELECT * FROM users", Map.of()));
+        assertEquals(Optional.empty(), engine.execute("SELECT * FROM users", Map.of()));
+        verify(datasetRepository, times(1)).findVersion("USERS");
+
+        engine.evict("users");
+        engine.execute("SELECT * FROM users", Map.of());
+
+        verify(datasetRepository, times(2)).findVersion("USERS");
+    }
+
+    @Test
+    void execute_LoadFails_IsTriedAgainByNextQuery() {
+        when(datasetRepository.findVersion("TITANIC")).thenReturn(Optional.of(
+                new DatasetVersion("TITANIC", 1, 891, LocalDateTime.now(), null, null, null, null)));
+        when(datasetRepository.readTable(eq("TITANIC"), any())).thenThrow(new IllegalStateException("Table is being replaced"));
+
+        assertThrows(IllegalStateException.class, () -> engine.execute("SELECT COUNT(*) FROM titanic", Map.of()));
+        assertThrows(IllegalStateException.class, () -> engine.execute("SELECT COUNT(*) FROM titanic", Map.of()));
+
+        verify(datasetRepository, times(2)).readTable(eq("TITANIC"), any());
+    }
+}
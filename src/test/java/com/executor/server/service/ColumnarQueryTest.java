@@ -0,0 +1,146 @@
+package com.executor.server.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the same queries on H2 and on a columnar copy of the table, results must serialize to the same JSON.
+ */
+class ColumnarQueryTest {
+    // Spans several morsels, so results of parallel tasks are merged
+    private static final int ROWS = 50_000;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final ForkJoinPool pool = new ForkJoinPool(4);
+    private static SingleConnectionDataSource dataSource;
+    private static ColumnarTable table;
+
+    @BeforeAll
+    static void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:columnarQueryTest", true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE DATA (ID INTEGER, NAME VARCHAR, SCORE DOUBLE PRECISION, BIG BIGINT)");
+        List<Object[]> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{
+                    i % 97 == 0 ? null : i,
+                    i % 11 == 0 ? null : String.valueOf((char) ('a' + i % 7)),
+                    i % 13 == 0 ? null : (i % 1000) / 10.0,
+                    i % 5 == 0 ? null : 3_000_000_000L + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO DATA VALUES (?, ?, ?, ?)", rows);
+        table = jdbcTemplate.query("SELECT * FROM DATA", resultSet -> ColumnarTable.read("DATA", resultSet, 16));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        dataSource.destroy();
+        pool.shutdown();
+    }
+
+    private static List<List<Object>> columnar(String sql, Map<String, ?> parameters) throws Exception {
+        Statement statement = CCJSqlParserUtil.parse(sql);
+        assertEquals("DATA", ColumnarQuery.tableName(statement));
+        return ColumnarQuery.compile((PlainSelect) statement, table, parameters).execute(pool);
+    }
+
+    private static List<String> jsonRows(List<List<Object>> rows) throws Exception {
+        List<String> json = new ArrayList<>(rows.size());
+        for (List<Object> row : rows) {
+            json.add(objectMapper.writeValueAsString(row));
+        }
+        return json;
+    }
+
+    // Groups come in any order without ORDER BY, so such results are compared sorted
+    private static void assertSameAsH2(String sql, Map<String, ?> parameters, boolean ordered) throws Exception {
+        List<List<Object>> expected = new NamedParameterJdbcTemplate(dataSource).queryForList(sql, parameters).stream()
+                .map(row -> (List<Object>) new ArrayList<>(row.values()))
+                .toList();
+        List<String> expectedJson = new ArrayList<>(jsonRows(expected));
+        List<String> actualJson = new ArrayList<>(jsonRows(columnar(sql, parameters)));
+        if (!ordered) {
+            expectedJson.sort(null);
+            actualJson.sort(null);
+        }
+        assertFalse(expectedJson.isEmpty());
+        assertEquals(expectedJson, actualJson);
+    }
+
+    @Test
+    void groupBy_WithFilterAndNulls_MatchesH2() throws Exception {
+        assertSameAsH2("SELECT NAME, COUNT(*), COUNT(SCORE), AVG(ID), SUM(ID), MIN(SCORE), MAX(NAME) FROM DATA "
+                + "WHERE ID > 100 AND (SCORE < 50.5 OR NAME IS NULL) GROUP BY NAME", Map.of(), false);
+    }
+
+    @Test
+    void groupBy_SeveralColumns_MatchesH2() throws Exception {
+        assertSameAsH2("SELECT NAME, SCORE, COUNT(*), SUM(BIG) FROM DATA WHERE SCORE <= 2 GROUP BY NAME, SCORE", Map.of(), false);
+    }
+
+    @Test
+    void aggregate_WithoutGroupBy_MatchesH2() throws Exception {
+        assertSameAsH2("SELECT COUNT(*), SUM(BIG), COUNT(SCORE), MIN(BIG) FROM DATA WHERE NAME IN ('a', 'c') OR NOT ID <= 40000",
+                Map.of(), true);
+    }
+
+    @Test
+    void aggregate_NoMatchingRows_ReturnsOneRow() throws Exception {
+        assertSameAsH2("SELECT COUNT(*), SUM(ID), MAX(NAME) FROM DATA WHERE ID < 0", Map.of(), true);
+    }
+
+    @Test
+    void groupBy_OrderByAggregateAlias_MatchesH2() throws Exception {
+        assertSameAsH2("SELECT name, count(*) AS total FROM Data GROUP BY name ORDER BY total DESC, name NULLS LAST", Map.of(), true);
+    }
+
+    @Test
+    void select_OrderByWithLimitAndParameter_MatchesH2() throws Exception {
+        assertSameAsH2("SELECT ID, NAME FROM DATA d WHERE d.SCORE >= :min AND NAME <> 'b' "
+                + "ORDER BY NAME DESC NULLS LAST, 1 LIMIT 20 OFFSET 5", Map.of("min", 10.0), true);
+    }
+
+    @Test
+    void select_AllColumnsInTableOrder_MatchesH2() throws Exception {
+        assertSameAsH2("SELECT * FROM DATA WHERE 10 > ID OR ID IN (:first, 49999) OR NAME IS NULL AND ID < 200",
+                Map.of("first", 12), true);
+    }
+
+    @Test
+    void compile_UnsupportedQueries_Throw() {
+        for (String sql : List.of(
+                "SELECT AVG(SCORE) FROM DATA",
+                "SELECT SUM(NAME) FROM DATA",
+                "SELECT ID + 1 FROM DATA",
+                "SELECT * FROM DATA WHERE NAME LIKE 'a%'",
+                "SELECT * FROM DATA WHERE ID = '1'",
+                "SELECT COUNT(DISTINCT NAME) FROM DATA",
+                "SELECT NAME, ID FROM DATA GROUP BY NAME",
+                "SELECT * FROM DATA WHERE ID = :missing")) {
+            assertThrows(ColumnarQuery.UnsupportedQueryException.class, () -> columnar(sql, Map.of()), sql);
+        }
+    }
+
+    @Test
+    void tableName_JoinOrSubquery_Throws() throws Exception {
+        assertThrows(ColumnarQuery.UnsupportedQueryException.class,
+                () -> ColumnarQuery.tableName(CCJSqlParserUtil.parse("SELECT * FROM DATA a JOIN DATA b ON a.ID = b.ID")));
+        assertThrows(ColumnarQuery.UnsupportedQueryException.class,
+                () -> ColumnarQuery.tableName(CCJSqlParserUtil.parse("SELECT * FROM (SELECT * FROM DATA)")));
+    }
+}
@@ -0,0 +1,184 @@
+package com.executor.server.service;
+
+import com.executor.server.repository.ColumnType;
+import com.executor.server.repository.DatasetRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CsvDatasetLoaderTest {
+
+    @Mock
+    private DatasetRepository datasetRepository;
+
+    @Mock
+    private DatasetPublisher datasetPublisher;
+
+    @TempDir
+    private Path tempDir;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final Queue<Object[]> insertedRows = new ConcurrentLinkedQueue<>();
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(datasetRepository.isReplaceable(anyString())).thenReturn(true);
+        lenient().when(datasetRepository.createStagingTable(anyString(), anyList(), anyList())).thenReturn("_LOAD_1_DATA");
+        lenient().doAnswer(invocation -> {
+            List<Object[]> rows = invocation.getArgument(2);
+            insertedRows.addAll(rows);
+            return null;
+        }).when(datasetRepository).insertRows(anyString(), anyList(), anyList());
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    // Tiny chunks put cut points inside quoted fields and records
+    private CsvDatasetLoader loader(long chunkBytes) {
+        return new CsvDatasetLoader(datasetRepository, datasetPublisher, pool, DataSize.ofBytes(chunkBytes), 2);
+    }
+
+    private Path csv(String content) throws Exception {
+        return Files.writeString(tempDir.resolve("data.csv"), content);
+    }
+
+    private List<Object[]> sortedRows() {
+        List<Object[]> rows = new ArrayList<>(insertedRows);
+        rows.sort(Comparator.comparing(row -> (Integer) row[0]));
+        return rows;
+    }
+
+    @Test
+    void load_InfersColumnTypes() throws Exception {
+        Path file = csv("Id,Count,Price,Name,Empty\n1,3000000000,7.25,Anna,\n2,-4,10,Bob,\n");
+
+        DatasetLoadResult result = loader(1024).load("Data", file);
+
+        List<ColumnType> expected = List.of(ColumnType.INTEGER, ColumnType.BIGINT, ColumnType.DOUBLE, ColumnType.VARCHAR, ColumnType.VARCHAR);
+        verify(datasetRepository).createStagingTable("Data", List.of("ID", "COUNT", "PRICE", "NAME", "EMPTY"), expected);
+        verify(datasetPublisher).publish("_LOAD_1_DATA", "Data", 2);
+        assertEquals(2, result.rows());
+        assertEquals(expected, List.copyOf(result.columns().values()));
+
+        List<Object[]> rows = sortedRows();
+        assertArrayEquals(new Object[]{1, 3000000000L, 7.25, "Anna", null}, rows.get(0));
+        assertArrayEquals(new Object[]{2, -4L, 10.0, "Bob", null}, rows.get(1));
+    }
+
+    @Test
+    void load_SmallChunks_KeepsQuotedFieldsWhole() throws Exception {
+        StringBuilder content = new StringBuilder("Id,Name,Ticket\r\n");
+        for (int i = 1; i <= 200; i++) {
+            content.append(i).append(",\"Braund, Mr. \"\"Owen\"\"\nHarris ").append(i).append("\",A/5 ").append(i).append("\r\n");
+        }
+        Path file = csv(content.toString());
+
+        DatasetLoadResult result = loader(7).load("Data", file);
+
+        assertEquals(200, result.rows());
+        List<Object[]> rows = sortedRows();
+        assertEquals(200, rows.size());
+        for (int i = 1; i <= 200; i++) {
+            assertArrayEquals(new Object[]{i, "Braund, Mr. \"Owen\"\nHarris " + i, "A/5 " + i}, rows.get(i - 1));
+        }
+    }
+
+    @Test
+    void load_HeaderNames_AreMadeValidColumnNames() throws Exception {
+        Path file = csv("Passenger Id,1st,name,Name\n1,2,a,b\n");
+
+        loader(1024).load("Data", file);
+
+        verify(datasetRepository).createStagingTable(eq("Data"), eq(List.of("PASSENGER_ID", "COLUMN_2_1ST", "NAME", "NAME_2")), anyList());
+    }
+
+    @Test
+    void load_RecordWithWrongFieldCount_ThrowsException() throws Exception {
+        Path file = csv("A,B\n1,2\n3\n");
+
+        DatasetException e = assertThrows(DatasetException.class, () -> loader(1024).load("Data", file));
+
+        assertTrue(e.getMessage().contains("has 1 fields"));
+        verifyNoInteractions(datasetPublisher);
+    }
+
+    @Test
+    void load_InsertFails_DropsStagingTable() throws Exception {
+        doThrow(new IllegalStateException("disk full")).when(datasetRepository).insertRows(anyString(), anyList(), anyList());
+        Path file = csv("A\n1\n");
+
+        assertThrows(IllegalStateException.class, () -> loader(1024).load("Data", file));
+
+        verify(datasetRepository).dropTable("_LOAD_1_DATA");
+        verifyNoInteractions(datasetPublisher);
+    }
+
+    @Test
+    void load_InvalidName_ThrowsException() throws Exception {
+        Path file = csv("A\n1\n");
+
+        assertThrows(DatasetException.class, () -> loader(1024).load("users; DROP", file));
+        verifyNoInteractions(datasetRepository);
+    }
+
+    @Test
+    void load_ApplicationTable_ThrowsException() throws Exception {
+        when(datasetRepository.isReplaceable("users")).thenReturn(false);
+        Path file = csv("A\n1\n");
+
+        assertThrows(DatasetException.class, () -> loader(1024).load("users", file));
+        verify(datasetRepository, never()).createStagingTable(anyString(), anyList(), anyList());
+    }
+
+    @Test
+    void load_EmptyFile_ThrowsException() throws Exception {
+        Path file = csv("");
+
+        assertThrows(DatasetException.class, () -> loader(1024).load("Data", file));
+    }
+
+    @Test
+    void columnType_Of_RecognizesNumbers() {
+        assertEquals(ColumnType.INTEGER, ColumnType.of("+42"));
+        assertEquals(ColumnType.BIGINT, ColumnType.of("-2147483649"));
+        assertEquals(ColumnType.DOUBLE, ColumnType.of("0.42"));
+        assertEquals(ColumnType.DOUBLE, ColumnType.of("1e5"));
+        assertEquals(ColumnType.VARCHAR, ColumnType.of("1d"));
+        assertEquals(ColumnType.VARCHAR, ColumnType.of("NaN"));
+        assertEquals(ColumnType.VARCHAR, ColumnType.of(" 1"));
+        assertEquals(ColumnType.VARCHAR, ColumnType.of("12345678901234567890"));
+        assertNull(ColumnType.of(""));
+    }
+
+    @Test
+    void columnType_Of_LeadingZeros_StayText() {
+        assertEquals(ColumnType.VARCHAR, ColumnType.of("007"));
+        assertEquals(ColumnType.VARCHAR, ColumnType.of("-01"));
+        assertEquals(ColumnType.VARCHAR, ColumnType.of("01.5"));
+        assertEquals(ColumnType.INTEGER, ColumnType.of("0"));
+        assertEquals(ColumnType.INTEGER, ColumnType.of("-0"));
+        assertEquals(ColumnType.DOUBLE, ColumnType.of("0.5"));
+    }
+}
@@ -0,0 +1,57 @@
+package com.executor.server.service;
+
+import com.executor.server.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CurrentUserServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @InjectMocks
+    private CurrentUserService currentUserService;
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void getUserId_AuthenticatedRequest_LooksUpUserByName() {
+        SecurityContextHolder.getContext().setAuthentication(UsernamePasswordAuthenticationToken.authenticated(
+                "analyst", null, AuthorityUtils.createAuthorityList("ROLE_ANALYST")));
+        when(userRepository.findIdByUsername("analyst")).thenReturn(Optional.of(7L));
+
+        assertEquals(Optional.of(7L), currentUserService.getUserId());
+    }
+
+    @Test
+    void getUserId_NoAuthentication_ReturnsEmpty() {
+        assertEquals(Optional.empty(), currentUserService.getUserId());
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void getUserId_AnonymousRequest_ReturnsEmpty() {
+        SecurityContextHolder.getContext().setAuthentication(new AnonymousAuthenticationToken(
+                "key", "anonymousUser", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+
+        assertEquals(Optional.empty(), currentUserService.getUserId());
+        verifyNoInteractions(userRepository);
+    }
+}
@@ -0,0 +1,200 @@
+package com.executor.server.service;
+
+import com.executor.entity.DatasetIngestionJob;
+import com.executor.entity.QueryExecutionJob;
+import com.executor.server.repository.ColumnType;
+import com.executor.server.repository.DatasetIngestionJobRepository;
+import com.executor.server.repository.DatasetRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DatasetIngestionServiceTest {
+
+    @Mock
+    private DatasetRepository datasetRepository;
+
+    @Mock
+    private DatasetIngestionJobRepository jobRepository;
+
+    @Mock
+    private DatasetPublisher datasetPublisher;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Object[]> insertedRows = new ArrayList<>();
+
+    private DatasetIngestionService ingestionService;
+
+    @BeforeEach
+    void setUp() {
+        ingestionService = new DatasetIngestionService(datasetRepository, jobRepository, datasetPublisher, transactionManager,
+                new ObjectMapper(), 2, 2);
+        lenient().when(datasetRepository.isReplaceable(anyString())).thenReturn(true);
+        lenient().when(datasetRepository.createStagingTable(anyString(), anyList(), anyList())).thenReturn("_LOAD_1_DATA");
+        lenient().when(jobRepository.save(any(DatasetIngestionJob.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        lenient().doAnswer(invocation -> {
+            List<Object[]> rows = invocation.getArgument(2);
+            insertedRows.addAll(rows);
+            return null;
+        }).when(datasetRepository).insertRows(anyString(), anyList(), anyList());
+    }
+
+    // Hands out one byte per read, like a slow upload, so records span many reads
+    private static InputStream trickle(String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return new InputStream() {
+            private int position;
+
+            @Override
+            public int read() {
+                return position < bytes.length ? bytes[position++] & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                if (position == bytes.length) {
+                    return -1;
+                }
+                buffer[offset] = bytes[position++];
+                return 1;
+            }
+        };
+    }
+
+    @Test
+    void ingest_Csv_InsertsInBatchesAndPublishes() {
+        String csv = "Id,Name\n1,\"Anna, \"\"Nan\"\"\"\n2,Bob\r\n3,\n4,\"multi\nline\"\n5,Eve\n";
+
+        DatasetIngestionJob job = ingestionService.ingest("Data", DatasetFormat.CSV, trickle(csv));
+
+        assertEquals(QueryExecutionJob.JobStatus.COMPLETED, job.getStatus());
+        assertEquals(5, job.getRowsLoaded());
+        assertNotNull(job.getFinishedAt());
+        verify(datasetRepository).createStagingTable("Data", List.of("ID", "NAME"), List.of(ColumnType.INTEGER, ColumnType.VARCHAR));
+        verify(datasetRepository, times(3)).insertRows(eq("_LOAD_1_DATA"), anyList(), anyList());
+        verify(datasetPublisher).publish("_LOAD_1_DATA", "Data", 5);
+
+        assertEquals(5, insertedRows.size());
+        assertArrayEquals(new Object[]{1, "Anna, \"Nan\""}, insertedRows.get(0));
+        assertArrayEquals(new Object[]{2, "Bob"}, insertedRows.get(1));
+        assertArrayEquals(new Object[]{3, null}, insertedRows.get(2));
+        assertArrayEquals(new Object[]{4, "multi\nline"}, insertedRows.get(3));
+    }
+
+    @Test
+    void ingest_ManyBatches_CommitsBoundedTransactionsWithProgress() {
+        StringBuilder csv = new StringBuilder("Id\n");
+        for (int i = 1; i <= 9; i++) {
+            csv.append(i).append('\n');
+        }
+
+        ingestionService.ingest("Data", DatasetFormat.CSV, trickle(csv.toString()));
+
+        // 5 batches of at most 2 rows, 2 batches per transaction
+        verify(transactionManager, times(3)).commit(any());
+        verify(jobRepository).updateRowsLoaded(any(), eq(4L));
+        verify(jobRepository).updateRowsLoaded(any(), eq(8L));
+        verify(jobRepository).updateRowsLoaded(any(), eq(9L));
+    }
+
+    @Test
+    void ingest_WiderValuesInLaterBatch_WidensColumn() {
+        String csv = "Id,Score,Note\n1,2,\n2,3,\n3,2.5,\n4,x,\n";
+
+        DatasetIngestionJob job = ingestionService.ingest("Data", DatasetFormat.CSV, trickle(csv));
+
+        assertEquals(QueryExecutionJob.JobStatus.COMPLETED, job.getStatus());
+        verify(datasetRepository).createStagingTable("Data", List.of("ID", "SCORE", "NOTE"),
+                List.of(ColumnType.INTEGER, ColumnType.INTEGER, ColumnType.INTEGER));
+        verify(datasetRepository).widenColumn("_LOAD_1_DATA", "SCORE", ColumnType.VARCHAR);
+        // Column without any value ends up as text
+        verify(datasetRepository).widenColumn("_LOAD_1_DATA", "NOTE", ColumnType.VARCHAR);
+        assertArrayEquals(new Object[]{3, "2.5", null}, insertedRows.get(2));
+    }
+
+    @Test
+    void ingest_Ndjson_MapsFieldsByName() {
+        String ndjson = "{\"id\": 1, \"name\": \"Anna\", \"tags\": [\"a\"]}\n{\"name\": \"Bob\", \"id\": 2}\n\n{\"id\": 3, \"name\": null}\n";
+
+        DatasetIngestionJob job = ingestionService.ingest("Data", DatasetFormat.NDJSON,
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(QueryExecutionJob.JobStatus.COMPLETED, job.getStatus());
+        verify(datasetRepository).createStagingTable("Data", List.of("ID", "NAME", "TAGS"),
+                List.of(ColumnType.INTEGER, ColumnType.VARCHAR, ColumnType.VARCHAR));
+        assertArrayEquals(new Object[]{1, "Anna", "[\"a\"]"}, insertedRows.get(0));
+        assertArrayEquals(new Object[]{2, "Bob", null}, insertedRows.get(1));
+        assertArrayEquals(new Object[]{3, null, null}, insertedRows.get(2));
+    }
+
+    @Test
+    void ingest_NdjsonUnknownField_FailsJob() {
+        String ndjson = "{\"id\": 1}\n{\"id\": 2, \"extra\": true}\n";
+
+        DatasetIngestionJob job = ingestionService.ingest("Data", DatasetFormat.NDJSON,
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(QueryExecutionJob.JobStatus.FAILED, job.getStatus());
+        assertEquals("Record 2 has field extra missing in the first record", job.getErrorMessage());
+    }
+
+    @Test
+    void ingest_RecordWithWrongFieldCount_FailsJobAndDropsStaging() {
+        String csv = "A,B\n1,2\n3,4\n5\n";
+
+        DatasetIngestionJob job = ingestionService.ingest("Data", DatasetFormat.CSV, trickle(csv));
+
+        assertEquals(QueryExecutionJob.JobStatus.FAILED, job.getStatus());
+        assertEquals("Record 3 has 1 fields, header has 2", job.getErrorMessage());
+        verify(datasetRepository).dropTable("_LOAD_1_DATA");
+        verifyNoInteractions(datasetPublisher);
+    }
+
+    @Test
+    void ingest_BodyInterrupted_FailsJob() {
+        InputStream broken = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+
+        DatasetIngestionJob job = ingestionService.ingest("Data", DatasetFormat.CSV, broken);
+
+        assertEquals(QueryExecutionJob.JobStatus.FAILED, job.getStatus());
+        assertEquals("Upload was interrupted: Connection reset", job.getErrorMessage());
+        verify(datasetRepository, never()).createStagingTable(anyString(), anyList(), anyList());
+    }
+
+    @Test
+    void ingest_EmptyBody_FailsJob() {
+        DatasetIngestionJob job = ingestionService.ingest("Data", DatasetFormat.CSV, trickle(""));
+
+        assertEquals(QueryExecutionJob.JobStatus.FAILED, job.getStatus());
+        assertEquals("Dataset is empty", job.getErrorMessage());
+    }
+
+    @Test
+    void ingest_InvalidName_ThrowsWithoutJob() {
+        assertThrows(DatasetException.class, () -> ingestionService.ingest("1; DROP", DatasetFormat.CSV, trickle("A\n1\n")));
+        verifyNoInteractions(jobRepository);
+    }
+}
@@ -0,0 +1,118 @@
+package com.executor.server.service;
+
+import com.executor.server.repository.DatasetRepository;
+import com.executor.server.repository.DatasetVersion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DatasetPreloaderTest {
+    @Mock
+    private CsvDatasetLoader datasetLoader;
+
+    @Mock
+    private DatasetRepository datasetRepository;
+
+    @TempDir
+    private Path tempDir;
+
+    private Path file;
+    private String location;
+    private long modified;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        file = Files.writeString(tempDir.resolve("data.csv"), "A\n1\n");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_700_000_000_000L));
+        location = file.toUri().toString();
+        modified = Files.getLastModifiedTime(file).toMillis();
+    }
+
+    private DatasetPreloader preloader(String location) {
+        return new DatasetPreloader(datasetLoader, datasetRepository, new DefaultResourceLoader(), "Data", location);
+    }
+
+    private void existing(long size, long sourceModified, String checksum) {
+        when(datasetRepository.tableExists("Data")).thenReturn(true);
+        when(datasetRepository.findVersion("Data")).thenReturn(Optional.of(new DatasetVersion("DATA", 3, 1,
+                LocalDateTime.now(), location, size, sourceModified, checksum)));
+    }
+
+    private static String sha256(String content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void run_NoTable_LoadsAndRecordsSource() throws Exception {
+        preloader(location).run(null);
+
+        verify(datasetRepository).recoverStagingTables();
+        verify(datasetLoader).load(eq("Data"), any(Resource.class));
+        verify(datasetRepository).recordSource("Data", location, 4, modified, sha256("A\n1\n"));
+    }
+
+    @Test
+    void run_SourceUnchanged_ReusesTableWithoutReading() throws Exception {
+        existing(4, modified, sha256("A\n1\n"));
+
+        preloader(location).run(null);
+
+        verifyNoInteractions(datasetLoader);
+        verify(datasetRepository, never()).recordSource(anyString(), anyString(), anyLong(), anyLong(), anyString());
+    }
+
+    @Test
+    void run_OnlyModificationTimeChanged_ReusesTableAfterChecksum() throws Exception {
+        existing(4, modified - 1000, sha256("A\n1\n"));
+
+        preloader(location).run(null);
+
+        verifyNoInteractions(datasetLoader);
+        verify(datasetRepository).recordSource("Data", location, 4, modified, sha256("A\n1\n"));
+    }
+
+    @Test
+    void run_ContentChanged_LoadsAgain() throws Exception {
+        existing(4, modified - 1000, sha256("A\n2\n"));
+
+        preloader(location).run(null);
+
+        verify(datasetLoader).load(eq("Data"), any(Resource.class));
+    }
+
+    @Test
+    void run_SizeChanged_LoadsWithoutComparingChecksum() throws Exception {
+        existing(5, modified, sha256("A\n1\n"));
+
+        preloader(location).run(null);
+
+        verify(datasetLoader).load(eq("Data"), any(Resource.class));
+    }
+
+    @Test
+    void run_BlankLocation_OnlyDropsStagingTables() throws Exception {
+        preloader("").run(null);
+
+        verify(datasetRepository).recoverStagingTables();
+        verifyNoMoreInteractions(datasetRepository);
+        verifyNoInteractions(datasetLoader);
+    }
+}
@@ -0,0 +1,122 @@
+package com.executor.server.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InFlightQueryRegistryTest {
+
+    private final InFlightQueryRegistry registry = new InFlightQueryRegistry();
+
+    @Test
+    void execute_ConcurrentCallsForSameKey_ComputeOnce() throws Exception {
+        int callers = 8;
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> registry.execute("key", () -> {
+                computations.incrementAndGet();
+                leaderStarted.countDown();
+                release.await();
+                return "[[1]]";
+            })));
+            assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+            for (int i = 1; i < callers; i++) {
+                results.add(executor.submit(() -> registry.execute("key", () -> {
+                    computations.incrementAndGet();
+                    return "other";
+                })));
+            }
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (registry.waitingCallers("key") < callers - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(callers - 1, registry.waitingCallers("key"));
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("[[1]]", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, computations.get());
+        assertFalse(registry.isInFlight("key"));
+    }
+
+    @Test
+    void execute_WaitingCallerAbandons_StopsWaitingWhileComputationGoesOn() throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> abandoned = new CompletableFuture<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(() -> registry.execute("key", () -> {
+                leaderStarted.countDown();
+                release.await();
+                return "[[1]]";
+            }));
+            assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+            Future<String> waiter = executor.submit(() -> registry.execute("key", abandoned, () -> "other"));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (registry.waitingCallers("key") < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            abandoned.complete(null);
+
+            ExecutionException thrown = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(QueryCancelledException.class, thrown.getCause());
+            assertTrue(registry.isInFlight("key"));
+
+            release.countDown();
+            assertEquals("[[1]]", leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_ComputationFails_PropagatesErrorAndCleansUp() {
+        RuntimeException failure = new RuntimeException("Database connection failed");
+
+        RuntimeException thrown = assertThrows(RuntimeException.class,
+                () -> registry.execute("key", () -> { throw failure; }));
+
+        assertSame(failure, thrown);
+        assertFalse(registry.isInFlight("key"));
+    }
+
+    @Test
+    void execute_AfterFailure_ComputesAgain() throws Exception {
+        assertThrows(IllegalStateException.class,
+                () -> registry.execute("key", () -> { throw new IllegalStateException("fail"); }));
+
+        assertEquals("[[2]]", registry.execute("key", () -> "[[2]]"));
+    }
+
+    @Test
+    void execute_DifferentKeys_ComputeIndependently() throws Exception {
+        assertEquals("a", registry.execute("first", () -> "a"));
+        assertEquals("b", registry.execute("second", () -> "b"));
+    }
+}
@@ -0,0 +1,43 @@
+package com.executor.server.service;
+
+import com.executor.entity.QueryExecutionJob;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobCompletionNotifierTest {
+
+    private final JobCompletionNotifier notifier = new JobCompletionNotifier();
+
+    @Test
+    void onJobFinished_CompletesAllWaitersOfJob() {
+        CompletableFuture<JobFinishedEvent> first = notifier.awaitFinish(1L);
+        CompletableFuture<JobFinishedEvent> second = notifier.awaitFinish(1L);
+        CompletableFuture<JobFinishedEvent> otherJob = notifier.awaitFinish(2L);
+
+        JobFinishedEvent event = new JobFinishedEvent(1L, QueryExecutionJob.JobStatus.COMPLETED);
+        notifier.onJobFinished(event);
+
+        assertEquals(event, first.join());
+        assertEquals(event, second.join());
+        assertFalse(otherJob.isDone());
+        assertEquals(0, notifier.waitingClients(1L));
+        assertEquals(1, notifier.waitingClients(2L));
+    }
+
+    @Test
+    void awaitFinish_CancelledWaiter_IsRemoved() {
+        CompletableFuture<JobFinishedEvent> waiter = notifier.awaitFinish(1L);
+
+        waiter.cancel(false);
+
+        assertEquals(0, notifier.waitingClients(1L));
+    }
+
+    @Test
+    void onJobFinished_NoWaiters_DoesNothing() {
+        assertDoesNotThrow(() -> notifier.onJobFinished(new JobFinishedEvent(1L, QueryExecutionJob.JobStatus.FAILED)));
+    }
+}
@@ -0,0 +1,108 @@
+package com.executor.server.service;
+
+import com.executor.entity.QueryExecutionJob;
+import com.executor.server.repository.JobStateRepository;
+import com.executor.server.repository.JobStatusView;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LiveJobRegistryTest {
+    private static final Set<QueryExecutionJob.JobStatus> ACTIVE =
+            EnumSet.of(QueryExecutionJob.JobStatus.PENDING, QueryExecutionJob.JobStatus.RUNNING);
+
+    @Mock
+    private JobStateRepository jobStateRepository;
+
+    @InjectMocks
+    private LiveJobRegistry registry;
+
+    private static JobStatusView pendingJob(Long id) {
+        return new JobStatusView(id, 1L, QueryExecutionJob.JobStatus.PENDING, null, null, null);
+    }
+
+    @Test
+    void afterSingletonsInstantiated_FailsJobsLeftActiveByPreviousRun() {
+        when(jobStateRepository.failActiveJobs(LiveJobRegistry.INTERRUPTED_MESSAGE)).thenReturn(3);
+
+        registry.afterSingletonsInstantiated();
+
+        verify(jobStateRepository).failActiveJobs("Interrupted by restart");
+    }
+
+    @Test
+    void transition_ExpectedStatus_ChangesState() {
+        registry.register(pendingJob(1L));
+
+        assertTrue(registry.transition(1L, ACTIVE, QueryExecutionJob.JobStatus.RUNNING, null, null));
+
+        assertEquals(QueryExecutionJob.JobStatus.RUNNING, registry.get(1L).orElseThrow().status());
+        assertTrue(registry.isActive(1L));
+    }
+
+    @Test
+    void transition_FinishedJob_IsRejected() {
+        registry.register(pendingJob(1L));
+        registry.transition(1L, ACTIVE, QueryExecutionJob.JobStatus.CANCELLED, "Cancelled by user", null);
+
+        assertFalse(registry.transition(1L, ACTIVE, QueryExecutionJob.JobStatus.COMPLETED, null, 10L));
+        assertEquals(QueryExecutionJob.JobStatus.CANCELLED, registry.get(1L).orElseThrow().status());
+    }
+
+    @Test
+    void transition_UnknownJob_IsRejected() {
+        assertFalse(registry.transition(1L, ACTIVE, QueryExecutionJob.JobStatus.RUNNING, null, null));
+    }
+
+    @Test
+    void flush_WritesChangedJobsInOneBatchAndDropsFinishedOnes() {
+        registry.register(pendingJob(1L));
+        registry.register(pendingJob(2L));
+        registry.register(pendingJob(3L));
+        registry.transition(1L, ACTIVE, QueryExecutionJob.JobStatus.RUNNING, null, null);
+        registry.transition(2L, ACTIVE, QueryExecutionJob.JobStatus.COMPLETED, null, 5L);
+
+        registry.flush();
+
+        verify(jobStateRepository).updateStates(argThat(batch -> batch.size() == 2));
+        assertTrue(registry.get(1L).isPresent());
+        assertTrue(registry.get(2L).isEmpty());
+        assertTrue(registry.get(3L).isPresent());
+        assertEquals(2, registry.liveJobs());
+    }
+
+    @Test
+    void flush_NothingChanged_SkipsDatabase() {
+        registry.register(pendingJob(1L));
+
+        registry.flush();
+
+        verifyNoInteractions(jobStateRepository);
+    }
+
+    @Test
+    void flush_WriteFails_RetriesWithNextFlush() {
+        registry.register(pendingJob(1L));
+        registry.transition(1L, ACTIVE, QueryExecutionJob.JobStatus.FAILED, "boom", null);
+        doThrow(new RuntimeException("Database is down")).doNothing().when(jobStateRepository).updateStates(any());
+
+        registry.flush();
+        assertTrue(registry.get(1L).isPresent());
+
+        registry.flush();
+        verify(jobStateRepository, times(2)).updateStates(
+                List.of(new JobStatusView(1L, 1L, QueryExecutionJob.JobStatus.FAILED, "boom", null, null)));
+        assertTrue(registry.get(1L).isEmpty());
+    }
+}
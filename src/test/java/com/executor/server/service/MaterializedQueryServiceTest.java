@@ -0,0 +1,224 @@
+package com.executor.server.service;
+
+import com.executor.entity.QueryAnalysis;
+import com.executor.entity.StoredQuery;
+import com.executor.server.repository.DatasetRepository;
+import com.executor.server.repository.DatasetVersion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MaterializedQueryServiceTest {
+    @Mock
+    private StoredQueryService storedQueryService;
+
+    @Mock
+    private QueryExecutionService queryExecutionService;
+
+    @Mock
+    private DatasetRepository datasetRepository;
+
+    private MaterializedQueryService service;
+    private StoredQuery query;
+
+    @BeforeEach
+    void setUp() {
+        service = new MaterializedQueryService(storedQueryService, queryExecutionService, datasetRepository,
+                new SyncTaskExecutor(), 3, 10, 1 << 20);
+        query = query(1L, "SELECT COUNT(*) FROM titanic", "titanic");
+    }
+
+    private static StoredQuery query(Long id, String text, String... tables) {
+        StoredQuery query = new StoredQuery(text);
+        query.setId(id);
+        query.setFingerprint("fingerprint" + id);
+        query.setAnalysis(new QueryAnalysis(QueryAnalysis.StatementType.SELECT, List.of(tables), List.of(), false));
+        return query;
+    }
+
+    private void datasetVersion(String name, long version) {
+        lenient().when(datasetRepository.findVersion(name)).thenReturn(Optional.of(
+                new DatasetVersion(name, version, 891, LocalDateTime.now(), null, null, null, null)));
+    }
+
+    private void materialize() throws Exception {
+        datasetVersion("TITANIC", 1);
+        when(storedQueryService.getMaterializationCandidates(3)).thenReturn(List.of(query));
+        when(queryExecutionService.executeQuery("materialization:fingerprint1", query.getQuery(), Map.of())).thenReturn("[[891]]");
+        service.refresh();
+    }
+
+    @Test
+    void refresh_WritesCountedExecutionsInOneBatch() {
+        service.recordExecution(1L);
+        service.recordExecution(1L);
+        service.recordExecution(2L);
+
+        service.refresh();
+
+        verify(storedQueryService).addExecutions(Map.of(1L, 2L, 2L, 1L));
+    }
+
+    @Test
+    void refresh_CountsNotWritten_RetriesWithNextRefresh() {
+        service.recordExecution(1L);
+        doThrow(new RuntimeException("Database is locked")).doNothing().when(storedQueryService).addExecutions(anyMap());
+
+        service.refresh();
+        service.refresh();
+
+        verify(storedQueryService, times(2)).addExecutions(Map.of(1L, 1L));
+    }
+
+    @Test
+    void findResult_MaterializedAndDatasetUnchanged_ReturnsResult() throws Exception {
+        materialize();
+
+        assertEquals(Optional.of("[[891]]"), service.findResult(query, Map.of()));
+        assertEquals(Optional.empty(), service.findResult(query, Map.of("pclass", 1)));
+    }
+
+    @Test
+    void findResult_DatasetVersionChanged_ReturnsEmptyAndDropsResult() throws Exception {
+        materialize();
+        datasetVersion("TITANIC", 2);
+
+        assertEquals(Optional.empty(), service.findResult(query, Map.of()));
+        assertEquals(0, service.materializedQueries());
+    }
+
+    @Test
+    void findResult_QuerySetToNever_ReturnsEmpty() throws Exception {
+        materialize();
+        query.setMaterialization(StoredQuery.MaterializationMode.NEVER);
+
+        assertEquals(Optional.empty(), service.findResult(query, Map.of()));
+    }
+
+    @Test
+    void evictReferencing_DropsResultsReadingDataset() throws Exception {
+        materialize();
+
+        service.evictReferencing("Titanic");
+
+        assertEquals(Optional.empty(), service.findResult(query, Map.of()));
+    }
+
+    @Test
+    void refresh_ResultCurrent_DoesNotExecuteAgain() throws Exception {
+        materialize();
+
+        service.refresh();
+
+        verify(queryExecutionService, times(1)).executeQuery(any(), any(), any());
+    }
+
+    @Test
+    void refresh_QueryExecutorFull_LeavesQueryToNextRefresh() throws Exception {
+        service = new MaterializedQueryService(storedQueryService, queryExecutionService, datasetRepository, task -> {
+            throw new TaskRejectedException("Executor is full");
+        }, 3, 10, 1 << 20);
+        datasetVersion("TITANIC", 1);
+        when(storedQueryService.getMaterializationCandidates(3)).thenReturn(List.of(query));
+
+        service.refresh();
+
+        verifyNoInteractions(queryExecutionService);
+        assertEquals(0, service.materializedQueries());
+    }
+
+    @Test
+    void refresh_ResultOverBudget_IsNotKeptNorComputedAgainForSameVersions() throws Exception {
+        service = new MaterializedQueryService(storedQueryService, queryExecutionService, datasetRepository,
+                new SyncTaskExecutor(), 3, 10, 1000);
+        datasetVersion("TITANIC", 1);
+        when(storedQueryService.getMaterializationCandidates(3)).thenReturn(List.of(query));
+        when(queryExecutionService.executeQuery(any(), any(), any())).thenReturn("[" + "[891],".repeat(500) + "[891]]");
+
+        service.refresh();
+        service.refresh();
+
+        assertEquals(0, service.materializedQueries());
+        verify(queryExecutionService, times(1)).executeQuery(any(), any(), any());
+
+        datasetVersion("TITANIC", 2);
+        service.refresh();
+
+        verify(queryExecutionService, times(2)).executeQuery(any(), any(), any());
+    }
+
+    @Test
+    void setMode_NeverWhileComputing_ResultIsNotStored() throws Exception {
+        List<Runnable> submitted = new ArrayList<>();
+        service = new MaterializedQueryService(storedQueryService, queryExecutionService, datasetRepository,
+                submitted::add, 3, 10, 1 << 20);
+        datasetVersion("TITANIC", 1);
+        when(storedQueryService.getMaterializationCandidates(3)).thenReturn(List.of(query));
+        when(queryExecutionService.executeQuery(any(), any(), any())).thenReturn("[[891]]");
+        when(storedQueryService.setMaterialization(1L, StoredQuery.MaterializationMode.NEVER)).thenReturn(query);
+
+        service.refresh();
+        service.setMode(1L, StoredQuery.MaterializationMode.NEVER);
+        submitted.forEach(Runnable::run);
+
+        assertEquals(0, service.materializedQueries());
+    }
+
+    @Test
+    void refresh_QueryReadsNonDatasetTable_IsNotMaterialized() throws Exception {
+        StoredQuery usersQuery = query(2L, "SELECT * FROM users", "users");
+        when(datasetRepository.findVersion("USERS")).thenReturn(Optional.empty());
+        when(storedQueryService.getMaterializationCandidates(3)).thenReturn(List.of(usersQuery));
+
+        service.refresh();
+
+        verifyNoInteractions(queryExecutionService);
+        assertEquals(0, service.materializedQueries());
+    }
+
+    @Test
+    void refresh_QueryNoLongerSelected_DropsResult() throws Exception {
+        materialize();
+        when(storedQueryService.getMaterializationCandidates(3)).thenReturn(List.of());
+
+        service.refresh();
+
+        assertEquals(0, service.materializedQueries());
+    }
+
+    @Test
+    void setMode_AlwaysForParameterizedQuery_Throws() {
+        StoredQuery parameterized = query(2L, "SELECT * FROM titanic WHERE pclass = :pclass", "titanic");
+        parameterized.setParameterNames(List.of("pclass"));
+        when(storedQueryService.getQueryById(2L)).thenReturn(Optional.of(parameterized));
+
+        assertThrows(StoredQueryException.class, () -> service.setMode(2L, StoredQuery.MaterializationMode.ALWAYS));
+        verify(storedQueryService, never()).setMaterialization(any(), any());
+    }
+
+    @Test
+    void setMode_Never_DropsResultAtOnce() throws Exception {
+        materialize();
+        when(storedQueryService.setMaterialization(1L, StoredQuery.MaterializationMode.NEVER)).thenReturn(query);
+
+        MaterializationStatus status = service.setMode(1L, StoredQuery.MaterializationMode.NEVER);
+
+        assertFalse(status.materialized());
+        assertEquals(Optional.empty(), service.findResult(query, Map.of()));
+    }
+}
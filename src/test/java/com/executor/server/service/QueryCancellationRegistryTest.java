@@ -0,0 +1,89 @@
+package com.executor.server.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class QueryCancellationRegistryTest {
+
+    private final QueryCancellationRegistry registry = new QueryCancellationRegistry();
+
+    @Test
+    void detach_LastAttachedJob_ReturnsTrue() {
+        registry.attach(1L, "key");
+        registry.attach(2L, "key");
+
+        assertFalse(registry.detach(1L));
+        assertTrue(registry.detach(2L));
+        assertFalse(registry.detach(2L));
+    }
+
+    @Test
+    void cancel_OnlyJobAttached_CancelsStatement() throws Exception {
+        Statement statement = mock(Statement.class);
+        registry.attach(1L, "key");
+        registry.registerStatement("key", statement);
+
+        registry.cancel(1L);
+
+        verify(statement).cancel();
+    }
+
+    @Test
+    void cancel_OtherJobStillAttached_KeepsStatementRunning() throws Exception {
+        Statement statement = mock(Statement.class);
+        registry.attach(1L, "key");
+        registry.attach(2L, "key");
+        registry.registerStatement("key", statement);
+
+        registry.cancel(1L);
+        verify(statement, never()).cancel();
+
+        registry.cancel(2L);
+        verify(statement).cancel();
+    }
+
+    @Test
+    void cancel_QueuedTask_CancelsTask() {
+        CompletableFuture<Void> task = new CompletableFuture<>();
+        registry.trackTask(1L, task);
+
+        assertTrue(registry.cancel(1L));
+        assertTrue(task.isCancelled());
+        assertFalse(registry.cancel(1L));
+    }
+
+    @Test
+    void cancel_LastJobAttached_MarksStatementCancelledUntilUnregistered() throws Exception {
+        Statement statement = mock(Statement.class);
+        registry.attach(1L, "key");
+        registry.registerStatement("key", statement);
+        assertFalse(registry.wasCancelled(statement));
+
+        registry.cancel(1L);
+        assertTrue(registry.wasCancelled(statement));
+
+        registry.unregisterStatement("key", statement);
+        assertFalse(registry.wasCancelled(statement));
+    }
+
+    @Test
+    void cancel_AttachedJob_CompletesItsCancellation() {
+        CompletableFuture<Void> first = registry.attach(1L, "key");
+        CompletableFuture<Void> second = registry.attach(2L, "key");
+
+        registry.cancel(1L);
+
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+    }
+
+    @Test
+    void cancel_UnknownJob_ReturnsFalse() {
+        assertFalse(registry.cancel(42L));
+    }
+}
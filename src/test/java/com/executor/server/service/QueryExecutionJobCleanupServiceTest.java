@@ -1,21 +1,25 @@
 package com.executor.server.service;
 
+import com.executor.server.repository.JobCleanupCandidate;
 import com.executor.server.repository.QueryExecutionJobRepository;
+import com.executor.server.repository.QueryResultChunkRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.util.List;
 
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class QueryExecutionJobCleanupServiceTest {
@@ -23,24 +27,84 @@ class QueryExecutionJobCleanupServiceTest {
     @Mock
     private QueryExecutionJobRepository repository;
 
-    @InjectMocks
-    private QueryExecutionJobCleanupService service;
+    @Mock
+    private QueryResultChunkRepository chunkRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void cleanupOldJobs_JobsOlderThanRetention_DeletedInBatches() {
+        QueryExecutionJobCleanupService service = cleanupService(1000, Long.MAX_VALUE, 2);
+        JobCleanupCandidate first = candidate(1L, 13, 100L);
+        JobCleanupCandidate second = candidate(2L, 13, 100L);
+        JobCleanupCandidate third = candidate(3L, 13, 0L);
+        JobCleanupCandidate recent = candidate(4L, 1, 0L);
+        when(repository.count()).thenReturn(4L);
+        when(chunkRepository.sumByteCount()).thenReturn(200L);
+        when(repository.findOldestFinished(anyCollection(), any(Pageable.class)))
+                .thenReturn(List.of(first, second), List.of(third, recent));
+
+        service.cleanupOldJobs();
+
+        verify(chunkRepository).deleteByJobIdIn(List.of(1L, 2L));
+        verify(repository).deleteAllByIdInBatch(List.of(1L, 2L));
+        verify(chunkRepository).deleteByJobIdIn(List.of(3L));
+        verify(repository).deleteAllByIdInBatch(List.of(3L));
+        verify(repository, times(2)).findOldestFinished(anyCollection(), any(Pageable.class));
+        assertEquals(3, meterRegistry.counter("query.jobs.cleanup.deleted", "reason", "age").count());
+        assertEquals(200, meterRegistry.counter("query.jobs.cleanup.freed.bytes").count());
+        assertEquals(1, meterRegistry.get("query.jobs.retained").gauge().value());
+    }
 
     @Test
-    void cleanupOldJobs_shouldDeleteJobsOlderThanRetentionPeriod() {
-        when(repository.deleteOlderThan(any(LocalDateTime.class))).thenReturn(5);
+    void cleanupOldJobs_TooManyJobs_DeletesOldestAboveLimit() {
+        QueryExecutionJobCleanupService service = cleanupService(2, Long.MAX_VALUE, 10);
+        when(repository.count()).thenReturn(3L);
+        when(chunkRepository.sumByteCount()).thenReturn(0L);
+        when(repository.findOldestFinished(anyCollection(), any(Pageable.class)))
+                .thenReturn(List.of(candidate(1L, 2, 0L), candidate(2L, 1, 0L), candidate(3L, 0, 0L)));
 
         service.cleanupOldJobs();
 
-        ArgumentCaptor<LocalDateTime> dateCaptor = ArgumentCaptor.forClass(LocalDateTime.class);
-        verify(repository, times(1)).deleteOlderThan(dateCaptor.capture());
+        verify(repository).deleteAllByIdInBatch(List.of(1L));
+        assertEquals(1, meterRegistry.counter("query.jobs.cleanup.deleted", "reason", "count").count());
+    }
 
-        LocalDateTime capturedCutoff = dateCaptor.getValue();
-        LocalDateTime expectedCutoff = LocalDateTime.now().minusHours(12);
+    @Test
+    void cleanupOldJobs_ResultsTooLarge_DeletesUntilUnderLimit() {
+        QueryExecutionJobCleanupService service = cleanupService(1000, 150, 10);
+        when(repository.count()).thenReturn(3L);
+        when(chunkRepository.sumByteCount()).thenReturn(300L);
+        when(repository.findOldestFinished(anyCollection(), any(Pageable.class)))
+                .thenReturn(List.of(candidate(1L, 2, 100L), candidate(2L, 1, 100L), candidate(3L, 0, 100L)));
 
-        long diffInSeconds = ChronoUnit.SECONDS.between(capturedCutoff, expectedCutoff);
+        service.cleanupOldJobs();
+
+        verify(repository).deleteAllByIdInBatch(List.of(1L, 2L));
+        assertEquals(2, meterRegistry.counter("query.jobs.cleanup.deleted", "reason", "result_bytes").count());
+        assertEquals(100, meterRegistry.get("query.jobs.retained.result.bytes").gauge().value());
+    }
+
+    @Test
+    void cleanupOldJobs_NothingExpired_DeletesNothing() {
+        QueryExecutionJobCleanupService service = cleanupService(1000, Long.MAX_VALUE, 10);
+        when(repository.count()).thenReturn(1L);
+        when(repository.findOldestFinished(anyCollection(), any(Pageable.class))).thenReturn(List.of(candidate(1L, 1, 0L)));
+
+        service.cleanupOldJobs();
+
+        verify(repository, never()).deleteAllByIdInBatch(any());
+    }
+
+    private QueryExecutionJobCleanupService cleanupService(long maxCount, long maxResultBytes, int batchSize) {
+        return new QueryExecutionJobCleanupService(repository, chunkRepository, transactionManager, meterRegistry,
+                Duration.ofHours(12), maxCount, maxResultBytes, batchSize, Duration.ZERO);
+    }
 
-        assertTrue(Math.abs(diffInSeconds) < 1,
-                "The cutoff time should be exactly 12 hours ago (within 1 second tolerance)");
+    private static JobCleanupCandidate candidate(Long id, int ageHours, Long resultBytes) {
+        return new JobCleanupCandidate(id, LocalDateTime.now().minusHours(ageHours), resultBytes);
     }
-}
\ No newline at end of file
+}
@@ -1,14 +1,24 @@
 package com.executor.server.service;
 
 import com.executor.entity.QueryExecutionJob;
+import com.executor.entity.User;
+import com.executor.server.repository.JobStateRepository;
+import com.executor.server.repository.JobStatusView;
+import com.executor.server.repository.KeysetCursor;
 import com.executor.server.repository.QueryExecutionJobRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.jpa.domain.Specification;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -21,6 +31,24 @@ class QueryExecutionJobServiceTest {
     @Mock
     private QueryExecutionJobRepository jobRepository;
 
+    @Mock
+    private QueryResultStorageService resultStorageService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private LiveJobRegistry liveJobs;
+
+    @Mock
+    private JobStateRepository jobStateRepository;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private CurrentUserService currentUserService;
+
     @InjectMocks
     private QueryExecutionJobService jobService;
 
@@ -44,6 +72,33 @@ class QueryExecutionJobServiceTest {
         verify(jobRepository).save(any(QueryExecutionJob.class));
     }
 
+    @Test
+    void addJob_WithParameters_StoresThemAsJson() {
+        when(jobRepository.save(any(QueryExecutionJob.class))).thenAnswer(invocation -> {
+            QueryExecutionJob job = invocation.getArgument(0);
+            job.setId(100L);
+            return job;
+        });
+
+        QueryExecutionJob result = jobService.addJob(1L, Map.of("pclass", 1));
+
+        assertEquals("{\"pclass\":1}", result.getParameters());
+    }
+
+    @Test
+    void getJobParameters_StoredJson_ReturnsValues() {
+        when(jobRepository.findParametersById(100L)).thenReturn(Optional.of("{\"pclass\":[1,2]}"));
+
+        assertEquals(Map.of("pclass", List.of(1, 2)), jobService.getJobParameters(100L));
+    }
+
+    @Test
+    void getJobParameters_NoParameters_ReturnsEmptyMap() {
+        when(jobRepository.findParametersById(100L)).thenReturn(Optional.empty());
+
+        assertTrue(jobService.getJobParameters(100L).isEmpty());
+    }
+
     @Test
     void addJob_NullQueryId_ThrowsException() {
         RuntimeException exception = assertThrows(RuntimeException.class, () -> jobService.addJob(null));
@@ -99,7 +154,7 @@ class QueryExecutionJobServiceTest {
         QueryExecutionJob result = jobService.addJob(queryId);
 
         assertEquals(QueryExecutionJob.JobStatus.PENDING, result.getStatus());
-        assertNull(result.getResult());
+        assertNull(result.getResultRowCount());
         assertNull(result.getErrorMessage());
         verify(jobRepository).save(any(QueryExecutionJob.class));
     }
@@ -302,8 +357,232 @@ class QueryExecutionJobServiceTest {
 
         assertNotNull(result);
         assertEquals(QueryExecutionJob.JobStatus.PENDING, result.getStatus());
-        assertNull(result.getResult());
+        assertNull(result.getResultRowCount());
         assertNull(result.getErrorMessage());
         verify(jobRepository).save(any(QueryExecutionJob.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getJobStatus_ExistingJob_ReturnsProjection() {
+        Long jobId = 1L;
+        JobStatusView view = new JobStatusView(jobId, 5L, QueryExecutionJob.JobStatus.COMPLETED, null, null, 3L);
+
+        when(jobRepository.findStatusById(jobId)).thenReturn(Optional.of(view));
+
+        Optional<JobStatusView> result = jobService.getJobStatus(jobId);
+
+        assertTrue(result.isPresent());
+        assertEquals(QueryExecutionJob.JobStatus.COMPLETED, result.get().status());
+        verify(jobRepository).findStatusById(jobId);
+        verify(jobRepository, never()).findById(any());
+    }
+
+    @Test
+    void addJob_ValidQueryId_RegistersLiveJob() {
+        QueryExecutionJob savedJob = new QueryExecutionJob();
+        savedJob.setId(100L);
+        savedJob.setSourceQueryId(1L);
+        savedJob.setStatus(QueryExecutionJob.JobStatus.PENDING);
+
+        when(jobRepository.save(any(QueryExecutionJob.class))).thenReturn(savedJob);
+
+        jobService.addJob(1L);
+
+        verify(liveJobs).register(new JobStatusView(100L, 1L, QueryExecutionJob.JobStatus.PENDING, null, null, null));
+    }
+
+    @Test
+    void addJob_AuthenticatedUser_BecomesOwner() {
+        User owner = new User();
+        owner.setId(7L);
+        when(currentUserService.getUser()).thenReturn(Optional.of(owner));
+        when(jobRepository.save(any(QueryExecutionJob.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        QueryExecutionJob result = jobService.addJob(1L);
+
+        assertSame(owner, result.getOwner());
+    }
+
+    @Test
+    void getJobStatus_LiveJob_ServedFromMemory() {
+        Long jobId = 1L;
+        JobStatusView view = new JobStatusView(jobId, 5L, QueryExecutionJob.JobStatus.RUNNING, null, null, null);
+
+        when(liveJobs.get(jobId)).thenReturn(Optional.of(view));
+
+        assertEquals(Optional.of(view), jobService.getJobStatus(jobId));
+        verifyNoInteractions(jobRepository);
+    }
+
+    @Test
+    void listJobStatuses_LiveJobs_OverrideStoredState() {
+        QueryExecutionJob stored = job(2L, QueryExecutionJob.JobStatus.PENDING, LocalDateTime.of(2025, 1, 2, 0, 0));
+        QueryExecutionJob finished = job(1L, QueryExecutionJob.JobStatus.COMPLETED, LocalDateTime.of(2025, 1, 1, 0, 0));
+        JobStatusView live = new JobStatusView(2L, 5L, QueryExecutionJob.JobStatus.RUNNING, null, stored.getCreatedAt(), null);
+
+        when(jobRepository.findBy(any(Specification.class), any())).thenReturn(List.of(stored, finished));
+        when(liveJobs.get(2L)).thenReturn(Optional.of(live));
+        when(liveJobs.get(1L)).thenReturn(Optional.empty());
+
+        KeysetPage<JobStatusView> page = jobService.listJobStatuses(null, null, null, 10);
+
+        assertEquals(List.of(live, JobStatusView.of(finished)), page.items());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void listJobStatuses_MoreRowsThanLimit_ReturnsCursorOfLastItem() {
+        QueryExecutionJob newer = job(2L, QueryExecutionJob.JobStatus.COMPLETED, LocalDateTime.of(2025, 1, 2, 0, 0));
+        QueryExecutionJob older = job(1L, QueryExecutionJob.JobStatus.COMPLETED, LocalDateTime.of(2025, 1, 1, 0, 0));
+
+        when(jobRepository.findBy(any(Specification.class), any())).thenReturn(List.of(newer, older));
+        when(liveJobs.get(2L)).thenReturn(Optional.empty());
+
+        KeysetPage<JobStatusView> page = jobService.listJobStatuses(null, null, null, 1);
+
+        assertEquals(List.of(JobStatusView.of(newer)), page.items());
+        assertEquals(new KeysetCursor(newer.getCreatedAt(), 2L), KeysetCursor.decode(page.nextCursor()));
+    }
+
+    @Test
+    void listJobStatuses_StatusFilter_DropsJobsThatMovedOnInMemory() {
+        QueryExecutionJob stored = job(2L, QueryExecutionJob.JobStatus.PENDING, LocalDateTime.of(2025, 1, 2, 0, 0));
+        JobStatusView live = new JobStatusView(2L, 5L, QueryExecutionJob.JobStatus.RUNNING, null, stored.getCreatedAt(), null);
+
+        when(jobRepository.findBy(any(Specification.class), any())).thenReturn(List.of(stored));
+        when(liveJobs.get(2L)).thenReturn(Optional.of(live));
+
+        assertTrue(jobService.listJobStatuses(null, QueryExecutionJob.JobStatus.PENDING, null, 10).items().isEmpty());
+    }
+
+    @Test
+    void listJobStatuses_InvalidCursor_ThrowsException() {
+        QueryExecutionJobException exception = assertThrows(QueryExecutionJobException.class,
+                () -> jobService.listJobStatuses(null, null, "not-a-cursor", 10));
+
+        assertEquals("Invalid cursor", exception.getMessage());
+        verifyNoInteractions(jobRepository);
+    }
+
+    @Test
+    void markJobCompleted_JobAlreadyCancelled_DoesNotStoreResult() {
+        Long jobId = 1L;
+
+        when(liveJobs.isActive(jobId)).thenReturn(false);
+
+        jobService.markJobCompleted(jobId, "[]");
+
+        verifyNoInteractions(resultStorageService, eventPublisher);
+        verify(liveJobs, never()).transition(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void markJobCompleted_ActiveJob_StoresResultAndRowCount() {
+        Long jobId = 1L;
+
+        when(liveJobs.isActive(jobId)).thenReturn(true);
+        when(resultStorageService.storeResult(jobId, "[[1]]")).thenReturn(1L);
+        when(liveJobs.transition(eq(jobId), anySet(), eq(QueryExecutionJob.JobStatus.COMPLETED), isNull(), eq(1L)))
+                .thenReturn(true);
+
+        jobService.markJobCompleted(jobId, "[[1]]");
+
+        verify(resultStorageService, never()).deleteResult(any());
+        verify(eventPublisher).publishEvent(new JobFinishedEvent(jobId, QueryExecutionJob.JobStatus.COMPLETED));
+    }
+
+    @Test
+    void markJobCompleted_CancelledWhileStoring_DropsResult() {
+        Long jobId = 1L;
+
+        when(liveJobs.isActive(jobId)).thenReturn(true);
+        when(resultStorageService.storeResult(jobId, "[[1]]")).thenReturn(1L);
+        when(liveJobs.transition(eq(jobId), anySet(), eq(QueryExecutionJob.JobStatus.COMPLETED), isNull(), eq(1L)))
+                .thenReturn(false);
+
+        jobService.markJobCompleted(jobId, "[[1]]");
+
+        verify(resultStorageService).deleteResult(jobId);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void markJobCompleted_StoredRowsOfCancelledJob_DropsResult() {
+        Long jobId = 1L;
+        ResultChunkWriter storedResult = mock(ResultChunkWriter.class);
+
+        when(storedResult.getRowCount()).thenReturn(3L);
+        when(liveJobs.transition(eq(jobId), anySet(), eq(QueryExecutionJob.JobStatus.COMPLETED), isNull(), eq(3L)))
+                .thenReturn(false);
+
+        jobService.markJobCompleted(jobId, storedResult);
+
+        verify(resultStorageService).deleteResult(jobId);
+        verify(resultStorageService, never()).storeResult(any(), any());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void markJobCancelled_FinishedJob_ReturnsFalse() {
+        Long jobId = 1L;
+
+        when(liveJobs.transition(eq(jobId), anySet(), eq(QueryExecutionJob.JobStatus.CANCELLED), anyString(), isNull()))
+                .thenReturn(false);
+
+        assertFalse(jobService.markJobCancelled(jobId));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void markJobFailed_ActiveJob_NotifiesWaiters() {
+        Long jobId = 1L;
+
+        when(liveJobs.transition(eq(jobId), anySet(), eq(QueryExecutionJob.JobStatus.FAILED), eq("boom"), isNull()))
+                .thenReturn(true);
+
+        jobService.markJobFailed(jobId, "boom");
+
+        verify(eventPublisher).publishEvent(new JobFinishedEvent(jobId, QueryExecutionJob.JobStatus.FAILED));
+        verifyNoInteractions(jobRepository);
+    }
+
+    @Test
+    void addJobs_InsertsInOneBatchAndRegistersJobs() {
+        List<JobStatusView> inserted = List.of(
+                new JobStatusView(10L, 1L, QueryExecutionJob.JobStatus.PENDING, null, null, null),
+                new JobStatusView(11L, 2L, QueryExecutionJob.JobStatus.PENDING, null, null, null));
+        when(currentUserService.getUserId()).thenReturn(Optional.of(7L));
+        when(jobStateRepository.insertPendingJobs(List.of(1L, 2L), 7L)).thenReturn(inserted);
+
+        List<JobStatusView> result = jobService.addJobs(List.of(1L, 2L));
+
+        assertEquals(inserted, result);
+        verify(liveJobs).register(inserted.get(0));
+        verify(liveJobs).register(inserted.get(1));
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    void getJobStatuses_MixedJobs_ReadsStoredOnesWithOneQuery() {
+        JobStatusView live = new JobStatusView(3L, 1L, QueryExecutionJob.JobStatus.RUNNING, null, null, null);
+        JobStatusView stored = new JobStatusView(1L, 1L, QueryExecutionJob.JobStatus.COMPLETED, null, null, 2L);
+
+        when(liveJobs.get(anyLong())).thenReturn(Optional.empty());
+        when(liveJobs.get(3L)).thenReturn(Optional.of(live));
+        when(jobRepository.findStatusesByIdIn(List.of(2L, 1L))).thenReturn(List.of(stored));
+
+        List<JobStatusView> result = jobService.getJobStatuses(List.of(1L, 2L, 3L));
+
+        assertEquals(List.of(live, stored), result);
+        verify(jobRepository).findStatusesByIdIn(List.of(2L, 1L));
+    }
+
+    private static QueryExecutionJob job(Long id, QueryExecutionJob.JobStatus status, LocalDateTime createdAt) {
+        QueryExecutionJob job = new QueryExecutionJob();
+        job.setId(id);
+        job.setSourceQueryId(5L);
+        job.setStatus(status);
+        job.setCreatedAt(createdAt);
+        return job;
+    }
+}
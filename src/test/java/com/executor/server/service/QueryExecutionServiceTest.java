@@ -1,8 +1,14 @@
 package com.executor.server.service;
 
+import com.executor.CacheConfig;
+import com.executor.entity.QueryAnalysis;
+import com.executor.entity.StoredQuery;
+import com.executor.server.repository.DatasetRepository;
+import com.executor.server.repository.DatasetVersion;
 import com.executor.server.repository.QueryExecutionRepository;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.executor.server.repository.QueryResultChunkRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,14 +16,31 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.jdbc.core.RowCallbackHandler;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,66 +53,284 @@ public class QueryExecutionServiceTest {
     @Spy
     private ObjectMapper objectMapper = new ObjectMapper();
 
+    @Mock
+    private QueryCancellationRegistry cancellationRegistry;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private ColumnarQueryEngine columnarQueryEngine;
+
+    @Spy
+    private QueryValidationService validationService = new QueryValidationService(100);
+
+    private final DatasetRepository datasetRepository = mock(DatasetRepository.class);
+
+    @Spy
+    private TableVersions tableVersions = new TableVersions(datasetRepository);
+
     @InjectMocks
     private QueryExecutionService queryExecutionService;
 
+    @Mock
+    private QueryResultChunkRepository chunkRepository;
+
     @Test
     @DisplayName("Should return valid JSON string when query executes successfully")
-    void cacheableQueryExecution_Success() throws JsonProcessingException {
+    void cacheableQueryExecution_Success() throws IOException {
         String sqlQuery = "SELECT id, name FROM users";
+        returnRows(sqlQuery, List.of(List.of(1, "Alice"), List.of(2, "Bob")));
+        ResultChunkWriter rows = rows(1000);
 
-        // Use LinkedHashMap to ensure deterministic order of values for the test
-        Map<String, Object> row1 = new LinkedHashMap<>();
-        row1.put("id", 1);
-        row1.put("name", "Alice");
-
-        Map<String, Object> row2 = new LinkedHashMap<>();
-        row2.put("id", 2);
-        row2.put("name", "Bob");
-
-        List<Map<String, Object>> mockDbResult = List.of(row1, row2);
-
-        when(queryExecutionRepository.executeNativeQuery(sqlQuery)).thenReturn(mockDbResult);
-
-        String resultJson = null;
-        try {
-            resultJson = queryExecutionService.cacheableQueryExecution(sqlQuery);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException(e);
-        }
+        String resultJson = queryExecutionService.cacheableQueryExecution("fingerprint", stored(sqlQuery), Map.of(), rows);
 
         String expectedJson = "[[1,\"Alice\"],[2,\"Bob\"]]";
         assertEquals(expectedJson, resultJson);
-
-        verify(queryExecutionRepository, times(1)).executeNativeQuery(sqlQuery);
+        assertTrue(rows.isFinished());
+        assertEquals(2, rows.getRowCount());
+        verify(chunkRepository).save(any());
+        verify(queryExecutionRepository, times(1)).streamNativeQuery(eq(sqlQuery), anyMap(), any(), any());
     }
 
     @Test
     @DisplayName("Should return empty JSON array when query returns no results")
-    void cacheableQueryExecution_EmptyResult() throws JsonProcessingException {
+    void cacheableQueryExecution_EmptyResult() throws IOException {
         String sqlQuery = "SELECT * FROM empty_table";
-        when(queryExecutionRepository.executeNativeQuery(sqlQuery)).thenReturn(Collections.emptyList());
 
-        String resultJson = queryExecutionService.cacheableQueryExecution(sqlQuery);
+        String resultJson = queryExecutionService.cacheableQueryExecution("fingerprint", stored(sqlQuery), Map.of(), rows(1000));
 
         assertEquals("[]", resultJson);
-        verify(queryExecutionRepository).executeNativeQuery(sqlQuery);
+        verify(queryExecutionRepository).streamNativeQuery(eq(sqlQuery), anyMap(), any(), any());
+        verifyNoInteractions(chunkRepository);
+    }
+
+    @Test
+    @DisplayName("Result too large to keep as JSON should only be stored, and not cached")
+    void cacheableQueryExecution_LargeResult_IsOnlyStored() throws IOException {
+        String sqlQuery = "SELECT id, name FROM users";
+        ConcurrentMapCache cache = new ConcurrentMapCache(CacheConfig.QUERY_RESULTS_CACHE);
+        when(cacheManager.getCache(CacheConfig.QUERY_RESULTS_CACHE)).thenReturn(cache);
+        returnRows(sqlQuery, List.of(List.of(1, "Alice"), List.of(2, "Bob")));
+        ResultChunkWriter rows = rows(10);
+
+        assertNull(queryExecutionService.cacheableQueryExecution("fingerprint", stored(sqlQuery), Map.of(), rows));
+
+        assertTrue(rows.isFinished());
+        assertEquals(2, rows.getRowCount());
+        assertNull(cache.get("fingerprint"));
+    }
+
+    @Test
+    @DisplayName("Rows stored before the execution failed should be deleted")
+    void cacheableQueryExecution_FailsMidway_DiscardsStoredRows() {
+        String sqlQuery = "SELECT * FROM titanic";
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(3);
+            handler.processRow(resultSet(List.of(1)));
+            handler.processRow(resultSet(List.of(2)));
+            throw new RuntimeException("Connection lost");
+        }).when(queryExecutionRepository).streamNativeQuery(eq(sqlQuery), anyMap(), any(), any());
+        ResultChunkWriter rows = rows(1000);
+
+        assertThrows(RuntimeException.class, () -> queryExecutionService.cacheableQueryExecution("fingerprint", stored(sqlQuery), Map.of(), rows));
+
+        verify(chunkRepository).deleteByJobId(1L);
+        assertFalse(rows.isFinished());
+        assertEquals(0, rows.getRowCount());
+    }
+
+    @Test
+    @DisplayName("Should write rows as JSON array of arrays while they are fetched")
+    void executeQuery_WritesRowsAsJson() throws Exception {
+        String sqlQuery = "SELECT id, name FROM users";
+        returnRows(sqlQuery, List.of(List.of(1, "Alice"), Arrays.asList(2, null)));
+
+        assertEquals("[[1,\"Alice\"],[2,null]]", queryExecutionService.executeQuery("fingerprint", sqlQuery, Map.of()));
+        verifyNoInteractions(chunkRepository);
+    }
+
+    @Test
+    @DisplayName("Should register running statement under fingerprint and unregister it afterwards")
+    void cacheableQueryExecution_RegistersStatementForCancellation() throws IOException {
+        String sqlQuery = "SELECT * FROM titanic";
+        Statement statement = mock(Statement.class);
+
+        doAnswer(invocation -> {
+            Consumer<Statement> listener = invocation.getArgument(2);
+            listener.accept(statement);
+            return null;
+        }).when(queryExecutionRepository).streamNativeQuery(eq(sqlQuery), anyMap(), any(), any());
+
+        queryExecutionService.cacheableQueryExecution("fingerprint", stored(sqlQuery), Map.of(), rows(1000));
+
+        verify(cancellationRegistry).registerStatement("fingerprint", statement);
+        verify(cancellationRegistry).unregisterStatement("fingerprint", statement);
+    }
+
+    @Test
+    @DisplayName("Should return cached result only while the datasets it read are unchanged")
+    void findCachedResult_ReturnsCurrentResultOnly() {
+        ConcurrentMapCache cache = new ConcurrentMapCache(CacheConfig.QUERY_RESULTS_CACHE);
+        cache.put("cached", new CachedResult("[[1]]", Map.of("TITANIC", 1L)));
+        when(cacheManager.getCache(CacheConfig.QUERY_RESULTS_CACHE)).thenReturn(cache);
+        tableVersions.published("TITANIC", 1);
+
+        assertEquals(Optional.of("[[1]]"), queryExecutionService.findCachedResult("cached"));
+        assertEquals(Optional.empty(), queryExecutionService.findCachedResult("missing"));
+
+        tableVersions.published("titanic", 2);
+        assertEquals(Optional.empty(), queryExecutionService.findCachedResult("cached"));
+    }
+
+    @Test
+    @DisplayName("Should bind parameters and key the execution by fingerprint and parameter values")
+    void cacheableQueryExecution_WithParameters_PassesThemToRepository() throws IOException {
+        String sqlQuery = "SELECT name FROM titanic WHERE Pclass = :pclass";
+        Map<String, Object> parameters = Map.of("pclass", 1);
+
+        queryExecutionService.cacheableQueryExecution("fingerprint{\"pclass\":1}", stored(sqlQuery), parameters, rows(1000));
+
+        verify(queryExecutionRepository).streamNativeQuery(eq(sqlQuery), eq(parameters), any(), any());
+    }
+
+    @Test
+    @DisplayName("Execution key should depend on parameter values but not on their order")
+    void executionKey_IncludesSortedParameterValues() {
+        assertEquals("fingerprint", QueryExecutionService.executionKey("fingerprint", Map.of()));
+
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("port", "S");
+        first.put("pclass", 1);
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("pclass", 1);
+        second.put("port", "S");
+
+        assertEquals(QueryExecutionService.executionKey("fingerprint", first), QueryExecutionService.executionKey("fingerprint", second));
+        assertNotEquals(QueryExecutionService.executionKey("fingerprint", Map.of("pclass", 1)),
+                QueryExecutionService.executionKey("fingerprint", Map.of("pclass", "1")));
     }
 
     @Test
-    @DisplayName("Should propagate JsonProcessingException if serialization fails")
-    void cacheableQueryExecution_JsonException() throws JsonProcessingException {
-        String sqlQuery = "SELECT * FROM table";
-        List<Map<String, Object>> mockDbResult = List.of(Map.of("key", "value"));
+    @DisplayName("Cached result should be served until a dataset it read gets a new version")
+    void cacheableQueryExecution_DatasetVersionChanged_ExecutesAgain() throws IOException {
+        String sqlQuery = "SELECT COUNT(*) FROM titanic t JOIN PUBLIC.\"CREW\" c ON t.id = c.id";
+        CaffeineCache cache = new CaffeineCache(CacheConfig.QUERY_RESULTS_CACHE, Caffeine.newBuilder().build());
+        when(cacheManager.getCache(CacheConfig.QUERY_RESULTS_CACHE)).thenReturn(cache);
+        when(datasetRepository.findVersion("TITANIC")).thenReturn(Optional.of(version("TITANIC", 4)));
+        when(datasetRepository.findVersion("CREW")).thenReturn(Optional.of(version("CREW", 2)));
+        returnRows(sqlQuery, List.of(List.of(1)), List.of(List.of(2)));
 
-        when(queryExecutionRepository.executeNativeQuery(sqlQuery)).thenReturn(mockDbResult);
+        assertEquals("[[1]]", queryExecutionService.cacheableQueryExecution("fingerprint", stored(sqlQuery), Map.of(), rows(1000)));
+        assertEquals("[[1]]", queryExecutionService.cacheableQueryExecution("fingerprint", stored(sqlQuery), Map.of(), rows(1000)));
+        assertEquals(new CachedResult("[[1]]", Map.of("TITANIC", 4L, "CREW", 2L)), cache.get("fingerprint").get());
 
-        doThrow(new JsonProcessingException("Serialization error") {})
-                .when(objectMapper).writeValueAsString(any());
+        tableVersions.published("crew", 3);
 
-        assertThrows(JsonProcessingException.class, () -> {
-            queryExecutionService.cacheableQueryExecution(sqlQuery);
-        });
+        assertEquals("[[2]]", queryExecutionService.cacheableQueryExecution("fingerprint", stored(sqlQuery), Map.of(), rows(1000)));
+        assertEquals(new CachedResult("[[2]]", Map.of("TITANIC", 4L, "CREW", 3L)), cache.get("fingerprint").get());
+        verify(queryExecutionRepository, times(2)).streamNativeQuery(eq(sqlQuery), anyMap(), any(), any());
     }
 
+    @Test
+    @DisplayName("Result reading a table that is not a dataset should be cached untagged")
+    void cacheableQueryExecution_ReadsNonDatasetTable_CachesUntagged() throws IOException {
+        String sqlQuery = "SELECT COUNT(*) FROM titanic t JOIN users u ON t.id = u.id";
+        CaffeineCache cache = new CaffeineCache(CacheConfig.QUERY_RESULTS_CACHE, Caffeine.newBuilder().build());
+        when(cacheManager.getCache(CacheConfig.QUERY_RESULTS_CACHE)).thenReturn(cache);
+        // Tables may be looked up in any order, the snapshot stops at the first one that is not a dataset
+        lenient().when(datasetRepository.findVersion("TITANIC")).thenReturn(Optional.of(version("TITANIC", 4)));
+        returnRows(sqlQuery, List.of(List.of(1)));
+
+        assertEquals("[[1]]", queryExecutionService.cacheableQueryExecution("fingerprint", stored(sqlQuery), Map.of(), rows(1000)));
+        assertEquals(CachedResult.untagged("[[1]]"), cache.get("fingerprint").get());
+
+        tableVersions.published("titanic", 5);
+
+        assertEquals(Optional.of("[[1]]"), queryExecutionService.findCachedResult("fingerprint"));
+        verify(queryExecutionRepository, times(1)).streamNativeQuery(eq(sqlQuery), anyMap(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Result of a query reading no tables should be cached untagged")
+    void cacheableQueryExecution_ReadsNoTables_CachesUntagged() throws IOException {
+        String sqlQuery = "SELECT NOW()";
+        CaffeineCache cache = new CaffeineCache(CacheConfig.QUERY_RESULTS_CACHE, Caffeine.newBuilder().build());
+        when(cacheManager.getCache(CacheConfig.QUERY_RESULTS_CACHE)).thenReturn(cache);
+        returnRows(sqlQuery, List.of(List.of("2026-01-01")));
+
+        queryExecutionService.cacheableQueryExecution("fingerprint", stored(sqlQuery), Map.of(), rows(1000));
+
+        assertEquals(CachedResult.untagged("[[\"2026-01-01\"]]"), cache.get("fingerprint").get());
+    }
+
+    @Test
+    @DisplayName("Tables read by the query should come from its stored analysis without parsing it again")
+    void cacheableQueryExecution_StoredAnalysis_IsNotParsedAgain() throws IOException {
+        String sqlQuery = "SELECT COUNT(*) FROM titanic";
+        StoredQuery storedQuery = new StoredQuery(sqlQuery);
+        storedQuery.setAnalysis(new QueryAnalysis(QueryAnalysis.StatementType.SELECT, List.of("titanic"), List.of(), false));
+        CaffeineCache cache = new CaffeineCache(CacheConfig.QUERY_RESULTS_CACHE, Caffeine.newBuilder().build());
+        when(cacheManager.getCache(CacheConfig.QUERY_RESULTS_CACHE)).thenReturn(cache);
+        when(datasetRepository.findVersion("TITANIC")).thenReturn(Optional.of(version("TITANIC", 4)));
+        returnRows(sqlQuery, List.of(List.of(891)));
+
+        queryExecutionService.cacheableQueryExecution("fingerprint", storedQuery, Map.of(), rows(1000));
+
+        assertEquals(new CachedResult("[[891]]", Map.of("TITANIC", 4L)), cache.get("fingerprint").get());
+        verify(validationService, never()).validateQuery(any());
+    }
+
+    @Test
+    @DisplayName("Stale entry should be evicted on lookup even if the execution fails")
+    void cacheableQueryExecution_StaleEntryAndExecutionFails_EvictsEntry() {
+        String sqlQuery = "SELECT * FROM titanic";
+        CaffeineCache cache = new CaffeineCache(CacheConfig.QUERY_RESULTS_CACHE, Caffeine.newBuilder().build());
+        cache.put("fingerprint", new CachedResult("[[1]]", Map.of("TITANIC", 1L)));
+        when(cacheManager.getCache(CacheConfig.QUERY_RESULTS_CACHE)).thenReturn(cache);
+        doThrow(new RuntimeException("Table not found")).when(queryExecutionRepository).streamNativeQuery(eq(sqlQuery), anyMap(), any(), any());
+        tableVersions.published("TITANIC", 2);
+
+        assertThrows(RuntimeException.class, () -> queryExecutionService.cacheableQueryExecution("fingerprint", stored(sqlQuery), Map.of(), rows(1000)));
+        assertNull(cache.get("fingerprint"));
+    }
+
+    // Stored the way StoredQueryService does, with the analysis of its AST
+    private StoredQuery stored(String sql) {
+        StoredQuery storedQuery = new StoredQuery(sql);
+        storedQuery.setAnalysis(validationService.analyze(validationService.validateQuery(sql)));
+        return storedQuery;
+    }
+
+    private ResultChunkWriter rows(int keepBytes) {
+        return new ResultChunkWriter(chunkRepository, objectMapper.getFactory(), 1L, 2, keepBytes);
+    }
+
+    // Every execution of the query streams the next of the results to the row handler, one row at a time
+    @SafeVarargs
+    private void returnRows(String sqlQuery, List<List<Object>>... results) {
+        Iterator<List<List<Object>>> executions = List.of(results).iterator();
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(3);
+            for (List<Object> row : executions.next()) {
+                handler.processRow(resultSet(row));
+            }
+            return null;
+        }).when(queryExecutionRepository).streamNativeQuery(eq(sqlQuery), anyMap(), any(), any());
+    }
+
+    private static ResultSet resultSet(List<?> row) throws SQLException {
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        lenient().when(metaData.getColumnCount()).thenReturn(row.size());
+        ResultSet resultSet = mock(ResultSet.class);
+        lenient().when(resultSet.getMetaData()).thenReturn(metaData);
+        for (int i = 0; i < row.size(); i++) {
+            lenient().when(resultSet.getObject(i + 1)).thenReturn(row.get(i));
+        }
+        return resultSet;
+    }
+
+    private static DatasetVersion version(String name, long version) {
+        return new DatasetVersion(name, version, 10, LocalDateTime.now(), null, null, null, null);
+    }
 }
@@ -4,14 +4,18 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.executor.entity.QueryExecutionJob;
 import com.executor.entity.StoredQuery;
+import com.executor.server.repository.JobStatusView;
 import com.executor.server.repository.QueryExecutionRepository;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -29,9 +33,20 @@ class QueryManagingServiceTest {
     @Mock
     private QueryExecutionJobService jobService;
 
+    @Spy
+    private InFlightQueryRegistry inFlightRegistry = new InFlightQueryRegistry();
+
+    @Mock
+    private QueryCancellationRegistry cancellationRegistry;
+
+    @Mock
+    private MaterializedQueryService materializedQueryService;
+
     @InjectMocks
     private QueryManagingService QueryManagingService;
 
+    private final ResultChunkWriter rows = mock(ResultChunkWriter.class);
+
     @Test
     void executeQuery_ValidJobId_ExecutesSuccessfully() throws Exception {
         Long jobId = 1L;
@@ -46,6 +61,7 @@ class QueryManagingServiceTest {
         StoredQuery storedQuery = new StoredQuery();
         storedQuery.setId(queryId);
         storedQuery.setQuery(queryText);
+        storedQuery.setFingerprint("fingerprint");
 
         List<Map<String, Object>> mockResult = List.of(
                 Map.of("name", "John Doe", "age", 30),
@@ -54,15 +70,17 @@ class QueryManagingServiceTest {
 
         String resultJson = "[[\"John Doe\",30],[\"Jane Smith\",25]]";
 
-        when(jobService.getJobById(jobId)).thenReturn(Optional.of(job));
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(statusOf(job)));
+        when(jobService.markJobRunning(jobId)).thenReturn(true);
         when(storedQueryService.getQueryById(queryId)).thenReturn(Optional.of(storedQuery));
-        when(queryExecutionService.cacheableQueryExecution(queryText)).thenReturn(resultJson);
+        when(jobService.openResult(jobId)).thenReturn(rows);
+        when(queryExecutionService.cacheableQueryExecution("fingerprint", storedQuery, Map.of(), rows)).thenReturn(resultJson);
 
         QueryManagingService.executeQuery(jobId);
 
-        verify(jobService).getJobById(jobId);
+        verify(jobService).getJobStatus(jobId);
         verify(storedQueryService).getQueryById(queryId);
-        verify(queryExecutionService).cacheableQueryExecution(queryText);
+        verify(queryExecutionService).cacheableQueryExecution("fingerprint", storedQuery, Map.of(), rows);
 
         verify(jobService).markJobCompleted(eq(jobId), eq(resultJson));
         assertNull(job.getErrorMessage());
@@ -72,12 +90,12 @@ class QueryManagingServiceTest {
     void executeQuery_JobNotFound_ThrowsException() {
         Long jobId = 999L;
 
-        when(jobService.getJobById(jobId)).thenReturn(Optional.empty());
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.empty());
 
         RuntimeException exception = assertThrows(RuntimeException.class, () -> QueryManagingService.executeQuery(jobId));
 
         assertTrue(exception.getMessage().contains("No value present"));
-        verify(jobService).getJobById(jobId);
+        verify(jobService).getJobStatus(jobId);
         verifyNoInteractions(storedQueryService, queryExecutionService);
     }
 
@@ -91,12 +109,13 @@ class QueryManagingServiceTest {
         job.setSourceQueryId(queryId);
         job.setStatus(QueryExecutionJob.JobStatus.PENDING);
 
-        when(jobService.getJobById(jobId)).thenReturn(Optional.of(job));
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(statusOf(job)));
+        when(jobService.markJobRunning(jobId)).thenReturn(true);
         when(storedQueryService.getQueryById(queryId)).thenReturn(Optional.empty());
 
         QueryManagingService.executeQuery(jobId);
 
-        verify(jobService).getJobById(jobId);
+        verify(jobService).getJobStatus(jobId);
         verify(storedQueryService).getQueryById(queryId);
         verifyNoInteractions(queryExecutionService, queryExecutionService);
 
@@ -117,17 +136,20 @@ class QueryManagingServiceTest {
         StoredQuery storedQuery = new StoredQuery();
         storedQuery.setId(queryId);
         storedQuery.setQuery(queryText);
+        storedQuery.setFingerprint("fingerprint");
 
-        when(jobService.getJobById(jobId)).thenReturn(Optional.of(job));
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(statusOf(job)));
+        when(jobService.markJobRunning(jobId)).thenReturn(true);
         when(storedQueryService.getQueryById(queryId)).thenReturn(Optional.of(storedQuery));
-        when(queryExecutionService.cacheableQueryExecution(queryText))
+        when(jobService.openResult(jobId)).thenReturn(rows);
+        when(queryExecutionService.cacheableQueryExecution("fingerprint", storedQuery, Map.of(), rows))
                 .thenThrow(new RuntimeException("Database connection failed"));
 
         QueryManagingService.executeQuery(jobId);
 
-        verify(jobService).getJobById(jobId);
+        verify(jobService).getJobStatus(jobId);
         verify(storedQueryService).getQueryById(queryId);
-        verify(queryExecutionService).cacheableQueryExecution(queryText);
+        verify(queryExecutionService).cacheableQueryExecution("fingerprint", storedQuery, Map.of(), rows);
 
         verify(jobService).markJobFailed(eq(jobId), anyString());
     }
@@ -146,6 +168,7 @@ class QueryManagingServiceTest {
         StoredQuery storedQuery = new StoredQuery();
         storedQuery.setId(queryId);
         storedQuery.setQuery(queryText);
+        storedQuery.setFingerprint("fingerprint");
 
         List<Map<String, Object>> mockResult = List.of(
                 new HashMap<>() {{
@@ -160,12 +183,208 @@ class QueryManagingServiceTest {
 
         String resultJson = "[[\"John Doe\",null],[\"Jane Smith\",\"value\"]]";
 
-        when(jobService.getJobById(jobId)).thenReturn(Optional.of(job));
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(statusOf(job)));
+        when(jobService.markJobRunning(jobId)).thenReturn(true);
         when(storedQueryService.getQueryById(queryId)).thenReturn(Optional.of(storedQuery));
-        when(queryExecutionService.cacheableQueryExecution(queryText)).thenReturn(resultJson);
+        when(jobService.openResult(jobId)).thenReturn(rows);
+        when(queryExecutionService.cacheableQueryExecution("fingerprint", storedQuery, Map.of(), rows)).thenReturn(resultJson);
 
         QueryManagingService.executeQuery(jobId);
 
         verify(jobService).markJobCompleted(eq(jobId), eq(resultJson));
     }
-}
\ No newline at end of file
+
+    @Test
+    void executeQuery_JobCancelledWhileQueued_DoesNotExecute() {
+        Long jobId = 1L;
+        QueryExecutionJob job = new QueryExecutionJob();
+        job.setId(jobId);
+        job.setSourceQueryId(1L);
+
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(statusOf(job)));
+        when(jobService.markJobRunning(jobId)).thenReturn(false);
+
+        QueryManagingService.executeQuery(jobId);
+
+        verifyNoInteractions(storedQueryService, queryExecutionService, cancellationRegistry);
+        verify(jobService, never()).markJobCompleted(any(), anyString());
+    }
+
+    @Test
+    void executeQuery_QueryTimesOut_MarksJobAsTimedOut() throws JsonProcessingException {
+        Long jobId = 1L;
+        Long queryId = 1L;
+        String queryText = "SELECT * FROM titanic t1, titanic t2";
+
+        QueryExecutionJob job = new QueryExecutionJob();
+        job.setId(jobId);
+        job.setSourceQueryId(queryId);
+
+        StoredQuery storedQuery = new StoredQuery();
+        storedQuery.setId(queryId);
+        storedQuery.setQuery(queryText);
+        storedQuery.setFingerprint("fingerprint");
+
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(statusOf(job)));
+        when(jobService.markJobRunning(jobId)).thenReturn(true);
+        when(storedQueryService.getQueryById(queryId)).thenReturn(Optional.of(storedQuery));
+        when(jobService.openResult(jobId)).thenReturn(rows);
+        when(queryExecutionService.cacheableQueryExecution("fingerprint", storedQuery, Map.of(), rows))
+                .thenThrow(new QueryTimeoutException("Statement was canceled or the session timed out"));
+
+        QueryManagingService.executeQuery(jobId);
+
+        verify(jobService).markJobTimedOut(eq(jobId), anyString());
+        verify(jobService, never()).markJobFailed(any(), any());
+        verify(cancellationRegistry).attach(jobId, "fingerprint");
+        verify(cancellationRegistry).detach(jobId);
+    }
+
+    @Test
+    void executeQuery_ExecutionCancelledForOtherJobs_RunsAgainInsteadOfTimingOut() throws JsonProcessingException {
+        Long jobId = 1L;
+        Long queryId = 1L;
+        String queryText = "SELECT * FROM titanic t1, titanic t2";
+
+        QueryExecutionJob job = new QueryExecutionJob();
+        job.setId(jobId);
+        job.setSourceQueryId(queryId);
+
+        StoredQuery storedQuery = new StoredQuery();
+        storedQuery.setId(queryId);
+        storedQuery.setQuery(queryText);
+        storedQuery.setFingerprint("fingerprint");
+
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(statusOf(job)));
+        when(jobService.markJobRunning(jobId)).thenReturn(true);
+        when(storedQueryService.getQueryById(queryId)).thenReturn(Optional.of(storedQuery));
+        when(cancellationRegistry.attach(jobId, "fingerprint")).thenReturn(new CompletableFuture<>());
+        when(jobService.openResult(jobId)).thenReturn(rows);
+        when(queryExecutionService.cacheableQueryExecution("fingerprint", storedQuery, Map.of(), rows))
+                .thenThrow(new QueryCancelledException("Execution was cancelled",
+                        new QueryTimeoutException("Statement was canceled or the session timed out")))
+                .thenReturn("[[791321]]");
+
+        QueryManagingService.executeQuery(jobId);
+
+        verify(jobService).markJobCompleted(jobId, "[[791321]]");
+        verify(jobService, never()).markJobTimedOut(any(), any());
+        verify(cancellationRegistry).detach(jobId);
+    }
+
+    @Test
+    void executeQuery_JobCancelledWhileRunning_IsNotMarkedAgain() throws JsonProcessingException {
+        Long jobId = 1L;
+        Long queryId = 1L;
+        String queryText = "SELECT * FROM titanic t1, titanic t2";
+
+        QueryExecutionJob job = new QueryExecutionJob();
+        job.setId(jobId);
+        job.setSourceQueryId(queryId);
+
+        StoredQuery storedQuery = new StoredQuery();
+        storedQuery.setId(queryId);
+        storedQuery.setQuery(queryText);
+        storedQuery.setFingerprint("fingerprint");
+
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(statusOf(job)));
+        when(jobService.markJobRunning(jobId)).thenReturn(true);
+        when(storedQueryService.getQueryById(queryId)).thenReturn(Optional.of(storedQuery));
+        when(cancellationRegistry.attach(jobId, "fingerprint")).thenReturn(CompletableFuture.completedFuture(null));
+        when(jobService.openResult(jobId)).thenReturn(rows);
+        when(queryExecutionService.cacheableQueryExecution("fingerprint", storedQuery, Map.of(), rows))
+                .thenThrow(new QueryCancelledException("Execution was cancelled"));
+
+        QueryManagingService.executeQuery(jobId);
+
+        verify(queryExecutionService, times(1)).cacheableQueryExecution(any(), any(), any(), any());
+        verify(jobService, never()).markJobTimedOut(any(), any());
+        verify(jobService, never()).markJobFailed(any(), any());
+        verify(cancellationRegistry).detach(jobId);
+    }
+
+    @Test
+    void executeQuery_MaterializedQuery_CompletesWithoutExecuting() throws JsonProcessingException {
+        Long jobId = 1L;
+        Long queryId = 1L;
+
+        QueryExecutionJob job = new QueryExecutionJob();
+        job.setId(jobId);
+        job.setSourceQueryId(queryId);
+
+        StoredQuery storedQuery = new StoredQuery();
+        storedQuery.setId(queryId);
+        storedQuery.setQuery("SELECT COUNT(*) FROM titanic");
+        storedQuery.setFingerprint("fingerprint");
+
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(statusOf(job)));
+        when(jobService.markJobRunning(jobId)).thenReturn(true);
+        when(storedQueryService.getQueryById(queryId)).thenReturn(Optional.of(storedQuery));
+        when(materializedQueryService.findResult(storedQuery, Map.of())).thenReturn(Optional.of("[[891]]"));
+
+        QueryManagingService.executeQuery(jobId);
+
+        verify(materializedQueryService).recordExecution(queryId);
+        verify(jobService).markJobCompleted(jobId, "[[891]]");
+        verify(queryExecutionService, never()).cacheableQueryExecution(any(), any(), any(), any());
+        verifyNoInteractions(cancellationRegistry);
+    }
+
+    @Test
+    void executeQuery_ResultStoredWhileFetched_CompletesWithStoredRows() throws Exception {
+        Long jobId = 1L;
+        StoredQuery storedQuery = storedQuery(1L, "SELECT * FROM titanic");
+        QueryExecutionJob job = new QueryExecutionJob();
+        job.setId(jobId);
+        job.setSourceQueryId(1L);
+
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(statusOf(job)));
+        when(jobService.markJobRunning(jobId)).thenReturn(true);
+        when(storedQueryService.getQueryById(1L)).thenReturn(Optional.of(storedQuery));
+        when(jobService.openResult(jobId)).thenReturn(rows);
+        when(queryExecutionService.cacheableQueryExecution("fingerprint", storedQuery, Map.of(), rows)).thenReturn(null);
+        when(rows.isFinished()).thenReturn(true);
+
+        QueryManagingService.executeQuery(jobId);
+
+        verify(jobService).markJobCompleted(jobId, rows);
+        verify(jobService, never()).markJobCompleted(eq(jobId), anyString());
+    }
+
+    @Test
+    void executeQuery_SharedResultTooLarge_ExecutesForItself() throws Exception {
+        Long jobId = 2L;
+        StoredQuery storedQuery = storedQuery(1L, "SELECT * FROM titanic");
+        QueryExecutionJob job = new QueryExecutionJob();
+        job.setId(jobId);
+        job.setSourceQueryId(1L);
+
+        when(jobService.getJobStatus(jobId)).thenReturn(Optional.of(statusOf(job)));
+        when(jobService.markJobRunning(jobId)).thenReturn(true);
+        when(storedQueryService.getQueryById(1L)).thenReturn(Optional.of(storedQuery));
+        when(jobService.openResult(jobId)).thenReturn(rows);
+        // The first call stands for the execution of another job this one waited for, it left the writer untouched
+        doReturn(null).doCallRealMethod().when(inFlightRegistry).execute(eq("fingerprint"), any(), any());
+        when(queryExecutionService.cacheableQueryExecution("fingerprint", storedQuery, Map.of(), rows)).thenAnswer(invocation -> {
+            when(rows.isFinished()).thenReturn(true);
+            return null;
+        });
+
+        QueryManagingService.executeQuery(jobId);
+
+        verify(queryExecutionService, times(1)).cacheableQueryExecution(any(), any(), any(), any());
+        verify(jobService).markJobCompleted(jobId, rows);
+    }
+
+    private static StoredQuery storedQuery(Long id, String query) {
+        StoredQuery storedQuery = new StoredQuery();
+        storedQuery.setId(id);
+        storedQuery.setQuery(query);
+        storedQuery.setFingerprint("fingerprint");
+        return storedQuery;
+    }
+
+    private static JobStatusView statusOf(QueryExecutionJob job) {
+        return new JobStatusView(job.getId(), job.getSourceQueryId(), QueryExecutionJob.JobStatus.PENDING, null, null, null);
+    }
+}
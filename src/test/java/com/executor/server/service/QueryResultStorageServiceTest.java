@@ -0,0 +1,181 @@
+package com.executor.server.service;
+
+import com.executor.entity.QueryResultChunk;
+import com.executor.server.repository.QueryResultChunkRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class QueryResultStorageServiceTest {
+
+    @Mock
+    private QueryResultChunkRepository chunkRepository;
+
+    private QueryResultStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        storageService = new QueryResultStorageService(chunkRepository, new ObjectMapper(), 2, 64);
+    }
+
+    @Test
+    void storeResult_SplitsRowsIntoFixedSizeChunks() {
+        long totalRows = storageService.storeResult(1L, "[[1,\"a\"],[2,\"b\"],[3,null]]");
+
+        assertEquals(3, totalRows);
+
+        ArgumentCaptor<QueryResultChunk> captor = ArgumentCaptor.forClass(QueryResultChunk.class);
+        verify(chunkRepository, times(2)).save(captor.capture());
+
+        List<QueryResultChunk> chunks = captor.getAllValues();
+        assertEquals(0, chunks.get(0).getChunkIndex());
+        assertEquals(2, chunks.get(0).getRowCount());
+        assertEquals("[[1,\"a\"],[2,\"b\"]]", chunks.get(0).getRows());
+        assertEquals(1, chunks.get(1).getChunkIndex());
+        assertEquals(1, chunks.get(1).getRowCount());
+        assertEquals("[[3,null]]", chunks.get(1).getRows());
+    }
+
+    @Test
+    void openResult_StoresRowsWhileWrittenAndKeepsSmallResult() throws Exception {
+        ResultChunkWriter writer = storageService.openResult(1L);
+        writer.writeRow(List.of(1, "a"));
+        writer.writeRow(List.of(2, "b"));
+        writer.writeRow(Arrays.asList(3, null));
+
+        assertEquals(3, writer.finish());
+
+        ArgumentCaptor<QueryResultChunk> captor = ArgumentCaptor.forClass(QueryResultChunk.class);
+        verify(chunkRepository, times(2)).save(captor.capture());
+        assertEquals("[[1,\"a\"],[2,\"b\"]]", captor.getAllValues().get(0).getRows());
+        assertEquals("[[3,null]]", captor.getAllValues().get(1).getRows());
+        assertEquals(Optional.of("[[1,\"a\"],[2,\"b\"],[3,null]]"), writer.getJson());
+    }
+
+    @Test
+    void openResult_NonAsciiRows_CountsUtf8Bytes() throws Exception {
+        ResultChunkWriter writer = storageService.openResult(1L);
+        writer.writeRow(List.of("Zürich"));
+        writer.finish();
+
+        ArgumentCaptor<QueryResultChunk> captor = ArgumentCaptor.forClass(QueryResultChunk.class);
+        verify(chunkRepository).save(captor.capture());
+        assertEquals("[[\"Zürich\"]]", captor.getValue().getRows());
+        assertEquals(13, captor.getValue().getByteCount());
+    }
+
+    @Test
+    void openResult_ResultOverInlineSize_IsOnlyStored() throws Exception {
+        ResultChunkWriter writer = storageService.openResult(1L);
+        for (int i = 0; i < 10; i++) {
+            writer.writeRow(List.of(i, "passenger " + i));
+        }
+
+        assertEquals(10, writer.finish());
+        assertEquals(Optional.empty(), writer.getJson());
+        verify(chunkRepository, times(5)).save(any());
+    }
+
+    @Test
+    void openResult_Discard_DeletesStoredChunksAndStartsOver() throws Exception {
+        ResultChunkWriter writer = storageService.openResult(1L);
+        writer.writeRow(List.of(1));
+        writer.writeRow(List.of(2));
+
+        writer.discard();
+        writer.writeRow(List.of(3));
+        writer.finish();
+
+        verify(chunkRepository).deleteByJobId(1L);
+        assertEquals(1, writer.getRowCount());
+        assertEquals(Optional.of("[[3]]"), writer.getJson());
+    }
+
+    @Test
+    void streamResult_JoinsChunksIntoOneArray() throws Exception {
+        when(chunkRepository.findByJobIdAndChunkIndex(1L, 0)).thenReturn(Optional.of(new QueryResultChunk(1L, 0, 2, "[[1,\"a\"],[2,\"b\"]]")));
+        when(chunkRepository.findByJobIdAndChunkIndex(1L, 1)).thenReturn(Optional.of(new QueryResultChunk(1L, 1, 1, "[[3,null]]")));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        storageService.streamResult(1L, 3, outputStream);
+
+        assertEquals("[[1,\"a\"],[2,\"b\"],[3,null]]", outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void streamResult_EmptyResult_WritesEmptyArray() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        storageService.streamResult(1L, 0, outputStream);
+
+        assertEquals("[]", outputStream.toString(StandardCharsets.UTF_8));
+        verifyNoInteractions(chunkRepository);
+    }
+
+    @Test
+    void storeResult_EmptyResult_StoresNoChunks() {
+        assertEquals(0, storageService.storeResult(1L, "[]"));
+        verifyNoInteractions(chunkRepository);
+    }
+
+    @Test
+    void storeResult_NotAnArray_ThrowsException() {
+        assertThrows(QueryExecutionJobException.class, () -> storageService.storeResult(1L, "{\"a\":1}"));
+    }
+
+    @Test
+    void readResultPage_LoadsOnlyOverlappingChunks() {
+        when(chunkRepository.findAllByJobIdAndChunkIndexBetweenOrderByChunkIndexAsc(1L, 0, 1)).thenReturn(List.of(
+                new QueryResultChunk(1L, 0, 2, "[[1],[2]]"),
+                new QueryResultChunk(1L, 1, 2, "[[3],[4]]")
+        ));
+
+        ResultPage page = storageService.readResultPage(1L, 5, 1, 2);
+
+        assertEquals(List.of(List.of(2), List.of(3)), page.rows());
+        assertEquals(1, page.offset());
+        assertEquals(5, page.totalRows());
+        assertEquals(3, storageService.decodeCursor(1L, page.nextCursor()));
+    }
+
+    @Test
+    void readResultPage_LastPage_HasNoNextCursor() {
+        when(chunkRepository.findAllByJobIdAndChunkIndexBetweenOrderByChunkIndexAsc(1L, 2, 2))
+                .thenReturn(List.of(new QueryResultChunk(1L, 2, 1, "[[5]]")));
+
+        ResultPage page = storageService.readResultPage(1L, 5, 4, 10);
+
+        assertEquals(List.of(List.of(5)), page.rows());
+        assertNull(page.nextCursor());
+    }
+
+    @Test
+    void readResultPage_OffsetPastEnd_ReturnsEmptyPage() {
+        ResultPage page = storageService.readResultPage(1L, 5, 10, 10);
+
+        assertTrue(page.rows().isEmpty());
+        verifyNoInteractions(chunkRepository);
+    }
+
+    @Test
+    void decodeCursor_CursorOfAnotherJob_ThrowsException() {
+        String cursor = storageService.encodeCursor(1L, 10);
+
+        assertThrows(QueryExecutionJobException.class, () -> storageService.decodeCursor(2L, cursor));
+        assertThrows(QueryExecutionJobException.class, () -> storageService.decodeCursor(1L, "not a cursor"));
+    }
+}
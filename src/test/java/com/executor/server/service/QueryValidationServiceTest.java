@@ -1,20 +1,22 @@
 package com.executor.server.service;
 
+import com.executor.entity.QueryAnalysis;
+import net.sf.jsqlparser.statement.Statement;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.NullAndEmptySource;
 import org.junit.jupiter.params.provider.ValueSource;
-import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @ExtendWith(MockitoExtension.class)
 class QueryValidationServiceTest {
 
-    @InjectMocks
-    private QueryValidationService queryValidationService;
+    private final QueryValidationService queryValidationService = new QueryValidationService(100);
 
     // Valid SELECT queries that should pass validation
     @ParameterizedTest
@@ -204,4 +206,87 @@ class QueryValidationServiceTest {
         assertThrows(RuntimeException.class,
                 () -> queryValidationService.validateQuery(query));
     }
-}
\ No newline at end of file
+
+    // Fingerprints
+    @Test
+    void fingerprint_SameQueryDifferentFormatting_ReturnsSameFingerprint() {
+        String fingerprint = fingerprintOf("select * from titanic");
+
+        assertEquals(fingerprint, fingerprintOf("SELECT * FROM Titanic"));
+        assertEquals(fingerprint, fingerprintOf("SELECT  *\n  FROM   titanic"));
+        assertEquals(fingerprint, fingerprintOf("SELECT * /* all passengers */ FROM titanic -- comment\n"));
+    }
+
+    @Test
+    void fingerprint_DifferentLiterals_ReturnsDifferentFingerprints() {
+        assertNotEquals(fingerprintOf("SELECT * FROM titanic WHERE name = 'John'"),
+                fingerprintOf("SELECT * FROM titanic WHERE name = 'john'"));
+        assertNotEquals(fingerprintOf("SELECT * FROM titanic WHERE age > 18"),
+                fingerprintOf("SELECT * FROM titanic WHERE age > 19"));
+    }
+
+    @Test
+    void canonicalize_KeepsQuotedTokensVerbatim() {
+        assertEquals("select \"Name\", 'It''s Me' from titanic",
+                QueryValidationService.canonicalize("SELECT   \"Name\", 'It''s Me'\nFROM Titanic"));
+    }
+
+    @Test
+    void parameterNames_NamedParameters_ReturnsDistinctNamesInOrder() {
+        Statement statement = queryValidationService.validateQuery(
+                "SELECT * FROM titanic WHERE Pclass = :pclass AND (Embarked = :port OR :port IS NULL)");
+
+        assertEquals(List.of("pclass", "port"), queryValidationService.parameterNames(statement));
+    }
+
+    @Test
+    void parameterNames_ColonsInLiteralsAndCasts_AreNotParameters() {
+        Statement statement = queryValidationService.validateQuery(
+                "SELECT Name, 'at :noon' FROM titanic WHERE Age::int > :age");
+
+        assertEquals(List.of("age"), queryValidationService.parameterNames(statement));
+    }
+
+    @Test
+    void parameterNames_PlainQuery_ReturnsEmptyList() {
+        assertTrue(queryValidationService.parameterNames(queryValidationService.validateQuery("SELECT * FROM titanic")).isEmpty());
+    }
+
+    @Test
+    void validateQuery_SameTextTwice_ReturnsCachedStatement() {
+        String query = "SELECT Name FROM titanic WHERE Age > 30";
+
+        assertSame(queryValidationService.validateQuery(query), queryValidationService.validateQuery(query));
+    }
+
+    @Test
+    void validateQuery_InvalidQueryTwice_ThrowsEveryTime() {
+        assertThrows(SecurityException.class, () -> queryValidationService.validateQuery("SELEC * FROM titanic"));
+        assertThrows(SecurityException.class, () -> queryValidationService.validateQuery("SELEC * FROM titanic"));
+    }
+
+    @Test
+    void analyze_Select_CollectsTablesColumnsAndLimit() {
+        Statement statement = queryValidationService.validateQuery(
+                "SELECT t.Name, Age FROM titanic t JOIN passengers p ON t.PassengerId = p.Id WHERE Age > 30 LIMIT 10");
+
+        QueryAnalysis analysis = queryValidationService.analyze(statement);
+
+        assertEquals(QueryAnalysis.StatementType.SELECT, analysis.getStatementType());
+        assertEquals(List.of("titanic", "passengers"), analysis.getReferencedTables());
+        assertTrue(analysis.getReferencedColumns().containsAll(List.of("t.Name", "Age", "t.PassengerId", "p.Id")));
+        assertTrue(analysis.isLimited());
+    }
+
+    @Test
+    void analyze_SelectWithoutLimit_IsNotLimited() {
+        QueryAnalysis analysis = queryValidationService.analyze(queryValidationService.validateQuery("SELECT * FROM titanic"));
+
+        assertFalse(analysis.isLimited());
+        assertTrue(analysis.getReferencedColumns().isEmpty());
+    }
+
+    private String fingerprintOf(String query) {
+        return queryValidationService.fingerprint(queryValidationService.validateQuery(query));
+    }
+}
@@ -1,7 +1,11 @@
 package com.executor.server.service;
 
+import com.executor.entity.QueryAnalysis;
 import com.executor.entity.StoredQuery;
+import com.executor.entity.User;
+import com.executor.server.repository.KeysetCursor;
 import com.executor.server.repository.StoredQueryRepository;
+import net.sf.jsqlparser.statement.Statement;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,10 +17,15 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.jpa.domain.Specification;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -31,6 +40,9 @@ public class StoredQueryServiceTest {
     @Mock
     private QueryValidationService validationService;
 
+    @Mock
+    private CurrentUserService currentUserService;
+
     @InjectMocks
     private StoredQueryService queryService;
 
@@ -70,6 +82,39 @@ public class StoredQueryServiceTest {
         verify(queryRepository).findAllByOrderByCreatedAtDesc();
     }
 
+    @Test
+    public void listQueries_LastPage_HasNoCursor() {
+        when(queryRepository.findBy(any(Specification.class), any())).thenReturn(List.of(storedQuery));
+
+        KeysetPage<StoredQuery> page = queryService.listQueries(null, null, 10);
+
+        assertEquals(List.of(storedQuery), page.items());
+        assertNull(page.nextCursor());
+        verify(queryRepository, never()).findAllByOrderByCreatedAtDesc();
+    }
+
+    @Test
+    public void listQueries_MoreRowsThanLimit_ReturnsCursorOfLastItem() {
+        StoredQuery older = new StoredQuery("SELECT 1");
+        older.setId(0L);
+        older.setCreatedAt(storedQuery.getCreatedAt().minusMinutes(1));
+        when(queryRepository.findBy(any(Specification.class), any())).thenReturn(List.of(storedQuery, older));
+
+        KeysetPage<StoredQuery> page = queryService.listQueries(3L, null, 1);
+
+        assertEquals(List.of(storedQuery), page.items());
+        assertEquals(new KeysetCursor(storedQuery.getCreatedAt(), queryId), KeysetCursor.decode(page.nextCursor()));
+    }
+
+    @Test
+    public void listQueries_InvalidCursor_ThrowsException() {
+        StoredQueryException exception = assertThrows(StoredQueryException.class,
+                () -> queryService.listQueries(null, "%%%", 10));
+
+        assertEquals("Invalid cursor", exception.getMessage());
+        verifyNoInteractions(queryRepository);
+    }
+
 
     @Test
     public void addQueryTest() {
@@ -81,6 +126,18 @@ public class StoredQueryServiceTest {
         verify(queryRepository).save(any(StoredQuery.class));
     }
 
+    @Test
+    public void addQuery_AuthenticatedUser_BecomesOwner() {
+        User owner = new User();
+        owner.setId(7L);
+        when(currentUserService.getUser()).thenReturn(Optional.of(owner));
+        when(queryRepository.save(any(StoredQuery.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        StoredQuery result = queryService.addQuery(queryText);
+
+        assertSame(owner, result.getOwner());
+    }
+
     @Test
     public void addQuery_ComplexQuery_SavesSuccessfully() {
         String complexQuery = """
@@ -223,4 +280,151 @@ public class StoredQueryServiceTest {
                 Arguments.of("SELECT * FROM table -- with comment")
         );
     }
+
+    @Test
+    public void addQuery_ComputesFingerprintFromParsedStatement() {
+        Statement statement = mock(Statement.class);
+        when(validationService.validateQuery(queryText)).thenReturn(statement);
+        when(validationService.fingerprint(statement)).thenReturn("fingerprint");
+        when(queryRepository.save(any(StoredQuery.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        StoredQuery result = queryService.addQuery(queryText);
+
+        assertEquals("fingerprint", result.getFingerprint());
+        verify(validationService).validateQuery(queryText);
+        verify(validationService).fingerprint(statement);
+    }
+
+    @Test
+    public void addQuery_StoresParameterNames() {
+        Statement statement = mock(Statement.class);
+        when(validationService.validateQuery(queryText)).thenReturn(statement);
+        when(validationService.parameterNames(statement)).thenReturn(List.of("pclass", "port"));
+        when(queryRepository.save(any(StoredQuery.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        StoredQuery result = queryService.addQuery(queryText);
+
+        assertEquals(List.of("pclass", "port"), result.getParameterNames());
+    }
+
+    @Test
+    public void addQuery_StoresAnalysisOfParsedStatement() {
+        Statement statement = mock(Statement.class);
+        QueryAnalysis analysis = new QueryAnalysis(QueryAnalysis.StatementType.SELECT, List.of("titanic"), List.of(), false);
+        when(validationService.validateQuery(queryText)).thenReturn(statement);
+        when(validationService.analyze(statement)).thenReturn(analysis);
+        when(queryRepository.save(any(StoredQuery.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        StoredQuery result = queryService.addQuery(queryText);
+
+        assertSame(analysis, result.getAnalysis());
+        verify(validationService, times(1)).validateQuery(queryText);
+    }
+
+    @Test
+    public void importQueries_MixedQueries_StoresValidOnesInOneCall() {
+        StoredQueryService service = new StoredQueryService(queryRepository, validationService, new ForkJoinPool(2), currentUserService);
+        when(validationService.validateQuery("SELECT 1")).thenReturn(mock(Statement.class));
+        when(validationService.validateQuery("DROP TABLE titanic")).thenThrow(new SecurityException("Only retrieving data queries are allowed"));
+        doAnswer(invocation -> {
+            List<StoredQuery> queries = invocation.getArgument(0);
+            queries.forEach(query -> query.setId(10L));
+            return null;
+        }).when(queryRepository).insertAll(anyList());
+
+        List<QueryImportResult> results = service.importQueries(Arrays.asList("SELECT 1", "DROP TABLE titanic", null));
+
+        assertEquals(List.of(
+                new QueryImportResult(0, 10L, null),
+                new QueryImportResult(1, null, "Only retrieving data queries are allowed"),
+                new QueryImportResult(2, null, "Query cannot be null")), results);
+        verify(queryRepository).insertAll(argThat(queries -> queries.size() == 1));
+        verify(queryRepository, never()).save(any());
+    }
+
+    @Test
+    public void importQueries_AuthenticatedUser_OwnsStoredQueries() {
+        StoredQueryService service = new StoredQueryService(queryRepository, validationService, new ForkJoinPool(2), currentUserService);
+        User owner = new User();
+        owner.setId(7L);
+        when(currentUserService.getUser()).thenReturn(Optional.of(owner));
+        when(validationService.validateQuery(anyString())).thenReturn(mock(Statement.class));
+
+        service.importQueries(List.of("SELECT 1", "SELECT 2"));
+
+        verify(queryRepository).insertAll(argThat(queries -> queries.size() == 2
+                && queries.stream().allMatch(query -> query.getOwner() == owner)));
+    }
+
+    @Test
+    public void importQueries_UnexpectedErrorForOneQuery_RejectsOnlyThatQuery() {
+        StoredQueryService service = new StoredQueryService(queryRepository, validationService, new ForkJoinPool(2), currentUserService);
+        when(validationService.validateQuery("SELECT 1")).thenReturn(mock(Statement.class));
+        when(validationService.validateQuery("SELECT 2")).thenThrow(new IllegalStateException("Parser failed"));
+
+        List<QueryImportResult> results = service.importQueries(List.of("SELECT 1", "SELECT 2"));
+
+        assertEquals(new QueryImportResult(1, null, "Parser failed"), results.get(1));
+        verify(queryRepository).insertAll(argThat(queries -> queries.size() == 1));
+    }
+
+    @Test
+    public void validateParameters_AllValuesPresent_Passes() {
+        storedQuery.setParameterNames(List.of("pclass", "port"));
+
+        assertDoesNotThrow(() -> queryService.validateParameters(storedQuery, Map.of("pclass", List.of(1, 2), "port", "S")));
+    }
+
+    @Test
+    public void validateParameters_MissingValue_ThrowsException() {
+        storedQuery.setParameterNames(List.of("pclass", "port"));
+
+        StoredQueryException exception = assertThrows(StoredQueryException.class,
+                () -> queryService.validateParameters(storedQuery, Map.of("pclass", 1)));
+
+        assertEquals("Missing query parameters: [port]", exception.getMessage());
+    }
+
+    @Test
+    public void validateParameters_UnknownValue_ThrowsException() {
+        storedQuery.setParameterNames(List.of("pclass"));
+
+        StoredQueryException exception = assertThrows(StoredQueryException.class,
+                () -> queryService.validateParameters(storedQuery, Map.of("pclass", 1, "sex", "male")));
+
+        assertEquals("Unknown query parameters: [sex]", exception.getMessage());
+    }
+
+    @Test
+    public void validateParameters_NestedValue_ThrowsException() {
+        storedQuery.setParameterNames(List.of("pclass"));
+
+        StoredQueryException exception = assertThrows(StoredQueryException.class,
+                () -> queryService.validateParameters(storedQuery, Map.of("pclass", Map.of("min", 1))));
+
+        assertEquals("Parameter pclass should be a value or a list of values", exception.getMessage());
+    }
+
+    @Test
+    public void getQueriesByIds_AllExist_LoadsWithOneLookup() {
+        StoredQuery other = new StoredQuery("SELECT 1");
+        other.setId(2L);
+        when(queryRepository.findAllById(Set.of(1L, 2L))).thenReturn(List.of(storedQuery, other));
+
+        List<StoredQuery> result = queryService.getQueriesByIds(List.of(1L, 2L, 1L));
+
+        assertEquals(2, result.size());
+        verify(queryRepository).findAllById(Set.of(1L, 2L));
+        verify(queryRepository, never()).findById(any());
+    }
+
+    @Test
+    public void getQueriesByIds_MissingId_ThrowsException() {
+        when(queryRepository.findAllById(Set.of(1L, 3L))).thenReturn(List.of(storedQuery));
+
+        StoredQueryException exception = assertThrows(StoredQueryException.class,
+                () -> queryService.getQueriesByIds(List.of(1L, 3L)));
+
+        assertEquals("Queries not found: [3]", exception.getMessage());
+    }
 }
@@ -0,0 +1,73 @@
+package com.executor.server.service;
+
+import com.executor.server.repository.DatasetRepository;
+import com.executor.server.repository.DatasetVersion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TableVersionsTest {
+
+    @Mock
+    private DatasetRepository datasetRepository;
+
+    @InjectMocks
+    private TableVersions tableVersions;
+
+    @Test
+    void snapshot_NameWrittenDifferently_IsOneTable() {
+        when(datasetRepository.findVersion("TITANIC")).thenReturn(Optional.of(version("TITANIC", 3)));
+
+        assertEquals(Optional.of(Map.of("TITANIC", 3L)), tableVersions.snapshot(List.of("titanic", "PUBLIC.\"TITANIC\"")));
+        verify(datasetRepository, times(1)).findVersion("TITANIC");
+    }
+
+    @Test
+    void snapshot_TableIsNotADataset_IsEmpty() {
+        when(datasetRepository.findVersion("TITANIC")).thenReturn(Optional.of(version("TITANIC", 3)));
+
+        assertEquals(Optional.empty(), tableVersions.snapshot(List.of("titanic", "users")));
+    }
+
+    @Test
+    void snapshot_NoTables_IsEmpty() {
+        assertEquals(Optional.empty(), tableVersions.snapshot(List.of()));
+    }
+
+    @Test
+    void isCurrent_OnlyUntilADatasetOfSnapshotIsPublished() {
+        when(datasetRepository.findVersion("TITANIC")).thenReturn(Optional.of(version("TITANIC", 1)));
+        when(datasetRepository.findVersion("CREW")).thenReturn(Optional.of(version("CREW", 1)));
+        Map<String, Long> snapshot = tableVersions.snapshot(List.of("titanic", "crew")).orElseThrow();
+
+        tableVersions.published("passengers", 1);
+        assertTrue(tableVersions.isCurrent(snapshot));
+
+        tableVersions.published("CREW", 2);
+        assertFalse(tableVersions.isCurrent(snapshot));
+    }
+
+    @Test
+    void published_OlderVersionArrivingLate_IsIgnored() {
+        tableVersions.published("titanic", 5);
+        tableVersions.published("titanic", 4);
+
+        assertEquals(Optional.of(Map.of("TITANIC", 5L)), tableVersions.snapshot(List.of("titanic")));
+        verifyNoInteractions(datasetRepository);
+    }
+
+    private static DatasetVersion version(String name, long version) {
+        return new DatasetVersion(name, version, 10, LocalDateTime.now(), null, null, null, null);
+    }
+}
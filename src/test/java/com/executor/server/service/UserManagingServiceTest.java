@@ -0,0 +1,82 @@
+package com.executor.server.service;
+
+import com.executor.entity.Authority;
+import com.executor.entity.User;
+import com.executor.server.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserManagingServiceTest {
+
+    @Mock
+    private UserRepository userRepo;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    @Mock
+    private AuthenticationCache authenticationCache;
+
+    @InjectMocks
+    private UserManagingService userManagingService;
+
+    @Test
+    void changePassword_SavesThenInvalidatesCache() {
+        User user = new User();
+        user.setUsername("user");
+        when(userRepo.findByUsername("user")).thenReturn(Optional.of(user));
+        when(passwordEncoder.encode("new")).thenReturn("hash");
+
+        userManagingService.changePassword("user", "new");
+
+        assertEquals("hash", user.getPassword());
+        assertNotNull(user.getTokensValidAfter());
+        InOrder inOrder = inOrder(userRepo, authenticationCache);
+        inOrder.verify(userRepo).save(user);
+        inOrder.verify(authenticationCache).invalidate("user");
+    }
+
+    @Test
+    void setEnabled_Disabled_InvalidatesCacheAndRevokesTokens() {
+        User user = new User();
+        user.setUsername("user");
+        user.setEnabled(true);
+        when(userRepo.findByUsername("user")).thenReturn(Optional.of(user));
+
+        userManagingService.setEnabled("user", false);
+
+        assertFalse(user.isEnabled());
+        assertNotNull(user.getTokensValidAfter());
+        verify(authenticationCache).invalidate("user");
+    }
+
+    @Test
+    void registerUser_InvalidatesCache() {
+        when(passwordEncoder.encode("secret")).thenReturn("hash");
+
+        userManagingService.registerUser("user", "secret", Authority.USER_ROLES.ROLE_ANALYST);
+
+        verify(userRepo).save(any(User.class));
+        verify(authenticationCache).invalidate("user");
+    }
+
+    @Test
+    void changePassword_UnknownUser_ThrowsException() {
+        when(userRepo.findByUsername("ghost")).thenReturn(Optional.empty());
+
+        assertThrows(IllegalArgumentException.class, () -> userManagingService.changePassword("ghost", "new"));
+        verifyNoInteractions(authenticationCache);
+    }
+}